@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.datastructures.DataSet;
+import de.unijena.bioinf.gecko3.datastructures.Parameter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the cluster detection with and without the quorum aware alphabet compaction, see DataSet.compactAlphabet().
+ * The compaction is part of the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AlphabetCompactionBenchmark {
+    @Param({BenchmarkData.SYNTHETIC})
+    public String input;
+
+    @Param({"0"})
+    public int delta;
+
+    /**
+     * The absolute quorum, from 2 up to nrOfGenomes
+     */
+    @Param({"2", "4", "6", "8", "10"})
+    public int quorum;
+
+    @Param({"10"})
+    public int nrOfGenomes;
+
+    @Param({"500"})
+    public int genesPerGenome;
+
+    @Param({"false", "true"})
+    public boolean compactAlphabet;
+
+    private int[][][] genomes;
+
+    @Setup
+    public void setup() {
+        genomes = BenchmarkData.genomes(input, nrOfGenomes, genesPerGenome);
+    }
+
+    @Benchmark
+    public List<ReferenceCluster> computeReferenceClusters() {
+        Parameter p = new Parameter(delta, 3, Math.min(quorum, genomes.length), Parameter.OperationMode.reference, Parameter.ReferenceType.genome);
+        int[][][] input = genomes;
+        if (compactAlphabet) {
+            input = new int[genomes.length][][];
+            for (int i = 0; i < genomes.length; i++)
+                input[i] = genomes[i].clone();
+            p.setAlphabetSize(DataSet.compactAlphabet(input, ReferenceClusterAlgorithm.minGenomesForCompaction(p, input.length)));
+        }
+        return ReferenceClusterAlgorithm.computeReferenceClusters(input, p);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.datastructures.DataSet;
+import de.unijena.bioinf.gecko3.io.CogFileReader;
+import de.unijena.bioinf.gecko3.testUtils.SyntheticGenomes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Input data for the benchmarks.
+ *
+ * The input is either "synthetic", for genomes from the SyntheticGenomes generator,
+ * or the name of a .cog file from the test resources, e.g. "fiveProteobacter.cog".
+ */
+public class BenchmarkData {
+    public static final String SYNTHETIC = "synthetic";
+
+    private static final int SYNTHETIC_ALPHABET_SIZE = 2000;
+    private static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the genomes of the input in the format of DataSet.toIntArray().
+     * @param input "synthetic" or the name of a .cog test resource
+     * @param nrOfGenomes the number of genomes, a test resource is truncated to this number of genomes
+     * @param genesPerGenome the number of genes per synthetic genome, ignored for test resources
+     * @return the genomes
+     */
+    public static int[][][] genomes(String input, int nrOfGenomes, int genesPerGenome) {
+        if (SYNTHETIC.equals(input))
+            return SyntheticGenomes.generate(nrOfGenomes, genesPerGenome, SYNTHETIC_ALPHABET_SIZE, SEED);
+
+        try {
+            DataSet data = new CogFileReader(resourceFile(input)).readData();
+            int[][][] genomes = data.toIntArray();
+            return (nrOfGenomes < genomes.length) ? Arrays.copyOf(genomes, nrOfGenomes) : genomes;
+        } catch (IOException | ParseException e) {
+            throw new RuntimeException("Could not read benchmark input " + input, e);
+        }
+    }
+
+    /**
+     * Copies a test resource into a temporary file, so it can be read even if the resources are packed in a jar.
+     * @param resource the name of the resource
+     * @return the temporary file
+     * @throws IOException if the resource could not be copied
+     */
+    public static File resourceFile(String resource) throws IOException {
+        try (InputStream in = BenchmarkData.class.getResourceAsStream("/" + resource)) {
+            if (in == null)
+                throw new IOException("Missing benchmark resource " + resource);
+            File file = File.createTempFile("gecko-benchmark", ".cog");
+            file.deleteOnExit();
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        }
+    }
+
+    /**
+     * Returns the quorum for the given percentage of the genomes, at least 2.
+     */
+    public static int quorum(int quorumPercent, int nrOfGenomes) {
+        return Math.max(2, (nrOfGenomes * quorumPercent) / 100);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the initialization of the POS, L, R, L' and R' tables of a chromosome.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ChromosomeBenchmark {
+    @Param({BenchmarkData.SYNTHETIC})
+    public String input;
+
+    @Param({"0", "3", "6"})
+    public int delta;
+
+    @Param({"1000", "10000"})
+    public int genesPerGenome;
+
+    private Chromosome chromosome;
+    private int alphabetSize;
+
+    @Setup
+    public void setup() {
+        GenomeList genomes = new GenomeList(BenchmarkData.genomes(input, 1, genesPerGenome));
+        chromosome = genomes.get(0).get(0);
+        alphabetSize = genomes.getAlphabetSize();
+    }
+
+    @Benchmark
+    public Chromosome initializeForCalculation() {
+        Chromosome copy = new Chromosome(chromosome);  // without the PositionIndex of the last invocation
+        copy.initializeForCalculation(alphabetSize, delta);
+        return copy;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.testUtils.SyntheticGenomes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the initialization of all genomes for the cluster detection, including the PositionIndex,
+ * for small and large alphabets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class GenomeInitializationBenchmark {
+    @Param({"3"})
+    public int delta;
+
+    @Param({"100", "1000"})
+    public int nrOfGenomes;
+
+    @Param({"2000"})
+    public int genesPerGenome;
+
+    @Param({"2000", "1000000"})
+    public int alphabetSize;
+
+    private int[][][] genomes;
+
+    @Setup
+    public void setup() {
+        genomes = SyntheticGenomes.generate(nrOfGenomes, genesPerGenome, alphabetSize, 42);
+    }
+
+    @Benchmark
+    public GenomeList initializeForCalculation() {
+        GenomeList genomeList = new GenomeList(genomes, alphabetSize);
+        genomeList.initializeForCalculation(delta);
+        return genomeList;
+    }
+}
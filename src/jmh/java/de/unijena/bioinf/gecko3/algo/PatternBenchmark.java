@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.datastructures.Parameter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the computation of the new delta locations in all genomes after the extension of a pattern.
+ * The pattern starts at the first gene of the reference chromosome and is extended to patternSize genes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PatternBenchmark {
+    @Param({BenchmarkData.SYNTHETIC})
+    public String input;
+
+    @Param({"0", "3", "6"})
+    public int delta;
+
+    @Param({"10", "100", "1000"})
+    public int nrOfGenomes;
+
+    @Param({"500"})
+    public int genesPerGenome;
+
+    @Param({"6"})
+    public int patternSize;
+
+    private GenomeList genomes;
+    private AlgorithmParameters param;
+    private Pattern pattern;
+    private List<ListOfDeltaLocations> lists;
+
+    @Setup
+    public void setup() {
+        genomes = new GenomeList(BenchmarkData.genomes(input, nrOfGenomes, genesPerGenome));
+        Parameter p = new Parameter(delta, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.genome);
+        param = new AlgorithmParameters(p, genomes.getAlphabetSize(), genomes.size());
+        genomes.initializeForCalculation(delta);
+
+        Chromosome referenceChromosome = genomes.get(0).get(0);
+        genomes.updateLeftBorder(1, referenceChromosome, 0);
+        pattern = new Pattern(genomes.getAlphabetSize(), genomes.size(), param, 0, referenceChromosome, 1);
+        int r = 1;
+        while (pattern.getSize() < patternSize && pattern.updateToNextI_ref(r))
+            r = pattern.getRightBorder() + 1;
+
+        lists = new ArrayList<>(genomes.size());
+        for (int k = 0; k < genomes.size(); k++)
+            lists.add(new ListOfDeltaLocations());
+    }
+
+    @TearDown
+    public void tearDown() {
+        genomes.removeCalculationFields();
+    }
+
+    @Benchmark
+    public int computeNewOptimalDeltaLocations() {
+        int count = 0;
+        for (int k = 1; k < genomes.size(); k++) {
+            ListOfDeltaLocations list = lists.get(k);
+            list.mergeLists(pattern.computeNewOptimalDeltaLocations(genomes.get(k), param, list.getPool()));
+            count += list.size();
+            list.emptyList();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the update of the rank for all left borders of the reference chromosome.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RankBenchmark {
+    @Param({BenchmarkData.SYNTHETIC})
+    public String input;
+
+    @Param({"1000", "10000"})
+    public int genesPerGenome;
+
+    private Rank rank;
+    private Chromosome referenceChromosome;
+
+    @Setup
+    public void setup() {
+        GenomeList genomes = new GenomeList(BenchmarkData.genomes(input, 1, genesPerGenome));
+        referenceChromosome = genomes.get(0).get(0);
+        referenceChromosome.initializeForCalculation(genomes.getAlphabetSize(), 0);
+        rank = new Rank(genomes.getAlphabetSize());
+    }
+
+    @Benchmark
+    public Rank updateRank() {
+        for (int l = 1; l <= referenceChromosome.getEffectiveGeneNumber(); l++)
+            rank.updateRank(referenceChromosome, l);
+        return rank;
+    }
+}
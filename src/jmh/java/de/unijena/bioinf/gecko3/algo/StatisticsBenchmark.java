@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.algo.status.AlgorithmProgressListener;
+import de.unijena.bioinf.gecko3.datastructures.Parameter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the computation of the p-values of the reference clusters of the first genome.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class StatisticsBenchmark {
+    @Param({BenchmarkData.SYNTHETIC})
+    public String input;
+
+    @Param({"0", "3"})
+    public int delta;
+
+    /**
+     * The quorum in percent of the genomes
+     */
+    @Param({"50", "100"})
+    public int quorum;
+
+    @Param({"10", "100", "1000"})
+    public int nrOfGenomes;
+
+    @Param({"500"})
+    public int genesPerGenome;
+
+    @Param({"1", "4"})
+    public int nrOfThreads;
+
+    private GenomeList genomes;
+    private List<ReferenceCluster> clusters;
+
+    @Setup
+    public void setup() {
+        int[][][] intGenomes = BenchmarkData.genomes(input, nrOfGenomes, genesPerGenome);
+        Parameter p = new Parameter(delta, 3, BenchmarkData.quorum(quorum, intGenomes.length), Parameter.OperationMode.reference, Parameter.ReferenceType.genome, false, true);
+        clusters = ReferenceClusterAlgorithm.computeReferenceClusters(intGenomes, p);
+        genomes = new GenomeList(intGenomes, p.getAlphabetSize());
+    }
+
+    @Benchmark
+    public List<ReferenceCluster> computeReferenceStatistics() {
+        Statistics.computeReferenceStatistics(genomes, clusters, delta, true, genomes.size(), null, nrOfThreads, Collections.<AlgorithmProgressListener>emptyList());
+        return clusters;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.io;
+
+import de.unijena.bioinf.gecko3.algo.BenchmarkData;
+import de.unijena.bioinf.gecko3.datastructures.DataSet;
+import de.unijena.bioinf.gecko3.testUtils.SyntheticGenomes;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading a .cog file.
+ *
+ * The input is either a .cog test resource or a synthetic file with nrOfGenomes genomes,
+ * nrOfGenomes is ignored for test resources.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CogFileReaderBenchmark {
+    @Param({"fiveProteobacter.cog", BenchmarkData.SYNTHETIC})
+    public String input;
+
+    @Param({"1000"})
+    public int nrOfGenomes;
+
+    @Param({"2000"})
+    public int genesPerGenome;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        if (BenchmarkData.SYNTHETIC.equals(input)) {
+            file = File.createTempFile("gecko-benchmark", ".cog");
+            file.deleteOnExit();
+            SyntheticGenomes.writeCogFile(BenchmarkData.genomes(input, nrOfGenomes, genesPerGenome), file);
+        } else {
+            file = BenchmarkData.resourceFile(input);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public DataSet readData() throws IOException, ParseException {
+        return new CogFileReader(file).readData();
+    }
+}
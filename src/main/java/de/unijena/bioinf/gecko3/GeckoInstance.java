@@ -19,6 +19,9 @@
 
 package de.unijena.bioinf.gecko3;
 
+import de.unijena.bioinf.gecko3.algo.GeneClusterSink;
+import de.unijena.bioinf.gecko3.algo.GeneSetQuery;
+import de.unijena.bioinf.gecko3.algo.ParameterSweepSink;
 import de.unijena.bioinf.gecko3.algo.ReferenceClusterAlgorithm;
 import de.unijena.bioinf.gecko3.algo.status.AlgorithmProgressListener;
 import de.unijena.bioinf.gecko3.algo.status.AlgorithmStatusEvent;
@@ -37,6 +40,7 @@ import javax.swing.*;
 import javax.swing.event.EventListenerList;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CancellationException;
@@ -364,6 +368,46 @@ public class GeckoInstance {
 		return ReferenceClusterAlgorithm.computeReferenceClusters(data, params, useMemoryReduction, genomeGrouping, listener);
 	}
 
+    /**
+     * Computes the gene clusters for the given genomes with the given parameters, and passes them to the sink
+     * as soon as they are final, without keeping all clusters in memory.
+     * @param data the data
+     * @param params the parameters
+     * @param genomeGrouping the grouping of the genomes, only one genome per group is used for quorum and p-value
+     * @param listener the progress listener
+     * @param sink receives the gene clusters
+     * @return the number of gene clusters
+     * @throws IOException if the sink throws an IOException
+     */
+    public static int computeClustersJava(DataSet data, Parameter params, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener, GeneClusterSink sink) throws IOException {
+        return ReferenceClusterAlgorithm.computeReferenceClusters(data, params, USE_MEMORY_REDUCTION_DEFAULT, genomeGrouping, listener, sink);
+    }
+
+    /**
+     * Computes the gene clusters for every setting of a parameter sweep, the genomes are indexed only once for all settings.
+     * @param data the data
+     * @param settings the parameters of all settings
+     * @param genomeGrouping the grouping of the genomes, only one genome per group is used for quorum and p-value
+     * @param listener the progress listener
+     * @param sink receives the gene clusters of each setting
+     * @throws IOException if the sink throws an IOException
+     */
+    public static void computeClusterSweepJava(DataSet data, List<Parameter> settings, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener, ParameterSweepSink sink) throws IOException {
+        ReferenceClusterAlgorithm.computeReferenceClusterSweep(data, settings, USE_MEMORY_REDUCTION_DEFAULT, genomeGrouping, listener, sink);
+    }
+
+    /**
+     * Finds all approximate occurrences of each set of gene families, without computing all gene clusters.
+     * The genomes are indexed for each call, to answer several calls on the same data, reuse one GeneSetQuery.
+     * @param data the data
+     * @param params the parameters, only the distances, the statistics and the number of threads are used
+     * @param queries the sets of gene families
+     * @return the gene clusters of the queries that occur in at least one genome, the id is the index of the query
+     */
+    public static List<GeneCluster> queryGeneFamiliesJava(DataSet data, Parameter params, List<Set<GeneFamily>> queries) {
+        return new GeneSetQuery(data, params).query(queries);
+    }
+
     public void stopComputation() {
         geneClusterSwingWorker.cancel(true);
     }
@@ -40,14 +40,38 @@ public class AlgorithmParameters{
     private final boolean refInRef;
 
     private final boolean noStatistics;
+    private final int nrOfThreads;
+    private final boolean useDistinctCountIndex;
+    private final int topClusters;
 	
 	public AlgorithmParameters(Parameter p, int alphabetSize, int nrOfGenomes) {
-		this(p.getDelta(), p.getDeltaTable(), p.getMinClusterSize(), p.getQ(), nrOfGenomes, alphabetSize, (p.getRefType() != Parameter.ReferenceType.allAgainstAll), p.searchRefInRef(), p.noStatistics());
+		this(p.getDelta(), p.getDeltaTable(), p.getMinClusterSize(), p.getQ(), nrOfGenomes, alphabetSize, (p.getRefType() != Parameter.ReferenceType.allAgainstAll), p.searchRefInRef(), p.noStatistics(), p.getNrOfThreads(), p.useDistinctCountIndex(), p.getTopClusters());
 		if (!p.useJavaAlgorithm())
 			throw new IllegalArgumentException("Parameters not compatible to Java mode.");
 	}
+
+	/**
+	 * Copy constructor. The copy can be modified (e.g. by adding a reference copy) independently of the original.
+	 * @param other the parameters to copy
+	 */
+	AlgorithmParameters(AlgorithmParameters other) {
+		this.delta = other.delta;
+		this.deltaTable = other.deltaTable;
+		this.useDeltaTable = other.useDeltaTable;
+		this.minClusterSize = other.minClusterSize;
+		this.maxUncoveredGenomes = other.maxUncoveredGenomes;
+		this.minCoveredGenomes = other.minCoveredGenomes;
+		this.nrOfGenomes = other.nrOfGenomes;
+		this.alphabetSize = other.alphabetSize;
+		this.singleReference = other.singleReference;
+		this.refInRef = other.refInRef;
+		this.noStatistics = other.noStatistics;
+		this.nrOfThreads = other.nrOfThreads;
+		this.useDistinctCountIndex = other.useDistinctCountIndex;
+		this.topClusters = other.topClusters;
+	}
 	
-	private AlgorithmParameters(int delta, int[][] deltaTable, int minClusterSize, int q, int nrOfGenomes, int alphabetSize, boolean singleReference, boolean refInRef, boolean noStatistics) {
+	private AlgorithmParameters(int delta, int[][] deltaTable, int minClusterSize, int q, int nrOfGenomes, int alphabetSize, boolean singleReference, boolean refInRef, boolean noStatistics, int nrOfThreads, boolean useDistinctCountIndex, int topClusters) {
 		if (delta >= 0 && deltaTable != null)
 			throw new IllegalArgumentException("Invalid delta and deltaTable values. Cannot use both!");
 		if (delta < 0 && deltaTable == null)
@@ -81,6 +105,9 @@ public class AlgorithmParameters{
         this.singleReference = singleReference;
         this.refInRef = refInRef;
         this.noStatistics = noStatistics;
+        this.nrOfThreads = nrOfThreads;
+        this.useDistinctCountIndex = useDistinctCountIndex;
+        this.topClusters = topClusters;
 	}
 	
 	/**
@@ -224,6 +251,21 @@ public class AlgorithmParameters{
         return noStatistics;
     }
 
+    public int getNrOfThreads() {
+        return nrOfThreads;
+    }
+
+    public boolean useDistinctCountIndex() {
+        return useDistinctCountIndex;
+    }
+
+    /**
+     * @return the number of clusters with the smallest p-values that are kept, 0 for all clusters
+     */
+    public int getTopClusters() {
+        return topClusters;
+    }
+
     public String toString() {
 		if (delta >= 0)
         	return String.format("Delta: %1$d Size: %2$d",  delta, minClusterSize);
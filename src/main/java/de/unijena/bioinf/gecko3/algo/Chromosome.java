@@ -33,13 +33,21 @@ class Chromosome {
 	private final int[] genes;
     private int[] prevOcc;
     private int[] nextOcc;
-    private int[][] pos;
-    private int[][] L;
-    private int[][] R;
-    private int[][] L_prime;
-    private int[][] R_prime;
+    private DistinctCountIndex distinctCountIndex;
+    private PositionIndex positionIndex;
+    private int positionIndexChr;         // the index of the chromosome in positionIndex
+
+    /*
+     * The tables L, R, L_prime and R_prime are stored row by row in one array each,
+     * the entry for position pos and distance diff is found at pos*rowLength + diff.
+     */
+    private int[] L;
+    private int[] R;
+    private int[] L_prime;
+    private int[] R_prime;
 
     private int delta;
+    private int rowLength;                // delta + 2, the number of entries per position in L, R, L_prime and R_prime
     private int alphabetSize;
 
     /**
@@ -51,7 +59,7 @@ class Chromosome {
     public Chromosome(List<Integer> genes, int number) {
         this.genes = IntArray.newZeroTerminatedInstance(genes);
         this.nr = number;
-        this.pos = null;
+        this.positionIndex = null;
         this.prevOcc = null;
         this.nextOcc = null;
         this.L = null;
@@ -73,7 +81,7 @@ class Chromosome {
     	else
     		this.genes = IntArray.newIntArray(genes, zeroTerminated);
         this.nr = number;
-        this.pos = null;
+        this.positionIndex = null;
         this.prevOcc = null;
         this.nextOcc = null;
         this.L = null;
@@ -85,7 +93,7 @@ class Chromosome {
     public Chromosome(Chromosome other) {
 		this.genes = Arrays.copyOf(other.genes, other.genes.length);
 		this.nr = other.nr;
-        this.pos = null;
+        this.positionIndex = null;
         this.prevOcc = null;
         this.nextOcc = null;
         this.L = null;
@@ -100,81 +108,53 @@ class Chromosome {
      * @param maxDelta the maximum allowed distance
      */
     public void initializeForCalculation(int alphabetSize, int maxDelta) {
-        this.alphabetSize = alphabetSize;
-        this.pos = this.computePOS();
-
-        this.L = new int[this.genes.length][];
-        this.R = new int[this.genes.length][];
-        this.L_prime = new int[this.genes.length][];
-        this.R_prime = new int[this.genes.length][];
-        for (int i = 0; i < this.genes.length; i++) {
-            L[i] = new int[maxDelta + 2];
-            R[i] = IntArray.newIntArray(maxDelta + 2, this.getEffectiveGeneNumber() + 1);
-            L_prime[i] = new int[maxDelta + 2];
-            R_prime[i] = IntArray.newIntArray(maxDelta + 2, this.getEffectiveGeneNumber() + 1);
-        }
-        this.delta = maxDelta;
-
-        this.prevOcc = this.computePrevOcc();
-        this.nextOcc = this.computeNextOcc();
+        initializeForCalculation(alphabetSize, maxDelta, false);
     }
 
-    private int[][] computePOS() {
-        List<LinkedList<Integer>> tmp = new ArrayList<>(alphabetSize+1);
-        for (int i=0; i<=alphabetSize; i++) {
-            tmp.add(null);
-        }
-        for (int i=1; i<=this.getEffectiveGeneNumber(); i++) {       // genes starts and ends with 0 that is not part of the genome
-            if (genes[i] < 0)
-                continue;
-            if (tmp.get(genes[i])==null) {
-                tmp.set(genes[i], new LinkedList<Integer>());
-            }
-            tmp.get(genes[i]).add(i);
-        }
-        int[][] newPos = new int[alphabetSize+1][];
-        for (int i=0; i<=alphabetSize; i++) {
-            if (tmp.get(i) == null) {
-                newPos[i] = new int[0];
-            }
-            else {
-                newPos[i] = new int[tmp.get(i).size()];
-                int j = 0;
-                for (Integer p : tmp.get(i)) {
-                    newPos[i][j] = p;
-                    j++;
-                }
-            }
-        }
-        return newPos;
-    }
-    
-    private int[] computePrevOcc() {
-        int[] occ = new int[alphabetSize + 1];//max(this.genes)+1];
-        int[] newPrevOcc = new int[this.getEffectiveGeneNumber() + 2];//max(this.genes)+1];
-
-        for (int i = 1; i <= this.getEffectiveGeneNumber(); i++) {
-        	if(genes[i]>=0){
-            	newPrevOcc[i] = occ[genes[i]];
-            	occ[genes[i]] = i;
-        	}
-        }
+    /**
+     * Initializes the Chromosome for the calculation of gene clusters.
+     * @param alphabetSize the size of the complete alphabet.
+     * @param maxDelta the maximum allowed distance
+     * @param useDistinctCountIndex if getNUM() and intervalContentIdentical() use a DistinctCountIndex instead of scanning the interval
+     */
+    public void initializeForCalculation(int alphabetSize, int maxDelta, boolean useDistinctCountIndex) {
+        this.alphabetSize = alphabetSize;
+        if (this.positionIndex == null)
+            setPositionIndex(new PositionIndex(Collections.singletonList(this)), 0);
 
-        return newPrevOcc;
+        this.delta = maxDelta;
+        this.rowLength = maxDelta + 2;
+        this.L = new int[this.genes.length * rowLength];
+        this.R = IntArray.newIntArray(this.genes.length * rowLength, this.getEffectiveGeneNumber() + 1);
+        this.L_prime = new int[this.genes.length * rowLength];
+        this.R_prime = IntArray.newIntArray(this.genes.length * rowLength, this.getEffectiveGeneNumber() + 1);
+
+        this.prevOcc = positionIndex.getPrevOcc(positionIndexChr);
+        this.nextOcc = positionIndex.getNextOcc(positionIndexChr);
+        this.distinctCountIndex = useDistinctCountIndex ? new DistinctCountIndex(genes, prevOcc) : null;
     }
 
-    private int[] computeNextOcc() {
-        int[] occ = IntArray.newIntArray(alphabetSize + 1, this.getEffectiveGeneNumber() + 1);
-        int[] newNextOcc = IntArray.newIntArray(this.getEffectiveGeneNumber() + 2, this.getEffectiveGeneNumber() + 1);
-
-        for (int i = this.getEffectiveGeneNumber() + 1; i >= 1; i--) {
-        	if(genes[i]>=0){
-        		newNextOcc[i] = occ[genes[i]];
-        		occ[genes[i]] = i;
-        	}
-        }
+    /**
+     * Sets the maximum distance for the computation of L, R, L' and R'.
+     * The tables keep the size of the initialization, their entries up to distance delta+1 are the same as
+     * if the chromosome had been initialized with delta, so the search can use them with the smaller distance.
+     * @param delta the maximum allowed distance, at most the maxDelta of initializeForCalculation()
+     */
+    void setDelta(int delta) {
+        if (delta < 0 || delta + 2 > rowLength)
+            throw new IllegalArgumentException(String.format("Delta %d exceeds the initialized maximum delta %d!", delta, rowLength - 2));
+        this.delta = delta;
+    }
 
-        return newNextOcc;
+    /**
+     * Sets the index of the positions of the characters, that is shared by all chromosomes of the genome.
+     * Has to be called before initializeForCalculation(), otherwise the chromosome builds its own index.
+     * @param positionIndex the index
+     * @param chrIndex the index of this chromosome in the positionIndex
+     */
+    void setPositionIndex(PositionIndex positionIndex, int chrIndex) {
+        this.positionIndex = positionIndex;
+        this.positionIndexChr = chrIndex;
     }
 
     /**
@@ -222,6 +202,8 @@ class Chromosome {
      * @return the number of different characters in the interval.
      */
     public int getNUM(int l, int r) {
+        if (distinctCountIndex != null && r - l >= DistinctCountIndex.MIN_INTERVAL_LENGTH)
+            return distinctCountIndex.getNUM(l, r);
         int numCount = 0;
         for (int i=l; i<=r; i++) {
             if (genes[i] < 0)
@@ -261,6 +243,10 @@ class Chromosome {
      * @return
      */
     public boolean intervalContentIdentical(int l1, int r1, int l2, int r2) {
+        // the tests below decide, if both intervals contain the same number of different characters
+        if (distinctCountIndex != null && (r1 - l1) + (r2 - l2) >= 2 * DistinctCountIndex.MIN_INTERVAL_LENGTH)
+            return distinctCountIndex.getDistinctPositions(l1, r1) == distinctCountIndex.getDistinctPositions(l2, r2);
+
         if (l1 == l2) {
             int rightmostToTest = Math.max(r1, r2);
             int leftmostToTest = Math.min(r1, r2);
@@ -319,12 +305,37 @@ class Chromosome {
     }
 
     /**
-     * Returns the list of positions of the specified character c.
+     * Returns the array that contains the positions of all characters.
+     * The positions of the character c are found from getPOSStart(c) to getPOSEnd(c), in ascending order.
+     * @return the array of positions, must not be modified.
+     */
+    public int[] getPOS() {
+        return positionIndex.getPositions();
+    }
+
+    /**
+     * @param c the character for which the positions shall be returned.
+     * @return the index in getPOS() of the first position of the character.
+     */
+    public int getPOSStart(int c) {
+        return positionIndex.start(c, positionIndexChr);
+    }
+
+    /**
      * @param c the character for which the positions shall be returned.
-     * @return the IntArray of positions of the character.
+     * @return the index in getPOS() after the last position of the character.
      */
-    public int[] getPOS(int c) {
-        return (c < 0) ? new int[0] : pos[c];
+    public int getPOSEnd(int c) {
+        return positionIndex.end(c, positionIndexChr);
+    }
+
+    /**
+     * Returns the number of positions of the character c.
+     * @param c the character.
+     * @return the number of positions of the character.
+     */
+    public int getNrOfPOS(int c) {
+        return getPOSEnd(c) - getPOSStart(c);
     }
 
     /**
@@ -353,28 +364,36 @@ class Chromosome {
      */
     void computeL(Rank rank){
         resetL();                                           
-        for (int i=1; i<=this.getEffectiveGeneNumber(); i++) {
-            L[i][0] = i;                                 // no mismatch left of position is the position
-            int d = 1;
-            if (genes[i] <0)
-                continue;
+        for (int i=1; i<=this.getEffectiveGeneNumber(); i++)
+            computeL(rank, i);
+    }
 
-            for (int j=i-1; j>0 && d<=delta+1; j--) {                                 // search for unmarked char left of i
-                if (genes[j] < 0) {
-                    int k = Math.abs(genes[j]);
-                    while(d<=delta+1 && k>0){
-                        L[i][d]=j;
-                        d++;
-                        k--;
-                    }
-                    continue;
+    /**
+     * Computes the row of L for position i, the row has to contain the default value 0.
+     * @param rank the rank array of the current reference interval.
+     * @param i the position
+     */
+    private void computeL(Rank rank, int i){
+        L[i*rowLength] = i;                                 // no mismatch left of position is the position
+        int d = 1;
+        if (genes[i] <0)
+            return;
+
+        for (int j=i-1; j>0 && d<=delta+1; j--) {                                 // search for unmarked char left of i
+            if (genes[j] < 0) {
+                int k = Math.abs(genes[j]);
+                while(d<=delta+1 && k>0){
+                    L[i*rowLength + d]=j;
+                    d++;
+                    k--;
                 }
+                continue;
+            }
 
-                if (rank.getRank(genes[j]) > rank.getRank(genes[i])) {  // if unmarked char found
-                    if(!this.previousInInterval(j+1, i)) {              // if unmarked char found for the 1st time
-                        L[i][d] = j;
-                        d++;
-                    }
+            if (rank.getRank(genes[j]) > rank.getRank(genes[i])) {  // if unmarked char found
+                if(!this.previousInInterval(j+1, i)) {              // if unmarked char found for the 1st time
+                    L[i*rowLength + d] = j;
+                    d++;
                 }
             }
         }
@@ -395,8 +414,8 @@ class Chromosome {
                 if (rank.getRank(genes[j]) < rank.getRank(c_old)) {             // if rank of character smaller than the new rank of c_old
                     for (int l=1; l<=delta+1; l++) {                              // test if entries for position i in array L change,
                         if  (this.getL(j, l) < lastOcc) {                            // because c_old is a new mismatch left of i
-                            System.arraycopy(L[j], l, L[j], l+1, (L[j].length-l)-1); // shift all higher entries in L
-                            L[j][l] = lastOcc;                                // and insert the new mismatch position
+                            System.arraycopy(L, j*rowLength + l, L, j*rowLength + l+1, (rowLength-l)-1); // shift all higher entries in L
+                            L[j*rowLength + l] = lastOcc;                                // and insert the new mismatch position
                             break;                                                  // no further changes in L[j] possible
                         }
                     }
@@ -414,7 +433,7 @@ class Chromosome {
      * @param c_old must not be < 0
      */
     private void updateL_characterEqualsC_Old(Rank rank, int c_old){
-        if (getPOS(c_old).length == 0)
+        if (getNrOfPOS(c_old) == 0)
             return;
 
         int[] c_old_L = new int[delta+2];
@@ -443,7 +462,7 @@ class Chromosome {
             }
 
             if (genes[j] == c_old) {                                  // if occurrence of the c_old found
-                System.arraycopy(c_old_L, 1, L[j], 1, delta + 1);   // replace all entries in L[j] with the entries in c_old_L
+                System.arraycopy(c_old_L, 1, L, j*rowLength + 1, delta + 1);   // replace all entries in L[j] with the entries in c_old_L
             }
         }
     }
@@ -456,7 +475,7 @@ class Chromosome {
      * @param c_old the character that was last added to the reference interval. Must not be < 0.
      */
     void updateL(Rank rank, int c_old){
-        if (getPOS(c_old).length == 0)
+        if (getNrOfPOS(c_old) == 0)
             return;
 
         updateL_characterRankSmallerC_Old(rank, c_old);
@@ -467,9 +486,7 @@ class Chromosome {
      * Resets the matrix L to its default value 0.
      */
     private void resetL () {
-        for (int i=0; i<L.length; i++) {
-            IntArray.reset(L[i], 0);
-        }
+        IntArray.reset(L, 0);
     }
 
     /**
@@ -479,7 +496,7 @@ class Chromosome {
      * @return the position of the unmarked character.
      */
     public int getL (int pos, int diff) {
-        return L[pos][diff];
+        return L[pos*rowLength + diff];
     }
 
     /**
@@ -490,31 +507,39 @@ class Chromosome {
      */
     void computeR(Rank rank){
     	resetR();
-        for (int i=1; i<=this.getEffectiveGeneNumber(); i++) {
-            R[i][0] = i;                          // first mismatch right of position is the position
-            int d = 1;
-            
-            if(genes[i]<0)
-                continue;
+        for (int i=1; i<=this.getEffectiveGeneNumber(); i++)
+            computeR(rank, i);
+    }
 
-            for (int j=i+1; j<=this.getEffectiveGeneNumber() && d<=delta+1; j++) {                   // search for unmarked char right of i
-                if (genes[j]<0 ) {
-                    int k = 0;
-                    while(d<=delta+1 && k<Math.abs(genes[j])){
-                        R[i][d] = j;
-                        d++;
-                        k++;
-                    }
-                    continue;
+    /**
+     * Computes the row of R for position i, the row has to contain the default value chr.size()+1.
+     * @param rank the rank array of the current reference interval.
+     * @param i the position
+     */
+    private void computeR(Rank rank, int i){
+        R[i*rowLength] = i;                          // first mismatch right of position is the position
+        int d = 1;
+
+        if(genes[i]<0)
+            return;
+
+        for (int j=i+1; j<=this.getEffectiveGeneNumber() && d<=delta+1; j++) {                   // search for unmarked char right of i
+            if (genes[j]<0 ) {
+                int k = 0;
+                while(d<=delta+1 && k<Math.abs(genes[j])){
+                    R[i*rowLength + d] = j;
+                    d++;
+                    k++;
                 }
-                if (rank.getRank(genes[j]) > rank.getRank(genes[i])) {  // if unmarked char found
-                    if(!this.nextInInterval(i, j-1)) {                         // if unmarked char found for the 1st time
-                        R[i][d] = j;
-                        d++;
-                    }
+                continue;
+            }
+            if (rank.getRank(genes[j]) > rank.getRank(genes[i])) {  // if unmarked char found
+                if(!this.nextInInterval(i, j-1)) {                         // if unmarked char found for the 1st time
+                    R[i*rowLength + d] = j;
+                    d++;
                 }
             }
-    	}
+        }
     }
 
     /**
@@ -531,9 +556,9 @@ class Chromosome {
             if (lastOcc != this.getEffectiveGeneNumber() + 1) {                                            // if c_old has already occurred in the list
                 if (rank.getRank(genes[j]) < rank.getRank(c_old)) {       // if rank of character smaller than the new rank of c_old
                     for (int l = 1; l <= delta + 1; l++) {                              // test if entries for position i in array R change,
-                        if (R[j][l] > lastOcc) {                            // because c_old is a new mismatch left of i
-                            System.arraycopy(R[j], l, R[j], l+1, (R[j].length-l)-1); // shift all higher entries in R
-                            R[j][l] = lastOcc;                                // and insert the new mismatch position
+                        if (R[j*rowLength + l] > lastOcc) {                            // because c_old is a new mismatch left of i
+                            System.arraycopy(R, j*rowLength + l, R, j*rowLength + l+1, (rowLength-l)-1); // shift all higher entries in R
+                            R[j*rowLength + l] = lastOcc;                                // and insert the new mismatch position
                             break;                                                  // no further changes in R[j] possible
                         }
                     }
@@ -551,7 +576,7 @@ class Chromosome {
      * @param c_old must not be < 0
      */
     private void updateR_characterEqualsC_Old(Rank rank, int c_old){
-        if (getPOS(c_old).length == 0)
+        if (getNrOfPOS(c_old) == 0)
             return;
 
         int[] c_old_R = IntArray.newIntArray(delta+2, this.getEffectiveGeneNumber()+1);
@@ -579,7 +604,7 @@ class Chromosome {
             }
 
             if (genes[j] == c_old) {                                  // if occurrence of the c_old found
-                System.arraycopy(c_old_R, 1, R[j], 1, delta + 1);   // replace all entries in R[j] with the entries in c_old_R
+                System.arraycopy(c_old_R, 1, R, j*rowLength + 1, delta + 1);   // replace all entries in R[j] with the entries in c_old_R
             }
         }
     }
@@ -592,7 +617,7 @@ class Chromosome {
      * @param c_old the character that was last added to the reference interval. Must not be < 0
      */
     void updateR(Rank rank, int c_old){
-        if (getPOS(c_old).length == 0)
+        if (getNrOfPOS(c_old) == 0)
             return;
 
         updateR_characterRankSmallerC_Old(rank, c_old);
@@ -603,9 +628,7 @@ class Chromosome {
      * Resets the matrix R to its default value chr.size()+1.
      */
     private void resetR () {
-        for (int i=0; i<R.length; i++) {
-            IntArray.reset(R[i], this.getEffectiveGeneNumber()+1);
-        }
+        IntArray.reset(R, this.getEffectiveGeneNumber()+1);
     }
 
     /**
@@ -615,36 +638,42 @@ class Chromosome {
      * @return the position of the unmarked character.
      */
     public int getR (int pos, int diff) {
-        return R[pos][diff];
+        return R[pos*rowLength + diff];
     }
 
     /**
      * Resets the matrix L_prime to its default value 0.
      */
     private void resetL_prime () {
-        for (int i=0; i<L_prime.length; i++) {
-            IntArray.reset(L_prime[i], 0);
-        }
+        IntArray.reset(L_prime, 0);
     }
 
     void computeL_prime(Rank rank) {
         resetL_prime();
         for(int j=1;j<=this.getEffectiveGeneNumber();j++){
-            if(genes[j]<0)
-                continue;
-            int last_match = j+1;
-            for(int d=1; d<=delta+1; d++) {
-                boolean notFound = true;
-                for(int l=L[j][d]+1; l<last_match && notFound; l++) {
-                    if(genes[l] >= 0 && rank.getRank(genes[l]) <= rank.getRank(genes[j])) {
-                        L_prime[j][d] = l;
-                        notFound = false;
-                    }
+            if(genes[j]>=0)
+                computeL_prime(rank, j);
+        }
+    }
+
+    /**
+     * Computes the row of L_prime for position j from the row of L, the row has to contain the default value 0.
+     * @param rank the rank array of the current reference interval.
+     * @param j the position, genes[j] must not be < 0
+     */
+    private void computeL_prime(Rank rank, int j) {
+        int last_match = j+1;
+        for(int d=1; d<=delta+1; d++) {
+            boolean notFound = true;
+            for(int l=L[j*rowLength + d]+1; l<last_match && notFound; l++) {
+                if(genes[l] >= 0 && rank.getRank(genes[l]) <= rank.getRank(genes[j])) {
+                    L_prime[j*rowLength + d] = l;
+                    notFound = false;
                 }
-                if (notFound)
-                    L_prime[j][d] = L_prime[j][d-1];
-                last_match = L[j][d]+1;
             }
+            if (notFound)
+                L_prime[j*rowLength + d] = L_prime[j*rowLength + d-1];
+            last_match = L[j*rowLength + d]+1;
         }
     }
 
@@ -675,7 +704,7 @@ class Chromosome {
      * @param c_old the character that was last added to the reference interval. Must not be < 0.
      */
     void updateL_prime(Rank rank, int c_old){
-        if (getPOS(c_old).length == 0)
+        if (getNrOfPOS(c_old) == 0)
             return;
 
         updateL_primeCharacterRankSmallerC_Old(rank, c_old);
@@ -690,9 +719,9 @@ class Chromosome {
                 continue;
             if (rank.getRank(genes[i]) < rank.getRank(c_old)) {
                 for (int d=1; d<=delta+1; d++) {
-                    if (genes[L_prime[i][d]] == c_old || L[i][d] >= L_prime[i][d]) {
+                    if (genes[L_prime[i*rowLength + d]] == c_old || L[i*rowLength + d] >= L_prime[i*rowLength + d]) {
                         // get update position
-                        int pos = Math.max(L_prime[i][d], L[i][d]);
+                        int pos = Math.max(L_prime[i*rowLength + d], L[i*rowLength + d]);
 
                         int[] newPossitions = lowerRankedNeighbors.get(pos);
                         if (newPossitions == null) {
@@ -701,7 +730,7 @@ class Chromosome {
                         }
                         for (int j=0; j< newPossitions.length; j++){
                             if (rank.getRank(genes[newPossitions[j]]) <= rank.getRank(genes[i])) {
-                                L_prime[i][d] = newPossitions[j];
+                                L_prime[i*rowLength + d] = newPossitions[j];
                                 break;
                             }
                         }
@@ -715,14 +744,16 @@ class Chromosome {
         final int p;
         final int[] primes;
         final int[] L;
+        final int offset;
         int lastToUpdate;
 
-        UpdateLPrime(int pos, int delta, int[] L) {
+        UpdateLPrime(int pos, int delta, int[] L, int offset) {
             p=pos;
             primes = new int[delta+2];
             lastToUpdate = 1;
             primes[1] = pos;
             this.L = L;
+            this.offset = offset;
         }
 
         /**
@@ -731,7 +762,7 @@ class Chromosome {
          * @return true if done updating, false otherwise
          */
         boolean updatePosition(int matchPosition) {
-            while (lastToUpdate < primes.length && matchPosition <= L[lastToUpdate]) {
+            while (lastToUpdate < primes.length && matchPosition <= L[offset + lastToUpdate]) {
                 if (lastToUpdate < primes.length-1)
                     primes[lastToUpdate+1] = primes[lastToUpdate];
                 lastToUpdate++;
@@ -754,21 +785,22 @@ class Chromosome {
     }
 
     private void updateL_primeCharacterEqualsC_Old(Rank rank, int c_old) {
-        int[] pos = getPOS(c_old);
+        int[] pos = getPOS();
+        int first = getPOSStart(c_old);
         Set<UpdateLPrime> currentlyUpdating = new HashSet<>();
 
-        for (int pos_index=pos.length-1; pos_index>=0; pos_index--) {
+        for (int pos_index=getPOSEnd(c_old)-1; pos_index>=first; pos_index--) {
             // Start new iteration from next unused pos
-            int nextPos = pos_index>0 ? pos[pos_index-1] : 0;
-            currentlyUpdating.add(new UpdateLPrime(pos[pos_index], delta, L[pos[pos_index]]));
+            int nextPos = pos_index>first ? pos[pos_index-1] : 0;
+            currentlyUpdating.add(new UpdateLPrime(pos[pos_index], delta, L, pos[pos_index]*rowLength));
 
             // iterate from the position left of pos, as long as we are currently updating an Lprime
             int i = pos[pos_index]-1;
             while (!currentlyUpdating.isEmpty() && i > 0){
                 if (nextPos==i){
-                    currentlyUpdating.add(new UpdateLPrime(i, delta, L[i]));
+                    currentlyUpdating.add(new UpdateLPrime(i, delta, L, i*rowLength));
                     pos_index--;
-                    nextPos = pos_index>0 ? pos[pos_index-1] : 0;
+                    nextPos = pos_index>first ? pos[pos_index-1] : 0;
                 }
 
                 // if marked gene found
@@ -777,7 +809,7 @@ class Chromosome {
                     while (iterator.hasNext()) {
                         UpdateLPrime updateLPrime = iterator.next();
                         if (updateLPrime.updatePosition(i)){
-                            L_prime[updateLPrime.p] = updateLPrime.getLPrime();
+                            System.arraycopy(updateLPrime.getLPrime(), 0, L_prime, updateLPrime.p*rowLength, delta + 2);
                             iterator.remove();
                         }
                     }
@@ -789,7 +821,7 @@ class Chromosome {
         }
         // Get all unfinished Primes
         for (UpdateLPrime updateLPrime : currentlyUpdating){
-            L_prime[updateLPrime.p] = updateLPrime.getLPrime();
+            System.arraycopy(updateLPrime.getLPrime(), 0, L_prime, updateLPrime.p*rowLength, delta + 2);
         }
     }
 
@@ -797,28 +829,60 @@ class Chromosome {
      * Resets the matrix R_prime to its default value chr.size()+1.
      */
     private void resetR_prime () {
-        for (int i=0; i<R_prime.length; i++) {
-            IntArray.reset(R_prime[i], getEffectiveGeneNumber()+1);
-        }
+        IntArray.reset(R_prime, getEffectiveGeneNumber()+1);
     }
 
     void computeR_prime(Rank rank) {
         resetR_prime();
         for(int j=1;j<=getEffectiveGeneNumber();j++){
-            if (genes[j]<0)
-                continue;
-            int lastEnd = j-1;  // we only need to scan before the last scanned position for different d
-            for(int d=1; d<=delta+1; d++) {
-                boolean notFound = true;
-                for (int l = R[j][d] - 1; l > lastEnd && notFound; l--) {
-                    if (genes[l] >= 0 && rank.getRank(genes[l]) <= rank.getRank(genes[j])) {
-                        R_prime[j][d] = l;
-                        notFound = false;
-                    }
+            if (genes[j]>=0)
+                computeR_prime(rank, j);
+        }
+    }
+
+    /**
+     * Computes the row of R_prime for position j from the row of R, the row has to contain the default value chr.size()+1.
+     * @param rank the rank array of the current reference interval.
+     * @param j the position, genes[j] must not be < 0
+     */
+    private void computeR_prime(Rank rank, int j) {
+        int lastEnd = j-1;  // we only need to scan before the last scanned position for different d
+        for(int d=1; d<=delta+1; d++) {
+            boolean notFound = true;
+            for (int l = R[j*rowLength + d] - 1; l > lastEnd && notFound; l--) {
+                if (genes[l] >= 0 && rank.getRank(genes[l]) <= rank.getRank(genes[j])) {
+                    R_prime[j*rowLength + d] = l;
+                    notFound = false;
                 }
-                if (notFound)
-                    R_prime[j][d] = R_prime[j][d - 1];
-                lastEnd = R[j][d] - 1;
+            }
+            if (notFound)
+                R_prime[j*rowLength + d] = R_prime[j*rowLength + d - 1];
+            lastEnd = R[j*rowLength + d] - 1;
+        }
+    }
+
+    /**
+     * Computes L, R, L_prime and R_prime only at the positions of the characters chars.
+     * Pattern.computeNewOptimalDeltaLocations() only reads the tables at the positions of the last added character,
+     * so a search that only adds the characters chars, see GeneSetQuery, does not need the other positions.
+     * The rows of all other positions are not changed.
+     * @param rank the rank array of the searched characters.
+     * @param chars the characters, must not be < 0
+     */
+    void computeTablesAtPositionsOf(Rank rank, int[] chars) {
+        int[] pos = getPOS();
+        for (int c : chars) {
+            for (int p=getPOSStart(c); p<getPOSEnd(c); p++) {
+                int i = pos[p];
+                int row = i*rowLength;
+                Arrays.fill(L, row, row + rowLength, 0);
+                Arrays.fill(R, row, row + rowLength, getEffectiveGeneNumber()+1);
+                Arrays.fill(L_prime, row, row + rowLength, 0);
+                Arrays.fill(R_prime, row, row + rowLength, getEffectiveGeneNumber()+1);
+                computeL(rank, i);
+                computeR(rank, i);
+                computeL_prime(rank, i);
+                computeR_prime(rank, i);
             }
         }
     }
@@ -850,7 +914,7 @@ class Chromosome {
      * @param c_old the character that was last added to the reference interval. Must not be < 0.
      */
     void updateR_prime(Rank rank, int c_old){
-        if (getPOS(c_old).length == 0)
+        if (getNrOfPOS(c_old) == 0)
             return;
 
         updateR_primeCharacterRankSmallerC_Old(rank, c_old);
@@ -865,9 +929,9 @@ class Chromosome {
                 continue;
             if (rank.getRank(genes[i]) < rank.getRank(c_old)) {
                 for (int d=1; d<=delta+1; d++) {
-                    if (genes[R_prime[i][d]] == c_old || R[i][d] <= R_prime[i][d]) {
+                    if (genes[R_prime[i*rowLength + d]] == c_old || R[i*rowLength + d] <= R_prime[i*rowLength + d]) {
                         // get update position
-                        int pos = Math.min(R_prime[i][d], R[i][d]);
+                        int pos = Math.min(R_prime[i*rowLength + d], R[i*rowLength + d]);
 
                         int[] newPossitions = lowerRankedNeighbors.get(pos);
                         if (newPossitions == null) {
@@ -876,7 +940,7 @@ class Chromosome {
                         }
                         for (int j=0; j< newPossitions.length; j++){
                             if (rank.getRank(genes[newPossitions[j]]) <= rank.getRank(genes[i])) {
-                                R_prime[i][d] = newPossitions[j];
+                                R_prime[i*rowLength + d] = newPossitions[j];
                                 break;
                             }
                         }
@@ -890,14 +954,16 @@ class Chromosome {
         final int p;
         final int[] primes;
         final int[] R;
+        final int offset;
         int lastToUpdate;
 
-        UpdateRPrime(int pos, int delta, int[] R) {
+        UpdateRPrime(int pos, int delta, int[] R, int offset) {
             p=pos;
             primes = new int[delta+2];
             lastToUpdate = 1;
             primes[1] = pos;
             this.R = R;
+            this.offset = offset;
         }
 
         /**
@@ -906,7 +972,7 @@ class Chromosome {
          * @return true if done updating, false otherwise
          */
         boolean updatePosition(int matchPosition) {
-            while (lastToUpdate < primes.length && R[lastToUpdate] < matchPosition ) {
+            while (lastToUpdate < primes.length && R[offset + lastToUpdate] < matchPosition ) {
                 if (lastToUpdate < primes.length-1)
                     primes[lastToUpdate+1] = primes[lastToUpdate];
                 lastToUpdate++;
@@ -929,21 +995,22 @@ class Chromosome {
     }
 
     private void updateR_primeCharacterEqualsC_Old(Rank rank, int c_old) {
-        int[] pos = getPOS(c_old);
+        int[] pos = getPOS();
+        int end = getPOSEnd(c_old);
         Set<UpdateRPrime> currentlyUpdating = new HashSet<>();
 
-        for (int pos_index=0; pos_index<pos.length; pos_index++) {
+        for (int pos_index=getPOSStart(c_old); pos_index<end; pos_index++) {
             // Start new iteration from next unused pos
-            int nextPos = pos_index<pos.length-1 ? pos[pos_index+1] : getEffectiveGeneNumber()+1;
-            currentlyUpdating.add(new UpdateRPrime(pos[pos_index], delta, R[pos[pos_index]]));
+            int nextPos = pos_index<end-1 ? pos[pos_index+1] : getEffectiveGeneNumber()+1;
+            currentlyUpdating.add(new UpdateRPrime(pos[pos_index], delta, R, pos[pos_index]*rowLength));
 
             // iterate from the position right of pos, as long as we are currently updating an Rprime
             int i = pos[pos_index]+1;
             while (!currentlyUpdating.isEmpty() && i < getEffectiveGeneNumber()+1){
                 if (nextPos==i){
-                    currentlyUpdating.add(new UpdateRPrime(i, delta, R[i]));
+                    currentlyUpdating.add(new UpdateRPrime(i, delta, R, i*rowLength));
                     pos_index++;
-                    nextPos = pos_index<pos.length-1 ? pos[pos_index+1] : getEffectiveGeneNumber()+1;
+                    nextPos = pos_index<end-1 ? pos[pos_index+1] : getEffectiveGeneNumber()+1;
                 }
 
                 // if marked gene found
@@ -952,7 +1019,7 @@ class Chromosome {
                     while (iterator.hasNext()) {
                         UpdateRPrime updateRPrime = iterator.next();
                         if (updateRPrime.updatePosition(i)){
-                            R_prime[updateRPrime.p] = updateRPrime.getRPrime();
+                            System.arraycopy(updateRPrime.getRPrime(), 0, R_prime, updateRPrime.p*rowLength, delta + 2);
                             iterator.remove();
                         }
                     }
@@ -964,16 +1031,16 @@ class Chromosome {
         }
         // Get all unfinished Primes
         for (UpdateRPrime updateRPrime : currentlyUpdating){
-            R_prime[updateRPrime.p] = updateRPrime.getRPrime();
+            System.arraycopy(updateRPrime.getRPrime(), 0, R_prime, updateRPrime.p*rowLength, delta + 2);
         }
     }
 
     public int getL_prime (int pos, int diff) {
-        return L_prime[pos][diff];
+        return L_prime[pos*rowLength + diff];
     }
     
     public int getR_prime (int pos, int diff) {
-        return R_prime[pos][diff];
+        return R_prime[pos*rowLength + diff];
     }
 
     @Override public String toString() {
@@ -984,7 +1051,7 @@ class Chromosome {
      * Removes all fields used only in computation of gene clusters, so they can be garbage collected
      */
     public void removeCalculationFields() {
-        this.pos = null;
+        this.positionIndex = null;
 
         this.L = null;
         this.R = null;
@@ -993,5 +1060,6 @@ class Chromosome {
 
         this.prevOcc = null;
         this.nextOcc = null;
+        this.distinctCountIndex = null;
     }
 }
@@ -25,13 +25,13 @@ public class DeltaLocation implements Comparable<DeltaLocation> {
 	private static final int MIN_HIT_COUNT = 2;
 	
 	private int genomeNr;
-	private final int chrNr;
+	private int chrNr;
 	private int l;
 	private int r;
 	private int distance;
 	private int missingChars;
 	private int additionalChars;
-	private final int size;
+	private int size;
 	private int hitCount;
 	private double pValue;
 	private boolean valid;
@@ -51,6 +51,24 @@ public class DeltaLocation implements Comparable<DeltaLocation> {
 		this.valid = valid;
 	}
 	
+	/**
+	 * Overwrites all values of the delta location, used by the DeltaLocationPool to reuse released delta locations.
+	 */
+	void reset(int genomeNr, int chrNr, int l, int r,
+			int distance, int missingChars, int additionalChars, int size, int hitCount, boolean valid) {
+		this.genomeNr = genomeNr;
+		this.chrNr = chrNr;
+		this.l = l;
+		this.r = r;
+		this.distance = distance;
+		this.missingChars = missingChars;
+		this.additionalChars = additionalChars;
+		this.size = size;
+		this.hitCount = hitCount;
+		this.pValue = -1.0;
+		this.valid = valid;
+	}
+	
 	public DeltaLocation(DeltaLocation org) {
 		this.genomeNr = org.genomeNr;
 		this.chrNr = org.chrNr;
@@ -110,6 +128,14 @@ public class DeltaLocation implements Comparable<DeltaLocation> {
 		return size;
 	}
 
+	int getMissingChars() {
+		return missingChars;
+	}
+
+	int getAdditionalChars() {
+		return additionalChars;
+	}
+
 	public int getHitCount() {
 		return hitCount;
 	}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+/**
+ * Holds DeltaLocations that have been removed from a ListOfDeltaLocations, so they
+ * can be reused for the delta locations of the next pattern extensions instead of
+ * allocating new objects.
+ *
+ * The pool is not thread safe, each genome of a search uses its own pool.
+ * The pool holds at most MAX_SIZE delta locations, further released delta locations are left to the garbage collector.
+ */
+class DeltaLocationPool {
+	private static final int INITIAL_CAPACITY = 16;
+	static final int MAX_SIZE = 1 << 12;
+
+	private DeltaLocation[] freeLocations;
+	private int size;
+
+	DeltaLocationPool() {
+		freeLocations = new DeltaLocation[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Returns a DeltaLocation with the given values, reusing a released one if available.
+	 */
+	DeltaLocation obtain(int genomeNr, int chrNr, int l, int r,
+			int distance, int missingChars, int additionalChars, int size, int hitCount, boolean valid) {
+		if (this.size == 0)
+			return new DeltaLocation(genomeNr, chrNr, l, r, distance, missingChars, additionalChars, size, hitCount, valid);
+		DeltaLocation dLoc = freeLocations[--this.size];
+		freeLocations[this.size] = null;
+		dLoc.reset(genomeNr, chrNr, l, r, distance, missingChars, additionalChars, size, hitCount, valid);
+		return dLoc;
+	}
+
+	/**
+	 * Releases the DeltaLocation to the pool. The DeltaLocation must not be referenced anywhere else.
+	 */
+	void release(DeltaLocation dLoc) {
+		if (size == MAX_SIZE)
+			return;
+		if (size == freeLocations.length) {
+			DeltaLocation[] newLocations = new DeltaLocation[Math.min(2 * size, MAX_SIZE)];
+			System.arraycopy(freeLocations, 0, newLocations, 0, size);
+			freeLocations = newLocations;
+		}
+		freeLocations[size++] = dLoc;
+	}
+
+	int size() {
+		return size;
+	}
+}
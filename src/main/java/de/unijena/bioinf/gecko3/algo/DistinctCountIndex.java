@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+/**
+ * Answers the number of different characters in an interval of a chromosome in O(log n),
+ * instead of scanning the interval like Chromosome.getNUM().
+ *
+ * The position i is the first occurrence of its character in [l, r], iff prevOcc[i] < l,
+ * so the number of different characters is the number of positions in [l, r] with prevOcc[i] < l.
+ * These are counted with a wavelet matrix over prevOcc, that needs about (log n) * n bits.
+ * Unknown genes have prevOcc 0, so every position with an unknown gene is counted once,
+ * the merged unknown genes (-x with x > 1) are added from a prefix sum.
+ *
+ * A query needs two rank operations per level of the wavelet matrix, so short intervals are still scanned faster,
+ * see MIN_INTERVAL_LENGTH.
+ */
+class DistinctCountIndex {
+    /**
+     * The minimum length of an interval that is counted with the index, shorter intervals are scanned.
+     * Measured on chromosomes with 5000 genes, a query takes about as long as a scan of 100 positions.
+     */
+    static final int MIN_INTERVAL_LENGTH = 128;
+
+    private final int levels;
+    private final int levelLength;
+    /*
+     * The bit vectors of all levels, stored level by level. Every block of 64 bits is stored as two longs,
+     * the number of ones before the block and the bits, so a rank query reads only one cache line.
+     */
+    private final long[] blocks;
+    private final int[] zeros;
+    private final int[] additionalUnknownGenes;   // prefix sums of x-1 for the merged unknown genes -x, null if there are none
+
+    /**
+     * @param genes the genes of the chromosome, with the terminal 0 at both ends
+     * @param prevOcc the previous occurrence of each position, see Chromosome.computePrevOcc()
+     */
+    DistinctCountIndex(int[] genes, int[] prevOcc) {
+        int n = prevOcc.length;
+        int maxValue = 0;
+        for (int value : prevOcc)
+            maxValue = Math.max(maxValue, value);
+        levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+
+        levelLength = 2 * ((n >>> 6) + 1);
+        blocks = new long[levels * levelLength];
+        zeros = new int[levels];
+        int[] values = prevOcc.clone();
+        int[] next = new int[n];
+        for (int level = 0; level < levels; level++) {
+            int shift = levels - 1 - level;
+            int offset = level * levelLength;
+            int zeroCount = 0;
+            for (int i = 0; i < n; i++) {
+                if (((values[i] >>> shift) & 1) == 1)
+                    blocks[offset + 2 * (i >>> 6) + 1] |= 1L << (i & 63);
+                else
+                    zeroCount++;
+            }
+            for (int b = 2; b < levelLength; b += 2)
+                blocks[offset + b] = blocks[offset + b - 2] + Long.bitCount(blocks[offset + b - 1]);
+            zeros[level] = zeroCount;
+
+            // stable partition, all values with bit 0 first
+            int zeroIndex = 0;
+            int oneIndex = zeroCount;
+            for (int i = 0; i < n; i++) {
+                if (((values[i] >>> shift) & 1) == 1)
+                    next[oneIndex++] = values[i];
+                else
+                    next[zeroIndex++] = values[i];
+            }
+            int[] tmp = values;
+            values = next;
+            next = tmp;
+        }
+
+        int[] unknownPrefix = null;
+        for (int i = 0; i < genes.length; i++) {
+            if (genes[i] < -1 && unknownPrefix == null)
+                unknownPrefix = new int[genes.length];
+            if (unknownPrefix != null)
+                unknownPrefix[i] = ((i > 0) ? unknownPrefix[i - 1] : 0) + ((genes[i] < -1) ? -genes[i] - 1 : 0);
+        }
+        additionalUnknownGenes = unknownPrefix;
+    }
+
+    /**
+     * The number of ones in the first pos entries of the bit vector starting at offset
+     */
+    private int rank1(int offset, int pos) {
+        int block = offset + 2 * (pos >>> 6);
+        long mask = (1L << (pos & 63)) - 1;
+        return (int) blocks[block] + Long.bitCount(blocks[block + 1] & mask);
+    }
+
+    /**
+     * The number of positions i in [l, r] with prevOcc[i] < x
+     */
+    int countLess(int l, int r, int x) {
+        if (l > r || x <= 0)
+            return 0;
+        if (x >= (1 << levels))
+            return r - l + 1;
+        int start = l;
+        int end = r + 1;
+        int count = 0;
+        for (int level = 0; level < levels; level++) {
+            int offset = level * levelLength;
+            int startOnes = rank1(offset, start);
+            int endOnes = rank1(offset, end);
+            if (((x >>> (levels - 1 - level)) & 1) == 1) {
+                count += (end - start) - (endOnes - startOnes);
+                start = zeros[level] + startOnes;
+                end = zeros[level] + endOnes;
+            } else {
+                start -= startOnes;
+                end -= endOnes;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The number of different characters in [l, r], every unknown gene counts once, like in Chromosome.intervalContentIdentical().
+     */
+    int getDistinctPositions(int l, int r) {
+        return countLess(l, r, l);
+    }
+
+    /**
+     * The number of different characters in [l, r], like Chromosome.getNUM()
+     */
+    int getNUM(int l, int r) {
+        int num = getDistinctPositions(l, r);
+        if (additionalUnknownGenes != null && l <= r)
+            num += additionalUnknownGenes[r] - additionalUnknownGenes[l - 1];
+        return num;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.datastructures.DataSet;
+import de.unijena.bioinf.gecko3.datastructures.Gene;
+import de.unijena.bioinf.gecko3.datastructures.GeneCluster;
+import de.unijena.bioinf.gecko3.datastructures.GeneFamily;
+import de.unijena.bioinf.gecko3.datastructures.Parameter;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Finds all approximate occurrences of given sets of gene families in all genomes, without searching the clusters
+ * of every reference interval.
+ *
+ * The genomes are converted and indexed once, when the GeneSetQuery is created. A query is handled like one left
+ * border of ReferenceClusterAlgorithm, with the gene families of the query as reference chromosome: the pattern is
+ * extended by one gene family after the other, and the delta locations of each extension are computed with
+ * Pattern.computeNewOptimalDeltaLocations(). This only reads L, R, L' and R' at the positions of the added gene
+ * family, so the tables are only computed at the positions of the gene families of the query.
+ * The cost of a query therefore depends on the number of occurrences of its gene families, not on the size of the genomes.
+ *
+ * The queries change the tables of the index, so the queries of one GeneSetQuery are answered one after the other.
+ */
+public class GeneSetQuery {
+	private final GenomeList genomes;
+	private final AlgorithmParameters param;
+	/**
+	 * The characters of the gene families with only one gene, the other gene families use their algorithm id
+	 */
+	private final Map<GeneFamily, Integer> singleGeneFamilyChars;
+
+	/**
+	 * Converts and indexes the genomes of the data set for queries with the distances of params.
+	 * @param data the genomes
+	 * @param params the parameters, only the distances, the statistics and the number of threads are used
+	 */
+	public GeneSetQuery(DataSet data, Parameter params) {
+		int[][][] intArray = data.toIntArray();
+		this.genomes = new GenomeList(intArray, data.getCompleteAlphabetSize());
+		this.param = new AlgorithmParameters(params, data.getCompleteAlphabetSize(), genomes.size());
+		this.genomes.initializeForCalculation(param.getMaximumDelta(), param.useDistinctCountIndex());
+
+		// the gene families with only one gene get their character when the genomes are converted
+		this.singleGeneFamilyChars = new HashMap<>();
+		de.unijena.bioinf.gecko3.datastructures.Genome[] dataGenomes = data.getGenomes();
+		for (int i=0; i<dataGenomes.length; i++) {
+			for (int j=0; j<dataGenomes[i].getChromosomes().size(); j++) {
+				List<Gene> genes = dataGenomes[i].getChromosomes().get(j).getGenes();
+				for (int g=0; g<genes.size(); g++) {
+					GeneFamily geneFamily = genes.get(g).getGeneFamily();
+					if (geneFamily.isSingleGeneFamily() && !geneFamily.isUnknownGeneFamily())
+						singleGeneFamilyChars.put(geneFamily, intArray[i][j][g+1]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indexes the genomes for queries of characters, without a data set.
+	 * @param genomes the genomes
+	 * @param params the parameters, only the distances, the statistics and the number of threads are used
+	 */
+	GeneSetQuery(int[][][] genomes, Parameter params) {
+		this.genomes = new GenomeList(genomes);
+		this.param = new AlgorithmParameters(params, this.genomes.getAlphabetSize(), this.genomes.size());
+		this.genomes.initializeForCalculation(param.getMaximumDelta(), param.useDistinctCountIndex());
+		this.singleGeneFamilyChars = Collections.emptyMap();
+	}
+
+	/**
+	 * Finds all approximate occurrences of the gene families.
+	 * @param geneFamilies the gene families, unknown genes are ignored
+	 * @return the gene cluster with the occurrences and the id 0, or null if the gene families do not occur in any genome
+	 */
+	public GeneCluster query(Set<GeneFamily> geneFamilies) {
+		List<GeneCluster> clusters = query(Collections.singletonList(geneFamilies));
+		return clusters.isEmpty() ? null : clusters.get(0);
+	}
+
+	/**
+	 * Finds all approximate occurrences of each set of gene families.
+	 * The reference sequence of each gene cluster is the first genome with an occurrence of minimal distance.
+	 * If the statistics are computed, the p-values are computed for all queries together, and are not corrected
+	 * for multiple testing, see Statistics.computeQueryStatistics().
+	 * @param geneFamilySets the sets of gene families, unknown genes are ignored
+	 * @return the gene clusters of the queries that occur in at least one genome, the id of each cluster is the
+	 * index of its query
+	 */
+	public synchronized List<GeneCluster> query(List<Set<GeneFamily>> geneFamilySets) {
+		List<int[]> queries = new ArrayList<>(geneFamilySets.size());
+		for (Set<GeneFamily> geneFamilies : geneFamilySets)
+			queries.add(toChars(geneFamilies));
+		List<ReferenceCluster> clusters = computeOccurrences(queries);
+
+		List<GeneCluster> result = new ArrayList<>();
+		for (int i=0; i<clusters.size(); i++) {
+			ReferenceCluster cluster = clusters.get(i);
+			if (cluster == null)
+				continue;
+			Set<GeneFamily> geneFamilies = new HashSet<>();
+			for (GeneFamily geneFamily : geneFamilySets.get(i))
+				if (!geneFamily.isUnknownGeneFamily())
+					geneFamilies.add(geneFamily);
+			result.add(new GeneCluster(i, cluster, geneFamilies));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the gene families of an interval of a genome, to query the occurrences of the interval.
+	 * @param data the genomes
+	 * @param genomeIndex the index of the genome
+	 * @param chromosomeIndex the index of the chromosome in the genome
+	 * @param from the position of the first gene, starting with 1
+	 * @param to the position of the last gene
+	 * @return the gene families of the genes in the interval, without the unknown genes
+	 */
+	public static Set<GeneFamily> getGeneFamilies(DataSet data, int genomeIndex, int chromosomeIndex, int from, int to) {
+		List<Gene> genes = data.getGenomes()[genomeIndex].getChromosomes().get(chromosomeIndex).getGenes();
+		if (from < 1 || to > genes.size() || from > to)
+			throw new IllegalArgumentException(String.format("Invalid interval %d-%d for a chromosome with %d genes!", from, to, genes.size()));
+		Set<GeneFamily> geneFamilies = new LinkedHashSet<>();
+		for (int i=from-1; i<to; i++)
+			if (!genes.get(i).getGeneFamily().isUnknownGeneFamily())
+				geneFamilies.add(genes.get(i).getGeneFamily());
+		return geneFamilies;
+	}
+
+	/**
+	 * @return the distinct characters of the gene families
+	 */
+	private int[] toChars(Set<GeneFamily> geneFamilies) {
+		Set<Integer> chars = new LinkedHashSet<>();
+		for (GeneFamily geneFamily : geneFamilies) {
+			if (geneFamily.isUnknownGeneFamily())
+				continue;
+			if (geneFamily.isSingleGeneFamily()) {
+				Integer c = singleGeneFamilyChars.get(geneFamily);
+				if (c == null)
+					throw new IllegalArgumentException(String.format("Gene family %s is not part of the data set!", geneFamily.getExternalId()));
+				chars.add(c);
+			} else {
+				chars.add(geneFamily.getAlgorithmId());
+			}
+		}
+		int[] result = new int[chars.size()];
+		int i = 0;
+		for (int c : chars)
+			result[i++] = c;
+		return result;
+	}
+
+	/**
+	 * Computes the occurrences of all queries, and their statistics, if param computes statistics.
+	 * The reference occurrence of each cluster is the first occurrence with minimal distance.
+	 * @param queries the distinct characters of each query
+	 * @return one cluster per query, with one list of delta locations per genome, null if the query does not occur
+	 */
+	List<ReferenceCluster> computeOccurrences(List<int[]> queries) {
+		List<ReferenceCluster> clusters = new ArrayList<>(queries.size());
+		List<ReferenceCluster> found = new ArrayList<>(queries.size());
+		for (int[] chars : queries) {
+			ReferenceCluster cluster = computeOccurrences(chars);
+			if (cluster.getCoveredGenomes() == 0)
+				cluster = null;
+			else
+				found.add(cluster);
+			clusters.add(cluster);
+		}
+
+		if (!param.noStatistics()) {
+			Statistics.computeQueryStatistics(genomes, found, param.getMaximumDelta(), param.getNrOfThreads());
+		} else {
+			for (ReferenceCluster cluster : found) {
+				cluster.setBestCombined_pValue(BigDecimal.ZERO);
+				cluster.setBestCombined_pValueCorrected(BigDecimal.ZERO);
+			}
+		}
+		for (ReferenceCluster cluster : found)
+			cluster.changeReferenceOccurrence(bestOccurrence(cluster));
+		return clusters;
+	}
+
+	/**
+	 * Computes the delta locations of one query in all genomes.
+	 * The query is the reference chromosome of a genome with the number genomes.size(), that is not part of the genome list.
+	 * @param chars the distinct characters of the query, must not be < 0
+	 * @return the cluster with one list of the optimal delta locations per genome
+	 */
+	private ReferenceCluster computeOccurrences(int[] chars) {
+		List<Integer> geneContent = new ArrayList<>(chars.length);
+		for (int c : chars) {
+			if (c <= 0)
+				throw new IllegalArgumentException("Invalid character " + c + "!");
+			if (c <= genomes.getAlphabetSize())
+				geneContent.add(c);
+		}
+		int[] validChars = new int[geneContent.size()];
+		for (int i=0; i<validChars.length; i++)
+			validChars[i] = geneContent.get(i);
+
+		Chromosome queryChromosome = new Chromosome(validChars, 0, true);
+		Rank rank = new Rank(genomes.getAlphabetSize());
+		rank.computeRank(queryChromosome);
+		for (int k=0; k<genomes.size(); k++)
+			for (Chromosome chr : genomes.get(k))
+				chr.computeTablesAtPositionsOf(rank, validChars);
+
+		int queryGenomeNr = genomes.size();
+		Pattern pattern = new Pattern(genomes.getAlphabetSize(), genomes.size() + 1, param, queryGenomeNr, queryChromosome, 1);
+		List<ListOfDeltaLocations> dLocLists = new ArrayList<>(genomes.size());
+		for (int k=0; k<genomes.size(); k++)
+			dLocLists.add(new ListOfDeltaLocations());
+
+		int r = 1;
+		while (pattern.updateToNextI_ref(r)) {
+			for (ListOfDeltaLocations dLocList : dLocLists)
+				dLocList.removeNonInheritableElements(genomes, pattern.getLastChar(), param.getMaximumDelta());
+			for (int k=0; k<genomes.size(); k++) {
+				ListOfDeltaLocations newList = pattern.computeNewOptimalDeltaLocations(genomes.get(k), param, dLocLists.get(k).getPool());
+				dLocLists.get(k).mergeLists(newList);
+				dLocLists.get(k).checkForValidDeltaTableLocations(param, pattern.getSize());
+			}
+			r = pattern.getRightBorder() + 1;
+		}
+
+		List<ListOfDeltaLocations> optimalLists = new ArrayList<>(genomes.size());
+		for (ListOfDeltaLocations dLocList : dLocLists)
+			optimalLists.add(dLocList.getOptimalCopy());
+		ReferenceCluster cluster = new ReferenceCluster(pattern, optimalLists, false, genomes.size(), null);
+		cluster.setGeneContent(geneContent);
+		return cluster;
+	}
+
+	/**
+	 * @return the first delta location with minimal distance
+	 */
+	private static DeltaLocation bestOccurrence(ReferenceCluster cluster) {
+		DeltaLocation best = null;
+		for (List<DeltaLocation> dLocs : cluster.getAllDeltaLocations())
+			for (DeltaLocation dLoc : dLocs)
+				if (best == null || dLoc.getDistance() < best.getDistance())
+					best = dLoc;
+		return best;
+	}
+}
@@ -20,6 +20,7 @@
 package de.unijena.bioinf.gecko3.algo;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -38,6 +39,16 @@ class Genome implements Iterable<Chromosome> {
      */
     private final List<Integer> possibleIntervalsPerIntervalLength;
 
+    /**
+     * The characters that occur on the genome, so noOcc() does not have to look at the positions on every chromosome.
+     */
+    private final BitSet presentChars;
+
+    /**
+     * The positions of the characters on all chromosomes, built by initializeForCalculation() and shared with copies of the genome.
+     */
+    private PositionIndex positionIndex;
+
     /**
      * 
      * @param nr the nr of the genome
@@ -51,6 +62,7 @@ class Genome implements Iterable<Chromosome> {
             l += chr.getTotalGeneNumber();
         possibleIntervalsPerIntervalLength = new ArrayList<>();
         possibleIntervalsPerIntervalLength.add(l);
+        presentChars = computePresentChars(this.chromosomes);
 	}
 
     public Genome(int nr, Chromosome chromosome) {
@@ -59,6 +71,7 @@ class Genome implements Iterable<Chromosome> {
         this.nr = nr;
         possibleIntervalsPerIntervalLength = new ArrayList<>();
         possibleIntervalsPerIntervalLength.add(chromosome.getTotalGeneNumber());
+        presentChars = computePresentChars(this.chromosomes);
     }
     
     public Genome(Genome other) {
@@ -67,6 +80,75 @@ class Genome implements Iterable<Chromosome> {
     		this.chromosomes.add(new Chromosome(chr));
     	this.nr = other.nr;
         possibleIntervalsPerIntervalLength = new ArrayList<>(other.possibleIntervalsPerIntervalLength);
+        presentChars = other.presentChars;  // never modified
+        positionIndex = other.positionIndex;  // never modified, the copied chromosomes have the same genes
+    }
+
+    /**
+     * Constructs a view of the other genome, that shares all chromosomes, including their calculation fields.
+     */
+    private Genome(Genome other, List<Chromosome> chromosomes) {
+        this.chromosomes = chromosomes;
+        this.nr = other.nr;
+        possibleIntervalsPerIntervalLength = other.possibleIntervalsPerIntervalLength;
+        presentChars = other.presentChars;
+        positionIndex = other.positionIndex;
+    }
+
+    /**
+     * Returns a genome that shares the chromosomes with this genome, without copying the genes or the calculation fields.
+     * The L, R, L' and R' tables of the chromosomes are modified by the search in the view, so the view can only
+     * be used as copy of the reference genome, whose tables are not used while it is the reference.
+     * @return the view
+     */
+    Genome createReferenceView() {
+        return new Genome(this, chromosomes);
+    }
+
+    /**
+     * Collects the characters at the positions 1 to getEffectiveGeneNumber() of all chromosomes, the positions that getPOS() covers
+     */
+    private static BitSet computePresentChars(List<Chromosome> chromosomes) {
+        BitSet presentChars = new BitSet();
+        for (Chromosome chr : chromosomes)
+            for (int i = 1; i <= chr.getEffectiveGeneNumber(); i++)
+                if (chr.getGene(i) >= 0)
+                    presentChars.set(chr.getGene(i));
+        return presentChars;
+    }
+
+    /**
+     * Initializes all chromosomes for the calculation of gene clusters.
+     * The PositionIndex is only built once, and is reused by later calls and by copies of the genome.
+     * @param alphabetSize the size of the complete alphabet.
+     * @param maxDelta the maximum allowed distance
+     * @param useDistinctCountIndex if the chromosomes use a DistinctCountIndex
+     */
+    void initializeForCalculation(int alphabetSize, int maxDelta, boolean useDistinctCountIndex) {
+        if (positionIndex == null)
+            positionIndex = new PositionIndex(chromosomes);
+        for (int i = 0; i < chromosomes.size(); i++) {
+            chromosomes.get(i).setPositionIndex(positionIndex, i);
+            chromosomes.get(i).initializeForCalculation(alphabetSize, maxDelta, useDistinctCountIndex);
+        }
+    }
+
+    /**
+     * Sets the maximum distance of all chromosomes, see Chromosome.setDelta()
+     * @param delta the maximum allowed distance, at most the maxDelta of initializeForCalculation()
+     */
+    void setDelta(int delta) {
+        for (Chromosome chr : chromosomes)
+            chr.setDelta(delta);
+    }
+
+    /**
+     * Removes all fields used only in computation of gene clusters, so they can be garbage collected
+     */
+    void removeCalculationFields() {
+        positionIndex = null;
+        for (Chromosome chr : chromosomes)
+            chr.removeCalculationFields();
     }
 
 	public Chromosome get(int nr) {
@@ -110,11 +192,7 @@ class Genome implements Iterable<Chromosome> {
         if (c < 0)
             return -c;
 
-    	for (Chromosome chr: chromosomes){
-    		if (chr.getPOS(c).length != 0)
-    			return 0;
-    	}
-    	return 1;
+    	return presentChars.get(c) ? 0 : 1;
     }
     
     /**
@@ -128,15 +206,17 @@ class Genome implements Iterable<Chromosome> {
 	public int noOccOutsideInterval(int c, int l, int r, int chrNr) {
         if (c<0)
             return -c;
+        if (!presentChars.get(c))
+            return 1;
 
 		for (Chromosome chr: chromosomes){
 			if (chr.getNr() != chrNr){
-	    		if (chr.getPOS(c).length != 0)
+	    		if (chr.getNrOfPOS(c) != 0)
 	    			return 0;
 			} else {
-				int[] pos = chr.getPOS(c);
-                for (int position : pos) {
-                    if (position < l || position > r)
+				int[] pos = chr.getPOS();
+                for (int i = chr.getPOSStart(c); i < chr.getPOSEnd(c); i++) {
+                    if (pos[i] < l || pos[i] > r)
                         return 0;
                 }
 			}
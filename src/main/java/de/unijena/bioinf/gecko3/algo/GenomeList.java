@@ -85,18 +85,34 @@ class GenomeList {
     }
     
     /**
-     * Appends a copy of the reference genome to the genome list. 
+     * Constructs a copy of the genome list, that can be used for an independent search, e.g. in another thread.
+     * The chromosomes and their calculation tables are copied. The genomes share the set of present characters and
+     * the PositionIndex with the original, both are built from the genes, which the copy does not change, and are
+     * only read after initializeForCalculation(), so sharing them between threads is safe.
+     * @param other the genome list to copy, must not contain a reference copy.
+     */
+    GenomeList(GenomeList other) {
+        if (other.containsReferenceCopy)
+            throw new RuntimeException("Trying to copy genome list with reference copy!");
+        this.genomes = new ArrayList<>(other.genomes.size());
+        for (Genome genome : other.genomes)
+            this.genomes.add(new Genome(genome));
+        this.alphabetSize = other.alphabetSize;
+        this.containsReferenceCopy = false;
+    }
+
+    /**
+     * Appends a copy of the reference genome to the genome list.
      * Used for searching reference occurrences in the reference genome.
+     * The copy is a view of the initialized reference genome, see Genome.createReferenceView(), so nothing is copied or
+     * recomputed. The L, R, L' and R' tables of the reference genome are never updated while it is the reference,
+     * so the view uses them for the copy.
      * @param referenceGenomeNr the number of the reference genome.
      */
     void appendCopyOfReferenceGenome(int referenceGenomeNr, AlgorithmParameters param) {
     	if (containsReferenceCopy)
     		throw new RuntimeException("Trying to append additional reference copy!");
-    	Genome newGenome = new Genome(genomes.get(referenceGenomeNr));
-    	for (Chromosome chr : newGenome) {
-            chr.initializeForCalculation(alphabetSize, param.getMaximumDelta());
-        }
-    	genomes.add(newGenome);
+    	genomes.add(genomes.get(referenceGenomeNr).createReferenceView());
     	param.increaseNrOfGenomes();
     	this.containsReferenceCopy = true;
     }
@@ -115,14 +131,30 @@ class GenomeList {
      * @param maxDelta the maximum distance
      */
     void initializeForCalculation(int maxDelta) {
-        for (Genome g : genomes) {
-            for (Chromosome chr : g) {
-                chr.initializeForCalculation(alphabetSize, maxDelta);
-            }
-        }
+        initializeForCalculation(maxDelta, false);
+    }
+
+    /**
+     * Initializes the SetOfSequences for a calculation of gene clusters.
+     * @param maxDelta the maximum distance
+     * @param useDistinctCountIndex if the chromosomes use a DistinctCountIndex
+     */
+    void initializeForCalculation(int maxDelta, boolean useDistinctCountIndex) {
+        for (Genome g : genomes)
+            g.initializeForCalculation(alphabetSize, maxDelta, useDistinctCountIndex);
         rank = new Rank(alphabetSize);
     }
 
+    /**
+     * Sets the maximum distance for the search of an initialized SetOfSequences, so it can be reused
+     * for computations with different distances without initializing it again.
+     * @param maxDelta the maximum distance, at most the maxDelta of initializeForCalculation()
+     */
+    void setMaximumDelta(int maxDelta) {
+        for (Genome g : genomes)
+            g.setDelta(maxDelta);
+    }
+
     /**
      * Returns the genome with the number n.
      * @param n the number of the genome.
@@ -252,11 +284,8 @@ class GenomeList {
     }
 
     public void removeCalculationFields() {
-        for (Genome g : genomes) {
-            for (Chromosome chr : g) {
-                chr.removeCalculationFields();
-            }
-        }
+        for (Genome g : genomes)
+            g.removeCalculationFields();
         rank = null;
     }
 }
\ No newline at end of file
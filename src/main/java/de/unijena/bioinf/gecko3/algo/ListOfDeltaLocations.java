@@ -19,73 +19,228 @@
 
 package de.unijena.bioinf.gecko3.algo;
 
-import java.io.Serializable;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
 
+/**
+ * The delta locations of a pattern in one genome.
+ *
+ * The delta locations are stored in an array, ordered by their appearance on the chromosomes
+ * (chromosome number, left border, right border). Each interval is contained at most once.
+ * Removed delta locations are released to a DeltaLocationPool and reused for later pattern extensions.
+ */
 public class ListOfDeltaLocations implements Iterable<DeltaLocation>{
-	private Set<DeltaLocation> deltaLocations;
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * The pool removed delta locations are released to, null if the list does not own its delta locations
+	 */
+	private final DeltaLocationPool pool;
+	private DeltaLocation[] deltaLocations;
+	private int size;
+	/**
+	 * Target array of mergeLists, swapped with deltaLocations after each merge
+	 */
+	private DeltaLocation[] mergeBuffer;
 	
 	ListOfDeltaLocations(){
-		deltaLocations = new TreeSet<>(new DeltaLocationOrderComparator());
+		this(new DeltaLocationPool(), INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new empty list that releases removed delta locations to the given pool.
+	 * @param pool the pool, shared by all lists of one genome, or null if removed delta locations are not reused
+	 */
+	ListOfDeltaLocations(DeltaLocationPool pool){
+		this(pool, INITIAL_CAPACITY);
+	}
+
+	private ListOfDeltaLocations(DeltaLocationPool pool, int capacity){
+		this.pool = pool;
+		this.deltaLocations = new DeltaLocation[Math.max(1, capacity)];
+		this.size = 0;
+		this.mergeBuffer = null;
+	}
+
+	DeltaLocationPool getPool() {
+		return pool;
 	}
 
 	public void emptyList(){
-		deltaLocations.clear();
+		for (int i=0; i<size; i++)
+			release(deltaLocations[i]);
+		Arrays.fill(deltaLocations, 0, size, null);
+		size = 0;
+	}
+
+	private void release(DeltaLocation dLoc) {
+		if (pool != null)
+			pool.release(dLoc);
 	}
 
 	public void removeNonInheritableElements(GenomeList genomes, int c, int delta) {
 		int chrNr = -1;
 		int[] pos = null;
-		Iterator<DeltaLocation> dLocIt = deltaLocations.iterator();
+		int posStart = 0;
+		int posEnd = 0;
+		int newSize = 0;
 
-        while(dLocIt.hasNext()) {
-            DeltaLocation dLoc = dLocIt.next();
+        for (int j=0; j<size; j++) {
+            DeltaLocation dLoc = deltaLocations[j];
             if (dLoc.getChrNr() != chrNr) {
                 chrNr = dLoc.getChrNr();
-                pos = genomes.get(dLoc.getGenomeNr()).get(chrNr).getPOS(c);
+                Chromosome chr = genomes.get(dLoc.getGenomeNr()).get(chrNr);
+                pos = chr.getPOS();
+                posStart = chr.getPOSStart(c);
+                posEnd = chr.getPOSEnd(c);
             }
 
-            if (pos == null)
-                continue;
-
-            int i=0;
-            for (; i<pos.length; i++) {
-                if (dLoc.getL() <= pos[i])
-                    break;
-            }
+            if (pos != null) {
+                int i = lowerBound(pos, posStart, posEnd, dLoc.getL());
 
-            if (i<pos.length && dLoc.getR() >= pos[i])
-                dLoc.increaseHitCount();
-            else {
-                dLoc.increaseDistance(Math.max(1, -c));
+                if (i<posEnd && dLoc.getR() >= pos[i])
+                    dLoc.increaseHitCount();
+                else {
+                    dLoc.increaseDistance(Math.max(1, -c));
 
-                if (!dLoc.isInheritableWithoutC(genomes.get(dLoc.getGenomeNr()).get(dLoc.getChrNr()), delta, c)){
-                    dLocIt.remove();
+                    if (!dLoc.isInheritableWithoutC(genomes.get(dLoc.getGenomeNr()).get(dLoc.getChrNr()), delta, c)){
+                        release(dLoc);
+                        continue;
+                    }
                 }
             }
+            deltaLocations[newSize++] = dLoc;
         }
-	}		
+        Arrays.fill(deltaLocations, newSize, size, null);
+        size = newSize;
+	}
 
+	/**
+	 * Returns the index of the first element in the sorted range [from, to) of the array that is not smaller than value.
+	 */
+	private static int lowerBound(int[] sortedArray, int from, int to, int value) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedArray[mid] < value)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
 
+	/**
+	 * Inserts the delta location, if the list does not already contain a delta location with the same interval.
+	 * @param deltaLocation the new delta location
+	 */
 	public void insertDeltaLocation(DeltaLocation deltaLocation) {
-		deltaLocations.add(deltaLocation);
+		int index = indexOf(deltaLocation.getChrNr(), deltaLocation.getL(), deltaLocation.getR());
+		if (index < 0)
+			insertAt(-(index + 1), deltaLocation);
+	}
+
+	/**
+	 * Inserts a delta location with the given values, if the list does not already contain a delta location with the same interval.
+	 * The delta location is taken from the pool of the list.
+	 */
+	void insertDeltaLocation(int genomeNr, int chrNr, int l, int r,
+			int distance, int missingChars, int additionalChars, int size, int hitCount, boolean valid) {
+		int index = indexOf(chrNr, l, r);
+		if (index < 0) {
+			DeltaLocation dLoc = (pool != null) ? pool.obtain(genomeNr, chrNr, l, r, distance, missingChars, additionalChars, size, hitCount, valid)
+					: new DeltaLocation(genomeNr, chrNr, l, r, distance, missingChars, additionalChars, size, hitCount, valid);
+			insertAt(-(index + 1), dLoc);
+		}
+	}
+
+	private void insertAt(int index, DeltaLocation dLoc) {
+		if (size == deltaLocations.length)
+			deltaLocations = Arrays.copyOf(deltaLocations, 2 * size);
+		System.arraycopy(deltaLocations, index, deltaLocations, index + 1, size - index);
+		deltaLocations[index] = dLoc;
+		size++;
+	}
+
+	/**
+	 * Binary search for the interval [l, r] on chromosome chrNr.
+	 * @return the index of the interval, if contained, otherwise (-(insertion point) - 1)
+	 */
+	private int indexOf(int chrNr, int l, int r) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(deltaLocations[mid], chrNr, l, r);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
 	}
 
+	/**
+	 * Compares the delta location to the interval [l, r] on chromosome chrNr by their appearance on the chromosomes.
+	 */
+	private static int compare(DeltaLocation dLoc, int chrNr, int l, int r) {
+		if (dLoc.getChrNr() != chrNr)
+			return dLoc.getChrNr() < chrNr ? -1 : 1;
+		if (dLoc.getL() != l)
+			return dLoc.getL() < l ? -1 : 1;
+		if (dLoc.getR() != r)
+			return dLoc.getR() < r ? -1 : 1;
+		return 0;
+	}
+
+	/**
+	 * Merges the delta locations of newList into this list. If both lists contain the same interval,
+	 * the delta location from newList is kept. newList is empty afterwards.
+	 * @param newList the new delta locations
+	 */
 	public void mergeLists(ListOfDeltaLocations newList) {
-		if (deltaLocations.isEmpty()) {
-			deltaLocations = newList.deltaLocations;
+		if (newList.size == 0)
 			return;
+		int mergedSize = size + newList.size;
+		if (mergeBuffer == null || mergeBuffer.length < mergedSize)
+			mergeBuffer = new DeltaLocation[Math.max(mergedSize, deltaLocations.length)];
+
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < size && j < newList.size) {
+			DeltaLocation newLoc = newList.deltaLocations[j];
+			int cmp = compare(deltaLocations[i], newLoc.getChrNr(), newLoc.getL(), newLoc.getR());
+			if (cmp < 0)
+				mergeBuffer[k++] = deltaLocations[i++];
+			else {
+				if (cmp == 0)
+					release(deltaLocations[i++]);
+				mergeBuffer[k++] = newList.deltaLocations[j++];
+			}
 		}
-		newList.deltaLocations.addAll(deltaLocations);
-		deltaLocations = newList.deltaLocations;
+		while (i < size)
+			mergeBuffer[k++] = deltaLocations[i++];
+		while (j < newList.size)
+			mergeBuffer[k++] = newList.deltaLocations[j++];
+
+		Arrays.fill(deltaLocations, 0, size, null);
+		DeltaLocation[] tmp = deltaLocations;
+		deltaLocations = mergeBuffer;
+		mergeBuffer = tmp;
+		size = k;
+
+		Arrays.fill(newList.deltaLocations, 0, newList.size, null);
+		newList.size = 0;
 	}
 
 	public boolean minHitsCovered() {
-		for (DeltaLocation dLoc : deltaLocations){
-			if (dLoc.isValid())
+		for (int i=0; i<size; i++){
+			if (deltaLocations[i].isValid())
 				return true;
 		}
 		return false;
@@ -93,89 +248,138 @@ public class ListOfDeltaLocations implements Iterable<DeltaLocation>{
 
 	@Override
 	public Iterator<DeltaLocation> iterator() {
-		return deltaLocations.iterator();
+		return new Iterator<DeltaLocation>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public DeltaLocation next() {
+				if (index >= size)
+					throw new NoSuchElementException();
+				return deltaLocations[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 	
 	public int size() {
-		return deltaLocations.size();
+		return size;
 	}
 
 	public boolean valid_dLocContainsCharacter(int c, GenomeList genomes) {
         if (c < 0)
             return false;
-		for (DeltaLocation dLoc : deltaLocations){
+		for (int i=0; i<size; i++){
+			DeltaLocation dLoc = deltaLocations[i];
 			if (dLoc.isValid()){
+				Chromosome chr = genomes.get(dLoc.getGenomeNr()).get(dLoc.getChrNr());
 				for (int l=dLoc.getL(); l<=dLoc.getR(); l++)
-					if (c == genomes.get(dLoc.getGenomeNr()).get(dLoc.getChrNr()).getGene(l))
+					if (c == chr.getGene(l))
 						return true;
 			}
 		}
 		return false;
 	}
 	
+	/**
+	 * Returns a list of all valid delta locations that are not nested in another valid delta location with
+	 * smaller or equal distance. The copy shares the delta locations with this list.
+	 *
+	 * The delta locations are processed in the order of the list, so all delta locations kept before have a
+	 * smaller or equal left border. Therefore a delta location is nested in a kept one, iff a kept one with
+	 * smaller or equal distance has a larger or equal right border, which is tracked per distance.
+	 * Kept delta locations can only be nested in the current one if they have the same left border, so they
+	 * are found at the end of the copy.
+	 * @return the optimal delta locations
+	 */
 	public ListOfDeltaLocations getOptimalCopy() {
-		ListOfDeltaLocations newList = new ListOfDeltaLocations();
- 		for (DeltaLocation dLoc : deltaLocations)
+		int minDistance = Integer.MAX_VALUE;
+		int maxDistance = Integer.MIN_VALUE;
+		int validCount = 0;
+		for (int i=0; i<size; i++) {
+			DeltaLocation dLoc = deltaLocations[i];
 			if (dLoc.isValid()) {
-				boolean validLoc = true;
-				Iterator<DeltaLocation> newLocIter = newList.iterator();
-				while(newLocIter.hasNext()){
-					DeltaLocation newLoc = newLocIter.next();
-					if (dLoc.getDistance() >= newLoc.getDistance() && dLoc.isNested(newLoc)) {
-						validLoc = false;
-						break;
-					} 
-					if (newLoc.getDistance() >= dLoc.getDistance() && newLoc.isNested(dLoc)) {
-						newLocIter.remove();
-					}
+				minDistance = Math.min(minDistance, dLoc.getDistance());
+				maxDistance = Math.max(maxDistance, dLoc.getDistance());
+				validCount++;
+			}
+		}
+
+		ListOfDeltaLocations newList = new ListOfDeltaLocations(null, validCount);
+		if (validCount == 0)
+			return newList;
+
+		int[] maxRightBorder = new int[maxDistance - minDistance + 1];
+		int chrNr = -1;
+		int chrStart = 0;
+		for (int i=0; i<size; i++) {
+			DeltaLocation dLoc = deltaLocations[i];
+			if (!dLoc.isValid())
+				continue;
+			if (newList.size == 0 || dLoc.getChrNr() != chrNr) {
+				chrNr = dLoc.getChrNr();
+				chrStart = newList.size;
+				Arrays.fill(maxRightBorder, Integer.MIN_VALUE);
+			}
+
+			int distanceIndex = dLoc.getDistance() - minDistance;
+			boolean validLoc = true;
+			for (int d=0; d<=distanceIndex; d++) {
+				if (maxRightBorder[d] >= dLoc.getR()) {
+					validLoc = false;
+					break;
 				}
-				if (validLoc)
-					newList.deltaLocations.add(dLoc);
 			}
+			if (!validLoc)
+				continue;
+
+			int tailStart = newList.size;
+			while (tailStart > chrStart && newList.deltaLocations[tailStart - 1].getL() == dLoc.getL())
+				tailStart--;
+			int newSize = tailStart;
+			for (int j=tailStart; j<newList.size; j++) {
+				if (newList.deltaLocations[j].getDistance() < dLoc.getDistance())
+					newList.deltaLocations[newSize++] = newList.deltaLocations[j];
+			}
+			Arrays.fill(newList.deltaLocations, newSize, newList.size, null);
+			newList.size = newSize;
+
+			newList.deltaLocations[newList.size++] = dLoc;
+			maxRightBorder[distanceIndex] = Math.max(maxRightBorder[distanceIndex], dLoc.getR());
+		}
 		return newList;
 	}
 	
 	public void removeRefDLocReferenceHit(Pattern pattern, int chrNr) {
-		Iterator<DeltaLocation> dLocIt = deltaLocations.iterator();
-		while (dLocIt.hasNext()) {
-			DeltaLocation dLoc = dLocIt.next();
+		int newSize = 0;
+		for (int i=0; i<size; i++) {
+			DeltaLocation dLoc = deltaLocations[i];
 			if (dLoc.getChrNr() == chrNr &&
 					dLoc.getL() <= pattern.getLeftBorder() &&
 					dLoc.getR() >= pattern.getRightBorder()) {
-				dLocIt.remove();
+				release(dLoc);
+			} else {
+				deltaLocations[newSize++] = dLoc;
 			}
 		}
+		Arrays.fill(deltaLocations, newSize, size, null);
+		size = newSize;
 	}
 	
 	public void checkForValidDeltaTableLocations(AlgorithmParameters param,
 			int clusterSize) {
 		if (!param.useDeltaTable())
 			return;
-		for (DeltaLocation dLoc : deltaLocations) {
-			dLoc.checkForDeltaTableValidity(param, clusterSize);
-		}
-		
-	}
-	
-	/**
-	 * For delta locations that are not ordered by the natural order but only by appearance on the chromosome.
-	 * @author swinter
-	 *
-	 */
-	private static class DeltaLocationOrderComparator implements Comparator<DeltaLocation>, Serializable {
-		@Override
-		public int compare(DeltaLocation o1, DeltaLocation o2) {
-            if (o1.getChrNr() < o2.getChrNr())
-                return -1;
-            if (o1.getChrNr() > o2.getChrNr())
-                return 1;
-			if (o1.getL() < o2.getL())
-				return -1;
-			if (o1.getL() == o2.getL() && o1.getR() < o2.getR())
-				return -1;
-			if (o1.getL() == o2.getL() && o1.getR() == o2.getR())
-				return 0;
-			return 1;
+		for (int i=0; i<size; i++) {
+			deltaLocations[i].checkForDeltaTableValidity(param, clusterSize);
 		}
 		
 	}
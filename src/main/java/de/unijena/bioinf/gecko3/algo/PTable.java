@@ -17,95 +17,135 @@
  * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package de.unijena.bioinf.gecko3.algo;
 
-import cern.jet.random.Binomial;
-import cern.jet.random.engine.RandomEngine;
+import cern.jet.math.Arithmetic;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * table[c][l][h] is the probability that l randomly generated chars, drawn from the first c chars,
+ * contain exactly h different chars.
+ *
+ * The table is stored flat and row by row, so the entry (c, h) of row l is at l*rowLength + c*(maxDifferentCharsGenerated+1) + h.
+ * Rows are computed on demand and always for all h, so the values do not depend on the order of the getValue() calls.
+ * Computed rows are never changed, so a PTable can be shared by several threads, see PTableCache.
+ */
 class PTable {
-	private int numberOfChars;
+	private final int numberOfChars;
 	private final int maxDifferentCharsGenerated;
 	private final double[] probabilityForDifferentCharHits;
-	private final List<List<double[]>> table;
-	private int maxPossiblePositionsCalculated;
-	private final RandomEngine random;
-
-	public PTable(double[] probabilityForDifferentCharHits,
-                  int initialNumberGeneratedChars,
-                  int maxDifferentGeneratedChars,
-                  RandomEngine random) {
-		this.random = random;
+	private final int rowLength;
+	private volatile double[] table;
+	private volatile int maxPossiblePositionsCalculated;
+
+	PTable(double[] probabilityForDifferentCharHits,
+		   int initialNumberGeneratedChars,
+		   int maxDifferentGeneratedChars) {
+		this(sparseProbabilities(probabilityForDifferentCharHits), maxDifferentGeneratedChars);
+		getValue(initialNumberGeneratedChars, this.maxDifferentCharsGenerated);
+	}
+
+	/**
+	 * @param sparseProbabilities the probabilities without zero entries, as returned by sparseProbabilities()
+	 */
+	PTable(double[] sparseProbabilities, int maxDifferentGeneratedChars) {
+		this.probabilityForDifferentCharHits = sparseProbabilities;
+		this.numberOfChars = sparseProbabilities.length - 1;
 		this.maxDifferentCharsGenerated = maxDifferentGeneratedChars;
-		
-		numberOfChars = 0;
+		this.rowLength = (numberOfChars + 1) * (maxDifferentCharsGenerated + 1);
+
+		table = new double[rowLength];
+		for (int c=0; c<=numberOfChars; c++)
+			table[c * (maxDifferentCharsGenerated + 1)] = 1.0;
+		maxPossiblePositionsCalculated = 0;
+	}
+
+	/**
+	 * Removes all chars with probability 0.0, they do not change the table.
+	 * @param probabilityForDifferentCharHits the probabilities, index 0 is not used
+	 * @return the probabilities of the chars with probability > 0.0, index 0 is not used
+	 */
+	static double[] sparseProbabilities(double[] probabilityForDifferentCharHits) {
+		int numberOfChars = 0;
 		for (int c=1; c<probabilityForDifferentCharHits.length; c++)
 			if (probabilityForDifferentCharHits[c] != 0.0)
 				numberOfChars++;
-		
-		//sparse char probabilities
-		this.probabilityForDifferentCharHits = new double[numberOfChars+1];
-		int offset = 0;
-		for (int c=1; c<probabilityForDifferentCharHits.length; c++){
+
+		double[] sparse = new double[numberOfChars+1];
+		int index = 1;
+		for (int c=1; c<probabilityForDifferentCharHits.length; c++)
 			if (probabilityForDifferentCharHits[c] != 0.0)
-				this.probabilityForDifferentCharHits[c-offset] = probabilityForDifferentCharHits[c];
-			else
-				offset++;
-		}
-		
-		table = new ArrayList<>(numberOfChars+1);
-		for (int i=0; i<=numberOfChars; i++){
-			table.add(new ArrayList<double[]>());
-			table.get(i).add(new double[this.maxDifferentCharsGenerated + 1]);
-			table.get(i).get(0)[0] = 1.0;
-		}
-		maxPossiblePositionsCalculated = 0;
-		
-		getValue(initialNumberGeneratedChars, this.maxDifferentCharsGenerated);
+				sparse[index++] = probabilityForDifferentCharHits[c];
+		return sparse;
 	}
 
 	double getValue(int numberGeneratedChars,
-                    int differentCharsGenerated) {
-		if (maxPossiblePositionsCalculated < numberGeneratedChars){		
-			updatePTable(numberGeneratedChars, differentCharsGenerated);
-		}
-		return table.get(numberOfChars).get(numberGeneratedChars)[differentCharsGenerated];
+					int differentCharsGenerated) {
+		if (maxPossiblePositionsCalculated < numberGeneratedChars)
+			updatePTable(numberGeneratedChars);
+		return table[numberGeneratedChars * rowLength + numberOfChars * (maxDifferentCharsGenerated + 1) + differentCharsGenerated];
 	}
-	
-	private void updatePTable(int numberGeneratedChars,
-            int differentCharsGenerated) {
-		
-		for (int i=0; i<=numberOfChars; i++){
-			for (int j=maxPossiblePositionsCalculated+1; j <= numberGeneratedChars; j++){
-				table.get(i).add(new double[maxDifferentCharsGenerated + 1]); 
-			}
+
+	int getMaxDifferentCharsGenerated() {
+		return maxDifferentCharsGenerated;
+	}
+
+	/**
+	 * @return the number of stored values
+	 */
+	long size() {
+		return (long)(maxPossiblePositionsCalculated + 1) * rowLength;
+	}
+
+	private synchronized void updatePTable(int numberGeneratedChars) {
+		int first = maxPossiblePositionsCalculated + 1;
+		if (first > numberGeneratedChars)
+			return;
+
+		double[] t = table;
+		if (t.length < (numberGeneratedChars + 1) * rowLength) {
+			int rows = Math.max(numberGeneratedChars + 1, 2 * (t.length / rowLength));
+			t = Arrays.copyOf(t, rows * rowLength);
 		}
-		
-		for (int c=1; c<=numberOfChars; c++){
-			for (int h=Math.min(c, differentCharsGenerated); h>=1; h--){
-				for (int l=numberGeneratedChars; l>= h && l>=maxPossiblePositionsCalculated+1; l--){
-					Binomial binomial = null;
-					if (!(probabilityForDifferentCharHits[c] == 1.0 || probabilityForDifferentCharHits[c] == 0.0))
-						binomial = new Binomial(l, probabilityForDifferentCharHits[c], random);
-					if (probabilityForDifferentCharHits[c] == 0.0)
-						table.get(c).get(l)[h] += table.get(c-1).get(l)[h];
-					else {
-						if (probabilityForDifferentCharHits[c] != 1.0)
-							table.get(c).get(l)[h] = binomial.pdf(0) * table.get(c-1).get(l)[h];
-						else 								
-							table.get(c).get(l)[h] = 0.0;
-						for (int k=1; k<=l; k++){
-							if (probabilityForDifferentCharHits[c] != 1.0)
-								table.get(c).get(l)[h] += binomial.pdf(k) * table.get(c-1).get(l-k)[h-1];
-							else
-								table.get(c).get(l)[h] += table.get(c-1).get(l-k)[h-1];
-						}	
-					}
+
+		int hLength = maxDifferentCharsGenerated + 1;
+		double[] pdf = new double[numberGeneratedChars + 1];
+		for (int l=first; l<=numberGeneratedChars; l++){
+			int row = l * rowLength;
+			for (int c=1; c<=numberOfChars; c++){
+				binomialPdf(l, probabilityForDifferentCharHits[c], pdf);
+				int cell = row + c * hLength;
+				int previous = row + (c-1) * hLength;
+				for (int h=Math.min(Math.min(c, maxDifferentCharsGenerated), l); h>=1; h--){
+					double value = pdf[0] * t[previous + h];
+					for (int k=1; k<=l; k++)
+						value += pdf[k] * t[previous - k * rowLength + h - 1];
+					t[cell + h] = value;
 				}
 			}
 		}
+		table = t;
 		maxPossiblePositionsCalculated = numberGeneratedChars;
 	}
+
+	/**
+	 * Fills pdf[0..n] with the probabilities of the binomial distribution B(n, p),
+	 * computed like cern.jet.random.Binomial.pdf(), without creating a Binomial for each value.
+	 */
+	private static void binomialPdf(int n, double p, double[] pdf) {
+		if (p == 1.0) {
+			Arrays.fill(pdf, 0, n, 0.0);
+			pdf[n] = 1.0;
+			return;
+		}
+		double logN = Arithmetic.logFactorial(n);
+		double logP = Math.log(p);
+		double logQ = Math.log(1.0 - p);
+		for (int k=0; k<=n; k++){
+			int r = n - k;
+			pdf[k] = Math.exp(logN - Arithmetic.logFactorial(k) - Arithmetic.logFactorial(r) + logP * k + logQ * r);
+		}
+	}
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches PTables by their char probabilities and maximal number of different chars.
+ * Genomes with the same char frequency profile share one PTable, and as the shared cache is static,
+ * the tables are also reused by later computations, e.g. with different parameters on the same data.
+ * The least recently used tables are removed if the cache holds more than maxCachedValues values.
+ */
+class PTableCache {
+	private static final long DEFAULT_MAX_CACHED_VALUES = 1L << 24;  // 128MB of doubles
+
+	private static final PTableCache sharedCache = new PTableCache(DEFAULT_MAX_CACHED_VALUES);
+
+	private final long maxCachedValues;
+	private final LinkedHashMap<Key, PTable> tables;
+
+	PTableCache(long maxCachedValues) {
+		this.maxCachedValues = maxCachedValues;
+		this.tables = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	static PTableCache getSharedCache() {
+		return sharedCache;
+	}
+
+	/**
+	 * Returns the cached PTable for the char probabilities, or creates a new one.
+	 * @param probabilityForDifferentCharHits the probabilities, index 0 is not used
+	 * @param initialNumberGeneratedChars the table is computed at least up to this number of generated chars
+	 * @param maxDifferentGeneratedChars the maximal number of different chars
+	 * @return the PTable
+	 */
+	PTable getPTable(double[] probabilityForDifferentCharHits, int initialNumberGeneratedChars, int maxDifferentGeneratedChars) {
+		Key key = new Key(PTable.sparseProbabilities(probabilityForDifferentCharHits), maxDifferentGeneratedChars);
+		PTable table;
+		synchronized (this) {
+			table = tables.get(key);
+			if (table == null) {
+				table = new PTable(key.probabilities, maxDifferentGeneratedChars);
+				tables.put(key, table);
+			}
+		}
+		table.getValue(initialNumberGeneratedChars, maxDifferentGeneratedChars);
+		synchronized (this) {
+			removeLeastRecentlyUsed(table);
+		}
+		return table;
+	}
+
+	synchronized int size() {
+		return tables.size();
+	}
+
+	synchronized void clear() {
+		tables.clear();
+	}
+
+	private void removeLeastRecentlyUsed(PTable current) {
+		long values = 0;
+		for (PTable table : tables.values())
+			values += table.size();
+		Iterator<Map.Entry<Key, PTable>> it = tables.entrySet().iterator();
+		while (values > maxCachedValues && it.hasNext()) {
+			PTable table = it.next().getValue();
+			if (table == current)
+				continue;
+			values -= table.size();
+			it.remove();
+		}
+	}
+
+	private static class Key {
+		private final double[] probabilities;
+		private final int maxDifferentGeneratedChars;
+		private final int hashCode;
+
+		Key(double[] probabilities, int maxDifferentGeneratedChars) {
+			this.probabilities = probabilities;
+			this.maxDifferentGeneratedChars = maxDifferentGeneratedChars;
+			this.hashCode = 31 * Arrays.hashCode(probabilities) + maxDifferentGeneratedChars;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return maxDifferentGeneratedChars == key.maxDifferentGeneratedChars && Arrays.equals(probabilities, key.probabilities);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
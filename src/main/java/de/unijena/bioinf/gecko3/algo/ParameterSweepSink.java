@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.datastructures.GeneCluster;
+import de.unijena.bioinf.gecko3.datastructures.Parameter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the gene clusters of a parameter sweep, one setting after the other,
+ * see ReferenceClusterAlgorithm.computeReferenceClusterSweep(DataSet, List, boolean, List, AlgorithmProgressListener, ParameterSweepSink).
+ */
+public interface ParameterSweepSink {
+    /**
+     * @param settingIndex the index of the setting in the list of settings
+     * @param setting the parameters of the setting
+     * @param clusters all gene clusters of the setting, in the order of their ids
+     * @throws IOException if the sink could not process the clusters, aborts the sweep
+     */
+    void accept(int settingIndex, Parameter setting, List<GeneCluster> clusters) throws IOException;
+}
@@ -143,19 +143,29 @@ class Pattern {
         return true;
     }
     
-    public ListOfDeltaLocations computeNewOptimalDeltaLocations(Genome genome, AlgorithmParameters param) {
-    	ListOfDeltaLocations newList = new ListOfDeltaLocations();
+    /**
+     * Computes the delta locations of the pattern in the genome that contain the last added character.
+     * @param genome the genome
+     * @param param the parameters
+     * @param pool the pool the delta locations are taken from, has to be the pool of the list the result is merged into
+     * @return the new delta locations
+     */
+    public ListOfDeltaLocations computeNewOptimalDeltaLocations(Genome genome, AlgorithmParameters param, DeltaLocationPool pool) {
+    	ListOfDeltaLocations newList = new ListOfDeltaLocations(pool);
 
 		if (lastChar<0)
 			return newList;
 		
     	for (Chromosome chr : genome){
-    		int[] pos = chr.getPOS(lastChar);
-    		if (pos.length == 0)
+    		int[] pos = chr.getPOS();
+    		int posStart = chr.getPOSStart(lastChar);
+    		int posEnd = chr.getPOSEnd(lastChar);
+    		if (posStart == posEnd)
     			continue;
     		
     		int prev_p=0;
-            for (int charPos : pos) {
+            for (int posIndex = posStart; posIndex < posEnd; posIndex++) {
+                int charPos = pos[posIndex];
                 for (int dLeft = param.getMaximumDelta() + 1; dLeft >= 1; dLeft--) {
                     if (chr.getL(charPos, dLeft) < prev_p)
                         continue;
@@ -202,8 +212,7 @@ class Pattern {
                         if (dist <= param.getMaximumDelta() && interveningChars <= param.getMaximumInsertions() && missingChars <= param.getMaximumDeletions()) {
                             assert (rightBorder - 1 <= chr.getEffectiveGeneNumber());
 
-                            DeltaLocation newDeltaLoc = new DeltaLocation(genome.getNr(), chr.getNr(), leftBorder + 1, rightBorder - 1, dist, missingChars, interveningChars, charSetSize, charSetSize - interveningChars, !param.useDeltaTable());
-                            newList.insertDeltaLocation(newDeltaLoc);
+                            newList.insertDeltaLocation(genome.getNr(), chr.getNr(), leftBorder + 1, rightBorder - 1, dist, missingChars, interveningChars, charSetSize, charSetSize - interveningChars, !param.useDeltaTable());
                         }
                     }
                 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.algo.util.IntArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The positions of all characters on all chromosomes of a genome, stored as compressed sparse rows.
+ *
+ * Every character that occurs on the genome has one row, the rows are numbered in the order of the first occurrence
+ * and found with an open addressing hash table, so the memory does not depend on the alphabet size.
+ * The positions are sorted into the rows by counting sort, each row holds the positions ordered by chromosome and position.
+ * The previous and next occurrence of each position, see Chromosome.getPrevOCC() and Chromosome.getNextOCC(),
+ * are taken from the rows, too.
+ *
+ * A PositionIndex is never modified after construction, so it can be shared by copies of the genome and between threads.
+ */
+final class PositionIndex {
+    private static final int EMPTY = -1;
+
+    private final int[] hashKeys;
+    private final int[] hashRows;
+    private final int hashMask;
+
+    private final int[] offsets;
+    private final int[] positions;
+    private final int[] chromosomeOfPosition;   // null, if the genome has only one chromosome
+    private final int[][] prevOcc;
+    private final int[][] nextOcc;
+
+    /**
+     * @param chromosomes the chromosomes of the genome, the index of a chromosome in the list is used in all queries
+     */
+    PositionIndex(List<Chromosome> chromosomes) {
+        int nrOfPositions = 0;
+        for (Chromosome chr : chromosomes)
+            for (int i = 1; i <= chr.getEffectiveGeneNumber(); i++)
+                if (chr.getGene(i) >= 0)
+                    nrOfPositions++;
+
+        int capacity = Integer.highestOneBit(Math.max(nrOfPositions, 1)) * 4;
+        hashKeys = new int[capacity];
+        hashRows = new int[capacity];
+        hashMask = capacity - 1;
+        Arrays.fill(hashKeys, EMPTY);
+
+        // count the positions of each row
+        int[] rowOfPosition = new int[nrOfPositions];
+        int[] counts = new int[nrOfPositions + 1];
+        int nrOfRows = 0;
+        int p = 0;
+        for (Chromosome chr : chromosomes) {
+            for (int i = 1; i <= chr.getEffectiveGeneNumber(); i++) {
+                int c = chr.getGene(i);
+                if (c < 0)
+                    continue;
+                int slot = slot(c);
+                if (hashKeys[slot] == EMPTY) {
+                    hashKeys[slot] = c;
+                    hashRows[slot] = nrOfRows++;
+                }
+                int row = hashRows[slot];
+                rowOfPosition[p++] = row;
+                counts[row + 1]++;
+            }
+        }
+
+        offsets = new int[nrOfRows + 1];
+        for (int row = 0; row < nrOfRows; row++)
+            offsets[row + 1] = offsets[row] + counts[row + 1];
+
+        // distribute the positions, chromosome by chromosome, so every row is sorted
+        int[] next = Arrays.copyOf(offsets, nrOfRows);
+        positions = new int[nrOfPositions];
+        chromosomeOfPosition = (chromosomes.size() > 1) ? new int[nrOfPositions] : null;
+        p = 0;
+        for (int chrIndex = 0; chrIndex < chromosomes.size(); chrIndex++) {
+            Chromosome chr = chromosomes.get(chrIndex);
+            for (int i = 1; i <= chr.getEffectiveGeneNumber(); i++) {
+                if (chr.getGene(i) < 0)
+                    continue;
+                int entry = next[rowOfPosition[p++]]++;
+                positions[entry] = i;
+                if (chromosomeOfPosition != null)
+                    chromosomeOfPosition[entry] = chrIndex;
+            }
+        }
+
+        prevOcc = new int[chromosomes.size()][];
+        nextOcc = new int[chromosomes.size()][];
+        for (int chrIndex = 0; chrIndex < chromosomes.size(); chrIndex++) {
+            int end = chromosomes.get(chrIndex).getEffectiveGeneNumber() + 1;
+            prevOcc[chrIndex] = new int[end + 1];
+            nextOcc[chrIndex] = IntArray.newIntArray(end + 1, end);
+        }
+        for (int row = 0; row < nrOfRows; row++) {
+            for (int entry = offsets[row] + 1; entry < offsets[row + 1]; entry++) {
+                int chrIndex = chromosomeOf(entry);
+                if (chrIndex == chromosomeOf(entry - 1)) {
+                    prevOcc[chrIndex][positions[entry]] = positions[entry - 1];
+                    nextOcc[chrIndex][positions[entry - 1]] = positions[entry];
+                }
+            }
+        }
+    }
+
+    private int slot(int c) {
+        int hash = c * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & hashMask;
+        while (hashKeys[slot] != EMPTY && hashKeys[slot] != c)
+            slot = (slot + 1) & hashMask;
+        return slot;
+    }
+
+    private int chromosomeOf(int entry) {
+        return (chromosomeOfPosition == null) ? 0 : chromosomeOfPosition[entry];
+    }
+
+    /**
+     * @return the row of the character c, -1 if c does not occur on the genome
+     */
+    private int row(int c) {
+        if (c < 0)
+            return -1;
+        int slot = slot(c);
+        return (hashKeys[slot] == EMPTY) ? -1 : hashRows[slot];
+    }
+
+    /**
+     * The positions of all rows, the positions of character c on a chromosome are found from start() to end().
+     */
+    int[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return the index in getPositions() of the first position of character c on the chromosome
+     */
+    int start(int c, int chrIndex) {
+        int row = row(c);
+        if (row < 0)
+            return 0;
+        int entry = offsets[row];
+        if (chromosomeOfPosition != null)
+            while (entry < offsets[row + 1] && chromosomeOfPosition[entry] < chrIndex)
+                entry++;
+        return entry;
+    }
+
+    /**
+     * @return the index in getPositions() after the last position of character c on the chromosome
+     */
+    int end(int c, int chrIndex) {
+        int row = row(c);
+        if (row < 0)
+            return 0;
+        if (chromosomeOfPosition == null)
+            return offsets[row + 1];
+        int entry = offsets[row];
+        while (entry < offsets[row + 1] && chromosomeOfPosition[entry] <= chrIndex)
+            entry++;
+        return entry;
+    }
+
+    /**
+     * @return the previous occurrence of the character at each position of the chromosome, 0 if there is none
+     */
+    int[] getPrevOcc(int chrIndex) {
+        return prevOcc[chrIndex];
+    }
+
+    /**
+     * @return the next occurrence of the character at each position of the chromosome, getEffectiveGeneNumber()+1 if there is none
+     */
+    int[] getNextOcc(int chrIndex) {
+        return nextOcc[chrIndex];
+    }
+}
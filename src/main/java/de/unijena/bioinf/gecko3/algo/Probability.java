@@ -20,6 +20,7 @@
 package de.unijena.bioinf.gecko3.algo;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 class Probability {
 	private int exp;
@@ -136,6 +137,74 @@ class Probability {
 		return new BigDecimal(base).scaleByPowerOfTen(exp);
 	}
 
+	/**
+	 * Combines the p-values with quorum q, using Probability objects.
+	 * Replaced by QuorumPValues in Statistics, kept as reference for the validation of QuorumPValues.
+	 * @param pValue the p-values of the single genomes
+	 * @param q the quorum
+	 * @param nrOfGenomes the number of genomes, a quorum of nrOfGenomes requires hits in all genomes
+	 * @return the combined p-value
+	 */
+	static BigDecimal combineWithQuorum(double[] pValue, int q, int nrOfGenomes) {
+		if (q == pValue.length || q == nrOfGenomes){
+			Probability combined = Probability.ONE;
+			for (double aPValue : pValue)
+				combined = combined.multiply(aPValue);
+			return combined.toBigDecimal();
+		}
+		
+		Probability[] qArray = new Probability[pValue.length+1];
+		Arrays.fill(qArray, Probability.ZERO);
+		
+		int i=0;
+		int offset = 0;
+		while(pValue[i] == 1.0){
+			offset++;
+			i++;
+		}
+		if (i >= q)
+			return BigDecimal.ONE;
+		
+		Probability q0 = new Probability(pValue[i]);
+		qArray[0] = Probability.ONE.subtract(pValue[i]); // should never be used, we use q0 instead
+		qArray[1] = new Probability(pValue[i]);
+		
+		i++;
+		
+		for (; i<pValue.length; i++){
+			if (pValue[i] == 1.0){
+				offset++;
+				continue;
+			}
+			for (int j=Math.min(i+1, pValue.length)-offset; j>=0; j--){
+				if (j > 1){
+					// (Qj - Qj*Pi) * (Q(j-1)*Pi)
+					Probability mul1 = qArray[j].multiply(pValue[i]); // Qj - Qj*Pi
+					Probability sub = qArray[j].subtract(mul1);       // == Qj*(1-Pi)
+
+					Probability mul2 = qArray[j-1].multiply(pValue[i]); // Q(j-1)*Pi
+
+					qArray[j] = sub.add(mul2);
+				} else if (j == 1){
+					// Qj - Pi*Qj + Pi - Pi*q0 == Qj(1-Pi) + Pi(1-q0)
+					Probability mul1 = qArray[j].multiply(pValue[i]);  // Qj - Qj*Pi
+					Probability sub1 = qArray[j].subtract(mul1);       // == Qj*(1-Pi)
+					Probability add = sub1.add(pValue[i]);
+					Probability mul2 = q0.multiply(pValue[i]);
+					qArray[j] = add.subtract(mul2);
+				} else {
+					q0=q0.add(pValue[i]).subtract(q0.multiply(pValue[i]));
+				}
+			}
+		}
+		
+		Probability sum = Probability.ZERO;
+		for (int j=Math.max(1, q-offset); j<=pValue.length-offset; j++)
+			sum = sum.add(qArray[j]);
+			
+		return sum.toBigDecimal();
+	}
+
 	@Override
 	public String toString() {
 		return toBigDecimal().stripTrailingZeros().toString();
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import java.math.BigDecimal;
+
+/**
+ * Combines the p-values of the single genomes to the p-value of a cluster with quorum q,
+ * i.e. the probability to have a hit in at least q genomes, if the hit in genome i has probability pValue[i].
+ *
+ * All probabilities are stored as natural logarithms in double arrays, so products of thousands of
+ * p-values do not underflow, and no objects are created in the O(K^2) loop.
+ * The result equals Probability.combineWithQuorum() up to a relative error of 1e-9, see QuorumPValuesTest.
+ */
+class QuorumPValues {
+    private static final double LN_10 = Math.log(10.0);
+
+    private QuorumPValues() {}
+
+    /**
+     * The logarithm of exp(a) + exp(b)
+     */
+    static double logSumExp(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY)
+            return b;
+        if (b == Double.NEGATIVE_INFINITY)
+            return a;
+        if (a > b)
+            return a + Math.log1p(Math.exp(b - a));
+        else
+            return b + Math.log1p(Math.exp(a - b));
+    }
+
+    /**
+     * Converts the logarithm of a probability to a BigDecimal
+     * @param logValue the natural logarithm of the probability
+     * @return the probability
+     */
+    static BigDecimal toBigDecimal(double logValue) {
+        if (logValue == Double.NEGATIVE_INFINITY)
+            return BigDecimal.ZERO;
+        double log10 = logValue / LN_10;
+        int exp = (int) Math.floor(log10);
+        double base = Math.pow(10.0, log10 - exp);
+        return new BigDecimal(base).scaleByPowerOfTen(exp);
+    }
+
+    /**
+     * The combined p-value if a hit in all genomes is required
+     * @param pValue the p-values of the single genomes
+     * @return the natural logarithm of the product of all p-values
+     */
+    static double logProduct(double[] pValue) {
+        double logProduct = 0.0;
+        for (double p : pValue)
+            logProduct += Math.log(p);
+        return logProduct;
+    }
+
+    /**
+     * The combined p-value with quorum q.
+     * As before, p-values of exactly 1.0 (the reference occurrence) count as certain hits and reduce the quorum,
+     * and if the leading ones already fulfill the quorum, the result is 1.0.
+     * @param pValue the p-values of the single genomes
+     * @param q the quorum, has to be smaller than pValue.length
+     * @return the natural logarithm of the combined p-value
+     */
+    static double logCombineWithQuorum(double[] pValue, int q) {
+        int leadingOnes = 0;
+        while (leadingOnes < pValue.length && pValue[leadingOnes] == 1.0)
+            leadingOnes++;
+        if (leadingOnes >= q)
+            return 0.0;
+
+        int ones = leadingOnes;
+        for (int i = leadingOnes; i < pValue.length; i++)
+            if (pValue[i] == 1.0)
+                ones++;
+        int n = pValue.length - ones;
+        int minHits = Math.max(1, q - ones);
+
+        // logQ[j] is the probability of exactly j hits in the genomes processed so far
+        double[] logQ = new double[n + 1];
+        logQ[0] = 0.0;
+        for (int j = 1; j <= n; j++)
+            logQ[j] = Double.NEGATIVE_INFINITY;
+
+        int processed = 0;
+        for (double p : pValue) {
+            if (p == 1.0)
+                continue;
+            processed++;
+            double logP = Math.log(p);
+            double logNotP = Math.log1p(-p);
+            // entries with less than minHits - remaining hits can not reach the quorum and are no longer updated
+            int lowest = Math.max(0, minHits - (n - processed));
+            for (int j = processed; j >= lowest && j > 0; j--)
+                logQ[j] = logSumExp(logQ[j] + logNotP, logQ[j - 1] + logP);
+            if (lowest == 0)
+                logQ[0] += logNotP;
+        }
+
+        double logSum = Double.NEGATIVE_INFINITY;
+        for (int j = minHits; j <= n; j++)
+            logSum = logSumExp(logSum, logQ[j]);
+        return logSum;
+    }
+}
@@ -95,9 +95,56 @@ public class ReferenceCluster {
 		this.maxDistance = maxD;
 	}
 	
+	/**
+	 * Restores a cluster of a ReferenceClusterCheckpoint
+	 */
+	ReferenceCluster(int genomeNr, int chrNr, int leftBorder, int rightBorder, int size, int coveredGenomes, int coveredGenomeGroups, int maxDistance, List<List<DeltaLocation>> dLocLists, boolean searchRefInRef) {
+		this.genomeNr = genomeNr;
+		this.chrNr = chrNr;
+		this.leftBorder = leftBorder;
+		this.rightBorder = rightBorder;
+		this.size = size;
+		this.coveredGenomes = coveredGenomes;
+		this.coveredGenomeGroups = coveredGenomeGroups;
+		this.maxDistance = maxDistance;
+		this.dLocLists = dLocLists;
+		this.searchRefInRef = searchRefInRef;
+	}
+
+	/**
+	 * Constructs a deep copy of the cluster, the delta locations of the copy can be changed without changing the other cluster.
+	 * @param other the cluster to copy
+	 */
+	ReferenceCluster(ReferenceCluster other) {
+		this.genomeNr = other.genomeNr;
+		this.chrNr = other.chrNr;
+		this.leftBorder = other.leftBorder;
+		this.rightBorder = other.rightBorder;
+		this.size = other.size;
+		this.coveredGenomes = other.coveredGenomes;
+		this.coveredGenomeGroups = other.coveredGenomeGroups;
+		this.maxDistance = other.maxDistance;
+		this.dLocLists = new ArrayList<>(other.dLocLists.size());
+		for (List<DeltaLocation> dLocList : other.dLocLists) {
+			List<DeltaLocation> copy = new ArrayList<>(dLocList.size());
+			for (DeltaLocation dLoc : dLocList)
+				copy.add(new DeltaLocation(dLoc));
+			this.dLocLists.add(copy);
+		}
+		this.bestCombined_pValue = other.bestCombined_pValue;
+		this.bestCombined_pValueCorrected = other.bestCombined_pValueCorrected;
+		this.geneContent = other.geneContent == null ? null : new ArrayList<>(other.geneContent);
+		this.containsSingletonGene = other.containsSingletonGene;
+		this.searchRefInRef = other.searchRefInRef;
+	}
+
 	public int getSize() {
 		return size;
 	}
+
+	boolean searchRefInRef() {
+		return searchRefInRef;
+	}
 	
 	public void changeReferenceOccurrence(DeltaLocation newRefOcc)
     {
@@ -252,6 +299,15 @@ public class ReferenceCluster {
 		}
 	}
 	
+	/**
+	 * Sets the gene content of a cluster without a reference interval, e.g. of a GeneSetQuery
+	 * @param geneContent the characters of the cluster, must not be < 0
+	 */
+	void setGeneContent(List<Integer> geneContent) {
+		this.geneContent = new ArrayList<>(geneContent);
+		this.containsSingletonGene = false;
+	}
+
 	public List<Integer> getGeneContent(){
 		return geneContent;
 	}
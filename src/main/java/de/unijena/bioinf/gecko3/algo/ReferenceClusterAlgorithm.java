@@ -26,20 +26,41 @@ import de.unijena.bioinf.gecko3.datastructures.DataSet;
 import de.unijena.bioinf.gecko3.datastructures.GeneCluster;
 import de.unijena.bioinf.gecko3.datastructures.Parameter;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.CancellationException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
+	/**
+	 * The maximum number of genomes that are updated in one task when the genomes are updated in parallel.
+	 * Smaller data sets are always updated sequentially.
+	 */
+	private static final int GENOME_UPDATE_GRANULARITY = 16;
+
 	private final GenomeList genomes;
 	private final AlgorithmParameters param;
 	private final Map<Integer, Integer> genomeGroupMapping;
 	private final int nrOfGenomeGroups;
 	private final boolean useGenomeGrouping;
+	private ForkJoinPool genomeUpdatePool;
 
     private final List<AlgorithmProgressListener> progressListeners;
     private int maxProgressValue;
-    private int progressValue;
+    private final AtomicInteger progressValue;
+
+    private File checkpointFile;
+    private long checkpointInterval;
+    private boolean resumeFromCheckpoint;
+    private long checkpointFingerprint;
+    private long lastCheckpointTime;
+    private int firstReference;
+    private int endReference;
+    private File shardFile;
+    private List<File> shardFilesToMerge;
+    private boolean sharedCalculationFields;  // the genomes are initialized by the caller and reused after the computation
 
     /**
      * Computes reference gene clusters for the given dataset and the given parameters
@@ -51,7 +72,39 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
      * @return the gene clusters
      */
     public static List<GeneCluster> computeReferenceClusters(DataSet data, Parameter params, boolean useMemoryReduction, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener) {
-        int[][][] intArray;
+        final List<GeneCluster> result = new ArrayList<>();
+        try {
+            computeReferenceClusters(data, params, useMemoryReduction, genomeGrouping, listener, new GeneClusterSink() {
+                @Override
+                public void accept(GeneCluster cluster) {
+                    result.add(cluster);
+                }
+            });
+        } catch (IOException e) {
+            throw new AssertionError(e);  // adding to the list does not throw
+        }
+        return result;
+    }
+
+    /**
+     * Computes reference gene clusters for the given dataset and the given parameters, and passes each cluster
+     * to the sink as soon as it is final, so the complete result is never held in memory.
+     * With a single reference, without searching in the reference genome and without statistics, the clusters
+     * are final after each reference chromosome. Otherwise, later clusters can still replace them and
+     * the statistics need all clusters, so they are passed after the computation.
+     * The clusters and their ids are the same as in the list returned by
+     * computeReferenceClusters(DataSet, Parameter, boolean, List, AlgorithmProgressListener).
+     * @param data the genomes
+     * @param params the parameters
+     * @param useMemoryReduction if memory reduction should be used
+     * @param genomeGrouping each set contains the index of all genomes that contribute to quorum and p-value only once
+     * @param listener the progress listener
+     * @param sink receives the gene clusters
+     * @return the number of gene clusters
+     * @throws IOException if the sink throws an IOException
+     */
+    public static int computeReferenceClusters(final DataSet data, Parameter params, final boolean useMemoryReduction, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener, final GeneClusterSink sink) throws IOException {
+        final int[][][] intArray;
         if (!useMemoryReduction) {
             intArray = data.toIntArray();
             params.setAlphabetSize(data.getCompleteAlphabetSize());
@@ -59,21 +112,119 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
             intArray = data.toReducedIntArray();
             params.setAlphabetSize(data.getReducedAlphabetSize());
         }
+        if (params.compactAlphabet())
+            params.setAlphabetSize(DataSet.compactAlphabet(intArray, minGenomesForCompaction(params, intArray.length)));
+        final int[][][] runLengthMergedLookup = (useMemoryReduction || params.compactAlphabet()) ? DataSet.createRunLengthMergedLookup(intArray) : null;
 
+        final int[] nrOfClusters = {0};
+        computeReferenceClusters(intArray, params, genomeGrouping, listener, toGeneClusters(data, intArray, runLengthMergedLookup, nrOfClusters, sink));
+        return nrOfClusters[0];
+    }
 
-        List<ReferenceCluster> refCluster = computeReferenceClusters(intArray, params, genomeGrouping, listener);
+    /**
+     * Computes reference gene clusters for every setting of a parameter sweep, and passes the clusters of each setting
+     * to the sink as soon as the setting is completed. Settings with the same distances are passed one after the other.
+     * The genomes are converted, compacted and indexed only once, for the maximum distance of all settings, and all
+     * settings are computed on the same index. The settings may differ in the distances, the minimum cluster size,
+     * the quorum, the statistics and the number of threads, all other values have to be the same.
+     * The clusters of each setting and their ids are the same as for computeReferenceClusters() with the setting.
+     * @param data the genomes
+     * @param settings the parameters of all settings
+     * @param useMemoryReduction if memory reduction should be used
+     * @param genomeGrouping each set contains the index of all genomes that contribute to quorum and p-value only once
+     * @param listener the progress listener, the progress restarts for each setting
+     * @param sink receives the gene clusters of each setting
+     * @throws IOException if the sink throws an IOException
+     */
+    public static void computeReferenceClusterSweep(final DataSet data, final List<Parameter> settings, boolean useMemoryReduction, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener, final ParameterSweepSink sink) throws IOException {
+        checkSweepSettings(settings);
+        Parameter first = settings.get(0);
+        final int[][][] intArray;
+        int alphabetSize;
+        if (!useMemoryReduction) {
+            intArray = data.toIntArray();
+            alphabetSize = data.getCompleteAlphabetSize();
+        } else {
+            intArray = data.toReducedIntArray();
+            alphabetSize = data.getReducedAlphabetSize();
+        }
+        if (first.compactAlphabet()) {
+            // a gene family that is kept for the smallest quorum does not change the clusters of larger quorums
+            int minGenomes = Integer.MAX_VALUE;
+            for (Parameter setting : settings)
+                minGenomes = Math.min(minGenomes, minGenomesForCompaction(setting, intArray.length));
+            alphabetSize = DataSet.compactAlphabet(intArray, minGenomes);
+        }
+        for (Parameter setting : settings)
+            setting.setAlphabetSize(alphabetSize);
+        final int[][][] runLengthMergedLookup = (useMemoryReduction || first.compactAlphabet()) ? DataSet.createRunLengthMergedLookup(intArray) : null;
 
-        List<GeneCluster> result = new ArrayList<>(refCluster.size());
+        computeReferenceClusterSweep(intArray, settings, genomeGrouping, listener, new ReferenceClusterSweepSink() {
+            @Override
+            public void accept(int settingIndex, List<ReferenceCluster> refClusters) throws IOException {
+                final List<GeneCluster> clusters = new ArrayList<>(refClusters.size());
+                toGeneClusters(data, intArray, runLengthMergedLookup, new int[]{0}, new GeneClusterSink() {
+                    @Override
+                    public void accept(GeneCluster cluster) {
+                        clusters.add(cluster);
+                    }
+                }).accept(refClusters);
+                sink.accept(settingIndex, settings.get(settingIndex), clusters);
+            }
+        });
+    }
 
-        if (useMemoryReduction){
-            int[][][] runLengthMergedLookup = DataSet.createRunLengthMergedLookup(intArray);
-            for (ReferenceCluster cluster : refCluster)
-                cluster.correctMergedPositions(runLengthMergedLookup, intArray);
+    /**
+     * Checks that the settings of a parameter sweep only differ in the values that do not change the index.
+     * @param settings the parameters of all settings
+     */
+    private static void checkSweepSettings(List<Parameter> settings) {
+        if (settings.isEmpty())
+            throw new IllegalArgumentException("A parameter sweep needs at least one setting!");
+        Parameter first = settings.get(0);
+        for (Parameter setting : settings) {
+            if (setting.getOperationMode() != first.getOperationMode() || setting.getRefType() != first.getRefType() ||
+                    setting.searchRefInRef() != first.searchRefInRef() || setting.compactAlphabet() != first.compactAlphabet() ||
+                    setting.useDistinctCountIndex() != first.useDistinctCountIndex())
+                throw new IllegalArgumentException("All settings of a parameter sweep have to use the same operation mode, reference type, reference search and index options!");
+            if (setting.getCheckpointFile() != null || setting.getShardFile() != null || setting.getShardFilesToMerge() != null)
+                throw new IllegalArgumentException("Checkpoints and shards are not supported in a parameter sweep!");
         }
-        for (int i = 0; i < refCluster.size(); i++)
-            result.add(new GeneCluster(i, refCluster.get(i), data));
+    }
 
-        return result;
+    /**
+     * Converts the reference clusters to gene clusters, and passes them to the sink.
+     * @param data the genomes
+     * @param intArray the genomes the reference clusters were computed for
+     * @param runLengthMergedLookup the lookup to correct the positions in intArray, null if intArray contains all genes
+     * @param nrOfClusters the number of converted clusters, the id of the next cluster
+     * @param sink receives the gene clusters
+     */
+    private static ReferenceClusterSink toGeneClusters(final DataSet data, final int[][][] intArray, final int[][][] runLengthMergedLookup, final int[] nrOfClusters, final GeneClusterSink sink) {
+        return new ReferenceClusterSink() {
+            @Override
+            public void accept(List<ReferenceCluster> refClusters) throws IOException {
+                for (int i = 0; i < refClusters.size(); i++) {
+                    ReferenceCluster cluster = refClusters.get(i);
+                    refClusters.set(i, null);  // the converted cluster is no longer needed
+                    if (runLengthMergedLookup != null)
+                        cluster.correctMergedPositions(runLengthMergedLookup, intArray);
+                    sink.accept(new GeneCluster(nrOfClusters[0]++, cluster, data));
+                }
+            }
+        };
+    }
+	
+    /**
+     * The number of genomes a gene family has to occur in to be kept by the alphabet compaction.
+     * The quorum counts the reference copy as an additional genome, so with the reference copy, one genome less is needed.
+     * @param params the parameters
+     * @param nrOfGenomes the number of genomes
+     * @return the minimum number of genomes
+     */
+    static int minGenomesForCompaction(Parameter params, int nrOfGenomes) {
+        int minCoveredGenomes = (params.getQ() == 0) ? nrOfGenomes : params.getQ();
+        return params.searchRefInRef() ? minCoveredGenomes - 1 : minCoveredGenomes;
     }
 	
 	/**
@@ -108,28 +259,236 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
 	 * @return the gene clusters
 	 */
 	private static List<ReferenceCluster> computeReferenceClusters(int[][][] genomes, Parameter param, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener) {
+        final List<ReferenceCluster> result = new ArrayList<>();
+        try {
+            computeReferenceClusters(genomes, param, genomeGrouping, listener, new ReferenceClusterSink() {
+                @Override
+                public void accept(List<ReferenceCluster> clusters) {
+                    result.addAll(clusters);
+                }
+            });
+        } catch (IOException e) {
+            throw new AssertionError(e);  // adding to the list does not throw
+        }
+        return result;
+    }
+
+	/**
+	 * Computes reference gene clusters for the given list of genomes and the given parameters
+	 * @param genomes the genomes
+	 * @param param the parameters
+	 * @param genomeGrouping each set contains the index of all genomes that contribute to quorum and p-value only once
+     * @param listener the progress listener
+	 * @param sink receives the gene clusters, as soon as they are final
+	 * @throws IOException if the sink throws an IOException
+	 */
+	private static void computeReferenceClusters(int[][][] genomes, Parameter param, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener, ReferenceClusterSink sink) throws IOException {
         if (!param.useJavaAlgorithm())
 			throw new IllegalArgumentException("invalid parameters");
 
-        GenomeList data;
-		if (param.getAlphabetSize() >= 0)
-			data = new GenomeList(genomes, param.getAlphabetSize());
-		else {
-			data = new GenomeList(genomes);
-			param.setAlphabetSize(data.getAlphabetSize());
+		computeReferenceClusters(createGenomeList(genomes, param), genomes, param, genomeGrouping, listener, sink, false);
+	}
+
+	/**
+	 * Computes reference gene clusters for every setting of a parameter sweep
+	 * @param genomes the genomes
+	 * @param settings the parameters of all settings
+	 * @return the gene clusters of each setting
+	 */
+	static List<List<ReferenceCluster>> computeReferenceClusterSweep(int[][][] genomes, List<Parameter> settings) {
+		checkSweepSettings(settings);
+		final List<List<ReferenceCluster>> result = new ArrayList<>(Collections.<List<ReferenceCluster>>nCopies(settings.size(), null));
+		try {
+			computeReferenceClusterSweep(genomes, settings, null, null, new ReferenceClusterSweepSink() {
+				@Override
+				public void accept(int settingIndex, List<ReferenceCluster> clusters) {
+					result.set(settingIndex, clusters);
+				}
+			});
+		} catch (IOException e) {
+			throw new AssertionError(e);  // adding to the list does not throw
 		}
+		return result;
+	}
+
+	/**
+	 * Computes reference gene clusters for every setting of a parameter sweep.
+	 * The genome list is created and initialized once for the maximum distance of all settings,
+	 * each search only restricts the distance, see GenomeList.setMaximumDelta().
+	 * Without the reference copy, all settings with the same distances are computed by one search with their smallest
+	 * minimum cluster size and quorum, see selectClusters(). The sink receives these settings one after the other,
+	 * in the order of the first setting with the distances.
+	 * @param genomes the genomes
+	 * @param settings the parameters of all settings
+	 * @param genomeGrouping each set contains the index of all genomes that contribute to quorum and p-value only once
+	 * @param listener the progress listener
+	 * @param sink receives the gene clusters of each setting
+	 * @throws IOException if the sink throws an IOException
+	 */
+	private static void computeReferenceClusterSweep(int[][][] genomes, List<Parameter> settings, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener, ReferenceClusterSweepSink sink) throws IOException {
+		for (Parameter setting : settings)
+			if (!setting.useJavaAlgorithm())
+				throw new IllegalArgumentException("invalid parameters");
 
+		GenomeList data = createGenomeList(genomes, settings.get(0));
+		int maxDelta = 0;
+		for (Parameter setting : settings) {
+			setting.setAlphabetSize(data.getAlphabetSize());
+			maxDelta = Math.max(maxDelta, new AlgorithmParameters(setting, data.getAlphabetSize(), data.size()).getMaximumDelta());
+		}
+
+		data.initializeForCalculation(maxDelta, settings.get(0).useDistinctCountIndex());
+		try {
+			boolean[] computed = new boolean[settings.size()];
+			for (int i = 0; i < settings.size(); i++) {
+				if (computed[i])
+					continue;
+				List<Integer> sameSearch = new ArrayList<>();
+				for (int j = i; j < settings.size(); j++) {
+					if (j == i || (!settings.get(i).searchRefInRef() && sameDistances(settings.get(i), settings.get(j)))) {
+						sameSearch.add(j);
+						computed[j] = true;
+					}
+				}
+
+				final List<ReferenceCluster> clusters = new ArrayList<>();
+				ReferenceClusterSink collector = new ReferenceClusterSink() {
+					@Override
+					public void accept(List<ReferenceCluster> refClusters) {
+						clusters.addAll(refClusters);
+					}
+				};
+				if (sameSearch.size() == 1) {
+					computeReferenceClusters(data, genomes, settings.get(i), genomeGrouping, listener, collector, true);
+					sink.accept(i, clusters);
+					continue;
+				}
+
+				Parameter search = createSearchParameter(settings, sameSearch, data.size());
+				computeReferenceClusters(data, genomes, search, genomeGrouping, listener, collector, true);
+				for (int j : sameSearch) {
+					AlgorithmParameters algoParameters = new AlgorithmParameters(settings.get(j), data.getAlphabetSize(), data.size());
+					ReferenceClusterAlgorithm algorithm = new ReferenceClusterAlgorithm(data, algoParameters, genomeGrouping);
+					algorithm.addListener(listener);
+					sink.accept(j, algorithm.selectClusters(clusters));
+				}
+			}
+		} finally {
+			data.removeCalculationFields();
+		}
+	}
+
+	/**
+	 * @return true if both parameters allow the same distances
+	 */
+	private static boolean sameDistances(Parameter first, Parameter second) {
+		if (first.useDeltaTable() != second.useDeltaTable())
+			return false;
+		return first.useDeltaTable() ? Arrays.deepEquals(first.getDeltaTable(), second.getDeltaTable()) : first.getDelta() == second.getDelta();
+	}
+
+	/**
+	 * Creates the parameters of the search for several settings with the same distances,
+	 * with the smallest minimum cluster size and quorum of the settings and without statistics.
+	 * @param settings the parameters of all settings
+	 * @param sameSearch the indices of the settings with the same distances
+	 * @param nrOfGenomes the number of genomes
+	 * @return the parameters of the search
+	 */
+	private static Parameter createSearchParameter(List<Parameter> settings, List<Integer> sameSearch, int nrOfGenomes) {
+		Parameter first = settings.get(sameSearch.get(0));
+		int minClusterSize = Integer.MAX_VALUE;
+		int q = first.getQ();
+		int nrOfThreads = 1;
+		for (int j : sameSearch) {
+			Parameter setting = settings.get(j);
+			minClusterSize = Math.min(minClusterSize, setting.getMinClusterSize());
+			if ((setting.getQ() == 0 ? nrOfGenomes : setting.getQ()) < (q == 0 ? nrOfGenomes : q))
+				q = setting.getQ();
+			nrOfThreads = Math.max(nrOfThreads, setting.getNrOfThreads());
+		}
+
+		Parameter search;
+		if (first.useDeltaTable())
+			search = new Parameter(first.getDeltaTable(), minClusterSize, q, first.getOperationMode(), first.getRefType(), first.searchRefInRef(), true);
+		else
+			search = new Parameter(first.getDelta(), minClusterSize, q, first.getOperationMode(), first.getRefType(), first.searchRefInRef(), true);
+		search.setAlphabetSize(first.getAlphabetSize());
+		search.setNrOfThreads(nrOfThreads);
+		search.setUseDistinctCountIndex(first.useDistinctCountIndex());
+		return search;
+	}
+
+	/**
+	 * Creates the genome list, with the alphabet size of the parameters if it is set
+	 */
+	private static GenomeList createGenomeList(int[][][] genomes, Parameter param) {
+		if (param.getAlphabetSize() >= 0)
+			return new GenomeList(genomes, param.getAlphabetSize());
+		GenomeList data = new GenomeList(genomes);
+		param.setAlphabetSize(data.getAlphabetSize());
+		return data;
+	}
+
+	/**
+	 * Computes reference gene clusters for the given genome list and the given parameters
+	 * @param data the genome list of the genomes
+	 * @param genomes the genomes
+	 * @param param the parameters
+	 * @param genomeGrouping each set contains the index of all genomes that contribute to quorum and p-value only once
+	 * @param listener the progress listener
+	 * @param sink receives the gene clusters, as soon as they are final
+	 * @param initialized if the genome list is already initialized for the maximum distance of param, and is reused by other computations
+	 * @throws IOException if the sink throws an IOException
+	 */
+	private static void computeReferenceClusters(GenomeList data, int[][][] genomes, Parameter param, List<Set<Integer>> genomeGrouping, AlgorithmProgressListener listener, ReferenceClusterSink sink, boolean initialized) throws IOException {
 		AlgorithmParameters algoParameters = new AlgorithmParameters(param, param.getAlphabetSize(), data.size());
 		
 		if (!checkParameters(algoParameters)) 
 			throw new IllegalArgumentException("invalid parameters");
 		
 		ReferenceClusterAlgorithm refClusterAlgorithm = new ReferenceClusterAlgorithm(data, algoParameters, genomeGrouping);
+		refClusterAlgorithm.sharedCalculationFields = initialized;
+		boolean useShards = param.getShardFile() != null || param.getShardFilesToMerge() != null;
+		if (useShards) {
+			if (algoParameters.useSingleReference())
+				throw new IllegalArgumentException("Shards are only supported for all against all computations!");
+			refClusterAlgorithm.setReferenceRange(param.getShardIndex() * data.size() / param.getNrOfShards(), (param.getShardIndex() + 1) * data.size() / param.getNrOfShards());
+			refClusterAlgorithm.shardFile = param.getShardFile();
+			refClusterAlgorithm.shardFilesToMerge = param.getShardFilesToMerge();
+		}
         refClusterAlgorithm.addListener(listener);
+		if (param.getCheckpointFile() != null && !algoParameters.useSingleReference()) {
+			refClusterAlgorithm.checkpointFile = param.getCheckpointFile();
+			refClusterAlgorithm.checkpointInterval = param.getCheckpointInterval();
+			refClusterAlgorithm.resumeFromCheckpoint = param.resumeFromCheckpoint();
+		}
+		if (refClusterAlgorithm.checkpointFile != null || useShards)
+			refClusterAlgorithm.checkpointFingerprint = ReferenceClusterCheckpoint.fingerprint(genomes, param, genomeGrouping);
 		
-		return refClusterAlgorithm.computeRefClusters();
+		refClusterAlgorithm.computeRefClusters(sink);
 	}
 	
+	/**
+	 * Selects the clusters of this algorithm from the clusters of a search with the same distances and a smaller or
+	 * equal minimum cluster size and quorum, without the reference copy, and computes their statistics.
+	 * A cluster that is nested in another cluster is covered by the other cluster in every genome it occurs in,
+	 * and the other cluster is at least as large, so the clusters of the smaller minimum cluster size and quorum
+	 * never remove a cluster of this algorithm, and the selected clusters are the clusters of a search with param.
+	 * @param clusters the clusters of the search, in the order of the result, are not changed
+	 * @return copies of the clusters with at least the minimum cluster size and quorum
+	 */
+	private List<ReferenceCluster> selectClusters(List<ReferenceCluster> clusters) {
+		List<ReferenceCluster> selected = new ArrayList<>();
+		for (ReferenceCluster cluster : clusters)
+			if (cluster.getSize() >= param.getMinClusterSize() && cluster.getCoveredGenomeGroups() >= param.getMinCoveredGenomes())
+				selected.add(new ReferenceCluster(cluster));
+
+		if (!param.noStatistics())
+			selected = computeStatistics(selected);
+		return selected;
+	}
+
     private static boolean checkParameters(AlgorithmParameters param) {
         return true;
     }
@@ -152,14 +511,69 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
 		}
 
         progressListeners = new ArrayList<>();
-        for (int i=0; i < ((param.useSingleReference()) ? 1 : genomes.size()); i++) {
-            for (Chromosome chr : genomes.get(i))
-                maxProgressValue += chr.getEffectiveGeneNumber();
-        }
-        progressValue = 0;
+        setReferenceRange(0, (param.useSingleReference()) ? 1 : genomes.size());
+        progressValue = new AtomicInteger(0);
+	}
+
+	/**
+	 * Sets the reference genomes that are searched, and the maximum progress value.
+	 * @param firstReference the first reference genome
+	 * @param endReference the end of the reference genomes (exclusive)
+	 */
+	private void setReferenceRange(int firstReference, int endReference) {
+		this.firstReference = firstReference;
+		this.endReference = endReference;
+		maxProgressValue = 0;
+		for (int i=firstReference; i<endReference; i++) {
+			for (Chromosome chr : genomes.get(i))
+				maxProgressValue += chr.getEffectiveGeneNumber();
+		}
 	}
+
+    /**
+     * Constructs a worker for the parallel search. The worker uses its own genomes and parameters,
+     * but shares the genome grouping, the listeners and the progress with the parent.
+     * @param parent the algorithm that started the worker
+     * @param genomes the genomes of the worker, must not be shared with any other worker
+     * @param param the parameters of the worker, must not be shared with any other worker
+     */
+    private ReferenceClusterAlgorithm(ReferenceClusterAlgorithm parent, GenomeList genomes, AlgorithmParameters param) {
+        this.genomes = genomes;
+        this.param = param;
+        this.genomeGroupMapping = parent.genomeGroupMapping;
+        this.nrOfGenomeGroups = parent.nrOfGenomeGroups;
+        this.useGenomeGrouping = parent.useGenomeGrouping;
+        this.progressListeners = parent.progressListeners;
+        this.maxProgressValue = parent.maxProgressValue;
+        this.progressValue = parent.progressValue;
+        this.firstReference = parent.firstReference;
+        this.endReference = parent.endReference;
+    }
 	
-	private List<ReferenceCluster> computeRefClusters(){
+	/**
+	 * Receives the reference clusters, in the order of the final result
+	 */
+	private interface ReferenceClusterSink {
+		void accept(List<ReferenceCluster> clusters) throws IOException;
+	}
+
+	/**
+	 * Receives the reference clusters of a parameter sweep, all clusters of one setting at once
+	 */
+	private interface ReferenceClusterSweepSink {
+		void accept(int settingIndex, List<ReferenceCluster> clusters) throws IOException;
+	}
+
+	/**
+	 * With a single reference and without the reference copy, the delta locations of a cluster in the
+	 * reference genome are only its reference occurrence. So clusters on different reference chromosomes are
+	 * never nested, and without the statistics, the clusters are final after their reference chromosome.
+	 */
+	private boolean clustersFinalPerReferenceChromosome() {
+		return param.useSingleReference() && !param.searchRefInRef() && param.noStatistics();
+	}
+
+	private void computeRefClusters(ReferenceClusterSink sink) throws IOException {
 		System.out.println("Computing Gene Clusters!");
 		
 		long startTime = System.nanoTime();
@@ -167,29 +581,55 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
         if (param.getNrOfGenomes() != genomes.size())
             throw new RuntimeException("Number of genomes in param does not equal number of genomes!");
 		
-		genomes.initializeForCalculation(param.getMaximumDelta());
-		List<ReferenceCluster> refClusterList = new ArrayList<>();
-		
-		int refGenomeCount = 1;
-		if (!param.useSingleReference())
-			refGenomeCount = genomes.size();
-        
-		for (int i=0; i<refGenomeCount; i++)
-			detectReferenceGeneClusterFromSingleGenome(i, refClusterList);
+		if (sharedCalculationFields)
+			genomes.setMaximumDelta(param.getMaximumDelta());
+		else
+			genomes.initializeForCalculation(param.getMaximumDelta(), param.useDistinctCountIndex());
+		lastCheckpointTime = System.currentTimeMillis();
+
+		List<ReferenceCluster> refClusterList;
+		if (shardFilesToMerge != null) {
+			refClusterList = mergeShards();
+		} else if (param.getNrOfThreads() > 1 && !param.useSingleReference()) {
+			refClusterList = detectReferenceGeneClustersParallel();
+		} else {
+			// with a single reference, the genomes are updated in parallel for each pattern extension
+			if (param.getNrOfThreads() > 1)
+				genomeUpdatePool = new ForkJoinPool(param.getNrOfThreads());
+			try {
+				ReferenceClusterIndex refClusterIndex = new ReferenceClusterIndex(param.getNrOfGenomes());
+				ReferenceClusterSink chromosomeSink = clustersFinalPerReferenceChromosome() ? sink : null;
+				int completedReferences = restoreCheckpoint(refClusterIndex);
+				for (int i = completedReferences; i < endReference; i++) {
+					detectReferenceGeneClusterFromSingleGenome(i, refClusterIndex, chromosomeSink);
+					writeCheckpoint(i + 1, refClusterIndex, i + 1 == endReference);
+				}
+				refClusterList = refClusterIndex.getClusters();
+			} finally {
+				if (genomeUpdatePool != null) {
+					genomeUpdatePool.shutdownNow();
+					genomeUpdatePool = null;
+				}
+			}
+		}
 		
 		long calcTime = System.nanoTime();
+
+		if (shardFile != null) {
+			genomes.removeCalculationFields();
+			writeShard(refClusterList);
+			System.out.println(String.format("Calculation: %fs",(calcTime - startTime)/1.0E09));
+			sink.accept(new ArrayList<ReferenceCluster>());
+			return;
+		}
 		
-		for (ReferenceCluster cluster : refClusterList) {
-            cluster.setGeneContent(genomes);
-            cluster.setBestCombined_pValue(BigDecimal.ZERO);
-            cluster.setBestCombined_pValueCorrected(BigDecimal.ZERO);
-        }
+		initializeClusterResults(refClusterList);
 
-        genomes.removeCalculationFields();
+        if (!sharedCalculationFields)
+            genomes.removeCalculationFields();
 
         if (!param.noStatistics()) {
-            System.out.println("Doing Statistics!");
-            Statistics.computeReferenceStatistics(genomes, refClusterList, param.getMaximumDelta(), param.useSingleReference(), nrOfGenomeGroups, genomeGroupMapping, progressListeners);
+            refClusterList = computeStatistics(refClusterList);
         } else {
             System.out.println("Not computing statistics!");
         }
@@ -198,46 +638,296 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
 		System.out.println(String.format("Calculation: %fs",(calcTime - startTime)/1.0E09));
 		System.out.println(String.format("Statistics: %fs",(statTime - calcTime)/1.0E09));
 		
+		sink.accept(refClusterList);
+	}
+
+	/**
+	 * Computes the statistics of the clusters. If only the top clusters are kept, the other clusters are removed,
+	 * and most of their p-values are not computed, see Statistics.computeTopReferenceStatistics().
+	 * @param refClusterList the clusters, with their gene content
+	 * @return the clusters with p-values, in the order of refClusterList
+	 */
+	private List<ReferenceCluster> computeStatistics(List<ReferenceCluster> refClusterList) {
+		System.out.println("Doing Statistics!");
+		if (param.getTopClusters() > 0) {
+			List<ReferenceCluster> topClusters = Statistics.computeTopReferenceStatistics(genomes, refClusterList, param.getMaximumDelta(), param.useSingleReference(), nrOfGenomeGroups, genomeGroupMapping, param.getTopClusters(), param.getNrOfThreads(), progressListeners);
+			System.out.println(String.format("Kept the %d of %d clusters with the smallest p-values.", topClusters.size(), refClusterList.size()));
+			return topClusters;
+		}
+		Statistics.computeReferenceStatistics(genomes, refClusterList, param.getMaximumDelta(), param.useSingleReference(), nrOfGenomeGroups, genomeGroupMapping, param.getNrOfThreads(), progressListeners);
 		return refClusterList;
 	}
-	
-	private void detectReferenceGeneClusterFromSingleGenome(int referenceGenomeNr, List<ReferenceCluster> refClusterList){
+
+	/**
+	 * Restores the clusters of the checkpoint, if the computation is resumed.
+	 * @param refClusterIndex the empty index, receives the clusters of the checkpoint
+	 * @return the first reference genome that is not completed, firstReference if the computation is not resumed
+	 */
+	private int restoreCheckpoint(ReferenceClusterIndex refClusterIndex) {
+		if (checkpointFile == null || !resumeFromCheckpoint)
+			return firstReference;
+
+		ReferenceClusterCheckpoint checkpoint;
+		try {
+			checkpoint = ReferenceClusterCheckpoint.read(checkpointFile, checkpointFingerprint);
+		} catch (IOException e) {
+			throw new RuntimeException(String.format("Can not resume from checkpoint: %s", e.getMessage()), e);
+		}
+		if (checkpoint.getFirstReference() != firstReference || checkpoint.getCompletedReferences() < firstReference || checkpoint.getCompletedReferences() > endReference)
+			throw new RuntimeException(String.format("Can not resume from checkpoint: the checkpoint starts with reference genome %d and ends before %d, the computation covers the reference genomes %d to %d!",
+					checkpoint.getFirstReference(), checkpoint.getCompletedReferences(), firstReference, endReference - 1));
+
+		for (ReferenceCluster cluster : checkpoint.getClusters())
+			refClusterIndex.add(cluster);
+		int skippedGenes = 0;
+		for (int i = firstReference; i < checkpoint.getCompletedReferences(); i++)
+			for (Chromosome chr : genomes.get(i))
+				skippedGenes += chr.getEffectiveGeneNumber();
+		progressValue.addAndGet(skippedGenes);
+		System.out.println(String.format("Resuming after %d of %d reference genomes with %d clusters.", checkpoint.getCompletedReferences() - firstReference, endReference - firstReference, refClusterIndex.size()));
+		return checkpoint.getCompletedReferences();
+	}
+
+	/**
+	 * Writes the clusters of the shard to the shard file.
+	 */
+	private void writeShard(List<ReferenceCluster> refClusterList) {
+		try {
+			ReferenceClusterCheckpoint.write(shardFile, checkpointFingerprint, firstReference, endReference, refClusterList);
+		} catch (IOException e) {
+			throw new RuntimeException(String.format("Could not write shard %s: %s", shardFile, e.getMessage()), e);
+		}
+		System.out.println(String.format("Wrote %d clusters of the reference genomes %d to %d to %s.", refClusterList.size(), firstReference, endReference - 1, shardFile));
+	}
+
+	/**
+	 * Reads the shard files and inserts their clusters in the order of the reference genomes. Each shard is
+	 * merged like the result of one unit of the parallel search, so the result is identical to the computation without shards.
+	 * @return the reference clusters of all shards
+	 */
+	private List<ReferenceCluster> mergeShards() {
+		List<ReferenceClusterCheckpoint> shards = new ArrayList<>(shardFilesToMerge.size());
+		for (File file : shardFilesToMerge) {
+			try {
+				shards.add(ReferenceClusterCheckpoint.read(file, checkpointFingerprint));
+			} catch (IOException e) {
+				throw new RuntimeException(String.format("Can not merge shards: %s", e.getMessage()), e);
+			}
+		}
+		Collections.sort(shards, new Comparator<ReferenceClusterCheckpoint>() {
+			@Override
+			public int compare(ReferenceClusterCheckpoint o1, ReferenceClusterCheckpoint o2) {
+				return Integer.compare(o1.getFirstReference(), o2.getFirstReference());
+			}
+		});
+
+		ReferenceClusterIndex refClusterIndex = new ReferenceClusterIndex(param.getNrOfGenomes());
+		int nextReference = firstReference;
+		for (ReferenceClusterCheckpoint shard : shards) {
+			if (shard.getFirstReference() > nextReference)
+				throw new RuntimeException(String.format("Can not merge shards: the reference genomes %d to %d are missing!", nextReference, shard.getFirstReference() - 1));
+			if (shard.getFirstReference() < nextReference)
+				throw new RuntimeException(String.format("Can not merge shards: the reference genome %d is contained in more than one shard!", shard.getFirstReference()));
+			for (ReferenceCluster cluster : shard.getClusters())
+				refClusterIndex.checkAndInsert(cluster);
+			nextReference = shard.getCompletedReferences();
+		}
+		if (nextReference != endReference)
+			throw new RuntimeException(String.format("Can not merge shards: the reference genomes %d to %d are missing!", nextReference, endReference - 1));
+		System.out.println(String.format("Merged %d shards with %d clusters.", shards.size(), refClusterIndex.size()));
+		return refClusterIndex.getClusters();
+	}
+
+	/**
+	 * Writes the checkpoint, if checkpoints are enabled and the checkpoint interval has passed.
+	 * A checkpoint that can not be written does not stop the computation.
+	 * @param completedReferences the end of the completed reference genomes (exclusive)
+	 * @param refClusterIndex the clusters found so far
+	 * @param force if true, the checkpoint is written regardless of the checkpoint interval
+	 */
+	private void writeCheckpoint(int completedReferences, ReferenceClusterIndex refClusterIndex, boolean force) {
+		if (checkpointFile == null)
+			return;
+		if (!force && System.currentTimeMillis() - lastCheckpointTime < checkpointInterval)
+			return;
+		try {
+			ReferenceClusterCheckpoint.write(checkpointFile, checkpointFingerprint, firstReference, completedReferences, refClusterIndex.getClusters());
+		} catch (IOException e) {
+			System.err.println(String.format("Could not write checkpoint %s: %s", checkpointFile, e.getMessage()));
+		}
+		lastCheckpointTime = System.currentTimeMillis();
+	}
+
+	private void initializeClusterResults(List<ReferenceCluster> refClusterList) {
+		for (ReferenceCluster cluster : refClusterList) {
+            cluster.setGeneContent(genomes);
+            cluster.setBestCombined_pValue(BigDecimal.ZERO);
+            cluster.setBestCombined_pValueCorrected(BigDecimal.ZERO);
+        }
+	}
+
+	/**
+	 * Detects the clusters with the given reference genome.
+	 * @param chromosomeSink if not null, receives the clusters after each reference chromosome, and the clusters are removed from the index
+	 */
+	private void detectReferenceGeneClusterFromSingleGenome(int referenceGenomeNr, ReferenceClusterIndex refClusterIndex, ReferenceClusterSink chromosomeSink) throws IOException {
 		if (param.searchRefInRef())
 			genomes.appendCopyOfReferenceGenome(referenceGenomeNr, param);
 		
 		for (Chromosome referenceChromosome : genomes.get(referenceGenomeNr)){
-			detectReferenceGeneClusterFromSingleChromosome(referenceGenomeNr, referenceChromosome, refClusterList);
+			detectReferenceGeneClusterFromSingleChromosome(referenceGenomeNr, referenceChromosome, refClusterIndex);
+			if (chromosomeSink != null) {
+				List<ReferenceCluster> chromosomeClusters = refClusterIndex.getClusters();
+				refClusterIndex.clear();
+				initializeClusterResults(chromosomeClusters);
+				chromosomeSink.accept(chromosomeClusters);
+			}
 		}
 		
 		if (param.searchRefInRef()) {
-			Iterator<ReferenceCluster> refIt = refClusterList.iterator();
-			while (refIt.hasNext()) {
-				if (!refIt.next().mergeAdditionalReferenceHits(genomes.size()))
-					refIt.remove();
-			}
+			refClusterIndex.mergeAdditionalReferenceHits(genomes.size());
 			genomes.removeCopyOfReferenceGenome(param);
 		}
 	}
+
+	/**
+	 * Searches the reference clusters with param.getNrOfThreads() worker threads.
+	 * The reference genomes (or, if not searching in the reference genome, the single reference chromosomes)
+	 * are distributed over the workers. Each worker uses its own copy of the genomes, so that rank and
+	 * the L, R, L' and R' tables are not shared.
+	 * The results of the workers are merged in the order of the sequential search, so the result is identical,
+	 * and checkpoints are written after each merged reference genome.
+	 * @return the reference clusters
+	 */
+	private List<ReferenceCluster> detectReferenceGeneClustersParallel() {
+		ReferenceClusterIndex refClusterIndex = new ReferenceClusterIndex(param.getNrOfGenomes());
+		int completedReferences = restoreCheckpoint(refClusterIndex);
+
+		final List<int[]> units = new ArrayList<>();
+		for (int i=completedReferences; i<endReference; i++) {
+			if (param.searchRefInRef())
+				units.add(new int[]{i, -1});  // the reference copy is appended per genome
+			else {
+				for (Chromosome chr : genomes.get(i))
+					units.add(new int[]{i, chr.getNr()});
+			}
+		}
+		if (units.isEmpty())
+			return refClusterIndex.getClusters();
+
+		int nrOfWorkers = Math.min(param.getNrOfThreads(), units.size());
+		// the number of genomes including the reference copy, read before any worker appends a reference copy
+		int nrOfGenomesWithCopy = genomes.size() + 1;
+
+		// every worker uses its own copy, so the genomes and parameters of this algorithm are not modified
+		// while the results are merged
+		final BlockingQueue<ReferenceClusterAlgorithm> idleWorkers = new ArrayBlockingQueue<>(nrOfWorkers);
+		for (int w=0; w<nrOfWorkers; w++)
+			idleWorkers.add(new ReferenceClusterAlgorithm(this, new GenomeList(genomes), new AlgorithmParameters(param)));
+		final Set<ReferenceClusterAlgorithm> initializedWorkers = Collections.synchronizedSet(new HashSet<ReferenceClusterAlgorithm>());
+
+		ExecutorService executor = Executors.newFixedThreadPool(nrOfWorkers);
+		try {
+			List<Future<List<ReferenceCluster>>> futures = new ArrayList<>(units.size());
+			for (final int[] unit : units) {
+				futures.add(executor.submit(new Callable<List<ReferenceCluster>>() {
+					@Override
+					public List<ReferenceCluster> call() throws InterruptedException {
+						ReferenceClusterAlgorithm worker = idleWorkers.take();
+						try {
+							if (initializedWorkers.add(worker))
+								worker.genomes.initializeForCalculation(worker.param.getMaximumDelta(), worker.param.useDistinctCountIndex());
+							return worker.detectReferenceGeneClusterFromUnit(unit[0], unit[1]);
+						} finally {
+							idleWorkers.add(worker);
+						}
+					}
+				}));
+			}
+
+			for (int u=0; u<units.size(); u++) {
+				for (ReferenceCluster cluster : futures.get(u).get())
+					refClusterIndex.checkAndInsert(cluster);
+				futures.set(u, null);
+				if (param.searchRefInRef())
+					refClusterIndex.mergeAdditionalReferenceHits(nrOfGenomesWithCopy);
+				int referenceGenomeNr = units.get(u)[0];
+				if (u + 1 == units.size() || units.get(u + 1)[0] != referenceGenomeNr)
+					writeCheckpoint(referenceGenomeNr + 1, refClusterIndex, u + 1 == units.size());
+			}
+		} catch (InterruptedException e) {
+			throw new CancellationException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return refClusterIndex.getClusters();
+	}
+
+	/**
+	 * Detects all reference clusters on one reference chromosome, or on all chromosomes of the reference genome.
+	 * Only the nesting between the clusters of the unit is resolved, the hits in the reference copy are not merged.
+	 * @param referenceGenomeNr the number of the reference genome
+	 * @param referenceChrNr the number of the reference chromosome, -1 for all chromosomes
+	 * @return the clusters of the unit
+	 */
+	private List<ReferenceCluster> detectReferenceGeneClusterFromUnit(int referenceGenomeNr, int referenceChrNr) {
+		ReferenceClusterIndex refClusterIndex = new ReferenceClusterIndex(param.getNrOfGenomes());
+		if (param.searchRefInRef())
+			genomes.appendCopyOfReferenceGenome(referenceGenomeNr, param);
+
+		for (Chromosome referenceChromosome : genomes.get(referenceGenomeNr)){
+			if (referenceChrNr == -1 || referenceChrNr == referenceChromosome.getNr())
+				detectReferenceGeneClusterFromSingleChromosome(referenceGenomeNr, referenceChromosome, refClusterIndex);
+		}
+
+		if (param.searchRefInRef())
+			genomes.removeCopyOfReferenceGenome(param);
+		return refClusterIndex.getClusters();
+	}
 	
 	private boolean useGenomeGrouping() {
 		return useGenomeGrouping;
 	}
 	
-	private void detectReferenceGeneClusterFromSingleChromosome(int referenceGenomeNr, Chromosome referenceChromosome, List<ReferenceCluster> refClusterList){
+	/**
+	 * Creates one list per genome, reused for all left borders, so released delta locations are reused.
+	 * The list of the reference genome only holds the newly created reference location, it gets no pool,
+	 * a pool would only collect the released reference locations.
+	 */
+	static List<ListOfDeltaLocations> newDeltaLocationLists(int nrOfGenomes, int referenceGenomeNr) {
+		List<ListOfDeltaLocations> lists = new ArrayList<>(nrOfGenomes);
+		for (int i=0; i<nrOfGenomes; i++)
+			lists.add(i == referenceGenomeNr ? new ListOfDeltaLocations(null) : new ListOfDeltaLocations());
+		return lists;
+	}
+
+	private void detectReferenceGeneClusterFromSingleChromosome(int referenceGenomeNr, Chromosome referenceChromosome, ReferenceClusterIndex refClusterIndex){
+		List<ListOfDeltaLocations> oldLists = newDeltaLocationLists(genomes.size(), referenceGenomeNr);
+		boolean[] prefixChars = new boolean[genomes.getAlphabetSize() + 1];
+		int[] prefixNoOccCount = new int[genomes.size()];
+
 		for (int l = 1; l <= referenceChromosome.getEffectiveGeneNumber(); l++){
-            fireProgressUpdateEvent(new AlgorithmStatusEvent(progressValue++, AlgorithmStatusEvent.Task.ComputingClusters));
+            fireProgressUpdateEvent(new AlgorithmStatusEvent(progressValue.getAndIncrement(), AlgorithmStatusEvent.Task.ComputingClusters));
 			genomes.updateLeftBorder(l, referenceChromosome, referenceGenomeNr);
-			Pattern pattern = new Pattern(genomes.getAlphabetSize(), genomes.size(), param, referenceGenomeNr, referenceChromosome, l);
 			
 			// Gene does not occur in any other Genome and does not occur in chr[i,...]
 			if (referenceChromosome.getGene(l) < 0 || (referenceChromosome.getNextOCC(l) > referenceChromosome.getEffectiveGeneNumber() && genomes.zeroOccs(referenceGenomeNr, referenceChromosome.getNr(), l, param.searchRefInRef())))
 				continue;
-			
+
+			if (quorumUnreachable(referenceGenomeNr, referenceChromosome, l, prefixChars, prefixNoOccCount))
+				continue;
+
+			Pattern pattern = new Pattern(genomes.getAlphabetSize(), genomes.size(), param, referenceGenomeNr, referenceChromosome, l);
 			int r = l;
 			int[] noOccCount = new int[genomes.size()];
-			List<ListOfDeltaLocations> oldLists = new ArrayList<>(genomes.size());
-			for (int i=0; i<genomes.size(); i++)
-				oldLists.add(new ListOfDeltaLocations());
+			for (ListOfDeltaLocations dLocList : oldLists)
+				dLocList.emptyList();
 			
 			while(pattern.updateToNextI_ref(r)) {
 				r = pattern.getRightBorder();
@@ -262,19 +952,15 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
 				
 				int minHitCoveredCount = 0;
 				boolean[] containedGenomeClusters = new boolean[nrOfGenomeGroups];
+				boolean[] minHitsCovered = new boolean[genomes.size()];
+
+				if (genomeUpdatePool != null && genomes.size() > GENOME_UPDATE_GRANULARITY)
+					genomeUpdatePool.invoke(new DeltaLocationUpdateTask(pattern, referenceGenomeNr, oldLists, minHitsCovered, 0, genomes.size()));
+				else
+					updateDeltaLocations(pattern, referenceGenomeNr, oldLists, minHitsCovered, 0, genomes.size());
 				
 				for (int k=0; k<genomes.size(); k++){
-					if(k != referenceGenomeNr){
-                        ListOfDeltaLocations newList = pattern.computeNewOptimalDeltaLocations(genomes.get(k), param);
-						
-						if (param.searchRefInRef() && k == genomes.size()-1){
-							newList.removeRefDLocReferenceHit(pattern, referenceChromosome.getNr());
-						}
-						
-						oldLists.get(k).mergeLists(newList);
-						oldLists.get(k).checkForValidDeltaTableLocations(param, pattern.getSize());
-					}
-					if (oldLists.get(k).minHitsCovered()) {
+					if (minHitsCovered[k]) {
 						if (!useGenomeGrouping())
 							minHitCoveredCount++;
 						else if (!containedGenomeClusters[genomeGroupMapping.get(k)]){
@@ -297,7 +983,7 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
 					
 					if (refdLoc.isFirstRefOcc(listCopy)){
 						ReferenceCluster newCluster = new ReferenceCluster(pattern, listCopy, param.searchRefInRef(),  nrOfGenomeGroups, genomeGroupMapping);
-						check_and_insert_refCluster(refClusterList, newCluster);
+						refClusterIndex.checkAndInsert(newCluster);
 					}
 				}
 				r = pattern.getRightBorder()+1;
@@ -305,22 +991,125 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
 		}
 	}
 	
-	private boolean check_and_insert_refCluster(
-			List<ReferenceCluster> refClusterList, ReferenceCluster newCluster) {
-		Iterator<ReferenceCluster> otherClusterIt = refClusterList.iterator();
-		while(otherClusterIt.hasNext()){
-			ReferenceCluster otherCluster = otherClusterIt.next();
-			if (newCluster.areAll_dLocsNested(otherCluster))
-				return false;
-			if (otherCluster.areAll_dLocsNested(newCluster)){
-				otherClusterIt.remove();
+	/**
+	 * Checks if no cluster of at least the minimum cluster size can start at the left border l.
+	 * The extensions of the pattern are followed like Pattern.updateToNextI_ref() does, counting the characters
+	 * that do not occur in each genome. If more than getMaxUncoveredGenomes() genomes miss more than delta characters
+	 * before the pattern reaches the minimum cluster size, the extension loop would stop before reporting a cluster,
+	 * so the delta locations of these extensions do not have to be computed.
+	 * The characters that do not occur outside of the reference interval in the reference copy are not counted,
+	 * so the check never skips a left border with a cluster.
+	 * @param prefixChars all false, is used for the characters of the pattern, and reset before returning
+	 * @param prefixNoOccCount is used for the characters that do not occur in each genome
+	 * @return true if the left border can be skipped
+	 */
+	private boolean quorumUnreachable(int referenceGenomeNr, Chromosome referenceChromosome, int l, boolean[] prefixChars, int[] prefixNoOccCount) {
+		Arrays.fill(prefixNoOccCount, 0);
+		int size = 0;
+		int i = l;
+		boolean unreachable;
+		while (true) {
+			if (size >= param.getMinClusterSize()) {
+				unreachable = false;
+				break;
+			}
+			if (i > referenceChromosome.getEffectiveGeneNumber()) {
+				unreachable = true;
+				break;
+			}
+			int c = referenceChromosome.getGene(i);
+			if (c >= 0 && referenceChromosome.getGene(l - 1) == c) {
+				unreachable = true;
+				break;
+			}
+			while (i < referenceChromosome.getEffectiveGeneNumber() && referenceChromosome.getGene(i + 1) > 0
+					&& (prefixChars[referenceChromosome.getGene(i + 1)] || referenceChromosome.getGene(i + 1) == c))
+				i++;
+			if (c >= 0) {
+				prefixChars[c] = true;
+				size++;
+			} else {
+				size -= c;
 			}
+
+			for (int k=0; k<genomes.size(); k++) {
+				if (param.searchRefInRef() && k == genomes.size()-1)
+					prefixNoOccCount[k] += (c < 0) ? -c : 0;
+				else
+					prefixNoOccCount[k] += genomes.get(k).noOcc(c);
+			}
+			if (countNonOccs(prefixNoOccCount, param.getMaximumDelta()) > param.getMaxUncoveredGenomes()) {
+				unreachable = true;
+				break;
+			}
+			i++;
 		}
-		
-		refClusterList.add(newCluster);
-		return true;
+
+		for (int j = l; j <= i && j <= referenceChromosome.getEffectiveGeneNumber(); j++)
+			if (referenceChromosome.getGene(j) >= 0)
+				prefixChars[referenceChromosome.getGene(j)] = false;
+		return unreachable;
 	}
 
+	/**
+	 * Computes the new delta locations of the pattern in the genomes [from, to) and merges them into the old lists.
+	 * Each genome only modifies its own list, so distinct ranges can be updated in parallel.
+	 * @param pattern the pattern after the last extension
+	 * @param referenceGenomeNr the number of the reference genome
+	 * @param oldLists the delta locations of the pattern before the extension, one list per genome
+	 * @param minHitsCovered is set to true for each genome that has a valid delta location after the update
+	 * @param from the first genome to update
+	 * @param to the genome after the last genome to update
+	 */
+	private void updateDeltaLocations(Pattern pattern, int referenceGenomeNr, List<ListOfDeltaLocations> oldLists, boolean[] minHitsCovered, int from, int to) {
+		for (int k=from; k<to; k++){
+			if(k != referenceGenomeNr){
+				ListOfDeltaLocations newList = pattern.computeNewOptimalDeltaLocations(genomes.get(k), param, oldLists.get(k).getPool());
+
+				if (param.searchRefInRef() && k == genomes.size()-1){
+					newList.removeRefDLocReferenceHit(pattern, pattern.getRefChromosomeNr());
+				}
+
+				oldLists.get(k).mergeLists(newList);
+				oldLists.get(k).checkForValidDeltaTableLocations(param, pattern.getSize());
+			}
+			minHitsCovered[k] = oldLists.get(k).minHitsCovered();
+		}
+	}
+
+	/**
+	 * Updates the delta locations of a range of genomes, splitting the range until it is
+	 * not larger than GENOME_UPDATE_GRANULARITY.
+	 */
+	private class DeltaLocationUpdateTask extends RecursiveAction {
+		private final Pattern pattern;
+		private final int referenceGenomeNr;
+		private final List<ListOfDeltaLocations> oldLists;
+		private final boolean[] minHitsCovered;
+		private final int from;
+		private final int to;
+
+		DeltaLocationUpdateTask(Pattern pattern, int referenceGenomeNr, List<ListOfDeltaLocations> oldLists, boolean[] minHitsCovered, int from, int to) {
+			this.pattern = pattern;
+			this.referenceGenomeNr = referenceGenomeNr;
+			this.oldLists = oldLists;
+			this.minHitsCovered = minHitsCovered;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GENOME_UPDATE_GRANULARITY) {
+				updateDeltaLocations(pattern, referenceGenomeNr, oldLists, minHitsCovered, from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new DeltaLocationUpdateTask(pattern, referenceGenomeNr, oldLists, minHitsCovered, from, middle),
+						new DeltaLocationUpdateTask(pattern, referenceGenomeNr, oldLists, minHitsCovered, middle, to));
+			}
+		}
+	}
+	
 	private boolean occursInValid_dLocs(int c, List<ListOfDeltaLocations> lists, int referenceGenomeNr){
 		for (int k=0; k<lists.size(); k++){
 			if (k == referenceGenomeNr)
@@ -344,7 +1133,7 @@ public class ReferenceClusterAlgorithm implements AlgorithmProgressProvider {
         if (listener != null) {
             progressListeners.add(listener);
             listener.algorithmProgressUpdate(new AlgorithmStatusEvent(maxProgressValue, AlgorithmStatusEvent.Task.Init));
-            listener.algorithmProgressUpdate(new AlgorithmStatusEvent(progressValue, AlgorithmStatusEvent.Task.ComputingClusters));
+            listener.algorithmProgressUpdate(new AlgorithmStatusEvent(progressValue.get(), AlgorithmStatusEvent.Task.ComputingClusters));
         }
     }
 
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+import de.unijena.bioinf.gecko3.datastructures.Parameter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The state of an all against all computation after a number of completed reference genomes:
+ * the range of completed reference genomes and the reference clusters found so far, in the order of the ReferenceClusterIndex.
+ * The final checkpoint of a shard, i.e. a computation with only a range of the reference genomes, is the shard file,
+ * the shard files of all ranges are merged to the result of the complete computation.
+ *
+ * The checkpoint file starts with MAGIC, VERSION and a fingerprint of the genomes and parameters,
+ * so a computation is only resumed or merged with the same input. The file is written to a temporary file first
+ * and then renamed, so a killed computation always leaves a complete checkpoint.
+ */
+class ReferenceClusterCheckpoint {
+    private static final int MAGIC = 0x47434B43; // "GCKC"
+    private static final int VERSION = 2;
+
+    private final int firstReference;
+    private final int completedReferences;
+    private final List<ReferenceCluster> clusters;
+
+    private ReferenceClusterCheckpoint(int firstReference, int completedReferences, List<ReferenceCluster> clusters) {
+        this.firstReference = firstReference;
+        this.completedReferences = completedReferences;
+        this.clusters = clusters;
+    }
+
+    /**
+     * @return the first reference genome of the computation
+     */
+    int getFirstReference() {
+        return firstReference;
+    }
+
+    /**
+     * @return the end of the completed reference genomes (exclusive), the computation continues with this reference genome
+     */
+    int getCompletedReferences() {
+        return completedReferences;
+    }
+
+    List<ReferenceCluster> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Computes the fingerprint of a computation, that is stored in the checkpoint.
+     * The number of threads is not part of the fingerprint, as it does not change the result,
+     * and neither is the shard, so the shard files of one computation have the same fingerprint.
+     * The statistics are computed after the detection, so a checkpoint is valid with and without statistics.
+     * @param genomes the genomes
+     * @param param the parameters
+     * @param genomeGrouping the genome grouping, or null
+     * @return the fingerprint
+     */
+    static long fingerprint(int[][][] genomes, Parameter param, List<Set<Integer>> genomeGrouping) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, genomes.length);
+        for (int[][] genome : genomes) {
+            hash = mix(hash, genome.length);
+            for (int[] chromosome : genome) {
+                hash = mix(hash, chromosome.length);
+                for (int gene : chromosome)
+                    hash = mix(hash, gene);
+            }
+        }
+        hash = mix(hash, param.getAlphabetSize());
+        hash = mix(hash, param.getMinClusterSize());
+        hash = mix(hash, param.getQ());
+        hash = mix(hash, param.getRefTypeChar());
+        hash = mix(hash, param.searchRefInRef() ? 1 : 0);
+        if (param.useDeltaTable()) {
+            for (int[] d : param.getDeltaTable())
+                for (int value : d)
+                    hash = mix(hash, value);
+        } else {
+            hash = mix(hash, param.getDelta());
+        }
+        if (genomeGrouping != null) {
+            hash = mix(hash, genomeGrouping.size());
+            for (Set<Integer> group : genomeGrouping) {
+                List<Integer> sortedGroup = new ArrayList<>(group);
+                Collections.sort(sortedGroup);
+                hash = mix(hash, sortedGroup.size());
+                for (Integer genome : sortedGroup)
+                    hash = mix(hash, genome);
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Writes the checkpoint
+     * @param file the checkpoint file, is replaced
+     * @param fingerprint the fingerprint of the computation
+     * @param firstReference the first reference genome of the computation
+     * @param completedReferences the end of the completed reference genomes (exclusive)
+     * @param clusters the reference clusters found so far
+     * @throws IOException
+     */
+    static void write(File file, long fingerprint, int firstReference, int completedReferences, List<ReferenceCluster> clusters) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(firstReference);
+            out.writeInt(completedReferences);
+            out.writeInt(clusters.size());
+            for (ReferenceCluster cluster : clusters)
+                writeCluster(out, cluster);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the checkpoint
+     * @param file the checkpoint file
+     * @param fingerprint the fingerprint of the computation that is resumed
+     * @return the checkpoint
+     * @throws IOException if the file can not be read, or was written by a computation with a different fingerprint
+     */
+    static ReferenceClusterCheckpoint read(File file, long fingerprint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(String.format("%s is not a checkpoint file.", file));
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(String.format("Unsupported checkpoint version %d in %s.", version, file));
+            if (in.readLong() != fingerprint)
+                throw new IOException(String.format("Checkpoint %s was written for different genomes or parameters.", file));
+            int firstReference = in.readInt();
+            int completedReferences = in.readInt();
+            int nrOfClusters = in.readInt();
+            List<ReferenceCluster> clusters = new ArrayList<>(nrOfClusters);
+            for (int i = 0; i < nrOfClusters; i++)
+                clusters.add(readCluster(in));
+            return new ReferenceClusterCheckpoint(firstReference, completedReferences, clusters);
+        }
+    }
+
+    private static void writeCluster(DataOutputStream out, ReferenceCluster cluster) throws IOException {
+        out.writeInt(cluster.getGenomeNr());
+        out.writeInt(cluster.getChrNr());
+        out.writeInt(cluster.getLeftBorder());
+        out.writeInt(cluster.getRightBorder());
+        out.writeInt(cluster.getSize());
+        out.writeInt(cluster.getCoveredGenomes());
+        out.writeInt(cluster.getCoveredGenomeGroups());
+        out.writeInt(cluster.getMaxDistance());
+        out.writeBoolean(cluster.searchRefInRef());
+        List<List<DeltaLocation>> dLocLists = cluster.getAllDeltaLocations();
+        out.writeInt(dLocLists.size());
+        for (List<DeltaLocation> dLocs : dLocLists) {
+            out.writeInt(dLocs.size());
+            for (DeltaLocation dLoc : dLocs) {
+                out.writeInt(dLoc.getGenomeNr());
+                out.writeInt(dLoc.getChrNr());
+                out.writeInt(dLoc.getL());
+                out.writeInt(dLoc.getR());
+                out.writeInt(dLoc.getDistance());
+                out.writeInt(dLoc.getMissingChars());
+                out.writeInt(dLoc.getAdditionalChars());
+                out.writeInt(dLoc.size());
+                out.writeInt(dLoc.getHitCount());
+                out.writeBoolean(dLoc.isValid());
+            }
+        }
+    }
+
+    private static ReferenceCluster readCluster(DataInputStream in) throws IOException {
+        int genomeNr = in.readInt();
+        int chrNr = in.readInt();
+        int leftBorder = in.readInt();
+        int rightBorder = in.readInt();
+        int size = in.readInt();
+        int coveredGenomes = in.readInt();
+        int coveredGenomeGroups = in.readInt();
+        int maxDistance = in.readInt();
+        boolean searchRefInRef = in.readBoolean();
+        int nrOfLists = in.readInt();
+        List<List<DeltaLocation>> dLocLists = new ArrayList<>(nrOfLists);
+        for (int k = 0; k < nrOfLists; k++) {
+            int nrOfDLocs = in.readInt();
+            List<DeltaLocation> dLocs = new ArrayList<>(nrOfDLocs);
+            for (int i = 0; i < nrOfDLocs; i++)
+                dLocs.add(new DeltaLocation(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readBoolean()));
+            dLocLists.add(dLocs);
+        }
+        return new ReferenceCluster(genomeNr, chrNr, leftBorder, rightBorder, size, coveredGenomes, coveredGenomeGroups, maxDistance, dLocLists, searchRefInRef);
+    }
+}
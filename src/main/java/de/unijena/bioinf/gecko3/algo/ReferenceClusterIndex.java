@@ -0,0 +1,293 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+import java.util.*;
+
+/**
+ * The reference clusters found so far, in the order of insertion, with an index over their delta locations.
+ *
+ * A cluster can only be nested in another cluster, if each of its delta locations lies inside a delta location
+ * of the other cluster in the same genome and chromosome. So every cluster has one anchor, a delta location in
+ * one of the genomes without the reference copy, and all delta locations in these genomes are indexed by genome,
+ * chromosome and left border. On insertion, only the clusters that contain the anchor of the new cluster, or whose
+ * anchor is contained in the new cluster, are checked with ReferenceCluster.areAll_dLocsNested(). They are checked
+ * in the order of insertion, so the result is identical to comparing the new cluster with all clusters.
+ */
+class ReferenceClusterIndex {
+	private final int nrOfGenomes;
+	private final LinkedHashMap<ReferenceCluster, IndexedCluster> clusters;
+	private final Map<Long, IntervalBucket> locations;
+	private final Map<Long, IntervalBucket> anchors;
+	private final Set<IndexedCluster> unanchored;
+	private long nextSequenceNr;
+
+	/**
+	 * @param nrOfGenomes the number of genomes without the reference copy, delta locations in the
+	 *                    reference copy are not indexed
+	 */
+	ReferenceClusterIndex(int nrOfGenomes) {
+		this.nrOfGenomes = nrOfGenomes;
+		this.clusters = new LinkedHashMap<>();
+		this.locations = new HashMap<>();
+		this.anchors = new HashMap<>();
+		this.unanchored = new LinkedHashSet<>();
+		this.nextSequenceNr = 0;
+	}
+
+	/**
+	 * @return the clusters in the order of insertion
+	 */
+	List<ReferenceCluster> getClusters() {
+		return new ArrayList<>(clusters.keySet());
+	}
+
+	int size() {
+		return clusters.size();
+	}
+
+	/**
+	 * Removes all clusters
+	 */
+	void clear() {
+		clusters.clear();
+		locations.clear();
+		anchors.clear();
+		unanchored.clear();
+	}
+
+	/**
+	 * Inserts the cluster, if it is not nested in one of the clusters,
+	 * and removes all clusters that are nested in the new cluster.
+	 * @param newCluster the new cluster
+	 * @return true if the cluster was inserted
+	 */
+	boolean checkAndInsert(ReferenceCluster newCluster) {
+		int anchorGenome = anchorGenome(newCluster);
+		DeltaLocation anchor = anchorGenome == -1 ? null : newCluster.getDeltaLocations(anchorGenome).get(0);
+
+		Collection<IndexedCluster> candidates;
+		if (anchor == null) {
+			candidates = clusters.values();
+		} else {
+			Set<IndexedCluster> candidateSet = new HashSet<>(unanchored);
+			IntervalBucket bucket = locations.get(key(anchorGenome, anchor.getChrNr()));
+			if (bucket != null)
+				bucket.addContaining(anchor.getL(), anchor.getR(), candidateSet);
+			for (int k=0; k<Math.min(nrOfGenomes, newCluster.getAllDeltaLocations().size()); k++){
+				for (DeltaLocation dLoc : newCluster.getDeltaLocations(k)){
+					bucket = anchors.get(key(k, dLoc.getChrNr()));
+					if (bucket != null)
+						bucket.addContained(dLoc.getL(), dLoc.getR(), candidateSet);
+				}
+			}
+			List<IndexedCluster> candidateList = new ArrayList<>(candidateSet);
+			Collections.sort(candidateList);
+			candidates = candidateList;
+		}
+
+		List<IndexedCluster> nestedClusters = new ArrayList<>();
+		boolean nested = false;
+		for (IndexedCluster other : candidates){
+			if (newCluster.areAll_dLocsNested(other.cluster)) {
+				nested = true;
+				break;
+			}
+			if (other.cluster.areAll_dLocsNested(newCluster))
+				nestedClusters.add(other);
+		}
+		for (IndexedCluster other : nestedClusters)
+			remove(other);
+		if (nested)
+			return false;
+
+		add(newCluster);
+		return true;
+	}
+
+	/**
+	 * Inserts the cluster without checking the nesting, used to restore the clusters of a checkpoint.
+	 * @param cluster the cluster, must not be nested in any of the clusters
+	 */
+	void add(ReferenceCluster cluster) {
+		int anchorGenome = anchorGenome(cluster);
+		DeltaLocation anchor = anchorGenome == -1 ? null : cluster.getDeltaLocations(anchorGenome).get(0);
+		IndexedCluster indexedCluster = new IndexedCluster(cluster, nextSequenceNr++, anchorGenome, anchor);
+		clusters.put(cluster, indexedCluster);
+		for (int k=0; k<Math.min(nrOfGenomes, cluster.getAllDeltaLocations().size()); k++)
+			for (DeltaLocation dLoc : cluster.getDeltaLocations(k))
+				getBucket(locations, k, dLoc.getChrNr()).add(dLoc, indexedCluster);
+		if (anchor != null)
+			getBucket(anchors, anchorGenome, anchor.getChrNr()).add(anchor, indexedCluster);
+		else
+			unanchored.add(indexedCluster);
+	}
+
+	/**
+	 * @return the first genome without the reference copy that contains a delta location of the cluster, or -1
+	 */
+	private int anchorGenome(ReferenceCluster cluster) {
+		for (int k=0; k<Math.min(nrOfGenomes, cluster.getAllDeltaLocations().size()); k++)
+			if (!cluster.getDeltaLocations(k).isEmpty())
+				return k;
+		return -1;
+	}
+
+	/**
+	 * Merges the hits in the reference copy into the reference genome for all clusters, see
+	 * ReferenceCluster.mergeAdditionalReferenceHits(), and removes all clusters that are left with only one hit.
+	 * @param numberOfGenomes the number of genomes including the reference copy
+	 */
+	void mergeAdditionalReferenceHits(int numberOfGenomes) {
+		List<IndexedCluster> removed = new ArrayList<>();
+		for (IndexedCluster indexedCluster : clusters.values()){
+			ReferenceCluster cluster = indexedCluster.cluster;
+			if (cluster.getAllDeltaLocations().size() != numberOfGenomes) {
+				continue;
+			}
+			List<DeltaLocation> refInRefList = cluster.getDeltaLocations(numberOfGenomes - 1);
+			if (!cluster.mergeAdditionalReferenceHits(numberOfGenomes)) {
+				removed.add(indexedCluster);
+			} else if (cluster.getGenomeNr() < nrOfGenomes) {
+				// the remaining hits of the reference copy are now part of the reference genome
+				for (DeltaLocation dLoc : refInRefList)
+					getBucket(locations, cluster.getGenomeNr(), dLoc.getChrNr()).add(dLoc, indexedCluster);
+			}
+		}
+		for (IndexedCluster indexedCluster : removed)
+			remove(indexedCluster);
+	}
+
+	private void remove(IndexedCluster indexedCluster) {
+		ReferenceCluster cluster = indexedCluster.cluster;
+		clusters.remove(cluster);
+		for (int k=0; k<Math.min(nrOfGenomes, cluster.getAllDeltaLocations().size()); k++){
+			for (DeltaLocation dLoc : cluster.getDeltaLocations(k)){
+				IntervalBucket bucket = locations.get(key(k, dLoc.getChrNr()));
+				if (bucket != null)
+					bucket.remove(dLoc);
+			}
+		}
+		if (indexedCluster.anchor != null)
+			anchors.get(key(indexedCluster.anchorGenome, indexedCluster.anchor.getChrNr())).remove(indexedCluster.anchor);
+		else
+			unanchored.remove(indexedCluster);
+	}
+
+	private static long key(int genome, int chr) {
+		return ((long) genome << 32) | (chr & 0xffffffffL);
+	}
+
+	private static IntervalBucket getBucket(Map<Long, IntervalBucket> buckets, int genome, int chr) {
+		Long key = key(genome, chr);
+		IntervalBucket bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = new IntervalBucket();
+			buckets.put(key, bucket);
+		}
+		return bucket;
+	}
+
+	private static class IndexedCluster implements Comparable<IndexedCluster> {
+		final ReferenceCluster cluster;
+		final long sequenceNr;
+		final int anchorGenome;
+		final DeltaLocation anchor;
+
+		IndexedCluster(ReferenceCluster cluster, long sequenceNr, int anchorGenome, DeltaLocation anchor) {
+			this.cluster = cluster;
+			this.sequenceNr = sequenceNr;
+			this.anchorGenome = anchorGenome;
+			this.anchor = anchor;
+		}
+
+		@Override
+		public int compareTo(IndexedCluster o) {
+			return Long.compare(sequenceNr, o.sequenceNr);
+		}
+	}
+
+	/**
+	 * The delta locations of one genome and chromosome, sorted by their left border.
+	 * As the longest stored interval is known, the intervals containing [l, r] are found
+	 * by scanning only the left borders in [r - maxLength, l].
+	 */
+	private static class IntervalBucket {
+		private final TreeMap<Integer, List<Entry>> byLeftBorder = new TreeMap<>();
+		private int maxLength = 0;
+
+		void add(DeltaLocation dLoc, IndexedCluster owner) {
+			List<Entry> entries = byLeftBorder.get(dLoc.getL());
+			if (entries == null) {
+				entries = new ArrayList<>(2);
+				byLeftBorder.put(dLoc.getL(), entries);
+			}
+			entries.add(new Entry(dLoc, owner));
+			maxLength = Math.max(maxLength, dLoc.getR() - dLoc.getL());
+		}
+
+		void remove(DeltaLocation dLoc) {
+			List<Entry> entries = byLeftBorder.get(dLoc.getL());
+			if (entries == null)
+				return;
+			for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ){
+				if (it.next().dLoc == dLoc) {
+					it.remove();
+					break;
+				}
+			}
+			if (entries.isEmpty())
+				byLeftBorder.remove(dLoc.getL());
+		}
+
+		/**
+		 * Adds the owners of all intervals that contain [l, r]
+		 */
+		void addContaining(int l, int r, Set<IndexedCluster> result) {
+			if (r - maxLength > l)
+				return;
+			for (List<Entry> entries : byLeftBorder.subMap(r - maxLength, true, l, true).values())
+				for (Entry entry : entries)
+					if (entry.dLoc.getR() >= r)
+						result.add(entry.owner);
+		}
+
+		/**
+		 * Adds the owners of all intervals that lie inside [l, r]
+		 */
+		void addContained(int l, int r, Set<IndexedCluster> result) {
+			for (List<Entry> entries : byLeftBorder.subMap(l, true, r, true).values())
+				for (Entry entry : entries)
+					if (entry.dLoc.getR() <= r)
+						result.add(entry.owner);
+		}
+	}
+
+	private static class Entry {
+		final DeltaLocation dLoc;
+		final IndexedCluster owner;
+
+		Entry(DeltaLocation dLoc, IndexedCluster owner) {
+			this.dLoc = dLoc;
+			this.owner = owner;
+		}
+	}
+}
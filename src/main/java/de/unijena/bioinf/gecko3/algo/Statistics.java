@@ -19,6 +19,7 @@
 
 package de.unijena.bioinf.gecko3.algo;
 
+import cern.jet.math.Arithmetic;
 import cern.jet.random.Binomial;
 import cern.jet.random.engine.MersenneTwister;
 import cern.jet.random.engine.RandomEngine;
@@ -29,9 +30,13 @@ import org.apache.commons.math3.util.Precision;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.CancellationException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class Statistics implements AlgorithmProgressProvider {
+	private static final double LOWER_BOUND_FACTOR = 1.0 - 1e-6;
+	private static final double MIN_LOWER_BOUND = 1e-300;
+
 	private final GenomeList genomes;
 	private final List<ReferenceCluster> refClusterList;
 	private final int delta;
@@ -41,13 +46,13 @@ class Statistics implements AlgorithmProgressProvider {
 	private final boolean useGenomeGrouping;
 	
 	private BigDecimal testedIntervals;	
-	private final RandomEngine random;
+	private final int nrOfThreads;
 
 	private final List<AlgorithmProgressListener> progressListeners;
 	private final int maxProgressValue;
-	private int progressValue;
+	private final AtomicInteger progressValue;
 	
-	private Statistics(GenomeList genomes, List<ReferenceCluster> refClusterList, int delta, boolean singleReference, int nrOfGenomeGroups, Map<Integer, Integer> genomeGroupMapping) {
+	private Statistics(GenomeList genomes, List<ReferenceCluster> refClusterList, int delta, boolean singleReference, int nrOfGenomeGroups, Map<Integer, Integer> genomeGroupMapping, int nrOfThreads) {
 		this.genomes = genomes;
 		this.refClusterList = refClusterList;
 		this.delta = delta;
@@ -56,40 +61,313 @@ class Statistics implements AlgorithmProgressProvider {
 		this.nrOfGenomeGroups = nrOfGenomeGroups;
 		this.genomeGroupMapping = genomeGroupMapping;
 		this.useGenomeGrouping = nrOfGenomeGroups != genomes.size();
-		
-		this.random = new MersenneTwister();
+		this.nrOfThreads = nrOfThreads;
 
 		progressListeners = new ArrayList<>();
 		maxProgressValue = genomes.size()* refClusterList.size() + refClusterList.size();
-		progressValue = 0;
+		progressValue = new AtomicInteger(0);
 	}
 	
 	public static void computeReferenceStatistics(GenomeList genomes, List<ReferenceCluster> refCluster, int delta, boolean singleReference, int nrOfGenomeGroups, Map<Integer, Integer> genomeGroupMapping, List<AlgorithmProgressListener> listeners) {
-		Statistics statistics = new Statistics(genomes, refCluster, delta, singleReference, nrOfGenomeGroups, genomeGroupMapping);
+		computeReferenceStatistics(genomes, refCluster, delta, singleReference, nrOfGenomeGroups, genomeGroupMapping, 1, listeners);
+	}
+
+	/**
+	 * Computes the p-values of all reference clusters.
+	 * With more than one thread, the single p-values of the genomes are computed in parallel, followed by the
+	 * combined p-values of the clusters. The FDR correction is always done sequentially at the end.
+	 * @param nrOfThreads the number of threads
+	 */
+	public static void computeReferenceStatistics(GenomeList genomes, List<ReferenceCluster> refCluster, int delta, boolean singleReference, int nrOfGenomeGroups, Map<Integer, Integer> genomeGroupMapping, int nrOfThreads, List<AlgorithmProgressListener> listeners) {
+		Statistics statistics = new Statistics(genomes, refCluster, delta, singleReference, nrOfGenomeGroups, genomeGroupMapping, nrOfThreads);
 		for (AlgorithmProgressListener listener : listeners)
 			statistics.addListener(listener);
 		
 		statistics.computeStatistics();
 	}
 
+	/**
+	 * Computes the p-values of the k reference clusters with the smallest combined p-value, without computing the
+	 * p-values of most other clusters.
+	 * For each cluster, a lower bound of the combined p-value is computed from the gene content, the covered genomes
+	 * and the possible reference occurrences, see lowerBoundOfCombined_pValue(). The clusters are processed in the
+	 * order of the bound, in batches of growing size, until the bound of the next cluster is larger than the k-th
+	 * smallest p-value found so far. The FDR correction of the result is the same as if all p-values were computed.
+	 * @param k the number of clusters, has to be >= 1
+	 * @param nrOfThreads the number of threads
+	 * @return the k clusters with the smallest combined p-value, in the order of refCluster, all clusters if there are
+	 * at most k clusters
+	 */
+	static List<ReferenceCluster> computeTopReferenceStatistics(GenomeList genomes, List<ReferenceCluster> refCluster, int delta, boolean singleReference, int nrOfGenomeGroups, Map<Integer, Integer> genomeGroupMapping, int k, int nrOfThreads, List<AlgorithmProgressListener> listeners) {
+		if (refCluster.size() <= k) {
+			computeReferenceStatistics(genomes, refCluster, delta, singleReference, nrOfGenomeGroups, genomeGroupMapping, nrOfThreads, listeners);
+			return refCluster;
+		}
+		Statistics statistics = new Statistics(genomes, refCluster, delta, singleReference, nrOfGenomeGroups, genomeGroupMapping, nrOfThreads);
+		for (AlgorithmProgressListener listener : listeners)
+			statistics.addListener(listener);
+
+		return statistics.computeTopStatistics(k);
+	}
+
+	/**
+	 * Computes the p-values of the occurrences of queried gene sets, see GeneSetQuery.
+	 * The clusters have no reference occurrence, so no p-value is set to 1.0, and the combined p-value is the
+	 * probability to find occurrences like the best occurrences in at least as many genomes as the cluster covers.
+	 * The p-values are not corrected for multiple testing, the corrected p-value is the combined p-value.
+	 * @param genomes the genomes, without the query
+	 * @param clusters the clusters, with the gene content of the query and one list of delta locations per genome
+	 * @param delta the maximum distance
+	 * @param nrOfThreads the number of threads
+	 */
+	static void computeQueryStatistics(GenomeList genomes, List<ReferenceCluster> clusters, int delta, int nrOfThreads) {
+		Statistics statistics = new Statistics(genomes, clusters, delta, false, genomes.size(), null, nrOfThreads);
+		statistics.computeQueryStatistics();
+	}
+
+	private void computeQueryStatistics() {
+		final int maxClusterSize = getMaxRefClusterSize() + delta;
+
+		forEachIndex(genomes.size(), new IndexedTask() {
+			@Override
+			public void run(int k) {
+				computeSinglePValuesForGenome(k, maxClusterSize, refClusterList);
+			}
+		});
+
+		forEachIndex(refClusterList.size(), new IndexedTask() {
+			@Override
+			public void run(int i) {
+				ReferenceCluster cluster = refClusterList.get(i);
+				BigDecimal pValue = combine_pValuesWithQuorum(determineBestOccurrences(cluster), cluster.getCoveredGenomes());
+				cluster.setBestCombined_pValue(pValue);
+				cluster.setBestCombined_pValueCorrected(pValue);
+			}
+		});
+	}
+
 	private void computeStatistics() {
+		computeCombined_pValues(refClusterList, getMaxRefClusterSize() + delta);
+
+		fdrCorrection(refClusterList);
+	}
+
+	/**
+	 * Computes the combined p-values of the clusters, and chooses their reference occurrences.
+	 * @param clusters the clusters
+	 * @param maxClusterSize the maximal cluster size plus delta, at least for all clusters
+	 */
+	private void computeCombined_pValues(final List<ReferenceCluster> clusters, final int maxClusterSize) {
+		// the genomes only modify their own delta locations
+		forEachIndex(genomes.size(), new IndexedTask() {
+			@Override
+			public void run(int k) {
+				computeSinglePValuesForGenome(k, maxClusterSize, clusters);
+			}
+		});
+
+		// the clusters only modify their own delta locations
+		forEachIndex(clusters.size(), new IndexedTask() {
+			@Override
+			public void run(int i) {
+				ReferenceCluster cluster = clusters.get(i);
+				double[] best_pValue = determineBestReferenceOccurrence(cluster);
+				cluster.setBestCombined_pValue(combine_pValuesWithQuorum(best_pValue, cluster.getCoveredGenomeGroups()));
+				//cluster.setBestCombined_pValueCorrected(bonferroniCorrection(cluster));
+			}
+		});
+	}
+
+	private List<ReferenceCluster> computeTopStatistics(int k) {
 		int maxClusterSize = getMaxRefClusterSize() + delta;
-		
+		final int[][] charFrequencies = new int[genomes.size()][];
+		for (int genomeNr=0; genomeNr<genomes.size(); genomeNr++) {
+			charFrequencies[genomeNr] = genomes.get(genomeNr).getCharFrequency(genomes.getAlphabetSize());
+			genomes.get(genomeNr).getNrOfPossibleIntervals(maxClusterSize);  // computes the lazy values before the threads read them
+		}
+
+		final BigDecimal[] lowerBound = new BigDecimal[refClusterList.size()];
+		forEachIndex(refClusterList.size(), new IndexedTask() {
+			@Override
+			public void run(int i) {
+				lowerBound[i] = lowerBoundOfCombined_pValue(refClusterList.get(i), charFrequencies);
+			}
+		});
+		List<Integer> order = new ArrayList<>(refClusterList.size());
+		for (int i=0; i<refClusterList.size(); i++)
+			order.add(i);
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return lowerBound[o1].compareTo(lowerBound[o2]);
+			}
+		});
+
+		// the k-th smallest p-value is the head of the heap
+		PriorityQueue<ReferenceCluster> topClusters = new PriorityQueue<>(k, new Comparator<ReferenceCluster>() {
+			@Override
+			public int compare(ReferenceCluster o1, ReferenceCluster o2) {
+				return o2.getBestCombined_pValue().compareTo(o1.getBestCombined_pValue());
+			}
+		});
+		int next = 0;
+		int batchSize = k;
+		while (next < order.size()) {
+			List<ReferenceCluster> batch = new ArrayList<>(batchSize);
+			while (next < order.size() && batch.size() < batchSize) {
+				if (topClusters.size() == k && lowerBound[order.get(next)].compareTo(topClusters.peek().getBestCombined_pValue()) > 0)
+					break;
+				batch.add(refClusterList.get(order.get(next++)));
+			}
+			if (batch.isEmpty())
+				break;
+
+			computeCombined_pValues(batch, maxClusterSize);
+			for (ReferenceCluster cluster : batch) {
+				if (topClusters.size() < k) {
+					topClusters.add(cluster);
+				} else if (cluster.getBestCombined_pValue().compareTo(topClusters.peek().getBestCombined_pValue()) < 0) {
+					topClusters.poll();
+					topClusters.add(cluster);
+				}
+			}
+			batchSize *= 2;
+		}
+
+		Set<ReferenceCluster> selected = Collections.newSetFromMap(new IdentityHashMap<ReferenceCluster, Boolean>());
+		selected.addAll(topClusters);
+		List<ReferenceCluster> result = new ArrayList<>(k);
+		for (ReferenceCluster cluster : refClusterList)
+			if (selected.contains(cluster))
+				result.add(cluster);
+		fdrCorrection(result);
+		return result;
+	}
+
+	/**
+	 * A lower bound of the combined p-value computeStatistics() computes for the cluster.
+	 * If m genes of the gene content C do not occur in a genome, the p-value of an occurrence with distance d >= m
+	 * is at least the probability that one of the intervals of length s = |C| - m is a permutation of the other genes,
+	 * i.e. 1 - (1 - s! * prod(f_c / n))^i, with the frequencies f_c of the genes in the genome, the length n of the
+	 * genome and the number i of intervals of length s. This is the term of the interval length s and the distance m
+	 * of the p-value, see p_L_d(). The bound holds for all occurrences of the genome, which have at least the smallest
+	 * distance, so it is a bound of the best p-value of each genome group.
+	 * The combined p-value only grows with the single p-values, and the reference occurrence, whose p-value is 1.0,
+	 * is assumed in the group with the largest bound of all groups that contain an occurrence with distance 0.
+	 * @param charFrequencies the char frequencies of each genome
+	 * @return the lower bound
+	 */
+	private BigDecimal lowerBoundOfCombined_pValue(ReferenceCluster cluster, int[][] charFrequencies) {
+		double[] lowerBound = new double[nrOfGenomeGroups];
+		Arrays.fill(lowerBound, 1.0);
 		for (int k=0; k<genomes.size(); k++){
-			computeSinglePValuesForGenome(k, maxClusterSize);
+			int minDistance = cluster.getMaxDistance();  // the distance of the artificial delta location
+			for (DeltaLocation dLoc : cluster.getDeltaLocations(k))
+				minDistance = Math.min(minDistance, dLoc.getDistance());
+			int genomeGroup = useGenomeGrouping ? genomeGroupMapping.get(k) : k;
+			lowerBound[genomeGroup] = Math.min(lowerBound[genomeGroup], lowerBoundOfSingle_pValue(genomes.get(k), cluster.getGeneContent(), charFrequencies[k], minDistance));
 		}
 
-		for (ReferenceCluster cluster : refClusterList) {
-			double[] best_pValue = determineBestReferenceOccurrence(cluster);
-			cluster.setBestCombined_pValue(combine_pValuesWithQuorum(best_pValue, cluster.getCoveredGenomeGroups()));
-			//cluster.setBestCombined_pValueCorrected(bonferroniCorrection(cluster));
+		int referenceGroup = -1;
+		for (int k=0; k<genomes.size(); k++){
+			if (singleReference && k != 0)
+				break;
+			int genomeGroup = useGenomeGrouping ? genomeGroupMapping.get(k) : k;
+			if ((referenceGroup == -1 || lowerBound[genomeGroup] > lowerBound[referenceGroup]) && containsExactOccurrence(cluster, k))
+				referenceGroup = genomeGroup;
 		}
+		if (referenceGroup != -1)
+			lowerBound[referenceGroup] = 1.0;
 
-		fdrCorrection(refClusterList);
+		return combine_pValuesWithQuorum(lowerBound, cluster.getCoveredGenomeGroups());
+	}
+
+	/**
+	 * A lower bound of the p-value of the occurrences of the gene content in the genome, see lowerBoundOfCombined_pValue().
+	 * The bound is slightly reduced, so rounding errors do not move it above the computed p-value,
+	 * and bounds that are too small to be distinguished from a p-value of 0.0 are 0.0.
+	 * @param minDistance the smallest distance of the occurrences
+	 */
+	private static double lowerBoundOfSingle_pValue(Genome genome, List<Integer> geneContent, int[] charFrequencies, int minDistance) {
+		int size = 0;
+		double logPermutation = 0.0;
+		double logLength = Math.log(genome.getLength());
+		for (Integer gene : geneContent) {
+			if (gene >= 0 && charFrequencies[gene] > 0) {
+				size++;
+				logPermutation += Math.log(charFrequencies[gene]) - logLength;
+			}
+		}
+		// p_L_d() only contains the permutations of the occurring genes, if at least two genes occur
+		if (geneContent.size() - size > minDistance || size < 2)
+			return 0.0;
+		int intervals = genome.getNrOfPossibleIntervals(size);
+		logPermutation += Arithmetic.logFactorial(size);
+		if (intervals == 0 || logPermutation >= 0.0)
+			return 0.0;
+
+		double bound = -Math.expm1(intervals * Math.log1p(-Math.exp(logPermutation))) * LOWER_BOUND_FACTOR;
+		return (bound < MIN_LOWER_BOUND) ? 0.0 : bound;
+	}
+
+	private static boolean containsExactOccurrence(ReferenceCluster cluster, int genomeNr) {
+		for (DeltaLocation dLoc : cluster.getDeltaLocations(genomeNr))
+			if (dLoc.getDistance() == 0 && dLoc.getChrNr() != -1)
+				return true;
+		return false;
+	}
+
+
+	private interface IndexedTask {
+		void run(int index);
+	}
+
+	/**
+	 * Runs the task for all indices from 0 to n-1. With more than one thread, the indices are distributed
+	 * over nrOfThreads worker threads, otherwise they are processed in order in the calling thread.
+	 * @param n the number of indices
+	 * @param task the task
+	 */
+	private void forEachIndex(final int n, final IndexedTask task) {
+		int nrOfWorkers = Math.min(nrOfThreads, n);
+		if (nrOfWorkers <= 1) {
+			for (int i=0; i<n; i++)
+				task.run(i);
+			return;
+		}
+
+		final AtomicInteger nextIndex = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(nrOfWorkers);
+		try {
+			List<Future<Void>> futures = new ArrayList<>(nrOfWorkers);
+			for (int w=0; w<nrOfWorkers; w++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						int i;
+						while ((i = nextIndex.getAndIncrement()) < n)
+							task.run(i);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			throw new CancellationException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
 	}
 
 	private double[] determineBestReferenceOccurrence(ReferenceCluster cluster){
-		fireProgressUpdateEvent(new AlgorithmStatusEvent(progressValue++, AlgorithmStatusEvent.Task.ComputingStatistics));
+		fireProgressUpdateEvent(new AlgorithmStatusEvent(progressValue.getAndIncrement(), AlgorithmStatusEvent.Task.ComputingStatistics));
 		double[] best_pValue = new double[nrOfGenomeGroups];  // init with 0.0
 
 		double bestRefLoc_pValue = 0.0;
@@ -129,6 +407,30 @@ class Statistics implements AlgorithmProgressProvider {
 		return best_pValue;
 	}
 	
+	/**
+	 * Like determineBestReferenceOccurrence(), without choosing a reference occurrence.
+	 * Removes the artificial delta locations.
+	 * @return the best p-value of each genome
+	 */
+	private double[] determineBestOccurrences(ReferenceCluster cluster){
+		double[] best_pValue = new double[genomes.size()];  // init with 0.0
+
+		for (int k=0; k<genomes.size(); k++){
+			Iterator<DeltaLocation> dLocIt = cluster.getDeltaLocations(k).iterator();
+			while(dLocIt.hasNext()){
+				DeltaLocation dLoc = dLocIt.next();
+
+				double pValue = dLoc.getpValue();
+				if (pValue != 0.0 && (best_pValue[k] == 0.0 || pValue < best_pValue[k]))
+					best_pValue[k] = pValue;
+
+				if (dLoc.getChrNr() == -1)
+					dLocIt.remove();
+			}
+		}
+		return best_pValue;
+	}
+
 	private BigDecimal bonferroniCorrection(ReferenceCluster cluster) {
 		if (testedIntervals == null){
 			int tmpTestedIntervals = 0;
@@ -180,142 +482,20 @@ class Statistics implements AlgorithmProgressProvider {
 		}
 	}
 	
-	private BigDecimal combine_pValuesWithQuorumBD(double[] pValue,
-			int K, int Q) {
-		BigDecimal[] bd = new BigDecimal[pValue.length];
-		for (int i=0; i<pValue.length; i++)
-			bd[i] = new BigDecimal(pValue[i]);
-		return combine_pValuesWithQuorumBD(bd, K, Q);
-	}
-
-	private BigDecimal combine_pValuesWithQuorumBD(BigDecimal[] pValue,
-			int K, int Q) {
-		if (Q == K){
-			BigDecimal combined = BigDecimal.ONE;
-			for (int k=0; k<K; k++)
-				combined = combined.multiply(pValue[k]);
-			return combined;
-		}
-		
-		BigDecimal[] pArray = new BigDecimal[K+1];
-		Arrays.fill(pArray, BigDecimal.ZERO);
-		
-		int i=0;
-		int offset = 0;
-		while(pValue[i].equals( BigDecimal.ONE)){
-			offset++;
-			i++;
-		}
-		if (i >= Q)
-			return BigDecimal.ONE;
-		
-		BigDecimal q0 = pValue[i];
-		pArray[0] = BigDecimal.ONE.subtract(pValue[i]);
-		pArray[1] = pValue[i];
-		
-		i++;
-		
-		for (; i<K; i++){
-			if (pValue[i].equals(BigDecimal.ONE)){
-				offset++;
-				continue;
-			}
-			for (int j=Math.min(i+1, K)-offset; j>=0; j--){
-				if (j > 1){
-					BigDecimal mul1 = pArray[j].multiply(pValue[i]);
-					BigDecimal mul2 = pArray[j-1].multiply(pValue[i]);
-					BigDecimal sub = pArray[j].subtract(mul1);
-					pArray[j] = sub.add(mul2);
-				} else if (j == 1){
-					BigDecimal mul1 = pArray[j].multiply(pValue[i]);
-					BigDecimal sub1 = pArray[j].subtract(mul1);
-					BigDecimal add = sub1.add(pValue[i]);
-					BigDecimal mul2 = pArray[i].multiply(q0);
-					pArray[j] = add.subtract(mul2);
-				} else {
-					BigDecimal add = pValue[i].add(q0);
-					BigDecimal mul = pValue[i].multiply(q0);
-					q0 = add.subtract(mul);
-				}
-			}
-		}
-		
-		assert(Q-offset > 0); // will not work if Q or rather (Q-offset) is 0, but that does not make sense for our gene clusters!
-		
-		BigDecimal sum = BigDecimal.ZERO;
-		for (int j=Q-offset; j<=K-offset; j++)
-			sum = sum.add(pArray[j]);
-			
-		return sum;
-	}
-	
 	private BigDecimal combine_pValuesWithQuorum(double[] pValue, int q) {
-		if (q == pValue.length || q == genomes.size()){
-			Probability combined = Probability.ONE;
-			for (double aPValue : pValue)
-				combined = combined.multiply(aPValue);
-			return combined.toBigDecimal();
-		}
-		
-		Probability[] qArray = new Probability[pValue.length+1];
-		Arrays.fill(qArray, Probability.ZERO);
-		
-		int i=0;
-		int offset = 0;
-		while(pValue[i] == 1.0){
-			offset++;
-			i++;
-		}
-		if (i >= q)
-			return BigDecimal.ONE;
-		
-		Probability q0 = new Probability(pValue[i]);
-		qArray[0] = Probability.ONE.subtract(pValue[i]); // should never be used, we use q0 instead
-		qArray[1] = new Probability(pValue[i]);
-		
-		i++;
-		
-		for (; i<pValue.length; i++){
-			if (pValue[i] == 1.0){
-				offset++;
-				continue;
-			}
-			for (int j=Math.min(i+1, pValue.length)-offset; j>=0; j--){
-				if (j > 1){
-					// (Qj - Qj*Pi) * (Q(j-1)*Pi)
-					Probability mul1 = qArray[j].multiply(pValue[i]); // Qj - Qj*Pi
-					Probability sub = qArray[j].subtract(mul1);       // == Qj*(1-Pi)
-
-					Probability mul2 = qArray[j-1].multiply(pValue[i]); // Q(j-1)*Pi
-
-					qArray[j] = sub.add(mul2);
-				} else if (j == 1){
-					// Qj - Pi*Qj + Pi - Pi*q0 == Qj(1-Pi) + Pi(1-q0)
-					Probability mul1 = qArray[j].multiply(pValue[i]);  // Qj - Qj*Pi
-					Probability sub1 = qArray[j].subtract(mul1);       // == Qj*(1-Pi)
-					Probability add = sub1.add(pValue[i]);
-					Probability mul2 = q0.multiply(pValue[i]);
-					qArray[j] = add.subtract(mul2);
-				} else {
-					q0=q0.add(pValue[i]).subtract(q0.multiply(pValue[i]));
-				}
-			}
-		}
-		
-		Probability sum = Probability.ZERO;
-		for (int j=Math.max(1, q-offset); j<=pValue.length-offset; j++)
-			sum = sum.add(qArray[j]);
-			
-		return sum.toBigDecimal();
+		if (q == pValue.length || q == genomes.size())
+			return QuorumPValues.toBigDecimal(QuorumPValues.logProduct(pValue));
+		return QuorumPValues.toBigDecimal(QuorumPValues.logCombineWithQuorum(pValue, q));
 	}
 
-	private void computeSinglePValuesForGenome(int genomeNr, int maxClusterSize){
+	private void computeSinglePValuesForGenome(int genomeNr, int maxClusterSize, List<ReferenceCluster> clusters){
 		int[] charFrequencies = genomes.get(genomeNr).getCharFrequency(genomes.getAlphabetSize());
 		double[] globalProbabilityForDifferentCharHits = computeGlobalProbabilityForDifferentCharHits(charFrequencies);
-		PTable pPlusTable = new PTable(globalProbabilityForDifferentCharHits, maxClusterSize, delta, random);
+		RandomEngine random = new MersenneTwister();  // not thread safe, so one per genome
+		PTable pPlusTable = PTableCache.getSharedCache().getPTable(globalProbabilityForDifferentCharHits, maxClusterSize, delta);
 
-		for (ReferenceCluster cluster : refClusterList){
-			fireProgressUpdateEvent(new AlgorithmStatusEvent(progressValue++, AlgorithmStatusEvent.Task.ComputingStatistics));
+		for (ReferenceCluster cluster : clusters){
+			fireProgressUpdateEvent(new AlgorithmStatusEvent(progressValue.getAndIncrement(), AlgorithmStatusEvent.Task.ComputingStatistics));
 			if (cluster.getDeltaLocations(genomeNr).isEmpty()){
 				DeltaLocation artificial_dLoc = DeltaLocation.getArtificialDeltaLocation(genomeNr, cluster.getMaxDistance());
 				cluster.getDeltaLocations(genomeNr).add(artificial_dLoc);					
@@ -325,7 +505,7 @@ class Statistics implements AlgorithmProgressProvider {
 					dLoc.setpValue(1.0);                                         // does not need p-value
 				else {
 					// For individual distance bound
-					dLoc.setpValue(prob_C_has_approxOccInGenome(dLoc.getDistance(), genomes.get(genomeNr), cluster.getGeneContent(), pPlusTable, charFrequencies));
+					dLoc.setpValue(prob_C_has_approxOccInGenome(dLoc.getDistance(), genomes.get(genomeNr), cluster.getGeneContent(), pPlusTable, charFrequencies, random));
 					// For global distance bound
 					//dLoc.setpValue(prob_C_has_approxOccInGenome(cluster.getMaxDistance(), genomes.get(genomeNr).getLength(), genomes.getAlphabetSize(), cluster.getGeneContent(), pPlusTable, charFrequencies));
 				}
@@ -334,7 +514,7 @@ class Statistics implements AlgorithmProgressProvider {
 	}
 	
 	private double prob_C_has_approxOccInGenome(int delta, Genome genome,
-			List<Integer> geneContent, PTable pPlusTable, int[] charFrequencies) {
+			List<Integer> geneContent, PTable pPlusTable, int[] charFrequencies, RandomEngine random) {
 
 		if (noDLocPossible(geneContent, delta, charFrequencies))
 			return 0.0;
@@ -342,7 +522,7 @@ class Statistics implements AlgorithmProgressProvider {
 		double[] localCharProb = computeLocalCharProb(geneContent, charFrequencies);
 		double probOfC = elementOfC_Prob(geneContent, charFrequencies, genome.getLength());
 		
-		PTable pTable = new PTable(localCharProb, geneContent.size(), geneContent.size(), random);
+		PTable pTable = new PTable(localCharProb, geneContent.size(), geneContent.size());
 		
 		double log = 0.0;
 		int L = Math.max(1, geneContent.size()-delta);
@@ -350,7 +530,7 @@ class Statistics implements AlgorithmProgressProvider {
 		while (notEqual){
             if (genome.getNrOfPossibleIntervals(L) == 0)
                 break;
-			double newLog = log + genome.getNrOfPossibleIntervals(L)*Math.log1p(-1.0*q_L_delta(delta, L, probOfC, geneContent.size(), pTable, pPlusTable));
+			double newLog = log + genome.getNrOfPossibleIntervals(L)*Math.log1p(-1.0*q_L_delta(delta, L, probOfC, geneContent.size(), pTable, pPlusTable, random));
 			
 			if (L >= geneContent.size())
 				notEqual = !Precision.equalsWithRelativeTolerance(log, newLog, 0.0000001);
@@ -369,16 +549,16 @@ class Statistics implements AlgorithmProgressProvider {
 	}
 
 	private double q_L_delta(int delta, int L, double probOfC, int sizeOfC, PTable pMinusTable,
-			PTable pPlusTable) {
+			PTable pPlusTable, RandomEngine random) {
 		double sum = 0.0;
 		for (int d=0; d<=delta; d++)
-			sum += p_L_d(d, L, probOfC, sizeOfC, pMinusTable, pPlusTable);
+			sum += p_L_d(d, L, probOfC, sizeOfC, pMinusTable, pPlusTable, random);
 		
 		return sum;
 	}
 
 	private double p_L_d(int d, int L, double probOfC,
-			int sizeOfC, PTable pMinusTable, PTable pPlusTable) {
+			int sizeOfC, PTable pMinusTable, PTable pPlusTable, RandomEngine random) {
 		double prob = 0.0;
 		Binomial binomial = null;
 		if (probOfC < 1.0) //!=
@@ -479,7 +659,7 @@ class Statistics implements AlgorithmProgressProvider {
 		if (listener != null) {
 			progressListeners.add(listener);
 			listener.algorithmProgressUpdate(new AlgorithmStatusEvent(maxProgressValue, AlgorithmStatusEvent.Task.Init));
-			listener.algorithmProgressUpdate(new AlgorithmStatusEvent(progressValue, AlgorithmStatusEvent.Task.ComputingStatistics));
+			listener.algorithmProgressUpdate(new AlgorithmStatusEvent(progressValue.get(), AlgorithmStatusEvent.Task.ComputingStatistics));
 		}
 	}
 
@@ -20,18 +20,24 @@
 package de.unijena.bioinf.gecko3.commandLine;
 
 import de.unijena.bioinf.gecko3.GeckoInstance;
-import de.unijena.bioinf.gecko3.datastructures.GeneCluster;
-import de.unijena.bioinf.gecko3.datastructures.Genome;
-import de.unijena.bioinf.gecko3.datastructures.Parameter;
+import de.unijena.bioinf.gecko3.algo.GeneClusterSink;
+import de.unijena.bioinf.gecko3.algo.GeneSetQuery;
+import de.unijena.bioinf.gecko3.algo.ParameterSweepSink;
+import de.unijena.bioinf.gecko3.datastructures.*;
 import de.unijena.bioinf.gecko3.io.DataSetWriter;
 import de.unijena.bioinf.gecko3.io.ResultWriter;
+import de.unijena.bioinf.gecko3.io.StreamingResultWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -63,6 +69,11 @@ public class CommandLineExecution {
                 GeckoInstance.getInstance().reorderGenomes(index);
             }
 
+            if (options.isParameterSweep()) {
+                computeParameterSweep(options, refType);
+                return;
+            }
+
             Parameter parameter;
             if (options.getMaxDistance() >= 0)
                 parameter = new Parameter(options.getMaxDistance(), options.getMinClusterSize(), options.getMinCoveredGenomes(), options.getOperationMode(), refType, options.refInRef(), options.noStatistics());
@@ -83,14 +94,37 @@ public class CommandLineExecution {
                 }
                 parameter = new Parameter(distanceTable, minSize, options.getMinCoveredGenomes(), options.getOperationMode(), refType, options.refInRef(), options.noStatistics());
             }
+            setAlgorithmOptions(parameter, options);
+            if (options.getCheckpointFile() != null) {
+                parameter.setCheckpointFile(options.getCheckpointFile());
+                parameter.setCheckpointInterval(options.getCheckpointInterval() * 60000L);
+                parameter.setResumeFromCheckpoint(options.resume());
+            }
+            if (!options.getShardFilesToMerge().isEmpty())
+                parameter.setShardFilesToMerge(options.getShardFilesToMerge());
 
-            // compute the clusters
-            SwingWorker<List<GeneCluster>, Void> worker = GeckoInstance.getInstance().performClusterDetection(parameter, false, options.getGenomeGroupingFactor());
-            try{
-                List<GeneCluster> results = worker.get(); // Blocks until worker is done()
-                GeckoInstance.getInstance().setClusters(results, parameter);
-            } catch (InterruptedException | ExecutionException e) {
-                logger.error("Error in cluster detection!", e);
+            if (options.getShardOutfile() != null) {
+                parameter.setShard(options.getShardIndex(), options.getNrOfShards(), options.getShardOutfile());
+                computeShard(options, parameter);
+                return;
+            }
+
+            if (options.streamResults()) {
+                streamResults(options, parameter);
+                return;
+            }
+
+            if (options.isGeneSetQuery()) {
+                GeckoInstance.getInstance().setClusters(queryGeneSets(options, parameter), parameter);
+            } else {
+                // compute the clusters
+                SwingWorker<List<GeneCluster>, Void> worker = GeckoInstance.getInstance().performClusterDetection(parameter, false, options.getGenomeGroupingFactor());
+                try{
+                    List<GeneCluster> results = worker.get(); // Blocks until worker is done()
+                    GeckoInstance.getInstance().setClusters(results, parameter);
+                } catch (InterruptedException | ExecutionException e) {
+                    logger.error("Error in cluster detection!", e);
+                }
             }
         }
 
@@ -101,7 +135,7 @@ public class CommandLineExecution {
                 outfile.delete();
 
             // Save session
-            DataSetWriter.saveDataSetToFile(GeckoInstance.getInstance().getData(), options.getOutfile());
+            DataSetWriter.saveDataSetToFile(GeckoInstance.getInstance().getData(), options.getOutfile(), options.getOutfileFormat());
         }
         List<OutputOption> outputOptions = options.getOutputOptions();
         for (OutputOption outputOption : outputOptions) {
@@ -112,4 +146,161 @@ public class CommandLineExecution {
             ResultWriter.exportResultsToFile(outfile, outputOption.getType(), outputOption.getFilter());
         }
     }
+
+    /**
+     * Sets the options of the algorithm that are not part of the parameter sweep.
+     */
+    private static void setAlgorithmOptions(Parameter parameter, CommandLineOptions options) {
+        parameter.setNrOfThreads(options.getNrOfThreads());
+        parameter.setCompactAlphabet(options.compactAlphabet());
+        parameter.setUseDistinctCountIndex(options.useDistinctCountIndex());
+        parameter.setTopClusters(options.getTopClusters());
+    }
+
+    /**
+     * Computes the clusters for all combinations of the sweep distances, sizes and quorums, and writes the .gck file
+     * and the result outputs of each setting, with the label of the setting added to the file names.
+     * Only the clusters of one setting are kept in the GeckoInstance at a time.
+     */
+    private static void computeParameterSweep(final CommandLineOptions options, Parameter.ReferenceType refType) {
+        List<Parameter> settings = new ArrayList<>();
+        for (int distance : options.getSweepDistances()) {
+            for (int size : options.getSweepSizes()) {
+                for (int quorum : options.getSweepQuorums()) {
+                    Parameter parameter = new Parameter(distance, size, quorum, options.getOperationMode(), refType, options.refInRef(), options.noStatistics());
+                    setAlgorithmOptions(parameter, options);
+                    settings.add(parameter);
+                }
+            }
+        }
+
+        final DataSet data = GeckoInstance.getInstance().getData();
+        List<Set<Integer>> genomeGroups = null;
+        if (options.getGenomeGroupingFactor() <= 1.0)
+            genomeGroups = BreakPointDistance.groupGenomes(data, options.getGenomeGroupingFactor(), false);
+
+        try {
+            GeckoInstance.computeClusterSweepJava(data, settings, genomeGroups, null, new ParameterSweepSink() {
+                @Override
+                public void accept(int settingIndex, Parameter setting, List<GeneCluster> clusters) {
+                    String label = sweepLabel(setting);
+                    GeckoInstance.getInstance().setClusters(clusters, setting);
+                    if (options.getOutfile() != null) {
+                        File outfile = labelledFile(options.getOutfile(), label);
+                        if (outfile.exists())
+                            outfile.delete();
+                        DataSetWriter.saveDataSetToFile(data, outfile, options.getOutfileFormat());
+                    }
+                    for (OutputOption outputOption : options.getOutputOptions()) {
+                        File outfile = labelledFile(outputOption.getFile(), label);
+                        if (outfile.exists())
+                            outfile.delete();
+                        ResultWriter.exportResultsToFile(outfile, outputOption.getType(), outputOption.getFilter());
+                    }
+                    logger.info("Computed {} gene clusters for {}.", clusters.size(), label);
+                }
+            });
+        } catch (IOException e) {
+            logger.error("Error writing the results!", e);
+        }
+    }
+
+    /**
+     * @return the label of the setting, e.g. "d1_s3_q4"
+     */
+    static String sweepLabel(Parameter setting) {
+        return String.format("d%d_s%d_q%d", setting.getDelta(), setting.getMinClusterSize(), setting.getQ());
+    }
+
+    /**
+     * Adds the label to the file name, in front of the extension
+     * @param file the file
+     * @param label the label
+     * @return the labelled file, e.g. "results_d1_s3_q4.txt" for "results.txt"
+     */
+    static File labelledFile(File file, String label) {
+        String name = file.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension <= 0)
+            return new File(file.getParentFile(), name + "_" + label);
+        return new File(file.getParentFile(), name.substring(0, extension) + "_" + label + name.substring(extension));
+    }
+
+    /**
+     * Finds the occurrences of the query gene family sets "-qG", followed by the query intervals "-qI".
+     * @return the gene clusters of the queries that occur in at least one genome
+     */
+    private static List<GeneCluster> queryGeneSets(CommandLineOptions options, Parameter parameter) {
+        DataSet data = GeckoInstance.getInstance().getData();
+        List<Set<GeneFamily>> queries = new ArrayList<>();
+        for (String ids : options.getQueryGeneFamilies()) {
+            Set<GeneFamily> geneFamilies = new LinkedHashSet<>();
+            for (String id : ids.split(",")) {
+                GeneFamily geneFamily = data.getGeneFamily(id.trim());
+                if (geneFamily == null)
+                    throw new IllegalArgumentException(String.format("Error! Gene family %s of the query (%s) does not exist!", id.trim(), ids));
+                geneFamilies.add(geneFamily);
+            }
+            queries.add(geneFamilies);
+        }
+        Genome[] genomes = data.getGenomes();
+        for (int[] interval : options.getQueryIntervals()) {
+            if (interval[0] >= genomes.length || interval[1] >= genomes[interval[0]].getChromosomes().size())
+                throw new IllegalArgumentException(String.format("Error! The chromosome of the query interval %d:%d:%d-%d does not exist!", interval[0] + 1, interval[1] + 1, interval[2], interval[3]));
+            queries.add(GeneSetQuery.getGeneFamilies(data, interval[0], interval[1], interval[2], interval[3]));
+        }
+
+        List<GeneCluster> results = GeckoInstance.queryGeneFamiliesJava(data, parameter, queries);
+        logger.info("Found occurrences of {} of {} queries.", results.size(), queries.size());
+        return results;
+    }
+
+    /**
+     * Computes the clusters of one shard and writes them to the shard file.
+     */
+    private static void computeShard(CommandLineOptions options, Parameter parameter) {
+        DataSet data = GeckoInstance.getInstance().getData();
+        List<Set<Integer>> genomeGroups = null;
+        if (options.getGenomeGroupingFactor() <= 1.0)
+            genomeGroups = BreakPointDistance.groupGenomes(data, options.getGenomeGroupingFactor(), false);
+
+        GeckoInstance.computeClustersJava(data, parameter, genomeGroups, null);
+        logger.info("Wrote shard {} of {} to {}.", options.getShardIndex() + 1, options.getNrOfShards(), options.getShardOutfile());
+    }
+
+    /**
+     * Computes the clusters and writes them to all result outputs while they are computed.
+     * The clusters are not stored in the GeckoInstance.
+     */
+    private static void streamResults(CommandLineOptions options, Parameter parameter) {
+        DataSet data = GeckoInstance.getInstance().getData();
+        List<Set<Integer>> genomeGroups = null;
+        if (options.getGenomeGroupingFactor() <= 1.0)
+            genomeGroups = BreakPointDistance.groupGenomes(data, options.getGenomeGroupingFactor(), false);
+
+        final List<StreamingResultWriter> writers = new ArrayList<>(options.getOutputOptions().size());
+        try {
+            for (OutputOption outputOption : options.getOutputOptions())
+                writers.add(new StreamingResultWriter(outputOption.getFile(), outputOption.getType(), data.getGenomeNames()));
+
+            int nrOfClusters = GeckoInstance.computeClustersJava(data, parameter, genomeGroups, null, new GeneClusterSink() {
+                @Override
+                public void accept(GeneCluster cluster) throws IOException {
+                    for (StreamingResultWriter writer : writers)
+                        writer.accept(cluster);
+                }
+            });
+            logger.info("Wrote {} gene clusters.", nrOfClusters);
+        } catch (IOException e) {
+            logger.error("Error writing the results!", e);
+        } finally {
+            for (StreamingResultWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    logger.error("Error closing the result output!", e);
+                }
+            }
+        }
+    }
 }
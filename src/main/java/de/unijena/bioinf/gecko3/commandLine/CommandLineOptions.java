@@ -21,7 +21,9 @@ package de.unijena.bioinf.gecko3.commandLine;
 
 import de.unijena.bioinf.gecko3.GeckoInstance;
 import de.unijena.bioinf.gecko3.datastructures.Parameter;
+import de.unijena.bioinf.gecko3.io.DataSetWriter;
 import de.unijena.bioinf.gecko3.io.ExportType;
+import de.unijena.bioinf.gecko3.io.StreamingResultWriter;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
@@ -82,6 +84,68 @@ public class CommandLineOptions {
     @Option(name = "--noStatistics", usage = "Do not compute cluster statistics.")
     private boolean noStatistics = false;
 
+    @Option(name = "-t", aliases = "--threads", usage = "The number of threads used for the cluster detection.")
+    private int nrOfThreads = 1;
+
+    @Option(name = "-cA", aliases = "--compactAlphabet", usage = "Replace gene families that occur in fewer genomes than the quorum by unknown genes before the search.\n" +
+            "Faster for small quorums, the clusters only stay the same with distance 0 and \"--noStatistics\".")
+    private boolean compactAlphabet = false;
+
+    @Option(name = "-dI", aliases = "--distinctCountIndex", usage = "Count the different genes of candidate occurrences with an index instead of scanning them.\n" +
+            "Faster for large distances and long chromosomes.")
+    private boolean distinctCountIndex = false;
+
+    @Option(name = "-tC", aliases = "--topClusters", usage = "Only keep this number of clusters with the smallest p-values, 0 keeps all clusters.\n" +
+            "Only prunes the statistics, most p-values of the other clusters are not computed, all clusters are still detected.\n" +
+            "Requires the statistics, not compatible with \"-sh\".")
+    private int topClusters = 0;
+
+    @Option(name = "-cp", aliases = "--checkpoint", usage = "Periodically write the completed reference genomes and the clusters found so far to this file.\n" +
+            "Only used for all against all computations, not compatible with \"-r\".")
+    private File checkpointFile = null;
+
+    @Option(name = "-cpI", aliases = "--checkpointInterval", usage = "The minimum time between two checkpoints in minutes, 0 writes a checkpoint after each reference genome.")
+    private int checkpointInterval = 10;
+
+    @Option(name = "--resume", usage = "Continue the computation from the checkpoint \"-cp\", the input and parameters have to be the same.")
+    private boolean resume = false;
+
+    @Option(name = "-sh", aliases = "--shard", metaVar = "i/n", usage = "Only compute shard i of n (1 <= i <= n) of an all against all computation and write it to the shard file \"-shO\".\n" +
+            "The reference genomes are split into n contiguous ranges, the shard files of all n shards are merged with \"-mS\".")
+    private String shard = null;
+    private int shardIndex = 0;
+    private int nrOfShards = 1;
+
+    @Option(name = "-shO", aliases = "--shardOutfile", usage = "The file the clusters of the shard \"-sh\" are written to.")
+    private File shardOutfile = null;
+
+    @Option(name = "-mS", aliases = "--mergeShards", usage = "Merge the shard files of all shards instead of searching the clusters, and compute the statistics.\n" +
+            "Repeat for each shard file, the input and parameters have to be the same as for the shards.")
+    private List<File> shardFilesToMerge = new ArrayList<>();
+
+    @Option(name = "-swD", aliases = "--sweepDistances", handler = IntegerListOptionHandler.class, usage = "Compute the clusters for each of the maximum allowed distances, instead of \"-d\".\n" +
+            "A String containing a comma separated list of integers (\"0, 1, 2\").\n" +
+            "Together with \"-swS\" and \"-swQ\", the clusters are computed for all combinations of the values, the genomes are indexed only once.\n" +
+            "The label of each combination, e.g. \"d1_s3_q4\", is added to the names of the \"-out\" and \"-rO\" files. Not compatible with \"-dT\".")
+    private List<Integer> sweepDistances = new ArrayList<>();
+
+    @Option(name = "-swS", aliases = "--sweepSizes", handler = IntegerListOptionHandler.class, usage = "Compute the clusters for each of the minimum cluster sizes, instead of \"-s\", see \"-swD\".")
+    private List<Integer> sweepSizes = new ArrayList<>();
+
+    @Option(name = "-swQ", aliases = "--sweepQuorums", handler = IntegerListOptionHandler.class, usage = "Compute the clusters for each of the minimum numbers of covered genomes, instead of \"-q\", see \"-swD\".")
+    private List<Integer> sweepQuorums = new ArrayList<>();
+
+    @Option(name = "-qG", aliases = "--queryGeneFamilies", usage = "Only search the occurrences of this set of gene families in all genomes, instead of computing all clusters.\n" +
+            "A String containing a comma separated list of gene family ids (\"12, 13, 27\"). Repeat for several sets.\n" +
+            "Each set that occurs in at least one genome is reported as a cluster, with the index of the set as id, the \"-qG\" sets are followed by the \"-qI\" intervals.\n" +
+            "Uses the distance \"-d\" or \"-dT\", \"-s\" and \"-q\" are ignored. Not compatible with \"-r\", \"-rIR\", a parameter sweep, \"-cp\", \"-sh\", \"-mS\" and \"-sR\".")
+    private List<String> queryGeneFamilies = new ArrayList<>();
+
+    @Option(name = "-qI", aliases = "--queryInterval", metaVar = "g:c:from-to", usage = "Only search the occurrences of the gene families of this interval in all genomes, see \"-qG\".\n" +
+            "The genes from-to of chromosome c of genome g, all starting with 1. Repeat for several intervals.")
+    private List<String> queryIntervals = new ArrayList<>();
+    private List<int[]> parsedQueryIntervals = new ArrayList<>();
+
     /*
      * Files
      */
@@ -96,11 +160,20 @@ public class CommandLineOptions {
     @Option(name="-out", aliases = "--Outfile", usage = "The output .gck file for later use with the gui.")
     private File outfile = null;
 
+    @Option(name="-oF", aliases = "--outfileFormat", usage = "The format of the output .gck file, one of: TEXT, BINARY, COMPRESSED_BINARY. Default is TEXT.")
+    private DataSetWriter.Format outfileFormat = DataSetWriter.Format.TEXT;
+
     @Option(name="-rO", aliases = "--resultOutput", usage = "Write the filtered clusters to a File in different formats.\n" +
             "ExportType must be one of: " + ExportType.types + "\n" +
             "ResultFilter must be one of: " + GeckoInstance.ResultFilter.types, handler = OutputOptionHandler.class)
     private List<OutputOption> outputOptions = new ArrayList<>();
 
+    @Option(name="-sR", aliases = "--streamResults", usage = "Write the clusters to the result outputs (\"-rO\") while they are computed, without keeping them in memory.\n" +
+            "Only supports the ExportTypes table, latexTable, clusterConservation, clusterGenomeInformation and referenceClusterTags.\n" +
+            "The clusters are neither sorted nor filtered, and no .gck file (\"-out\") can be written.\n" +
+            "With a reference genome (\"-r\"), without \"-rIR\" and with \"--noStatistics\" the clusters are written after each reference chromosome.")
+    private boolean streamResults = false;
+
     /*
      * Others
      */
@@ -153,10 +226,18 @@ public class CommandLineOptions {
         return outfile;
     }
 
+    public DataSetWriter.Format getOutfileFormat() {
+        return outfileFormat;
+    }
+
     public List<OutputOption> getOutputOptions() {
         return outputOptions;
     }
 
+    public boolean streamResults() {
+        return streamResults;
+    }
+
     public boolean useGui() {
         return gui;
     }
@@ -173,6 +254,106 @@ public class CommandLineOptions {
         return noStatistics;
     }
 
+    public int getNrOfThreads() {
+        return nrOfThreads;
+    }
+
+    public boolean compactAlphabet() {
+        return compactAlphabet;
+    }
+
+    public boolean useDistinctCountIndex() {
+        return distinctCountIndex;
+    }
+
+    public int getTopClusters() {
+        return topClusters;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * @return the checkpoint interval in minutes
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public boolean resume() {
+        return resume;
+    }
+
+    /**
+     * @return the index of the shard, starting with 0
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getNrOfShards() {
+        return nrOfShards;
+    }
+
+    public File getShardOutfile() {
+        return shardOutfile;
+    }
+
+    public List<File> getShardFilesToMerge() {
+        return shardFilesToMerge;
+    }
+
+    /**
+     * @return if the clusters are computed for several settings, see getSweepDistances(), getSweepSizes() and getSweepQuorums()
+     */
+    public boolean isParameterSweep() {
+        return !sweepDistances.isEmpty() || !sweepSizes.isEmpty() || !sweepQuorums.isEmpty();
+    }
+
+    /**
+     * @return the distances of the parameter sweep, or the single distance "-d"
+     */
+    public List<Integer> getSweepDistances() {
+        return sweepDistances.isEmpty() ? Collections.singletonList(maxDistance) : sweepDistances;
+    }
+
+    /**
+     * @return the minimum cluster sizes of the parameter sweep, or the single size "-s"
+     */
+    public List<Integer> getSweepSizes() {
+        return sweepSizes.isEmpty() ? Collections.singletonList(minClusterSize) : sweepSizes;
+    }
+
+    /**
+     * @return the quorums of the parameter sweep, or the single quorum "-q"
+     */
+    public List<Integer> getSweepQuorums() {
+        return sweepQuorums.isEmpty() ? Collections.singletonList(minCoveredGenomes) : sweepQuorums;
+    }
+
+    /**
+     * @return if only the occurrences of the query gene family sets and intervals are searched
+     */
+    public boolean isGeneSetQuery() {
+        return !queryGeneFamilies.isEmpty() || !queryIntervals.isEmpty();
+    }
+
+    /**
+     * @return the query gene family sets, each a comma separated list of gene family ids
+     */
+    public List<String> getQueryGeneFamilies() {
+        return queryGeneFamilies;
+    }
+
+    /**
+     * @return the query intervals, each as genome index, chromosome index, both starting with 0, and the positions
+     * of the first and the last gene, starting with 1
+     */
+    public List<int[]> getQueryIntervals() {
+        return parsedQueryIntervals;
+    }
+
     public boolean showHelp() {
         return help;
     }
@@ -184,15 +365,122 @@ public class CommandLineOptions {
         if (gui && distanceTable == null && maxDistance < 0 && minClusterSize < 0){
             noComputation = true;
         }
-        if (!noComputation){
+        if (isParameterSweep()) {
+            if (noComputation)
+                throw new CmdLineException(parser, "A parameter sweep \"-swD\", \"-swS\" or \"-swQ\" requires the computation of clusters.");
+            if (distanceTable != null)
+                throw new CmdLineException(parser, "A parameter sweep \"-swD\", \"-swS\" or \"-swQ\" is not compatible with \"-dT\".");
+            if ((!sweepDistances.isEmpty() && maxDistance >= 0) || (!sweepSizes.isEmpty() && minClusterSize >= 0))
+                throw new CmdLineException(parser, "A parameter sweep \"-swD\" or \"-swS\" replaces \"-d\" or \"-s\", not compatible with both.");
+            if (checkpointFile != null || shard != null || !shardFilesToMerge.isEmpty() || streamResults)
+                throw new CmdLineException(parser, "A parameter sweep is not compatible with \"-cp\", \"-sh\", \"-mS\" and \"-sR\".");
+            if (outfile == null && outputOptions.isEmpty())
+                throw new CmdLineException(parser, "A parameter sweep requires a .gck file \"-out\" or at least one result output \"-rO\".");
+            for (List<Integer> values : Arrays.asList(getSweepDistances(), getSweepSizes(), getSweepQuorums()))
+                for (int value : values)
+                    if (value < 0)
+                        throw new CmdLineException(parser, "Missing \"-d\" or \"-s\", or parameter sweep value < 0.");
+            if (nrOfThreads < 1)
+                throw new CmdLineException(parser, "Number of threads \"-t\" has to be >= 1.");
+        }
+        if (topClusters != 0) {
+            if (topClusters < 0)
+                throw new CmdLineException(parser, "Number of top clusters \"-tC\" has to be >= 0.");
+            if (noStatistics || shard != null || isGeneSetQuery())
+                throw new CmdLineException(parser, "Top clusters \"-tC\" are not compatible with \"--noStatistics\", \"-sh\", \"-qG\" and \"-qI\".");
+        }
+        if (isGeneSetQuery()) {
+            if (noComputation)
+                throw new CmdLineException(parser, "A query \"-qG\" or \"-qI\" requires the computation of clusters.");
+            if (isParameterSweep() || !referenceGenomeName.isEmpty() || refInRef || checkpointFile != null || shard != null || !shardFilesToMerge.isEmpty() || streamResults)
+                throw new CmdLineException(parser, "A query \"-qG\" or \"-qI\" is not compatible with \"-r\", \"-rIR\", a parameter sweep, \"-cp\", \"-sh\", \"-mS\" and \"-sR\".");
+            for (String interval : queryIntervals) {
+                try {
+                    String[] parts = interval.split(":");
+                    if (parts.length != 3)
+                        throw new NumberFormatException();
+                    String[] positions = parts[2].split("-");
+                    if (positions.length != 2)
+                        throw new NumberFormatException();
+                    int[] parsed = new int[]{Integer.parseInt(parts[0].trim()) - 1, Integer.parseInt(parts[1].trim()) - 1, Integer.parseInt(positions[0].trim()), Integer.parseInt(positions[1].trim())};
+                    if (parsed[0] < 0 || parsed[1] < 0 || parsed[2] < 1 || parsed[3] < parsed[2])
+                        throw new NumberFormatException();
+                    parsedQueryIntervals.add(parsed);
+                } catch (NumberFormatException e) {
+                    throw new CmdLineException(parser, String.format("Query interval \"-qI\" has to be g:c:from-to with 1 <= from <= to, not %s.", interval));
+                }
+            }
+        }
+        if (!noComputation && !isParameterSweep()){
             if ((distanceTable == null || distanceTable.length == 0) && (maxDistance < 0))
                 throw new CmdLineException(parser, "Not running gui or no computation and missing either \"-d\" or \"-dT\" or distance < 0.");
             if ((distanceTable != null && distanceTable.length > 0) && (maxDistance >= 0))
                 throw new CmdLineException(parser, "Not running gui or no computation and both \"-d\" and \"-dT\" set.");
             if (minClusterSize >= 0 && distanceTable != null)
                 throw new CmdLineException(parser, "Using distance table und minimum cluster size set.");
-            if (minClusterSize < 0 && maxDistance >= 0)
+            if (minClusterSize < 0 && maxDistance >= 0 && !isGeneSetQuery())
                 throw new CmdLineException(parser, "Using single distance value and minimum cluster size < 0 or not set.");
+            if (nrOfThreads < 1)
+                throw new CmdLineException(parser, "Number of threads \"-t\" has to be >= 1.");
+        }
+        if (checkpointFile != null) {
+            if (noComputation)
+                throw new CmdLineException(parser, "Checkpoints \"-cp\" require the computation of clusters.");
+            if (!referenceGenomeName.isEmpty())
+                throw new CmdLineException(parser, "Checkpoints \"-cp\" are only written for all against all computations, not compatible with \"-r\".");
+            if (checkpointInterval < 0)
+                throw new CmdLineException(parser, "Checkpoint interval \"-cpI\" has to be >= 0.");
+        }
+        if (shard != null) {
+            String[] parts = shard.split("/");
+            try {
+                if (parts.length != 2)
+                    throw new NumberFormatException();
+                shardIndex = Integer.parseInt(parts[0].trim()) - 1;
+                nrOfShards = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new CmdLineException(parser, String.format("Shard \"-sh\" has to be i/n, not %s.", shard));
+            }
+            if (nrOfShards < 1 || shardIndex < 0 || shardIndex >= nrOfShards)
+                throw new CmdLineException(parser, String.format("Shard \"-sh\" i/n needs 1 <= i <= n, not %s.", shard));
+            if (noComputation)
+                throw new CmdLineException(parser, "Shards \"-sh\" require the computation of clusters.");
+            if (!referenceGenomeName.isEmpty())
+                throw new CmdLineException(parser, "Shards \"-sh\" are only supported for all against all computations, not compatible with \"-r\".");
+            if (shardOutfile == null)
+                throw new CmdLineException(parser, "Shards \"-sh\" require a shard file \"-shO\".");
+            if (outfile != null || !outputOptions.isEmpty() || streamResults)
+                throw new CmdLineException(parser, "Shards \"-sh\" are written to the shard file \"-shO\", not compatible with \"-out\", \"-rO\" and \"-sR\".");
+        } else if (shardOutfile != null) {
+            throw new CmdLineException(parser, "A shard file \"-shO\" requires a shard \"-sh\".");
+        }
+        if (!shardFilesToMerge.isEmpty()) {
+            if (noComputation)
+                throw new CmdLineException(parser, "Merging shards \"-mS\" requires the computation of clusters.");
+            if (shard != null || checkpointFile != null)
+                throw new CmdLineException(parser, "Merging shards \"-mS\" is not compatible with \"-sh\" and \"-cp\".");
+            if (!referenceGenomeName.isEmpty())
+                throw new CmdLineException(parser, "Shards \"-mS\" are only supported for all against all computations, not compatible with \"-r\".");
+            for (File shardFile : shardFilesToMerge)
+                if (!shardFile.isFile())
+                    throw new CmdLineException(parser, String.format("Shard file %s does not exist.", shardFile));
+        }
+        if (resume) {
+            if (checkpointFile == null)
+                throw new CmdLineException(parser, "Resuming \"--resume\" requires a checkpoint file \"-cp\".");
+            if (!checkpointFile.isFile())
+                throw new CmdLineException(parser, String.format("Checkpoint file %s does not exist.", checkpointFile));
+        }
+        if (streamResults) {
+            if (noComputation)
+                throw new CmdLineException(parser, "Streaming the results \"-sR\" requires the computation of clusters.");
+            if (outfile != null)
+                throw new CmdLineException(parser, "Streaming the results \"-sR\" and writing a .gck file \"-out\" are not compatible.");
+            if (outputOptions.isEmpty())
+                throw new CmdLineException(parser, "Streaming the results \"-sR\" requires at least one result output \"-rO\".");
+            for (OutputOption outputOption : outputOptions)
+                if (!StreamingResultWriter.supports(outputOption.getType()))
+                    throw new CmdLineException(parser, String.format("ExportType %s is not supported when streaming the results \"-sR\".", outputOption.getType()));
         }
     }
 
@@ -265,6 +553,12 @@ public class CommandLineOptions {
         }
     }
 
+    public static class IntegerListOptionHandler extends DelimitedOptionHandler<Integer> {
+        public IntegerListOptionHandler(CmdLineParser parser, OptionDef option, Setter<? super Integer> setter) {
+            super(parser, option, setter, ",", new IntegerTrimmingOptionHandler(parser, option, setter));
+        }
+    }
+
     public static class IntegerTrimmingOptionHandler extends OneArgumentOptionHandler<Integer> {
         public IntegerTrimmingOptionHandler(CmdLineParser parser, OptionDef option, Setter<? super Integer> setter) {
             super(parser, option, setter);
@@ -20,8 +20,14 @@
 package de.unijena.bioinf.gecko3.datastructures;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BreakPointDistance {
+	/**
+	 * Fewer rows are not distributed over several threads
+	 */
+	private static final int MIN_ROWS_PER_THREAD = 64;
 	
 	public static void breakPointDistance(DataSet data, boolean signed) {
 		breakPointDistance(data, signed, false);
@@ -37,27 +43,84 @@ public class BreakPointDistance {
 	}
 	
 	public static int[][] computeBreakPointDistance(int[][][] genomes, boolean signed) {
-		int[][] result = new int[genomes.length][genomes.length];
-		
-		List<BreakPointVector> breakPointVectors = new ArrayList<> (genomes.length);
-		for (int i=0; i<genomes.length; i++) {
-			BreakPointVector currentVector = new BreakPointVector(genomes[i], signed);
+		return computeBreakPointDistance(genomes, signed, Runtime.getRuntime().availableProcessors());
+	}
 
-			breakPointVectors.add(currentVector);
-			
-			for (int j=0; j<i; j++) {
-				int distance = currentVector.getDistance(breakPointVectors.get(j));
-				result[i][j] = distance;
-				result[j][i] = distance;
+	/**
+	 * Computes the breakpoint distances of all pairs of genomes.
+	 * The lower triangle is filled row by row, the rows are distributed over nrOfThreads worker threads.
+	 * @param genomes the genomes
+	 * @param signed if the orientation of the genes is used
+	 * @param nrOfThreads the maximal number of threads
+	 * @return the symmetric distance matrix
+	 */
+	static int[][] computeBreakPointDistance(int[][][] genomes, boolean signed, int nrOfThreads) {
+		final int[][] result = new int[genomes.length][genomes.length];
+		final long[][] adjacencies = new long[genomes.length][];
+		for (int i=0; i<genomes.length; i++)
+			adjacencies[i] = adjacencies(genomes[i], signed);
+
+		forEachRow(genomes.length, nrOfThreads, new RowTask() {
+			@Override
+			public void run(int i) {
+				for (int j=0; j<i; j++) {
+					int distance = getDistance(adjacencies[i], adjacencies[j]);
+					result[i][j] = distance;
+					result[j][i] = distance;
+				}
 			}
-			result[i][i] = 0;
-		}
-		
+		});
 		return result;
 	}
+
+	private static interface RowTask {
+		void run(int i);
+	}
+
+	/**
+	 * Runs the task for all rows from n-1 to 0, the longest rows first. With more than one thread,
+	 * the rows are distributed over the worker threads, otherwise they are processed in the calling thread.
+	 */
+	private static void forEachRow(final int n, int nrOfThreads, final RowTask task) {
+		int nrOfWorkers = Math.min(nrOfThreads, n / MIN_ROWS_PER_THREAD);
+		if (nrOfWorkers <= 1) {
+			for (int i=n-1; i>=0; i--)
+				task.run(i);
+			return;
+		}
+
+		final AtomicInteger nextRow = new AtomicInteger(n-1);
+		ExecutorService executor = Executors.newFixedThreadPool(nrOfWorkers);
+		try {
+			List<Future<Void>> futures = new ArrayList<>(nrOfWorkers);
+			for (int w=0; w<nrOfWorkers; w++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						int i;
+						while ((i = nextRow.getAndDecrement()) >= 0)
+							task.run(i);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			throw new CancellationException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 	
 	public static void groupGenomes(DataSet data, double minThreshold, double maxThreshold, double stepSize, boolean signed){
-		int[][] distances = computeBreakPointDistance(data, signed, false);
+		int[][] distances = data.getBreakPointDistances(signed);
 		
 		System.out.print("[");
 		for (int i=0; i<data.getGenomes().length; i++){
@@ -74,7 +137,7 @@ public class BreakPointDistance {
 	}
 	
 	public static List<Set<Integer>> groupGenomes(DataSet data, double threshold, boolean signed){
-		int[][] distances = computeBreakPointDistance(data, signed, false);
+		int[][] distances = data.getBreakPointDistances(signed);
 		return groupGenomes(distances, data, threshold);
 	}
 	
@@ -110,216 +173,118 @@ public class BreakPointDistance {
 		}
 	}
 	
+	/**
+	 * Groups all genomes whose normalized distance is at most threshold, and all genomes that are
+	 * connected by a chain of such genomes. The groups are ordered like the former set merging did:
+	 * Each group is created by a genome that is not close to any previous genome, and when a genome joins
+	 * several groups, they are merged into the group it joined first.
+	 */
 	static List<Set<Integer>> groupGenomes(int[][] d, DataSet data, double threshold) {
-		double[][] distances = normalizeDistances(d, data.getGenomes());
-		
-		List<Set<Integer>> cluster = new ArrayList<Set<Integer>>();
-		int[] setIndex = new int[data.getGenomes().length];
-		for (int i=0; i<distances.length; i++){
+		Genome[] genomes = data.getGenomes();
+		int[] parent = new int[d.length];
+		int[] slot = new int[d.length];         // the creation index of the group, for each root
+		int nrOfSlots = 0;
+		for (int i=0; i<d.length; i++){
+			parent[i] = i;
 			boolean added = false;
 			for (int j=0; j<i; j++){
-				if (distances[i][j] <= threshold) {
+				double distance = d[i][j]/(double)(genomes[i].getTotalGeneNumber()-1 + genomes[j].getTotalGeneNumber()-1);
+				if (distance <= threshold) {
+					int rootJ = find(parent, j);
 					if (!added) {
-						cluster.get(setIndex[j]).add(i);
-						setIndex[i] = setIndex[j];
+						parent[i] = rootJ;
 						added = true;
 					} else {
-						if (setIndex[i] == setIndex[j]) continue;
-						
-						Set<Integer> firstToMerge = cluster.get(setIndex[i]);
-						int secondSetIndex = setIndex[j];
-						Set<Integer> secondToMerge = cluster.get(secondSetIndex);
-						for (int index : secondToMerge) {
-							firstToMerge.add(index);
-							setIndex[index] = setIndex[i];
-						}
-						cluster.set(secondSetIndex, null);
+						int rootI = find(parent, i);
+						if (rootI != rootJ)
+							parent[rootJ] = rootI;
 					}
 				}
 			}
-			if (!added){
-				setIndex[i] = cluster.size();
-				Set<Integer> set = new HashSet<Integer>();
-				set.add(i);
-				cluster.add(set);
-			}
+			if (!added)
+				slot[i] = nrOfSlots++;
+		}
+
+		List<Set<Integer>> cluster = new ArrayList<>(Collections.<Set<Integer>>nCopies(nrOfSlots, null));
+		for (int i=0; i<d.length; i++){
+			int root = find(parent, i);
+			if (cluster.get(slot[root]) == null)
+				cluster.set(slot[root], new HashSet<Integer>());
+			cluster.get(slot[root]).add(i);
 		}
 		Iterator<Set<Integer>> iter = cluster.iterator();
 		while (iter.hasNext()){
-			Set<Integer> value = iter.next();
-			if (value == null)
+			if (iter.next() == null)
 				iter.remove();
 		}
 		return cluster;
 	}
-	
-	private static class BreakPointVector {
-		final Map<IntPair, Integer> values;
-		
-		public BreakPointVector(int[][] genome, boolean signed) {
-			values = new HashMap<IntPair, Integer>();
-			if (genome.length == 0) 
-				return;
 
-			for (int[] chrom : genome){
-				int firstPos = 0;
-				for (int secondPos=1; secondPos<chrom.length; secondPos++){
-					IntPair pair;
-					if (signed)
-						pair = new SignedIntPair(chrom[firstPos], chrom[secondPos]);
-					else
-						pair = new UnsignedIntPair(chrom[firstPos], chrom[secondPos]);
-					Integer occs = values.get(pair);
-					if(occs == null)
-						values.put(pair, 1);
-					else
-						values.put(pair, occs+1);
-					firstPos++;
-				}
-			}
-		}
-		
-		public int getDistance(BreakPointVector otherVector) {
-			Map<IntPair, Integer> otherDuplicate = new HashMap<IntPair, Integer>(otherVector.values);
-			
-			int breakpoints = 0;
-			
-			for (Map.Entry<IntPair, Integer> entry : values.entrySet()) {
-				Integer otherValue = otherDuplicate.get(entry.getKey());
-				
-				if (otherValue == null)
-					breakpoints += entry.getValue();
-				else {
-					breakpoints += Math.abs(entry.getValue() - otherValue);
-					otherDuplicate.remove(entry.getKey());
-				}
-			}
-			for (Map.Entry<IntPair, Integer> entry : otherDuplicate.entrySet()) {
-				breakpoints += entry.getValue();
-			}
-			return breakpoints;
+	private static int find(int[] parent, int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
 		}
-	}
-	
-	private static double[][] normalizeDistances(int[][] distances, Genome[] genomes) {
-		double[][] normalizedDistances = new double[distances.length][distances.length];
-		for (int i=0; i<distances.length; i++)
-			for (int j=0; j<distances[i].length; j++)
-				normalizedDistances[i][j] = distances[i][j]/(double)(genomes[i].getTotalGeneNumber()-1 + genomes[j].getTotalGeneNumber()-1);
-		return normalizedDistances;
-	}
-	
-	private static interface IntPair {
-		public int getFirst();
-		public int getSecond();
+		return x;
 	}
 	
 	/**
-	 * Stores a pair of signed integers (the two gene ids) used as key in the breakpoint vector
-	 * Equality is given when either a_1 == b_1 && a_2 == b_2 or a_1 == -b_2 && a_2 == -b_1  
-	 * @author swinter
+	 * Returns the adjacencies of all chromosomes of the genome, as sorted array of packed pairs.
+	 * Each adjacency is contained as often as it occurs. If signed, the pairs (a, b) and (-b, -a) are the same
+	 * adjacency, otherwise the signs and the order of the two genes are ignored.
 	 */
-	private static class SignedIntPair implements IntPair{
-		private final int first;
-		private final int second;
-		
-		SignedIntPair(int first, int second) {
-			if (first > second) {
-				this.first = first;
-				this.second = second;
-			} else {
-				this.first = -second;
-				this.second = -first;
-			}
-		}
-
-		public int getFirst() {
-			return first;
-		}
-
-		public int getSecond() {
-			return second;
-		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (other == this)
-				return true;
-			if (!(other instanceof SignedIntPair))
-				return false;
-			SignedIntPair otherPair = (SignedIntPair)other;
-			return ((this.first==otherPair.first && this.second == otherPair.second)
-					|| (this.first==-otherPair.second && this.second == -otherPair.first));
-		}
-		
-		@Override
-		public int hashCode() {
-			int hash = 23;
-			if (Math.abs(first) > Math.abs(second)) {
-				hash = hash * 31 - second;
-				hash = hash * 31 - first;
-			} else if (Math.abs(first) == Math.abs(second) && first < 0){
-				hash = hash * 31 - second;
-				hash = hash * 31 - first;
-			} else {
-				hash = hash * 31 + first;
-				hash = hash * 31 + second;
+	static long[] adjacencies(int[][] genome, boolean signed) {
+		int length = 0;
+		for (int[] chrom : genome)
+			length += Math.max(0, chrom.length - 1);
+		long[] adjacencies = new long[length];
+		int index = 0;
+		for (int[] chrom : genome){
+			for (int secondPos=1; secondPos<chrom.length; secondPos++){
+				int first = chrom[secondPos-1];
+				int second = chrom[secondPos];
+				if (signed) {
+					if (first > -second || (first == -second && second > -first)) {
+						int reverseFirst = -second;
+						second = -first;
+						first = reverseFirst;
+					}
+				} else {
+					int a = Math.abs(first);
+					int b = Math.abs(second);
+					first = Math.max(a, b);
+					second = Math.min(a, b);
+				}
+				adjacencies[index++] = ((long) first << 32) | (second & 0xFFFFFFFFL);
 			}
-			return hash;
-		}
-		
-		@Override
-		public String toString(){
-			return String.format("(%d, %d)", first, second);
 		}
+		Arrays.sort(adjacencies);
+		return adjacencies;
 	}
-	
+
 	/**
-	 * Stores a pair of integers (the two gene ids) used as key in the breakpoint vector.
-	 * Any signs of the integers are ignored.
-	 * Equality is given when either a_1 == b_1 && a_2 == b_2 or a_1 == b_2 && a_2 == b_1  
-	 * @author swinter
+	 * The number of adjacencies of both sorted arrays, that are not matched by the same adjacency in the other array
 	 */
-	private static class UnsignedIntPair implements IntPair{
-		private final int first;
-		private final int second;
-		
-		UnsignedIntPair(int first, int second) {
-			this.first = Math.max(Math.abs(first), Math.abs(second));
-			this.second = Math.min(Math.abs(first), Math.abs(second));
-		}
-
-		public int getFirst() {
-			return first;
-		}
-
-		public int getSecond() {
-			return second;
+	static int getDistance(long[] adjacencies, long[] otherAdjacencies) {
+		int common = 0;
+		int i = 0;
+		int j = 0;
+		// without data dependent branches, the comparisons of the merge are not predictable
+		while (i < adjacencies.length && j < otherAdjacencies.length) {
+			long a = adjacencies[i];
+			long b = otherAdjacencies[j];
+			common += a == b ? 1 : 0;
+			i += a <= b ? 1 : 0;
+			j += a >= b ? 1 : 0;
 		}
+		return adjacencies.length + otherAdjacencies.length - 2 * common;
+	}
 
-		@Override
-		public boolean equals(Object other) {
-			if (other == this)
-				return true;
-			if (!(other instanceof UnsignedIntPair))
-				return false;
-			UnsignedIntPair otherPair = (UnsignedIntPair)other;
-			return (this.first==otherPair.first && this.second == otherPair.second);
-		}
-		
-		@Override
-		public int hashCode() {
-			int hash = 23;
-			hash = hash * 31 + first;
-			hash = hash * 31 + second;
-			
-			return hash;
-		}
-		
-		@Override
-		public String toString(){
-			return String.format("(%d, %d)", first, second);
-		}
+	private static double[][] normalizeDistances(int[][] distances, Genome[] genomes) {
+		double[][] normalizedDistances = new double[distances.length][distances.length];
+		for (int i=0; i<distances.length; i++)
+			for (int j=0; j<distances[i].length; j++)
+				normalizedDistances[i][j] = distances[i][j]/(double)(genomes[i].getTotalGeneNumber()-1 + genomes[j].getTotalGeneNumber()-1);
+		return normalizedDistances;
 	}
 }
-
@@ -47,6 +47,9 @@ public class DataSet {
     private final GeneFamilySet geneFamilySet;
     private Map<GeneFamily, Color> colorMap;
 
+    private int[][] breakPointDistances;        // cached, until the genomes change
+    private int[][] signedBreakPointDistances;
+
     public static DataSet getEmptyDataSet() {
         return emptyDataSet;
     }
@@ -92,6 +95,63 @@ public class DataSet {
         return help2;
     }
 
+    /**
+     * Replaces all gene families that occur in fewer than minGenomes genomes by unknown genes, merges adjacent
+     * unknown genes into one negative value like toReducedIntArray() does, and renumbers the remaining gene
+     * families to 1..n, keeping their order.
+     * The positions in the compacted genomes are mapped back with createRunLengthMergedLookup() of the compacted
+     * genomes and ReferenceCluster.correctMergedPositions(), as for the reduced int array.
+     * @param intArray the genomes, as returned by toIntArray() or toReducedIntArray(), the chromosomes are replaced by the compacted chromosomes
+     * @param minGenomes the minimum number of genomes a gene family has to occur in
+     * @return the size of the compacted alphabet
+     */
+    public static int compactAlphabet(int[][][] intArray, int minGenomes) {
+        int maxId = 0;
+        for (int[][] genome : intArray)
+            for (int[] chromosome : genome)
+                for (int gene : chromosome)
+                    maxId = Math.max(maxId, gene);
+
+        int[] genomeCount = new int[maxId + 1];
+        int[] lastGenome = new int[maxId + 1];
+        Arrays.fill(lastGenome, -1);
+        for (int i=0; i<intArray.length; i++)
+            for (int[] chromosome : intArray[i])
+                for (int gene : chromosome)
+                    if (gene > 0 && lastGenome[gene] != i) {
+                        lastGenome[gene] = i;
+                        genomeCount[gene]++;
+                    }
+
+        int[] newId = new int[maxId + 1];
+        int alphabetSize = 0;
+        for (int c=1; c<=maxId; c++)
+            if (genomeCount[c] >= minGenomes)
+                newId[c] = ++alphabetSize;
+
+        for (int[][] genome : intArray) {
+            for (int j=0; j<genome.length; j++) {
+                int[] chromosome = genome[j];
+                int[] compacted = new int[chromosome.length];
+                int length = 0;
+                for (int m=0; m<chromosome.length; m++) {
+                    int gene = chromosome[m];
+                    if (gene > 0 && newId[gene] == 0)
+                        gene = -1;  // gene family occurs in too few genomes
+                    else if (gene > 0)
+                        gene = newId[gene];
+
+                    if (gene < 0 && length > 0 && compacted[length-1] < 0)
+                        compacted[length-1] += gene;
+                    else
+                        compacted[length++] = gene;
+                }
+                genome[j] = Arrays.copyOf(compacted, length);
+            }
+        }
+        return alphabetSize;
+    }
+
     /**
 	 * Generates an int array from the genomes
 	 * @return an int array, containing all the genes
@@ -299,6 +359,30 @@ public class DataSet {
         Genome first = genomes[0];
         genomes[0] = genomes[index];
         genomes[index] = first;
+        clearBreakPointDistances();
+    }
+
+    /**
+     * Returns the breakpoint distances of all pairs of genomes, see BreakPointDistance.computeBreakPointDistance().
+     * The distances are computed once and cached, until the genomes change. The returned array must not be modified.
+     * @param signed if the orientation of the genes is used
+     * @return the symmetric distance matrix
+     */
+    public synchronized int[][] getBreakPointDistances(boolean signed) {
+        if (signed) {
+            if (signedBreakPointDistances == null)
+                signedBreakPointDistances = BreakPointDistance.computeBreakPointDistance(this, true, false);
+            return signedBreakPointDistances;
+        } else {
+            if (breakPointDistances == null)
+                breakPointDistances = BreakPointDistance.computeBreakPointDistance(this, false, false);
+            return breakPointDistances;
+        }
+    }
+
+    private synchronized void clearBreakPointDistances() {
+        breakPointDistances = null;
+        signedBreakPointDistances = null;
     }
 
 
@@ -311,6 +395,7 @@ public class DataSet {
         genomes = new Genome[oldGenomes.length+1];
         genomes[0] = newReferenceGenome;
         System.arraycopy(oldGenomes, 0, genomes, 1, oldGenomes.length);
+        clearBreakPointDistances();
 
         for (Chromosome chr : newReferenceGenome.getChromosomes()) {
             for (Gene gene : chr.getGenes()) {
@@ -27,6 +27,8 @@ import de.unijena.bioinf.gecko3.gui.GeneClusterLocationSelection;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -36,6 +38,12 @@ import java.util.*;
 public class GeneCluster implements Serializable, Comparable<GeneCluster> {
 	private static final long serialVersionUID = -5371037483783752995L;
 
+	/**
+	 * The number of clusters whose similar clusters are searched in parallel in generateReducedClusterList()
+	 */
+	private static final int REDUCTION_BLOCK_SIZE = 4096;
+	private static final int MIN_CLUSTERS_PER_REDUCTION_THREAD = 1024;
+
     private static final String noOCC = "*";
 
 	private int id;
@@ -81,6 +89,17 @@ public class GeneCluster implements Serializable, Comparable<GeneCluster> {
 	}
 
     public GeneCluster(int id, ReferenceCluster refCluster, DataSet data){
+        this(id, refCluster, getGeneFamilies(refCluster, data));
+    }
+
+    /**
+     * Constructs the gene cluster of a reference cluster with the given gene families, e.g. the gene families of a query.
+     * The reference occurrence of refCluster is the reference sequence of the gene cluster.
+     * @param id the id of the gene cluster
+     * @param refCluster the reference cluster
+     * @param geneFamilies the gene families of the cluster
+     */
+    public GeneCluster(int id, ReferenceCluster refCluster, Set<GeneFamily> geneFamilies){
         this.id = id;
         this.match = true;
         this.bestPValue = refCluster.getBestCombined_pValue();
@@ -98,11 +117,7 @@ public class GeneCluster implements Serializable, Comparable<GeneCluster> {
             }
         }
 
-        geneFamilies = new HashSet<>();
-        for (int i=refCluster.getLeftBorder()-1; i<refCluster.getRightBorder() && geneFamilies.size()<refCluster.getSize(); i++){
-            geneFamilies.add(data.getGenomes()[refCluster.getGenomeNr()].getChromosomes().get(refCluster.getChrNr()).getGenes().get(i).getGeneFamily());
-        }
-
+        this.geneFamilies = new HashSet<>(geneFamilies);
 
         Subsequence[][] bestSubseqs = new Subsequence[refCluster.getAllDeltaLocations().size()][];
         Subsequence[][] allSubseqs = new Subsequence[refCluster.getAllDeltaLocations().size()][];
@@ -122,6 +137,17 @@ public class GeneCluster implements Serializable, Comparable<GeneCluster> {
         this.bestOccurrences = new GeneClusterOccurrence(0, bestSubseqs, refCluster.getBestCombined_pValue(), minTotalDist, refCluster.getCoveredGenomes());
         this.allOccurrences = new GeneClusterOccurrence(0, allSubseqs, refCluster.getBestCombined_pValue(), minTotalDist, refCluster.getCoveredGenomes());
     }
+
+    /**
+     * The gene families of the reference occurrence of the reference cluster
+     */
+    private static Set<GeneFamily> getGeneFamilies(ReferenceCluster refCluster, DataSet data){
+        Set<GeneFamily> geneFamilies = new HashSet<>();
+        for (int i=refCluster.getLeftBorder()-1; i<refCluster.getRightBorder() && geneFamilies.size()<refCluster.getSize(); i++){
+            geneFamilies.add(data.getGenomes()[refCluster.getGenomeNr()].getChromosomes().get(refCluster.getChrNr()).getGenes().get(i).getGeneFamily());
+        }
+        return geneFamilies;
+    }
 	
 	public Parameter.OperationMode getType() {
 		return type;
@@ -424,70 +450,161 @@ public class GeneCluster implements Serializable, Comparable<GeneCluster> {
 	/**
 	 * Generates a reduced list of the gene clusters, keeping of all similar clusters only the one with the lowest p-Value.
 	 * Returns a @Link SortedSet of the indices of the kept clusters.  
+	 * 
+	 * The clusters are processed in the order of their p-values. Each cluster is only compared with the similar
+	 * kept clusters, which are found with a {@link SimilarClusterIndex}. The similar clusters of the next
+	 * REDUCTION_BLOCK_SIZE clusters are searched in parallel, the decisions are made in order, so the result
+	 * is the same as comparing each cluster with all kept clusters.
 	 * @param allClusters The list of gene clusters
 	 * @return the reduced list of gene clusters
 	 */
 	private static List<GeneCluster> generateSimilarityReducedClusterList(List<GeneCluster> allClusters) {
+		return generateSimilarityReducedClusterList(allClusters, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param allClusters The list of gene clusters
+	 * @param nrOfThreads the maximal number of threads
+	 * @return the reduced list of gene clusters
+	 */
+	static List<GeneCluster> generateSimilarityReducedClusterList(List<GeneCluster> allClusters, int nrOfThreads) {
         if (allClusters.isEmpty())
             return new ArrayList<>();
-		List<GeneCluster> reducedList = new ArrayList<>();
 
         List<GeneCluster> geneClustersCopy = new ArrayList<>(allClusters);
 		Collections.sort(geneClustersCopy);
-		for (GeneCluster geneCluster : geneClustersCopy) {
-            boolean contained = false;
-			for (Iterator<GeneCluster> it = reducedList.iterator(); it.hasNext() && !contained; ) {
-                GeneCluster cluster = it.next();
-				if (geneCluster.isSimilar(cluster)) { // if similar
-					int compare = geneCluster.bestPValue.compareTo(cluster.bestPValue);
-					if (compare > 0) // if similar, but worse then the previously inserted cluster
-						contained = true;
-					else if (compare == 0){ // if similar, and same p-value, keep the one with bigger size
-						if (geneCluster.size < cluster.size)
+		final GeneCluster[] clusters = geneClustersCopy.toArray(new GeneCluster[geneClustersCopy.size()]);
+		final SimilarClusterIndex index = new SimilarClusterIndex(clusters);
+		final boolean[] kept = new boolean[clusters.length];
+		Arrays.fill(kept, true);
+
+		int nrOfWorkers = Math.max(1, Math.min(nrOfThreads, clusters.length / MIN_CLUSTERS_PER_REDUCTION_THREAD));
+		final int[][] marks = new int[nrOfWorkers][clusters.length];
+		for (int[] mark : marks)
+			Arrays.fill(mark, -1);
+		ExecutorService executor = nrOfWorkers > 1 ? Executors.newFixedThreadPool(nrOfWorkers) : null;
+		try {
+			final int[][] similar = new int[Math.min(REDUCTION_BLOCK_SIZE, clusters.length)][];
+			for (int blockStart = 0; blockStart < clusters.length; blockStart += REDUCTION_BLOCK_SIZE) {
+				final int from = blockStart;
+				final int to = Math.min(blockStart + REDUCTION_BLOCK_SIZE, clusters.length);
+				if (executor == null) {
+					for (int i = from; i < to; i++)
+						similar[i - from] = index.similarPredecessors(i, kept, marks[0]);
+				} else {
+					final AtomicInteger nextIndex = new AtomicInteger(from);
+					List<Future<Void>> futures = new ArrayList<>(nrOfWorkers);
+					for (int w = 0; w < nrOfWorkers; w++) {
+						final int[] mark = marks[w];
+						futures.add(executor.submit(new Callable<Void>() {
+							@Override
+							public Void call() {
+								int i;
+								while ((i = nextIndex.getAndIncrement()) < to)
+									similar[i - from] = index.similarPredecessors(i, kept, mark);
+								return null;
+							}
+						}));
+					}
+					for (Future<Void> future : futures)
+						future.get();
+				}
+
+				for (int i = from; i < to; i++) {
+					GeneCluster geneCluster = clusters[i];
+					boolean contained = false;
+					for (int s = 0; s < similar[i - from].length && !contained; s++) {
+						int j = similar[i - from][s];
+						if (!kept[j])  // removed by a cluster of this block
+							continue;
+						GeneCluster cluster = clusters[j];
+						int compare = geneCluster.bestPValue.compareTo(cluster.bestPValue);
+						if (compare > 0) // if similar, but worse then the previously inserted cluster
 							contained = true;
-						else 
-							it.remove();
+						else if (compare == 0){ // if similar, and same p-value, keep the one with bigger size
+							if (geneCluster.size < cluster.size)
+								contained = true;
+							else
+								kept[j] = false;
+						}
+						else
+							kept[j] = false; // if similar, but better then the previously inserted cluster
 					}
-					else
-						it.remove(); // if similar, but better then the previously inserted cluster
+					kept[i] = !contained;
 				}
 			}
-			if (!contained)
-				reducedList.add(geneCluster);
+		} catch (InterruptedException e) {
+			throw new CancellationException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
 		}
+
+		List<GeneCluster> reducedList = new ArrayList<>();
+		for (int i = 0; i < clusters.length; i++)
+			if (kept[i])
+				reducedList.add(clusters[i]);
 		return reducedList;
 	}
 	
-	private static SortedSet<Integer> generateInternalDuplicationReducedClusterList(GeneCluster[] allClusters) {
-		SortedSet<Integer> reducedList = new TreeSet<>();
-		List<List<GeneCluster>> clusterGroups = groupSimilarClusters(allClusters);
-		for (List<GeneCluster> clusterGroup : clusterGroups) {
-			while (clusterGroup.size() != 0) {
-				GeneCluster bestCluster = getLargestCluster(clusterGroup);
-				reducedList.add(bestCluster.getId());
-				Iterator<GeneCluster> it = clusterGroup.iterator();
-				while (it.hasNext()){
-					GeneCluster cluster = it.next();
-					if (bestCluster.isSimilar(cluster))
-						it.remove();
+	/**
+	 * Reduces each group of similar clusters, see {@link SimilarClusterGroups}, to the clusters with the most intervals:
+	 * The cluster with the most intervals is kept, all clusters that are similar to it are removed from the group,
+	 * until the group is empty.
+	 * @param allClusters the list of gene clusters
+	 * @return the kept clusters, in the order of allClusters
+	 */
+	public static List<GeneCluster> generateInternalDuplicationReducedClusterList(List<GeneCluster> allClusters) {
+		SimilarClusterGroups groups = new SimilarClusterGroups(allClusters);
+		GeneCluster[] clusters = allClusters.toArray(new GeneCluster[allClusters.size()]);
+		SimilarClusterIndex index = new SimilarClusterIndex(clusters);
+
+		Map<GeneCluster, Integer> clusterIndex = new IdentityHashMap<>(clusters.length);
+		for (int i = 0; i < clusters.length; i++)
+			clusterIndex.put(clusters[i], i);
+		final int[] numberOfIntervals = new int[clusters.length];
+		for (int i = 0; i < clusters.length; i++)
+			numberOfIntervals[i] = clusters[i].getNumberOfIntervals();
+
+		boolean[] remaining = new boolean[clusters.length];
+		Arrays.fill(remaining, true);
+		boolean[] kept = new boolean[clusters.length];
+		int[] mark = new int[clusters.length];
+		Arrays.fill(mark, -1);
+		for (List<GeneCluster> group : groups.getGroups()) {
+			// the first cluster with the most intervals of the remaining clusters is always kept next
+			Integer[] order = new Integer[group.size()];
+			for (int g = 0; g < group.size(); g++)
+				order[g] = clusterIndex.get(group.get(g));
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Integer.compare(numberOfIntervals[o2], numberOfIntervals[o1]);
 				}
+			});
+			for (int i : order) {
+				if (!remaining[i])
+					continue;
+				kept[i] = true;
+				remaining[i] = false;
+				for (int j : index.similarClusters(i, clusters.length, remaining, mark))
+					remaining[j] = false;
 			}
 		}
+
+		List<GeneCluster> reducedList = new ArrayList<>();
+		for (int i = 0; i < clusters.length; i++)
+			if (kept[i])
+				reducedList.add(clusters[i]);
 		return reducedList;
 	}
 	
-	private static GeneCluster getLargestCluster(List<GeneCluster> clusterGroup){
-		GeneCluster bestCluster = null;
-		int highestNumberOfIntervals = -1;
-		for (GeneCluster cluster : clusterGroup) {
-			if (cluster.getNumberOfIntervals() > highestNumberOfIntervals) {
-				highestNumberOfIntervals = cluster.getNumberOfIntervals();
-				bestCluster = cluster;
-			}
-		}
-		return bestCluster;
-	}
-	
 	private int getNumberOfIntervals() {
 		int numberOfIntervals = 0;
         for (Subsequence[] subseqs : allOccurrences.getSubsequences())
@@ -788,7 +905,7 @@ public class GeneCluster implements Serializable, Comparable<GeneCluster> {
 	 * @param other the other gene cluster
 	 * @return if they are similar
 	 */
-	private boolean isSimilar(GeneCluster other) {
+	boolean isSimilar(GeneCluster other) {
         boolean similar = false;
         boolean possibleSimilarOcc = true;
         if (this.bestOccurrences == null || other.bestOccurrences == null)
@@ -825,40 +942,19 @@ public class GeneCluster implements Serializable, Comparable<GeneCluster> {
 		else if(additionalResults == null)
 			return oldResults;
 		else {
+			// the old results can be read only, e.g. the lazily decoded clusters of a binary .gck file
+			List<GeneCluster> merged = new ArrayList<>(oldResults.size() + additionalResults.size());
+			merged.addAll(oldResults);
 			int newId = oldResults.size();
 			for (GeneCluster cluster : additionalResults) {
 				cluster.id = newId;
-				oldResults.add(cluster);
+				merged.add(cluster);
 				newId++;
 			}
-            return oldResults;
+            return merged;
 		}
 	}
 	
-	private static List<List<GeneCluster>> groupSimilarClusters(GeneCluster[] allClusters) {
-		List<List<GeneCluster>> resultList = new ArrayList<>();
-		
-		for (GeneCluster cluster : allClusters){
-			List<GeneCluster> newGroup = new ArrayList<>();
-			newGroup.add(cluster);
-			
-			Iterator<List<GeneCluster>> listIter = resultList.iterator();
-			while (listIter.hasNext()){
-				List<GeneCluster> groupedClusters = listIter.next();
-				for (GeneCluster groupedCluster : groupedClusters) {
-					if (groupedCluster.isSimilar(cluster)){
-						newGroup.addAll(groupedClusters);
-						listIter.remove();
-						break;
-					}
-				}
-			}
-			resultList.add(newGroup);
-		}
-		
-		return resultList;
-	}
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
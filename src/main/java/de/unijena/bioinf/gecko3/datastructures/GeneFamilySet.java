@@ -19,6 +19,7 @@
 
 package de.unijena.bioinf.gecko3.datastructures;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -28,6 +29,8 @@ import java.util.Set;
  * Created by swinter on 18.12.2014.
  */
 public class GeneFamilySet {
+    private static final int MAX_CACHED_NUMERIC_ID = 1 << 20;
+
     private final Set<GeneFamily> knowGeneFamilies;
     private final GeneFamily unknownGeneFamily;
     private int numberOfGeneFamiliesWithMultipleGenes;
@@ -37,6 +40,11 @@ public class GeneFamilySet {
      */
     private final Map<String, GeneFamily> geneFamilyMap;
 
+    /**
+     * Cache of the gene families with positive numeric ids, indexed by the id
+     */
+    private GeneFamily[] numericGeneFamilies;
+
     /**
      * Initialises a new Gene family set
      */
@@ -46,6 +54,7 @@ public class GeneFamilySet {
         numberOfGeneFamiliesWithMultipleGenes = 0;
         geneFamilyMap = new HashMap<>();
         geneFamilyMap.put(unknownGeneFamily.getExternalId(), unknownGeneFamily);
+        numericGeneFamilies = new GeneFamily[0];
     }
 
     public int getNumberOfGeneFamiliesWithMultipleGenes() {
@@ -76,6 +85,27 @@ public class GeneFamilySet {
         }
     }
 
+    /**
+     * Adds a gene for the given numeric id, creating a new GeneFamily or expanding an existing one.
+     * Equivalent to addGene(Integer.toString(id)), but avoids the String lookup for known families.
+     * @param id the numeric id, 0 is the id of unknown genes
+     * @return the GeneFamily for the given id
+     */
+    public GeneFamily addGene(int id) {
+        if (id <= 0 || id > MAX_CACHED_NUMERIC_ID)
+            return addGene(Integer.toString(id));
+        if (id < numericGeneFamilies.length && numericGeneFamilies[id] != null) {
+            GeneFamily geneFamily = numericGeneFamilies[id];
+            addGene(geneFamily);
+            return geneFamily;
+        }
+        GeneFamily geneFamily = addGene(Integer.toString(id));
+        if (id >= numericGeneFamilies.length)
+            numericGeneFamilies = Arrays.copyOf(numericGeneFamilies, Math.max(id + 1, 2 * numericGeneFamilies.length));
+        numericGeneFamilies[id] = geneFamily;
+        return geneFamily;
+    }
+
     void addGene(GeneFamily geneFamily){
         if (geneFamily.getAlgorithmId() == -1 && !geneFamily.getExternalId().equals(GeneFamily.UNKNOWN_GENE_ID)) {
             this.numberOfGeneFamiliesWithMultipleGenes++;
@@ -22,6 +22,9 @@ package de.unijena.bioinf.gecko3.datastructures;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.List;
+
 public class Parameter {
     public enum OperationMode {
         reference('r'), median('m'), center('c');
@@ -184,6 +187,17 @@ public class Parameter {
 	private final boolean searchRefInRef;
     private final boolean noStatistics;
     private int alphabetSize;
+    private int nrOfThreads;
+    private File checkpointFile;
+    private long checkpointInterval;
+    private boolean resumeFromCheckpoint;
+    private int shardIndex;
+    private int nrOfShards;
+    private File shardFile;
+    private List<File> shardFilesToMerge;
+    private boolean compactAlphabet;
+    private boolean useDistinctCountIndex;
+    private int topClusters;
 	
 	public Parameter(int delta, int minClusterSize, int q, OperationMode operationMode, ReferenceType refType) {
 		this(delta, minClusterSize, q, operationMode, refType, false, false);
@@ -202,6 +216,8 @@ public class Parameter {
 		this.operationMode = operationMode;
 		this.refType = refType;
 		this.alphabetSize = -1;
+		this.nrOfThreads = 1;
+		this.nrOfShards = 1;
 		this.searchRefInRef = searchRefInRef;
         this.noStatistics = noStatistics;
 	}
@@ -230,6 +246,8 @@ public class Parameter {
 		this.operationMode = operationMode;
 		this.refType = refType;
 		this.alphabetSize = -1;
+		this.nrOfThreads = 1;
+		this.nrOfShards = 1;
 		this.searchRefInRef = searchRefInRef;
         this.noStatistics = noStatistics;
     }
@@ -274,6 +292,144 @@ public class Parameter {
 		return alphabetSize;
 	}
 
+	/**
+	 * Sets the number of worker threads used for the cluster detection.
+	 * @param nrOfThreads the number of threads, has to be >= 1
+	 */
+	public void setNrOfThreads(int nrOfThreads) {
+		if (nrOfThreads < 1)
+			throw new IllegalArgumentException("Number of threads has to be >= 1!");
+		this.nrOfThreads = nrOfThreads;
+	}
+
+	public int getNrOfThreads() {
+		return nrOfThreads;
+	}
+
+	/**
+	 * Sets the checkpoint file of an all against all computation. After each reference genome, if at least
+	 * the checkpoint interval has passed since the last checkpoint, the completed reference genomes and the
+	 * clusters found so far are written to the file.
+	 * @param checkpointFile the checkpoint file, or null for no checkpoints
+	 */
+	public void setCheckpointFile(File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+
+	public File getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	/**
+	 * Sets the minimum time between two checkpoints.
+	 * @param checkpointInterval the interval in milliseconds, has to be >= 0, 0 writes a checkpoint after each reference genome
+	 */
+	public void setCheckpointInterval(long checkpointInterval) {
+		if (checkpointInterval < 0)
+			throw new IllegalArgumentException("Checkpoint interval has to be >= 0!");
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	public long getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	/**
+	 * Sets if the computation continues from the checkpoint file, instead of starting with the first reference genome.
+	 */
+	public void setResumeFromCheckpoint(boolean resumeFromCheckpoint) {
+		this.resumeFromCheckpoint = resumeFromCheckpoint;
+	}
+
+	public boolean resumeFromCheckpoint() {
+		return resumeFromCheckpoint;
+	}
+
+	/**
+	 * Only computes one shard of an all against all computation, i.e. the reference clusters of one contiguous range
+	 * of the reference genomes, and writes them to the shard file. No clusters are returned and no statistics are computed,
+	 * the shard files of all shards are merged with setShardFilesToMerge().
+	 * @param shardIndex the index of the shard, 0 <= shardIndex < nrOfShards
+	 * @param nrOfShards the number of shards
+	 * @param shardFile the file the clusters of the shard are written to
+	 */
+	public void setShard(int shardIndex, int nrOfShards, File shardFile) {
+		if (nrOfShards < 1 || shardIndex < 0 || shardIndex >= nrOfShards)
+			throw new IllegalArgumentException("Shard index has to be >= 0 and < number of shards!");
+		this.shardIndex = shardIndex;
+		this.nrOfShards = nrOfShards;
+		this.shardFile = shardFile;
+	}
+
+	public int getShardIndex() {
+		return shardIndex;
+	}
+
+	public int getNrOfShards() {
+		return nrOfShards;
+	}
+
+	public File getShardFile() {
+		return shardFile;
+	}
+
+	/**
+	 * Instead of searching the clusters, merges the shard files of all shards of an all against all computation,
+	 * removes the clusters that are nested in clusters of other shards and computes the statistics.
+	 * @param shardFilesToMerge the shard files, in any order, or null
+	 */
+	public void setShardFilesToMerge(List<File> shardFilesToMerge) {
+		this.shardFilesToMerge = shardFilesToMerge;
+	}
+
+	public List<File> getShardFilesToMerge() {
+		return shardFilesToMerge;
+	}
+
+	/**
+	 * Sets if gene families that occur in fewer genomes than the quorum are replaced by unknown genes before the search,
+	 * see DataSet.compactAlphabet(). This shrinks the alphabet and the genomes.
+	 * Without deletions and without statistics, the clusters do not change. Otherwise, clusters that contain one
+	 * of these gene families are no longer found, and the p-values are computed on the compacted genomes.
+	 */
+	public void setCompactAlphabet(boolean compactAlphabet) {
+		this.compactAlphabet = compactAlphabet;
+	}
+
+	public boolean compactAlphabet() {
+		return compactAlphabet;
+	}
+
+	/**
+	 * Sets if the number of different genes in an interval is counted with an index in O(log n), instead of
+	 * scanning the interval. Faster for large distances and long chromosomes, but needs about log n bits
+	 * per gene and some time to build the index.
+	 */
+	public void setUseDistinctCountIndex(boolean useDistinctCountIndex) {
+		this.useDistinctCountIndex = useDistinctCountIndex;
+	}
+
+	public boolean useDistinctCountIndex() {
+		return useDistinctCountIndex;
+	}
+
+	/**
+	 * Only keeps the clusters with the smallest p-values. The p-values of clusters that can not be among them,
+	 * by a lower bound of their p-value, are not computed. Has no effect without statistics.
+	 * Only the statistics are pruned, all clusters are still detected, so the time and memory of the
+	 * cluster detection do not change.
+	 * @param topClusters the number of clusters, 0 keeps all clusters
+	 */
+	public void setTopClusters(int topClusters) {
+		if (topClusters < 0)
+			throw new IllegalArgumentException("Number of top clusters has to be >= 0!");
+		this.topClusters = topClusters;
+	}
+
+	public int getTopClusters() {
+		return topClusters;
+	}
+
 	public int getQ() {
 		return q;
 	}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.datastructures;
+
+import java.util.*;
+
+/**
+ * Groups gene clusters into the connected components of the similarity relation, see GeneCluster.isSimilar(),
+ * i.e. two clusters are in the same group, if they are connected by a chain of clusters with overlapping best occurrences.
+ *
+ * The clusters are added in order to a disjoint-set forest. For each genome and chromosome, the union of the
+ * intervals of all added clusters is kept as disjoint segments, each segment belongs to one group.
+ * Adding an interval merges all segments it overlaps, so each cluster is grouped in O(log n) amortized time per subsequence.
+ * The subsequences are treated as intervals [min(start, stop), max(start, stop)], which is the same as isSimilar()
+ * for all subsequences with start <= stop.
+ *
+ * The groups and the clusters in each group have the same order as they had with the former pairwise grouping:
+ * The groups are ordered by their last cluster. Each group starts with its last cluster, followed by the groups
+ * it merged, in the same order.
+ */
+public class SimilarClusterGroups {
+    private final List<List<GeneCluster>> groups;
+    private final int[] groupOfCluster;
+
+    /**
+     * @param clusters the clusters, the index of a cluster in the list is used in getGroupIndex()
+     */
+    public SimilarClusterGroups(List<GeneCluster> clusters) {
+        int n = clusters.size();
+        int[] parent = new int[n];
+        int[] lastCluster = new int[n];          // the last cluster of the group, for each root
+        int[] firstMergedGroup = new int[n];     // the groups merged by a cluster, as linked list of their last clusters
+        int[] nextMergedGroup = new int[n];
+        Arrays.fill(firstMergedGroup, -1);
+        Arrays.fill(nextMergedGroup, -1);
+
+        Map<Long, TreeMap<Integer, Segment>> segmentsPerChromosome = new HashMap<>();
+        int[] mergedGroups = new int[8];
+        for (int k = 0; k < n; k++) {
+            parent[k] = k;
+            lastCluster[k] = k;
+            int nrOfMergedGroups = 0;
+
+            GeneClusterOccurrence occ = clusters.get(k).getOccurrences(false);
+            Subsequence[][] subsequences = occ == null ? new Subsequence[0][] : occ.getSubsequences();
+            for (int genome = 0; genome < subsequences.length; genome++) {
+                for (Subsequence seq : subsequences[genome]) {
+                    Long key = ((long) genome << 32) | (seq.getChromosome() & 0xFFFFFFFFL);
+                    TreeMap<Integer, Segment> segments = segmentsPerChromosome.get(key);
+                    if (segments == null) {
+                        segments = new TreeMap<>();
+                        segmentsPerChromosome.put(key, segments);
+                    }
+                    int lo = Math.min(seq.getStart(), seq.getStop());
+                    int hi = Math.max(seq.getStart(), seq.getStop());
+                    int mergedLo = lo;
+                    int mergedHi = hi;
+                    // the segments are disjoint, so all overlapping segments precede the floor entry of hi
+                    Map.Entry<Integer, Segment> entry = segments.floorEntry(hi);
+                    while (entry != null && entry.getValue().hi >= lo) {
+                        mergedLo = Math.min(mergedLo, entry.getKey());
+                        mergedHi = Math.max(mergedHi, entry.getValue().hi);
+                        int root = find(parent, entry.getValue().cluster);
+                        int rootK = find(parent, k);
+                        if (root != rootK) {
+                            if (nrOfMergedGroups == mergedGroups.length)
+                                mergedGroups = Arrays.copyOf(mergedGroups, 2 * nrOfMergedGroups);
+                            mergedGroups[nrOfMergedGroups++] = lastCluster[root];
+                            parent[root] = rootK;
+                        }
+                        segments.remove(entry.getKey());
+                        entry = segments.lowerEntry(entry.getKey());
+                    }
+                    segments.put(mergedLo, new Segment(mergedHi, k));
+                }
+            }
+
+            Arrays.sort(mergedGroups, 0, nrOfMergedGroups);
+            for (int m = nrOfMergedGroups - 1; m >= 0; m--) {
+                nextMergedGroup[mergedGroups[m]] = firstMergedGroup[k];
+                firstMergedGroup[k] = mergedGroups[m];
+            }
+            lastCluster[find(parent, k)] = k;
+        }
+
+        groups = new ArrayList<>();
+        groupOfCluster = new int[n];
+        int[] stack = new int[n];
+        for (int k = 0; k < n; k++) {
+            if (lastCluster[find(parent, k)] != k)
+                continue;
+            int groupIndex = groups.size();
+            List<GeneCluster> group = new ArrayList<>();
+            // depth first traversal of the merged groups, starting with the merging cluster
+            int stackSize = 0;
+            stack[stackSize++] = k;
+            while (stackSize > 0) {
+                int c = stack[--stackSize];
+                group.add(clusters.get(c));
+                groupOfCluster[c] = groupIndex;
+                if (nextMergedGroup[c] != -1)
+                    stack[stackSize++] = nextMergedGroup[c];
+                if (firstMergedGroup[c] != -1)
+                    stack[stackSize++] = firstMergedGroup[c];
+            }
+            groups.add(Collections.unmodifiableList(group));
+        }
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * @return the groups, ordered by the index of their last cluster
+     */
+    public List<List<GeneCluster>> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
+
+    public int getNumberOfGroups() {
+        return groups.size();
+    }
+
+    /**
+     * @param clusterIndex the index of the cluster in the list of clusters
+     * @return the index of the group of the cluster in getGroups()
+     */
+    public int getGroupIndex(int clusterIndex) {
+        return groupOfCluster[clusterIndex];
+    }
+
+    private static class Segment {
+        final int hi;
+        final int cluster;
+
+        Segment(int hi, int cluster) {
+            this.hi = hi;
+            this.cluster = cluster;
+        }
+    }
+}
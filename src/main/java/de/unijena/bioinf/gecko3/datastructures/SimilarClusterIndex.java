@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.datastructures;
+
+import java.util.*;
+
+/**
+ * Finds for a list of gene clusters the clusters with overlapping best occurrences, see GeneCluster.isSimilar().
+ *
+ * The subsequences of the best occurrences are grouped by genome and chromosome. Each group holds the intervals
+ * sorted by start and an implicit segment tree over the maximal stop, so all intervals that overlap a query interval
+ * are found in O(log n + hits), instead of comparing all pairs of subsequences.
+ * Each interval is [min(start, stop), max(start, stop)], so the index finds a superset of the similar clusters,
+ * the candidates are always checked with isSimilar().
+ *
+ * The index is never modified after construction, so it can be queried by several threads.
+ */
+final class SimilarClusterIndex {
+    private final GeneCluster[] clusters;
+    private final IntervalGroup[][] groupsOfCluster;
+    private final int[][] intervalsOfCluster;
+
+    /**
+     * @param clusters the clusters, the index of a cluster in the array is used in all queries
+     */
+    SimilarClusterIndex(GeneCluster[] clusters) {
+        this.clusters = clusters;
+
+        // count the intervals of each group
+        Map<Long, int[]> counts = new HashMap<>();
+        for (GeneCluster cluster : clusters) {
+            Subsequence[][] subsequences = bestSubsequences(cluster);
+            for (int genome = 0; genome < subsequences.length; genome++)
+                for (Subsequence seq : subsequences[genome]) {
+                    Long key = key(genome, seq.getChromosome());
+                    int[] count = counts.get(key);
+                    if (count == null)
+                        counts.put(key, new int[]{1});
+                    else
+                        count[0]++;
+                }
+        }
+        Map<Long, IntervalGroup> groups = new HashMap<>(counts.size() * 2);
+        for (Map.Entry<Long, int[]> entry : counts.entrySet())
+            groups.put(entry.getKey(), new IntervalGroup(entry.getValue()[0]));
+
+        groupsOfCluster = new IntervalGroup[clusters.length][];
+        intervalsOfCluster = new int[clusters.length][];
+        for (int i = 0; i < clusters.length; i++) {
+            Subsequence[][] subsequences = bestSubsequences(clusters[i]);
+            int nrOfIntervals = 0;
+            for (Subsequence[] genomeSubsequences : subsequences)
+                nrOfIntervals += genomeSubsequences.length;
+            groupsOfCluster[i] = new IntervalGroup[nrOfIntervals];
+            intervalsOfCluster[i] = new int[2 * nrOfIntervals];
+            int interval = 0;
+            for (int genome = 0; genome < subsequences.length; genome++)
+                for (Subsequence seq : subsequences[genome]) {
+                    IntervalGroup group = groups.get(key(genome, seq.getChromosome()));
+                    int lo = Math.min(seq.getStart(), seq.getStop());
+                    int hi = Math.max(seq.getStart(), seq.getStop());
+                    group.add(lo, hi, i);
+                    groupsOfCluster[i][interval] = group;
+                    intervalsOfCluster[i][2 * interval] = lo;
+                    intervalsOfCluster[i][2 * interval + 1] = hi;
+                    interval++;
+                }
+        }
+        for (IntervalGroup group : groups.values())
+            group.build();
+    }
+
+    private static Subsequence[][] bestSubsequences(GeneCluster cluster) {
+        GeneClusterOccurrence occ = cluster.getOccurrences(false);
+        return occ == null ? new Subsequence[0][] : occ.getSubsequences();
+    }
+
+    private static Long key(int genome, int chromosome) {
+        return ((long) genome << 32) | (chromosome & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns all clusters j < i with alive[j] that are similar to cluster i, see GeneCluster.isSimilar().
+     * @param i the index of the cluster
+     * @param alive the clusters that can be reported, is only read
+     * @param mark a work array of length clusters.length, that is only used by the calling thread
+     *             and filled with -1 before the first query
+     * @return the indices of the similar clusters in ascending order
+     */
+    int[] similarPredecessors(int i, boolean[] alive, int[] mark) {
+        return similarClusters(i, i, alive, mark);
+    }
+
+    /**
+     * Returns all clusters j != i with j < before and alive[j] that are similar to cluster i, see GeneCluster.isSimilar().
+     * The mark array is marked with i, so each cluster may only be queried once with the same mark array.
+     * @param i the index of the cluster
+     * @param before the first cluster index that is not reported
+     * @param alive the clusters that can be reported, is only read
+     * @param mark a work array of length clusters.length, that is only used by the calling thread
+     *             and filled with -1 before the first query
+     * @return the indices of the similar clusters in ascending order
+     */
+    int[] similarClusters(int i, int before, boolean[] alive, int[] mark) {
+        Hits candidates = new Hits();
+        IntervalGroup[] groupsOfI = groupsOfCluster[i];
+        int[] intervalsOfI = intervalsOfCluster[i];
+        for (int interval = 0; interval < groupsOfI.length; interval++) {
+            IntervalGroup group = groupsOfI[interval];
+            int end = group.upperBound(intervalsOfI[2 * interval + 1]);
+            group.query(1, 0, group.leaves, end, intervalsOfI[2 * interval], i, before, alive, mark, candidates);
+        }
+
+        int nrOfSimilar = 0;
+        int[] similar = candidates.values;
+        for (int c = 0; c < candidates.size; c++)
+            if (clusters[i].isSimilar(clusters[similar[c]]))
+                similar[nrOfSimilar++] = similar[c];
+        similar = Arrays.copyOf(similar, nrOfSimilar);
+        Arrays.sort(similar);
+        return similar;
+    }
+
+    private static class Hits {
+        int[] values = new int[8];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * The intervals of all clusters on one chromosome of one genome.
+     * After build() the intervals are sorted by lo, and maxHi[node] is the maximal hi in the subtree of the node
+     * of a complete binary tree, with the root 1 and the intervals as leaves, starting at index leaves.
+     */
+    private static class IntervalGroup {
+        private int[] lo;
+        private int[] hi;
+        private int[] cluster;
+        private int size;
+        private int leaves;
+        private int[] maxHi;
+
+        IntervalGroup(int capacity) {
+            lo = new int[capacity];
+            hi = new int[capacity];
+            cluster = new int[capacity];
+            size = 0;
+        }
+
+        void add(int lo, int hi, int cluster) {
+            this.lo[size] = lo;
+            this.hi[size] = hi;
+            this.cluster[size] = cluster;
+            size++;
+        }
+
+        void build() {
+            long[] order = new long[size];
+            for (int p = 0; p < size; p++)
+                order[p] = ((long) lo[p] << 32) | p;
+            Arrays.sort(order);
+            int[] sortedLo = new int[size];
+            int[] sortedHi = new int[size];
+            int[] sortedCluster = new int[size];
+            for (int p = 0; p < size; p++) {
+                int old = (int) order[p];
+                sortedLo[p] = lo[old];
+                sortedHi[p] = hi[old];
+                sortedCluster[p] = cluster[old];
+            }
+            lo = sortedLo;
+            hi = sortedHi;
+            cluster = sortedCluster;
+
+            leaves = Integer.highestOneBit(Math.max(size, 1));
+            if (leaves < size)
+                leaves *= 2;
+            maxHi = new int[2 * leaves];
+            Arrays.fill(maxHi, Integer.MIN_VALUE);
+            System.arraycopy(hi, 0, maxHi, leaves, size);
+            for (int node = leaves - 1; node >= 1; node--)
+                maxHi[node] = Math.max(maxHi[2 * node], maxHi[2 * node + 1]);
+        }
+
+        /**
+         * @return the number of intervals with lo <= value
+         */
+        int upperBound(int value) {
+            int from = 0;
+            int to = size;
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (lo[middle] <= value)
+                    from = middle + 1;
+                else
+                    to = middle;
+            }
+            return from;
+        }
+
+        /**
+         * Adds the clusters j != i with j < before and alive[j] of all intervals in the subtree of the node
+         * that are among the first end intervals and have hi >= queryLo
+         * @param from the first interval in the subtree of the node
+         * @param to the interval after the last interval in the subtree of the node
+         */
+        void query(int node, int from, int to, int end, int queryLo, int i, int before, boolean[] alive, int[] mark, Hits hits) {
+            if (from >= end || maxHi[node] < queryLo)
+                return;
+            if (node >= leaves) {
+                int c = cluster[from];
+                if (c < before && c != i && alive[c] && mark[c] != i) {
+                    mark[c] = i;
+                    hits.add(c);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            query(2 * node, from, middle, end, queryLo, i, before, alive, mark, hits);
+            query(2 * node + 1, middle, to, end, queryLo, i, before, alive, mark, hits);
+        }
+    }
+}
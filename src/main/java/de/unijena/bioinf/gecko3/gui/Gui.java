@@ -799,6 +799,13 @@ public class Gui {
 				fc.removeChoosableFileFilter(f);
 			
 			fc.addChoosableFileFilter(new FileUtils.GenericFilter("gck"));
+
+			JComboBox<DataSetWriter.Format> formatComboBox = new JComboBox<>(DataSetWriter.Format.values());
+			formatComboBox.setSelectedItem(DataSetWriter.Format.TEXT);
+			JPanel formatPanel = new JPanel(new BorderLayout());
+			formatPanel.add(new JLabel("File format:"), BorderLayout.NORTH);
+			formatPanel.add(formatComboBox, BorderLayout.SOUTH);
+			fc.setAccessory(formatPanel);
 				
 			for (;;) {
 				int state = fc.showSaveDialog(null);
@@ -826,7 +833,7 @@ public class Gui {
 							continue;
 					}
 					
-					if (! DataSetWriter.saveDataSetToFile(gecko.getData(), f))
+					if (! DataSetWriter.saveDataSetToFile(gecko.getData(), f, (DataSetWriter.Format) formatComboBox.getSelectedItem()))
 						JOptionPane.showMessageDialog(mainframe, "An error occured while writing the file!", "Error", JOptionPane.ERROR_MESSAGE);
 					
 					break;
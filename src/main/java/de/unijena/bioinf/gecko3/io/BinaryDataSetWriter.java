@@ -0,0 +1,289 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.io;
+
+import de.unijena.bioinf.gecko3.datastructures.*;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a gecko session in the binary .gck format.
+ *
+ * The file consists of:
+ * <ul>
+ *     <li>the header: MAGIC, VERSION and the flags</li>
+ *     <li>the data block: the gene family dictionary, the genomes, with the genes as arrays of dictionary indices,
+ *     and the parameters</li>
+ *     <li>one block per cluster, with the subsequences of the occurrence stored column by column</li>
+ *     <li>the footer index: offset, stored length and length of the data block and of every cluster block</li>
+ *     <li>the trailer: the offset of the footer index and MAGIC</li>
+ * </ul>
+ * If FLAG_COMPRESSED is set, every block is deflated on its own, so single clusters can still be read on demand.
+ * All numbers are written big endian, like DataOutputStream does.
+ */
+class BinaryDataSetWriter {
+    static final int MAGIC = 0x47434B42; // "GCKB"
+    static final int VERSION = 1;
+    static final int FLAG_COMPRESSED = 1;
+
+    static final int HEADER_LENGTH = 12;
+    static final int TRAILER_LENGTH = 12;
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private BinaryDataSetWriter() {}
+
+    /**
+     * Writes the data set to the file
+     * @param data the data set
+     * @param f the file to write to
+     * @param compressed if the blocks shall be deflated
+     * @throws IOException
+     */
+    static void writeDataSet(DataSet data, File f, boolean compressed) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(compressed ? FLAG_COMPRESSED : 0);
+            long offset = HEADER_LENGTH;
+
+            Map<GeneFamily, Integer> dictionary = new LinkedHashMap<>();
+            BlockWriter block = new BlockWriter(compressed);
+            try {
+                writeData(block.out, data, dictionary);
+                long dataOffset = offset;
+                int dataLength = block.rawLength();
+                int dataStoredLength = block.writeTo(out);
+                offset += dataStoredLength;
+
+                List<GeneCluster> clusters = data.getClusters();
+                long[] clusterOffsets = new long[clusters.size()];
+                int[] clusterLengths = new int[clusters.size()];
+                int[] clusterStoredLengths = new int[clusters.size()];
+                for (int i = 0; i < clusters.size(); i++) {
+                    writeCluster(block.reset().out, clusters.get(i), dictionary);
+                    clusterOffsets[i] = offset;
+                    clusterLengths[i] = block.rawLength();
+                    clusterStoredLengths[i] = block.writeTo(out);
+                    offset += clusterStoredLengths[i];
+                }
+
+                long footerOffset = offset;
+                out.writeLong(dataOffset);
+                out.writeInt(dataStoredLength);
+                out.writeInt(dataLength);
+                out.writeInt(clusters.size());
+                for (int i = 0; i < clusters.size(); i++) {
+                    out.writeLong(clusterOffsets[i]);
+                    out.writeInt(clusterStoredLengths[i]);
+                    out.writeInt(clusterLengths[i]);
+                }
+                out.writeLong(footerOffset);
+                out.writeInt(MAGIC);
+            } finally {
+                block.end();
+            }
+        }
+    }
+
+    /**
+     * Writes the gene family dictionary, the genomes and the parameters.
+     * @param dictionary is filled with the dictionary index of every gene family
+     */
+    private static void writeData(DataOutputStream out, DataSet data, Map<GeneFamily, Integer> dictionary) throws IOException {
+        Genome[] genomes = data.getGenomes();
+        for (Genome genome : genomes)
+            for (Chromosome chr : genome.getChromosomes())
+                for (Gene gene : chr.getGenes())
+                    addToDictionary(dictionary, gene.getGeneFamily());
+        for (GeneCluster cluster : data.getClusters())
+            for (GeneFamily geneFamily : cluster.getGeneFamilies())
+                addToDictionary(dictionary, geneFamily);
+
+        out.writeInt(dictionary.size());
+        for (GeneFamily geneFamily : dictionary.keySet())
+            writeString(out, geneFamily.getExternalId());
+
+        out.writeInt(genomes.length);
+        for (Genome genome : genomes) {
+            writeString(out, genome.getName());
+            out.writeInt(genome.getChromosomes().size());
+            for (Chromosome chr : genome.getChromosomes()) {
+                writeString(out, chr.getName());
+                List<Gene> genes = chr.getGenes();
+                out.writeInt(genes.size());
+                for (Gene gene : genes)
+                    out.writeInt(dictionary.get(gene.getGeneFamily()));
+                for (Gene gene : genes)
+                    out.writeByte(gene.getOrientation().ordinal());
+                for (Gene gene : genes) {
+                    writeString(out, gene.getName());
+                    writeString(out, gene.getTag());
+                    writeString(out, gene.getAnnotation());
+                }
+            }
+        }
+
+        Parameter p = data.getParameters();
+        out.writeBoolean(p != null);
+        if (p != null) {
+            out.writeChar(p.getOperationModeChar());
+            out.writeChar(p.getRefTypeChar());
+            out.writeBoolean(p.searchRefInRef());
+            out.writeInt(p.getMinClusterSize());
+            out.writeInt(p.getQ());
+            out.writeBoolean(p.useDeltaTable());
+            if (p.useDeltaTable()) {
+                int[][] deltaTable = p.getDeltaTable();
+                out.writeInt(deltaTable.length);
+                for (int[] d : deltaTable) {
+                    out.writeInt(d.length);
+                    for (int value : d)
+                        out.writeInt(value);
+                }
+            } else {
+                out.writeInt(p.getDelta());
+            }
+        }
+    }
+
+    private static void addToDictionary(Map<GeneFamily, Integer> dictionary, GeneFamily geneFamily) {
+        if (!dictionary.containsKey(geneFamily))
+            dictionary.put(geneFamily, dictionary.size());
+    }
+
+    private static void writeCluster(DataOutputStream out, GeneCluster cluster, Map<GeneFamily, Integer> dictionary) throws IOException {
+        out.writeInt(cluster.getId());
+        out.writeInt(cluster.getRefSeqIndex());
+        out.writeChar(cluster.getType().getCharMode());
+        out.writeInt(cluster.getMinTotalDist());
+        writeBigDecimal(out, cluster.getBestPValue());
+        writeBigDecimal(out, cluster.getBestPValueCorrected());
+
+        out.writeInt(cluster.getGeneFamilies().size());
+        for (GeneFamily geneFamily : cluster.getGeneFamilies())
+            out.writeInt(dictionary.get(geneFamily));
+
+        GeneClusterOccurrence occ = cluster.getOccurrences(true);
+        out.writeInt(occ.getId());
+        writeBigDecimal(out, occ.getBestpValue());
+        out.writeInt(occ.getSupport());
+        out.writeInt(occ.getTotalDist());
+
+        Subsequence[][] subsequences = occ.getSubsequences();
+        out.writeInt(subsequences.length);
+        for (Subsequence[] genomeSubsequences : subsequences)
+            out.writeInt(genomeSubsequences.length);
+        for (Subsequence[] genomeSubsequences : subsequences)
+            for (Subsequence sub : genomeSubsequences)
+                out.writeInt(sub.getChromosome());
+        for (Subsequence[] genomeSubsequences : subsequences)
+            for (Subsequence sub : genomeSubsequences)
+                out.writeInt(sub.getDist());
+        for (Subsequence[] genomeSubsequences : subsequences)
+            for (Subsequence sub : genomeSubsequences)
+                out.writeInt(sub.getStart());
+        for (Subsequence[] genomeSubsequences : subsequences)
+            for (Subsequence sub : genomeSubsequences)
+                out.writeInt(sub.getStop());
+        for (Subsequence[] genomeSubsequences : subsequences)
+            for (Subsequence sub : genomeSubsequences)
+                writeBigDecimal(out, sub.getpValue());
+    }
+
+    /**
+     * Writes the String as length and UTF-8 bytes, null is written as length -1
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(CHARSET);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Writes the BigDecimal as scale and unscaled value, so it is read back exactly
+     */
+    private static void writeBigDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeInt(value.scale());
+        byte[] unscaledValue = value.unscaledValue().toByteArray();
+        out.writeInt(unscaledValue.length);
+        out.write(unscaledValue);
+    }
+
+    /**
+     * Collects the content of one block, and writes it, deflated if compressed is set
+     */
+    private static class BlockWriter {
+        private final ByteArrayOutputStream bytes;
+        final DataOutputStream out;
+        private final Deflater deflater;
+        private final byte[] deflateBuffer;
+
+        BlockWriter(boolean compressed) {
+            bytes = new ByteArrayOutputStream();
+            out = new DataOutputStream(bytes);
+            deflater = compressed ? new Deflater() : null;
+            deflateBuffer = compressed ? new byte[8192] : null;
+        }
+
+        BlockWriter reset() {
+            bytes.reset();
+            return this;
+        }
+
+        int rawLength() {
+            return bytes.size();
+        }
+
+        /**
+         * @return the number of written bytes
+         */
+        int writeTo(DataOutputStream target) throws IOException {
+            out.flush();
+            if (deflater == null) {
+                bytes.writeTo(target);
+                return bytes.size();
+            }
+            deflater.reset();
+            deflater.setInput(bytes.toByteArray());
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                int n = deflater.deflate(deflateBuffer);
+                target.write(deflateBuffer, 0, n);
+                length += n;
+            }
+            return length;
+        }
+
+        void end() {
+            if (deflater != null)
+                deflater.end();
+        }
+    }
+}
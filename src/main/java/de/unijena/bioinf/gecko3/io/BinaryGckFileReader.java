@@ -0,0 +1,411 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.io;
+
+import de.unijena.bioinf.gecko3.datastructures.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a gecko session in the binary .gck format, written by BinaryDataSetWriter.
+ *
+ * The genomes are read eagerly, the clusters are decoded from the memory mapped file when they are first accessed.
+ * Loading a session in the gui still decodes all clusters, the similarity reduction of the cluster list needs
+ * the occurrences of every cluster.
+ */
+class BinaryGckFileReader {
+    /**
+     * The maximum size of one mapping of the cluster blocks
+     */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private final File inputFile;
+    private boolean compressed;
+
+    private GeneFamilySet geneFamilies;
+    private GeneFamily[] dictionary;
+    private Genome[] genomes;
+    private Parameter parameters;
+    private int maxIdLength;
+    private int maxNameLength;
+    private int maxLocusTagLength;
+
+    BinaryGckFileReader(File inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    /**
+     * Checks if the file starts with the MAGIC of the binary format
+     */
+    static boolean isBinaryGckFile(File f) throws IOException {
+        try (FileInputStream in = new FileInputStream(f)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while (header.hasRemaining() && in.getChannel().read(header) >= 0);
+            return !header.hasRemaining() && header.getInt(0) == BinaryDataSetWriter.MAGIC;
+        }
+    }
+
+    DataSet readData() throws IOException, ParseException {
+        try (FileInputStream in = new FileInputStream(inputFile)) {
+            FileChannel channel = in.getChannel();
+            long fileSize = channel.size();
+            if (fileSize < BinaryDataSetWriter.HEADER_LENGTH + BinaryDataSetWriter.TRAILER_LENGTH)
+                throw new ParseException("File too short for a binary .gck file: " + fileSize + " bytes", 0);
+
+            ByteBuffer header = read(channel, 0, BinaryDataSetWriter.HEADER_LENGTH);
+            if (header.getInt() != BinaryDataSetWriter.MAGIC)
+                throw new ParseException("Not a binary .gck file!", 0);
+            int version = header.getInt();
+            if (version > BinaryDataSetWriter.VERSION)
+                throw new ParseException("Unsupported binary .gck version " + version + ", only versions up to " + BinaryDataSetWriter.VERSION + " are supported.", 0);
+            compressed = (header.getInt() & BinaryDataSetWriter.FLAG_COMPRESSED) != 0;
+
+            ByteBuffer trailer = read(channel, fileSize - BinaryDataSetWriter.TRAILER_LENGTH, BinaryDataSetWriter.TRAILER_LENGTH);
+            long footerOffset = trailer.getLong();
+            if (trailer.getInt() != BinaryDataSetWriter.MAGIC || footerOffset < BinaryDataSetWriter.HEADER_LENGTH || footerOffset > fileSize - BinaryDataSetWriter.TRAILER_LENGTH)
+                throw new ParseException("Malformed trailer, the file is probably truncated.", 0);
+
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, fileSize - BinaryDataSetWriter.TRAILER_LENGTH - footerOffset);
+            try {
+                long dataOffset = footer.getLong();
+                int dataStoredLength = footer.getInt();
+                int dataLength = footer.getInt();
+                checkBlock(dataOffset, dataStoredLength, footerOffset);
+                readDataBlock(decode(channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataStoredLength), dataLength));
+
+                int numberOfClusters = footer.getInt();
+                long[] clusterOffsets = new long[numberOfClusters];
+                int[] clusterStoredLengths = new int[numberOfClusters];
+                int[] clusterLengths = new int[numberOfClusters];
+                for (int i = 0; i < numberOfClusters; i++) {
+                    clusterOffsets[i] = footer.getLong();
+                    clusterStoredLengths[i] = footer.getInt();
+                    clusterLengths[i] = footer.getInt();
+                    checkBlock(clusterOffsets[i], clusterStoredLengths[i], footerOffset);
+                }
+                List<GeneCluster> clusters = new LazyClusterList(channel, clusterOffsets, clusterStoredLengths, clusterLengths);
+
+                return new DataSet(
+                        genomes,
+                        maxIdLength,
+                        maxNameLength,
+                        maxLocusTagLength,
+                        geneFamilies,
+                        clusters,
+                        parameters
+                );
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new ParseException("Malformed binary .gck file: " + e, 0);
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void checkBlock(long offset, int storedLength, long footerOffset) throws ParseException {
+        if (offset < BinaryDataSetWriter.HEADER_LENGTH || storedLength < 0 || offset + storedLength > footerOffset)
+            throw new ParseException("Block at " + offset + " with length " + storedLength + " is outside of the data section.", 0);
+    }
+
+    /**
+     * Inflates the block, if the file is compressed
+     * @param stored the stored bytes of the block
+     * @param length the length of the decoded block
+     * @return the decoded block
+     */
+    private ByteBuffer decode(ByteBuffer stored, int length) throws ParseException {
+        if (!compressed)
+            return stored;
+        byte[] storedBytes = new byte[stored.remaining()];
+        stored.get(storedBytes);
+        byte[] bytes = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(storedBytes);
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, n, length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                n += inflated;
+            }
+            if (n != length)
+                throw new ParseException("Compressed block has " + n + " bytes, expected " + length, 0);
+        } catch (DataFormatException e) {
+            throw new ParseException("Malformed compressed block: " + e.getMessage(), 0);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private void readDataBlock(ByteBuffer in) throws ParseException {
+        geneFamilies = new GeneFamilySet();
+
+        String[] externalIds = new String[in.getInt()];
+        for (int i = 0; i < externalIds.length; i++)
+            externalIds[i] = readString(in);
+
+        genomes = new Genome[in.getInt()];
+        for (int i = 0; i < genomes.length; i++) {
+            genomes[i] = new Genome(readString(in));
+            int numberOfChromosomes = in.getInt();
+            for (int j = 0; j < numberOfChromosomes; j++)
+                genomes[i].addChromosome(readChromosome(in, genomes[i], externalIds));
+        }
+
+        dictionary = new GeneFamily[externalIds.length];
+        for (int i = 0; i < externalIds.length; i++) {
+            if (externalIds[i].equals(GeneFamily.UNKNOWN_GENE_ID))
+                dictionary[i] = geneFamilies.getUnknownGeneFamily();
+            else
+                dictionary[i] = geneFamilies.getGeneFamily(externalIds[i]);
+        }
+
+        if (in.get() != 0) {
+            Parameter.OperationMode oMode = Parameter.OperationMode.getOperationModeFromChar(in.getChar());
+            Parameter.ReferenceType rType = Parameter.ReferenceType.getReferenceTypeFromChar(in.getChar());
+            boolean searchRefInRef = in.get() != 0;
+            int minClusterSize = in.getInt();
+            int quorum = in.getInt();
+            if (in.get() != 0) {
+                int[][] deltaTable = new int[in.getInt()][];
+                for (int i = 0; i < deltaTable.length; i++) {
+                    deltaTable[i] = new int[in.getInt()];
+                    for (int j = 0; j < deltaTable[i].length; j++)
+                        deltaTable[i][j] = in.getInt();
+                }
+                parameters = new Parameter(deltaTable, minClusterSize, quorum, oMode, rType, searchRefInRef, false);
+            } else {
+                parameters = new Parameter(in.getInt(), minClusterSize, quorum, oMode, rType, searchRefInRef, false);
+            }
+        }
+    }
+
+    private Chromosome readChromosome(ByteBuffer in, Genome genome, String[] externalIds) throws ParseException {
+        Chromosome chr = new Chromosome(readString(in), genome);
+        int numberOfGenes = in.getInt();
+        int[] geneFamilyIndices = new int[numberOfGenes];
+        for (int i = 0; i < numberOfGenes; i++) {
+            geneFamilyIndices[i] = in.getInt();
+            if (geneFamilyIndices[i] < 0 || geneFamilyIndices[i] >= externalIds.length)
+                throw new ParseException("Invalid gene family index: " + geneFamilyIndices[i], 0);
+        }
+        Gene.GeneOrientation[] orientations = new Gene.GeneOrientation[numberOfGenes];
+        for (int i = 0; i < numberOfGenes; i++) {
+            int orientation = in.get();
+            if (orientation < 0 || orientation >= Gene.GeneOrientation.values().length)
+                throw new ParseException("Invalid gene orientation: " + orientation, 0);
+            orientations[i] = Gene.GeneOrientation.values()[orientation];
+        }
+
+        List<Gene> genes = new ArrayList<>(numberOfGenes);
+        for (int i = 0; i < numberOfGenes; i++) {
+            String name = readString(in);
+            String tag = readString(in);
+            String annotation = readString(in);
+            String externalId = externalIds[geneFamilyIndices[i]];
+            GeneFamily geneFamily = geneFamilies.addGene(externalId);
+            genes.add(new Gene(name, tag, geneFamily, orientations[i], annotation));
+
+            maxIdLength = Math.max(maxIdLength, externalId.length());
+            if (tag != null)
+                maxLocusTagLength = Math.max(maxLocusTagLength, tag.length());
+            if (name != null)
+                maxNameLength = Math.max(maxNameLength, name.length());
+        }
+        chr.setGenes(genes);
+        return chr;
+    }
+
+    private GeneCluster readCluster(ByteBuffer in) throws ParseException {
+        int id = in.getInt();
+        int refSeqIndex = in.getInt();
+        Parameter.OperationMode mode = Parameter.OperationMode.getOperationModeFromChar(in.getChar());
+        int minTotalDistance = in.getInt();
+        BigDecimal pValue = readBigDecimal(in);
+        BigDecimal pValueCorr = readBigDecimal(in);
+
+        Set<GeneFamily> genes = new HashSet<>();
+        int numberOfGeneFamilies = in.getInt();
+        for (int i = 0; i < numberOfGeneFamilies; i++) {
+            int index = in.getInt();
+            if (index < 0 || index >= dictionary.length)
+                throw new ParseException("Invalid gene family index: " + index, 0);
+            if (dictionary[index] == null)
+                throw new ParseException("No gene family found in the genomes for cluster gene family index: " + index, 0);
+            genes.add(dictionary[index]);
+        }
+
+        int occId = in.getInt();
+        BigDecimal occPValue = readBigDecimal(in);
+        int support = in.getInt();
+        int totalDist = in.getInt();
+
+        Subsequence[][] subsequences = new Subsequence[in.getInt()][];
+        int numberOfSubsequences = 0;
+        for (int i = 0; i < subsequences.length; i++) {
+            subsequences[i] = new Subsequence[in.getInt()];
+            numberOfSubsequences += subsequences[i].length;
+        }
+        int[] chromosome = readIntColumn(in, numberOfSubsequences);
+        int[] dist = readIntColumn(in, numberOfSubsequences);
+        int[] start = readIntColumn(in, numberOfSubsequences);
+        int[] stop = readIntColumn(in, numberOfSubsequences);
+        int k = 0;
+        for (Subsequence[] genomeSubsequences : subsequences) {
+            for (int j = 0; j < genomeSubsequences.length; j++) {
+                genomeSubsequences[j] = new Subsequence(start[k], stop[k], chromosome[k], dist[k], readBigDecimal(in));
+                k++;
+            }
+        }
+
+        GeneClusterOccurrence allOccs = new GeneClusterOccurrence(occId, subsequences, occPValue, totalDist, support);
+        return new GeneCluster(id,
+                allOccs.getBestOccurrence(),
+                allOccs,
+                genes,
+                pValue,
+                pValueCorr,
+                minTotalDistance,
+                refSeqIndex,
+                mode);
+    }
+
+    private static int[] readIntColumn(ByteBuffer in, int length) {
+        int[] column = new int[length];
+        in.asIntBuffer().get(column);
+        in.position(in.position() + 4 * length);
+        return column;
+    }
+
+    private static String readString(ByteBuffer in) throws ParseException {
+        int length = in.getInt();
+        if (length == -1)
+            return null;
+        if (length < 0 || length > in.remaining())
+            throw new ParseException("Invalid string length: " + length, 0);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, BinaryDataSetWriter.CHARSET);
+    }
+
+    private static BigDecimal readBigDecimal(ByteBuffer in) throws ParseException {
+        int scale = in.getInt();
+        int length = in.getInt();
+        if (length <= 0 || length > in.remaining())
+            throw new ParseException("Invalid number length: " + length, 0);
+        byte[] unscaledValue = new byte[length];
+        in.get(unscaledValue);
+        return new BigDecimal(new BigInteger(unscaledValue), scale);
+    }
+
+    /**
+     * The clusters of the file, every cluster is decoded from the mapped file when it is first accessed.
+     * The cluster blocks are mapped in segments of at most MAX_SEGMENT_SIZE bytes, so files larger than 2GB can be read.
+     * The list is read only, except for clear(), callers that add clusters have to copy it first.
+     */
+    private class LazyClusterList extends AbstractList<GeneCluster> implements RandomAccess {
+        private ByteBuffer[] segments;
+        private int[] segmentIndex;
+        private int[] segmentOffset;
+        private int[] storedLengths;
+        private int[] lengths;
+        private GeneCluster[] clusters;
+
+        LazyClusterList(FileChannel channel, long[] offsets, int[] storedLengths, int[] lengths) throws IOException {
+            this.storedLengths = storedLengths;
+            this.lengths = lengths;
+            this.clusters = new GeneCluster[offsets.length];
+            this.segmentIndex = new int[offsets.length];
+            this.segmentOffset = new int[offsets.length];
+
+            List<ByteBuffer> segmentList = new ArrayList<>();
+            int i = 0;
+            while (i < offsets.length) {
+                long segmentStart = offsets[i];
+                long segmentEnd = segmentStart;
+                int first = i;
+                while (i < offsets.length && offsets[i] >= segmentStart && offsets[i] + storedLengths[i] - segmentStart <= MAX_SEGMENT_SIZE) {
+                    segmentIndex[i] = segmentList.size();
+                    segmentOffset[i] = (int) (offsets[i] - segmentStart);
+                    segmentEnd = Math.max(segmentEnd, offsets[i] + storedLengths[i]);
+                    i++;
+                }
+                if (i == first)
+                    throw new IOException("Cluster block " + i + " is larger than " + MAX_SEGMENT_SIZE + " bytes.");
+                segmentList.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+            }
+            this.segments = segmentList.toArray(new ByteBuffer[segmentList.size()]);
+        }
+
+        @Override
+        public synchronized GeneCluster get(int index) {
+            if (index < 0 || index >= clusters.length)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + clusters.length);
+            if (clusters[index] == null) {
+                ByteBuffer block = segments[segmentIndex[index]].duplicate();
+                block.position(segmentOffset[index]);
+                block.limit(segmentOffset[index] + storedLengths[index]);
+                try {
+                    clusters[index] = readCluster(decode(block.slice(), lengths[index]));
+                } catch (ParseException | BufferUnderflowException | IllegalArgumentException e) {
+                    throw new IllegalStateException("Malformed cluster " + index + " in " + inputFile, e);
+                }
+            }
+            return clusters[index];
+        }
+
+        @Override
+        public synchronized int size() {
+            return clusters.length;
+        }
+
+        @Override
+        public synchronized void clear() {
+            segments = new ByteBuffer[0];
+            segmentIndex = new int[0];
+            segmentOffset = new int[0];
+            storedLengths = new int[0];
+            lengths = new int[0];
+            clusters = new GeneCluster[0];
+            modCount++;
+        }
+    }
+}
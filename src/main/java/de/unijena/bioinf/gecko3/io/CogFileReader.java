@@ -20,12 +20,12 @@
 package de.unijena.bioinf.gecko3.io;
 
 import de.unijena.bioinf.gecko3.datastructures.*;
-import de.unijena.bioinf.gecko3.exceptions.LinePassedException;
 import de.unijena.bioinf.gecko3.util.SortUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -127,89 +127,58 @@ public class CogFileReader implements GeckoDataReader {
 		return "";
 	}
 	
+	/**
+	 * Creates the GenomeOccurrence for the given description line
+	 * @param desc the description line
+	 * @param line the line number of the description line
+	 * @return the GenomeOccurrence, without end line and group
+	 */
+	private GenomeOccurrence newGenomeOccurrence(String desc, int line) {
+		GenomeOccurrence occ = new GenomeOccurrence();
+		occ.setDesc(desc);
+		occ.setGenomeName(getGenomeName(desc));
+		occ.setChromosomeName(getChromosomeName(desc));
+		occ.setStart_line(line);
+		return occ;
+	}
+
+	/**
+	 * Sets the group of all genome occurrences. Genome occurrences with the same genome name get the same group,
+	 * genome occurrences that are the only ones with their genome name get the group 0.
+	 * @param genomeOccurrences the genome occurrences in file order, are modified
+	 */
+	private static void setGroups(List<GenomeOccurrence> genomeOccurrences) {
+		Map<String, Integer> groups = new HashMap<>();
+		Map<Integer, Integer> groupSize = new HashMap<>();
+		for (GenomeOccurrence occ : genomeOccurrences) {
+			Integer group = groups.get(occ.getGenomeName());
+			if (group == null) {
+				group = groups.size() + 1;
+				groups.put(occ.getGenomeName(), group);
+				groupSize.put(group, 1);
+			} else {
+				groupSize.put(group, groupSize.get(group) + 1);
+			}
+			occ.setGroup(group);
+		}
+
+		// Remove singleton groups
+		for (GenomeOccurrence occ : genomeOccurrences) {
+			if (groupSize.get(occ.getGroup()) == 1)	{
+				occ.setGroup(0);
+			}
+		}
+	}
+
 	/**
 	 * This method computes the occurrences of the genes.
 	 *
 	 * @throws FileNotFoundException
 	 */
 	public void importGenomesOccs() throws FileNotFoundException	{
-		occs = new ArrayList<>();
-		Map<Integer, Integer> groupSize = new HashMap<>();
-		try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            GenomeOccurrence add = new GenomeOccurrence();
-            Map<String, Integer> groups = new HashMap<>();
-
-            int curline = 0;
-            int j = 1;
-
-            if ((line = reader.readLine()) != null)	{
-                add.setDesc(line);
-                String genomeName = getGenomeName(line);
-                String chromName = getChromosomeName(line);
-                add.setGenomeName(genomeName);
-                add.setChromosomeName(chromName);
-                groups.put(genomeName, j);
-                add.setGroup(j);
-                groupSize.put(j, 1);
-                add.setStart_line(curline);
-            }
-
-            boolean next = false;
-
-            while ((line = reader.readLine()) != null) {
-                curline++;
-
-                if (next) {
-                    add.setEnd_line(curline - 2);
-                    occs.add(add);
-                    add = new GenomeOccurrence();
-                    add.setDesc(line);
-                    String genomeName = getGenomeName(line);
-                    String chromName = getChromosomeName(line);
-                    add.setGenomeName(genomeName);
-                    add.setChromosomeName(chromName);
-
-                    if (!groups.containsKey(genomeName)) {
-                        j++;
-                        groups.put(genomeName, j);
-                        add.setGroup(j);
-                        groupSize.put(j, 1);
-                    }
-                    else {
-                        int group = groups.get(genomeName);
-                        add.setGroup(group);
-                        groupSize.put(group, groupSize.get(group) + 1);
-                    }
-
-                    add.setStart_line(curline);
-                    next = false;
-                }
-
-                if (line.equals("")) {
-                    next = true;
-                }
-            }
-
-            if (next) {
-                add.setEnd_line(curline - 1);
-            }
-            else {
-                add.setEnd_line(curline);
-            }
-
-            if (add.getDesc() != null) {
-                occs.add(add);
-            }
-			
-			// Remove singleton groups
-			for (GenomeOccurrence occ : occs) {
-				if (groupSize.get(occ.getGroup()) == 1)	{
-					occ.setGroup(0);
-				}
-			}
-        }
-		catch (IOException e) {
+		try {
+			readGenomes(null, false, null);
+		} catch (IOException | ParseException e) {
 			if (e instanceof FileNotFoundException)	{
 				throw (FileNotFoundException) e;
 			}
@@ -219,6 +188,7 @@ public class CogFileReader implements GeckoDataReader {
 	
 	/**
 	 * The method reads the .cog file and set/generates the global variables.
+	 * Only the genome occurrences that are flagged are imported.
 	 *
 	 * @throws IOException
 	 * @throws ParseException
@@ -226,65 +196,101 @@ public class CogFileReader implements GeckoDataReader {
 	public DataSet readFileContent() throws IOException, ParseException{
         SortUtils.resortGenomeOccurencesByStart(occs);
 
-		Map<Integer, Genome> groupedGenomes = new HashMap<>();
-		List<Genome> ungroupedGenomes = new ArrayList<>();
+        Set<Integer> selectedOccs = new HashSet<>();
+        for (int i = 0; i < occs.size(); i++)
+            if (occs.get(i).isFlagged())
+                selectedOccs.add(i);
 
-        geneFamilies = new GeneFamilySet();
+        return readGenomes(selectedOccs, true, occs);
+	}
+
+    /**
+     * Reads the .cog file in one pass, computes the genome occurrences and imports the genes of the selected ones.
+     * The genes of all other genome occurrences are skipped without being tokenized.
+     * @param selectedOccs the indices of the genome occurrences that are imported, starting with 0.
+     *                     If null, all genome occurrences are imported.
+     * @param importGenes if false, only the genome occurrences are computed
+     * @param groupedOccs the genome occurrences of the file in file order, whose groups define the genomes, e.g. after
+     *                    they were changed in the gui, and that are kept. If null, the genome occurrences are computed,
+     *                    and all chromosomes with the same genome name are grouped into one genome.
+     * @return the data set, or null if importGenes is false
+     * @throws IOException
+     * @throws ParseException if the file format is wrong or a selected genome is not contained in the file
+     */
+    private DataSet readGenomes(Set<Integer> selectedOccs, boolean importGenes, List<GenomeOccurrence> groupedOccs) throws IOException, ParseException {
+        List<GenomeOccurrence> genomeOccurrences = new ArrayList<>();
+        Map<String, Integer> groupsByName = new HashMap<>();
+        Map<Integer, Genome> groupedGenomes = new HashMap<>();
+        List<Genome> genomeList = new ArrayList<>();
 
-        try (CountedReader reader = new CountedReader(new FileReader(inputFile))){
-            this.maxIdLength = 0;
-            this.maxNameLength = 0;
-            this.maxLocusTagLength = 0;
-
-            for (GenomeOccurrence occ : occs) {
-                if (!occ.isFlagged())
-                    continue;
-                Genome g;
-                if (occ.getGroup() == 0) {
-                    // If the group id is zero than we have a single chromosome genome,
-                    // therefore we have to create a new genome
-                    g = new Genome();
-                    g.setName(occ.getGenomeName());
-                    ungroupedGenomes.add(g);
-                } else {
-                    // If the group id is not zero we need to check if we already created
-                    // a genome for that group id and if not create a new one
-                    if (!groupedGenomes.containsKey(occ.getGroup())) {
-                        g = new Genome();
-                        g.setName(occ.getGenomeName());
-                        groupedGenomes.put(occ.getGroup(), g);
-                    } else {
-                        g = groupedGenomes.get(occ.getGroup());
+        geneFamilies = new GeneFamilySet();
+        this.maxIdLength = 0;
+        this.maxNameLength = 0;
+        this.maxLocusTagLength = 0;
+
+        try (MappedLineReader reader = new MappedLineReader(inputFile)) {
+            Charset charset = Charset.defaultCharset();
+            GeneLineTokenizer tokenizer = new GeneLineTokenizer();
+            GenomeOccurrence occ = null;
+            List<Gene> genes = null;
+            boolean nextIsDesc = true;
+            boolean nextIsHeader = false;
+            int curline = -1;
+
+            while (reader.nextLine(nextIsDesc || genes != null)) {
+                curline++;
+                if (nextIsDesc) {
+                    if (occ != null)
+                        occ.setEnd_line(curline - 2);
+                    occ = newGenomeOccurrence(new String(reader.getLine(), 0, reader.getLineLength(), charset), curline);
+                    genes = null;
+                    if (importGenes && (selectedOccs == null || selectedOccs.contains(genomeOccurrences.size()))) {
+                        int group;
+                        if (groupedOccs == null) {
+                            occ.setFlagged(true);
+                            group = groupOfGenomeName(groupsByName, occ.getGenomeName());
+                        } else {
+                            if (genomeOccurrences.size() >= groupedOccs.size())
+                                throw new ParseException("The genomes of " + inputFile + " do not match the imported genome occurrences.", curline);
+                            group = groupedOccs.get(genomeOccurrences.size()).getGroup();
+                        }
+                        genes = new ArrayList<>();
+                        addChromosome(groupedGenomes, genomeList, group, occ, genes);
                     }
+                    genomeOccurrences.add(occ);
+                    nextIsDesc = false;
+                    nextIsHeader = true;
+                } else if (nextIsHeader) {
+                    nextIsHeader = false;
+                } else if (genes != null && reader.getLineLength() != 0) {
+                    tokenizer.parseGeneLine(reader.getLine(), reader.getLineLength(), charset, genes);
                 }
-
-                Chromosome c = new Chromosome(occ.getChromosomeName(), g);
-                g.addChromosome(c);
-                c.setName(occ.getChromosomeName());
-
-                // Forward file pointer to genomes first gene
-                reader.jumpToLine(occ.getStart_line() + 2);
-
-                List<Gene> genes = readChromosome(reader, occ.getEnd_line(), geneFamilies);
-
-                // TODO handle the case where EOF is reached before endline
-                c.setGenes(genes);
+                if (reader.getLineLength() == 0)
+                    nextIsDesc = true;
             }
-        } catch (LinePassedException e) {
-            throw new ParseException(e.getMessage(), 0);
+            if (occ != null)
+                occ.setEnd_line(nextIsDesc ? curline - 1 : curline);
         }
-		
-		this.genomes = new Genome[groupedGenomes.size() + ungroupedGenomes.size()];
 
-        int i = 0;
-        for (Genome x : ungroupedGenomes) {
-            this.genomes[i++] = x;
+        if (selectedOccs != null) {
+            for (Integer selectedOcc : selectedOccs) {
+                if (selectedOcc < 0 || selectedOcc >= genomeOccurrences.size()) {
+                    ParseException e = new ParseException("Genome " + (selectedOcc + 1) + " is not contained in " + inputFile, 0);
+                    logger.error("Error parsing file", e);
+                    throw e;
+                }
+            }
         }
 
-        for (Genome x : groupedGenomes.values()) {
-            this.genomes[i++] = x;
+        if (groupedOccs == null) {
+            setGroups(genomeOccurrences);
+            occs = genomeOccurrences;
         }
 
+        if (!importGenes)
+            return null;
+
+        this.genomes = genomeList.toArray(new Genome[genomeList.size()]);
         Arrays.sort(genomes);
 
         return new DataSet(
@@ -294,82 +300,180 @@ public class CogFileReader implements GeckoDataReader {
                 maxLocusTagLength,
                 geneFamilies
         );
-	}
+    }
 
     /**
-     * Reads all the genes of one chromosome
-     * @param reader the reader that is used
-     * @param endLine the last line that contains a gene of the chromosome
-     * @param geneFamilies, is modified
-     * @return the list of all genes
-     * @throws IOException
+     * @param groupsByName the groups of the genome names found so far, is modified
+     * @return the group of the genome name, a new group if the genome name was not found before
      */
-    private List<Gene> readChromosome(CountedReader reader, int endLine, GeneFamilySet geneFamilies) throws  IOException, ParseException{
-        List<Gene> genes = new ArrayList<>();
-
-        String line;
-        while (reader.getCurrentLineNumber() <= endLine && (line = reader.readLine()) != null) {
-            if (!line.equals("")) {
-                parseGeneLine(line, genes, geneFamilies);
-            }
+    private static int groupOfGenomeName(Map<String, Integer> groupsByName, String genomeName) {
+        Integer group = groupsByName.get(genomeName);
+        if (group == null) {
+            group = groupsByName.size() + 1;
+            groupsByName.put(genomeName, group);
         }
-        return genes;
+        return group;
     }
 
     /**
-     * Parses one gene containing line of the cog file, append all contained genes to the given list
-     * @param line the line that is parsed
-     * @param genes the list the new found genes will be appended to, is modified
-     * @param geneFamilies all geneFamilies, is modified
+     * Adds a new chromosome for the genome occurrence to its genome. All chromosomes with the same group
+     * are grouped into one genome, a chromosome of group 0 is a genome of its own.
+     * @param groupedGenomes the genomes, by group, is modified
+     * @param genomes all genomes, is modified
+     * @param group the group of the genome occurrence
+     * @param occ the genome occurrence
+     * @param genes the genes of the new chromosome, will be filled while reading
      */
-    private void parseGeneLine(String line, List<Gene> genes, GeneFamilySet geneFamilies) throws ParseException {
-        String[] explode = line.split("\t");
-        if (explode.length < 5) {
-            ParseException e = new ParseException("Maleformed line, not enough \"\\t\" in "+line, 0);
-            logger.error("Error parsing file", e);
-            throw e;
+    private static void addChromosome(Map<Integer, Genome> groupedGenomes, List<Genome> genomes, int group, GenomeOccurrence occ, List<Gene> genes) {
+        Genome g = (group == 0) ? null : groupedGenomes.get(group);
+        if (g == null) {
+            g = new Genome();
+            g.setName(occ.getGenomeName());
+            genomes.add(g);
+            if (group != 0)
+                groupedGenomes.put(group, g);
         }
+        Chromosome c = new Chromosome(occ.getChromosomeName(), g);
+        g.addChromosome(c);
+        c.setName(occ.getChromosomeName());
+        c.setGenes(genes);
+    }
 
-        for (int i=0; i<explode.length; i++)
-            explode[i] = explode[i].trim();
-        String[] ids = explode[0].split(",");
-        for (int j = 0; j < ids.length; j++)
-            ids[j] = GeneFamily.convertToValidIdFormat(ids[j]);
-
-        Gene.GeneOrientation orientation;
-        switch (explode[1]) {
-            case "+":
-                orientation = Gene.GeneOrientation.POSITIVE;
-                break;
-            case "-":
-                orientation = Gene.GeneOrientation.NEGATIVE;
-                break;
-            default:
-                orientation = Gene.GeneOrientation.UNSIGNED;
-        }
+    /**
+     * Tokenizes the bytes of gene containing lines of the cog file, without creating intermediate Strings.
+     * Fields are handled like String.split("\t") and String.split(","), followed by String.trim().
+     */
+    private class GeneLineTokenizer {
+        private int[] fieldStart = new int[8];
+        private int[] fieldEnd = new int[8];
+        private int[] idStart = new int[4];
+        private int[] idEnd = new int[4];
+
+        /**
+         * Parses one gene containing line of the cog file, append all contained genes to the given list
+         * @param line the bytes of the line that is parsed
+         * @param length the length of the line
+         * @param charset the charset of the file
+         * @param genes the list the new found genes will be appended to, is modified
+         */
+        void parseGeneLine(byte[] line, int length, Charset charset, List<Gene> genes) throws ParseException {
+            int nrOfFields = 0;
+            int fieldCount = 0; // like split(), trailing empty fields are dropped
+            int start = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || line[i] == '\t') {
+                    if (nrOfFields == fieldStart.length) {
+                        fieldStart = Arrays.copyOf(fieldStart, 2 * nrOfFields);
+                        fieldEnd = Arrays.copyOf(fieldEnd, 2 * nrOfFields);
+                    }
+                    fieldStart[nrOfFields] = start;
+                    fieldEnd[nrOfFields] = i;
+                    nrOfFields++;
+                    if (i > start)
+                        fieldCount = nrOfFields;
+                    start = i + 1;
+                }
+            }
+            if (fieldCount < 5) {
+                ParseException e = new ParseException("Maleformed line, not enough \"\\t\" in "+new String(line, 0, length, charset), 0);
+                logger.error("Error parsing file", e);
+                throw e;
+            }
+            for (int i = 0; i < fieldCount; i++)
+                trim(line, i, fieldStart, fieldEnd);
+
+            Gene.GeneOrientation orientation = Gene.GeneOrientation.UNSIGNED;
+            if (fieldEnd[1] - fieldStart[1] == 1) {
+                if (line[fieldStart[1]] == '+')
+                    orientation = Gene.GeneOrientation.POSITIVE;
+                else if (line[fieldStart[1]] == '-')
+                    orientation = Gene.GeneOrientation.NEGATIVE;
+            }
+
+            String name = new String(line, fieldStart[3], fieldEnd[3] - fieldStart[3], charset);
+            String annotation = new String(line, fieldStart[4], fieldEnd[4] - fieldStart[4], charset);
+            String tag = fieldCount > 5 ? new String(line, fieldStart[5], fieldEnd[5] - fieldStart[5], charset) : null;
 
-        for (String singleId : ids) {   // We split multi id genes into multiple genes.
-            if (singleId.length() > maxIdLength)
-                maxIdLength = singleId.length();
+            int nrOfIds = splitIds(line, fieldStart[0], fieldEnd[0]);
+            for (int j = 0; j < nrOfIds; j++) {   // We split multi id genes into multiple genes.
+                trim(line, j, idStart, idEnd);
+                GeneFamily geneFamily = addGene(line, idStart[j], idEnd[j], charset);
 
-            if (explode.length > 5 && explode[5].length() > maxLocusTagLength)
-                maxLocusTagLength = explode[5].length();
+                if (geneFamily.getExternalId().length() > maxIdLength)
+                    maxIdLength = geneFamily.getExternalId().length();
 
-            if (explode[3].length() > maxNameLength) {
-                maxNameLength = explode[3].length();
+                if (tag != null && tag.length() > maxLocusTagLength)
+                    maxLocusTagLength = tag.length();
+
+                if (name.length() > maxNameLength)
+                    maxNameLength = name.length();
+
+                Gene gene;
+                if (tag != null)
+                    gene = new Gene(name, tag, geneFamily, orientation, annotation);
+                else
+                    gene = new Gene(name, geneFamily, orientation, annotation);
+                genes.add(gene);
             }
+        }
 
-            GeneFamily geneFamily = geneFamilies.addGene(singleId);
+        /**
+         * Splits the id field at ",", like String.split(",")
+         * @return the number of ids
+         */
+        private int splitIds(byte[] line, int from, int to) {
+            if (from == to) {
+                idStart[0] = from;
+                idEnd[0] = to;
+                return 1;
+            }
+            int nrOfIds = 0;
+            int idCount = 0;
+            int start = from;
+            for (int i = from; i <= to; i++) {
+                if (i == to || line[i] == ',') {
+                    if (nrOfIds == idStart.length) {
+                        idStart = Arrays.copyOf(idStart, 2 * nrOfIds);
+                        idEnd = Arrays.copyOf(idEnd, 2 * nrOfIds);
+                    }
+                    idStart[nrOfIds] = start;
+                    idEnd[nrOfIds] = i;
+                    nrOfIds++;
+                    if (i > start)
+                        idCount = nrOfIds;
+                    start = i + 1;
+                }
+            }
+            return idCount;
+        }
 
-            Gene gene;
-            if (explode.length > 5)
-                gene = new Gene(explode[3], explode[5], geneFamily, orientation, explode[4]);
-            else
-                gene = new Gene(explode[3], geneFamily, orientation, explode[4]);
-            genes.add(gene);
+        /**
+         * Adds the gene to the gene families, like addGene(GeneFamily.convertToValidIdFormat(id)).
+         * Plain numeric ids are parsed directly from the bytes.
+         */
+        private GeneFamily addGene(byte[] line, int from, int to, Charset charset) {
+            if (from < to && to - from <= 18) {
+                long id = 0;
+                int i = from;
+                while (i < to && line[i] >= '0' && line[i] <= '9')
+                    id = 10 * id + (line[i++] - '0');
+                if (i == to && id <= Integer.MAX_VALUE)
+                    return geneFamilies.addGene((int) id);
+            }
+            return geneFamilies.addGene(GeneFamily.convertToValidIdFormat(new String(line, from, to - from, charset)));
         }
     }
 
+    /**
+     * Trims the given token, like String.trim()
+     */
+    private static void trim(byte[] line, int token, int[] start, int[] end) {
+        while (start[token] < end[token] && (line[start[token]] & 0xff) <= ' ')
+            start[token]++;
+        while (end[token] > start[token] && (line[end[token] - 1] & 0xff) <= ' ')
+            end[token]--;
+    }
+
 	private boolean isUnHomologe(String id) {
 		return id.equals(GeneFamily.UNKNOWN_GENE_ID);
 	}
@@ -382,21 +486,16 @@ public class CogFileReader implements GeckoDataReader {
      */
     @Override
     public DataSet readData() throws IOException, ParseException {
-        // Read all occs
-        importGenomesOccs();
-
         // Choose genomes to import
-        if (genomeList != null){
-            for (Integer selectedGenome : genomeList) {
-                occs.get(selectedGenome-1).setFlagged(true);
-            }
-        } else {
-            for (GenomeOccurrence occ : occs)
-                occ.setFlagged(true);
+        Set<Integer> selectedOccs = null;
+        if (genomeList != null) {
+            selectedOccs = new HashSet<>();
+            for (Integer selectedGenome : genomeList)
+                selectedOccs.add(selectedGenome - 1);
         }
 
-        // Import the genomes
-        return readFileContent();
+        // Read all occs and import the genomes in one pass
+        return readGenomes(selectedOccs, true, null);
     }
 
     /**
@@ -56,12 +56,50 @@ public class DataSetWriter{
     final static String OCC_START = "<occ>";
     final static String OCC_END = "</occ>";
 
+    /**
+     * The formats a session can be saved in
+     */
+    public enum Format {
+        /**
+         * The line based text format
+         */
+        TEXT,
+        /**
+         * The binary format, clusters can be loaded on demand
+         */
+        BINARY,
+        /**
+         * The binary format, with every block deflated
+         */
+        COMPRESSED_BINARY
+    }
+
 	/**
-	 * Saves the current gecko session to a given file
+	 * Saves the current gecko session to a given file, in the text format
 	 * @param f The file to write to
 	 */
 	public static boolean saveDataSetToFile(DataSet data, File f)
 	{
+        return saveDataSetToFile(data, f, Format.TEXT);
+	}
+
+    /**
+     * Saves the current gecko session to a given file
+     * @param f The file to write to
+     * @param format the format of the file
+     */
+    public static boolean saveDataSetToFile(DataSet data, File f, Format format)
+    {
+        if (format != Format.TEXT) {
+            try {
+                BinaryDataSetWriter.writeDataSet(data, f, format == Format.COMPRESSED_BINARY);
+                return true;
+            } catch (IOException e) {
+                logger.warn("Unable to write dataset", e);
+                return false;
+            }
+        }
+
         boolean returnValue = true;
 
         try (BufferedWriter out = Files.newBufferedWriter(f.toPath(), Charset.forName("UTF-8"))) {
@@ -33,6 +33,7 @@ import java.util.*;
 
 /**
  * The class implements a reader for .gck files (session files).
+ * Files in the binary format are recognized by their first bytes and read with BinaryGckFileReader.
  * The code is exported from GeckoInstance.java and modified.
  * 
  * @author Hans-Martin Haase
@@ -81,6 +82,14 @@ public class GckFileReader implements GeckoDataReader {
      */
     @Override
     public DataSet readData() throws IOException, ParseException {
+        if (BinaryGckFileReader.isBinaryGckFile(inputFile)) {
+            try {
+                return new BinaryGckFileReader(inputFile).readData();
+            } catch (IOException | ParseException e) {
+                handleFailedSessionLoad();
+                throw e;
+            }
+        }
         try	(BufferedReader reader = Files.newBufferedReader(inputFile.toPath(), Charset.forName("UTF-8"))) {
             geneFamilies = new GeneFamilySet();
 
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a file as bytes from a memory mapped FileChannel.
+ *
+ * The file is mapped in windows of MAPPING_SIZE bytes, so files larger than 2GB can be read.
+ * Lines are terminated by "\n", "\r" or "\r\n", like in BufferedReader.readLine().
+ * The content of the current line is copied into a buffer that is reused for the next line.
+ */
+class MappedLineReader implements AutoCloseable {
+    private static final long MAPPING_SIZE = 1L << 28;
+    private static final int INITIAL_LINE_CAPACITY = 256;
+
+    private final FileInputStream inputStream;
+    private final FileChannel channel;
+    private final long fileSize;
+    private long mappedEnd;
+    private MappedByteBuffer buffer;
+
+    private byte[] line;
+    private int lineLength;
+    private boolean skipLineFeed;
+
+    MappedLineReader(File file) throws IOException {
+        this.inputStream = new FileInputStream(file);
+        this.channel = inputStream.getChannel();
+        this.fileSize = channel.size();
+        this.mappedEnd = 0;
+        this.buffer = null;
+        this.line = new byte[INITIAL_LINE_CAPACITY];
+        this.lineLength = 0;
+        this.skipLineFeed = false;
+    }
+
+    /**
+     * Maps the next window of the file, if the current one is exhausted
+     * @return false, if the end of the file is reached
+     */
+    private boolean ensureMapped() throws IOException {
+        if (buffer != null && buffer.hasRemaining())
+            return true;
+        if (mappedEnd >= fileSize)
+            return false;
+        long size = Math.min(MAPPING_SIZE, fileSize - mappedEnd);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, mappedEnd, size);
+        mappedEnd += size;
+        return true;
+    }
+
+    /**
+     * Reads the next line.
+     * @param copyContent if false, only the length of the line is determined and the content of getLine() is undefined
+     * @return false, if the end of the file is reached
+     * @throws IOException if the file can not be mapped
+     */
+    boolean nextLine(boolean copyContent) throws IOException {
+        lineLength = 0;
+        boolean readAnything = false;
+        while (ensureMapped()) {
+            byte b = buffer.get();
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n')
+                    continue;
+            }
+            readAnything = true;
+            if (b == '\n')
+                return true;
+            if (b == '\r') {
+                skipLineFeed = true;
+                return true;
+            }
+            if (copyContent) {
+                if (lineLength == line.length)
+                    line = Arrays.copyOf(line, 2 * lineLength);
+                line[lineLength] = b;
+            }
+            lineLength++;
+        }
+        return readAnything;
+    }
+
+    /**
+     * The content of the current line, only valid up to getLineLength()
+     */
+    byte[] getLine() {
+        return line;
+    }
+
+    int getLineLength() {
+        return lineLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        inputStream.close();
+    }
+}
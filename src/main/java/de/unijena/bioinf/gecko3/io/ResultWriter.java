@@ -119,12 +119,9 @@ public class ResultWriter {
 
     private static boolean writeGeneClusterTable(File f, List<GeneCluster> clusters) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(f))){
-            writer.write("%%ID\t#GeneFamilies\t#Genomes\tMin PWDistance\tMax PWDistance\tAvg PWDistance\nScore\nFDR Score\nPValue\nFDR PValue\nReference Gene Names");
-            writer.newLine();
+            writeGeneClusterTableHeader(writer);
             for (int i=0; i<clusters.size(); i++) {
-                GeneCluster cluster = clusters.get(i);
-                writer.write(String.format("%d\t%d\t%d\t%d\t%d\t%.1f\t%.2f\t%.2f\t%.4g\t%.4g\t%s", cluster.getId(), cluster.getGeneFamilies().size(), cluster.getSize(), cluster.getMinPWDist(), cluster.getMaxPWDist(), cluster.getAvgPWDist(), cluster.getBestScore(), cluster.getBestCorrectedScore(), cluster.getBestPValue(), cluster.getBestPValueCorrected(), cluster.getReferenceGeneNames()));
-                writer.newLine();
+                writeGeneClusterTableRow(writer, clusters.get(i));
             }
             //writer.write("No of genes & No of genomes & min. $\\delta$ & max. $\\delta$ & avg. $\\delta$ & pValue & corrected pValue & \\\\\n");
         } catch (IOException e) {
@@ -134,43 +131,21 @@ public class ResultWriter {
         return true;
 	}
 
-    private static boolean writeClusterConservationFile(File f, List<GeneCluster> clusters, List<String> genomeNames) {
-        boolean useAllOccurrences = true;
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(f))){
-            writer.write("%%For each cluster occurrence:");
-            writer.newLine();
-            writer.write("%%Genome\t#missing genes\t#additional genes\tgene order conservation\tgene conservation");
-            writer.newLine();
-            writer.write("%%Gene order conservation is either \"+\" for singleton genes or genes not in the reference occurrence, or the gene family id.");
-            writer.newLine();
-            writer.write("%%Gene conservation gives the gene family order in the last line above the occurrences. For each occurrence, for each gene family, 1 means conserved, 0 means not conserved. Singleton gene families are excluded.");
-            writer.newLine();
-
-            for (GeneCluster cluster : clusters){
-                writer.write(String.format("Cluster ID: %d\t p-Value: %.2f", cluster.getId(), cluster.getBestCorrectedScore()));
-                writer.newLine();
+    static void writeGeneClusterTableHeader(BufferedWriter writer) throws IOException {
+        writer.write("%%ID\t#GeneFamilies\t#Genomes\tMin PWDistance\tMax PWDistance\tAvg PWDistance\nScore\nFDR Score\nPValue\nFDR PValue\nReference Gene Names");
+        writer.newLine();
+    }
 
-                List<GeneFamily> sortedGeneFamilies = new ArrayList<>(cluster.getGeneFamilies());
-                Collections.sort(sortedGeneFamilies);
-                StringBuilder builder = new StringBuilder();
-                for (GeneFamily family : sortedGeneFamilies)
-                    builder.append(family.getExternalId()).append(" ");
-                writer.write(String.format("\t\t\tGene order for gene conservation:\t%s", builder.toString()));
-                writer.newLine();
+    static void writeGeneClusterTableRow(BufferedWriter writer, GeneCluster cluster) throws IOException {
+        writer.write(String.format("%d\t%d\t%d\t%d\t%d\t%.1f\t%.2f\t%.2f\t%.4g\t%.4g\t%s", cluster.getId(), cluster.getGeneFamilies().size(), cluster.getSize(), cluster.getMinPWDist(), cluster.getMaxPWDist(), cluster.getAvgPWDist(), cluster.getBestScore(), cluster.getBestCorrectedScore(), cluster.getBestPValue(), cluster.getBestPValueCorrected(), cluster.getReferenceGeneNames()));
+        writer.newLine();
+    }
 
-                GeneClusterOccurrence occ = cluster.getOccurrences(useAllOccurrences);
-                for (int i=0; i<occ.getSubsequences().length; i++) {
-                    if (occ.getSubsequences()[i].length == 0)
-                        continue;
-                    List<String> geneConservation = cluster.getGeneConservation(i, useAllOccurrences);
-                    List<String> geneContained = cluster.getGeneContained(i, useAllOccurrences);
-                    for (int j=0; j<occ.getSubsequences()[i].length; j++){
-                        writer.write(String.format("%s\t%s\t%s" , genomeNames.get(i), geneConservation.get(j), geneContained.get(j)));
-                        writer.newLine();
-                    }
-                }
-                writer.newLine();
-            }
+    private static boolean writeClusterConservationFile(File f, List<GeneCluster> clusters, List<String> genomeNames) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(f))){
+            writeClusterConservationHeader(writer);
+            for (GeneCluster cluster : clusters)
+                writeClusterConservation(writer, cluster, genomeNames);
         } catch (IOException e) {
             logger.warn("Write error", e);
             return false;
@@ -178,19 +153,48 @@ public class ResultWriter {
         return true;
     }
 
-    private static boolean writeClusterGenomeInformation(File file, List<GeneCluster> clusters, List<String> genomeNames) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))){
-            for (GeneCluster cluster : clusters){
-                writer.write(String.format("Cluster ID: %d\t p-Value: %.2f\n", cluster.getId(), cluster.getBestCorrectedScore()));
-                GeneClusterOccurrence occ = cluster.getOccurrences(false);
-                for (int i=0; i<occ.getSubsequences().length; i++) {
-                    if (occ.getSubsequences()[i].length != 0) {
-                        writer.write(genomeNames.get(i));
-                        writer.newLine();
-                    }
-                }
+    static void writeClusterConservationHeader(BufferedWriter writer) throws IOException {
+        writer.write("%%For each cluster occurrence:");
+        writer.newLine();
+        writer.write("%%Genome\t#missing genes\t#additional genes\tgene order conservation\tgene conservation");
+        writer.newLine();
+        writer.write("%%Gene order conservation is either \"+\" for singleton genes or genes not in the reference occurrence, or the gene family id.");
+        writer.newLine();
+        writer.write("%%Gene conservation gives the gene family order in the last line above the occurrences. For each occurrence, for each gene family, 1 means conserved, 0 means not conserved. Singleton gene families are excluded.");
+        writer.newLine();
+    }
+
+    static void writeClusterConservation(BufferedWriter writer, GeneCluster cluster, List<String> genomeNames) throws IOException {
+        boolean useAllOccurrences = true;
+        writer.write(String.format("Cluster ID: %d\t p-Value: %.2f", cluster.getId(), cluster.getBestCorrectedScore()));
+        writer.newLine();
+
+        List<GeneFamily> sortedGeneFamilies = new ArrayList<>(cluster.getGeneFamilies());
+        Collections.sort(sortedGeneFamilies);
+        StringBuilder builder = new StringBuilder();
+        for (GeneFamily family : sortedGeneFamilies)
+            builder.append(family.getExternalId()).append(" ");
+        writer.write(String.format("\t\t\tGene order for gene conservation:\t%s", builder.toString()));
+        writer.newLine();
+
+        GeneClusterOccurrence occ = cluster.getOccurrences(useAllOccurrences);
+        for (int i=0; i<occ.getSubsequences().length; i++) {
+            if (occ.getSubsequences()[i].length == 0)
+                continue;
+            List<String> geneConservation = cluster.getGeneConservation(i, useAllOccurrences);
+            List<String> geneContained = cluster.getGeneContained(i, useAllOccurrences);
+            for (int j=0; j<occ.getSubsequences()[i].length; j++){
+                writer.write(String.format("%s\t%s\t%s" , genomeNames.get(i), geneConservation.get(j), geneContained.get(j)));
                 writer.newLine();
             }
+        }
+        writer.newLine();
+    }
+
+    private static boolean writeClusterGenomeInformation(File file, List<GeneCluster> clusters, List<String> genomeNames) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))){
+            for (GeneCluster cluster : clusters)
+                writeClusterGenomeInformation(writer, cluster, genomeNames);
         } catch (IOException e) {
             logger.warn("Write error", e);
             return false;
@@ -198,13 +202,22 @@ public class ResultWriter {
         return true;
     }
 
-    private static boolean writeReferenceClusterTags(File file, List<GeneCluster> clusters) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            for (GeneCluster cluster : clusters){
-                writer.write(String.format("%d, ", cluster.getId()));
-                writer.write(cluster.getLocusTags(cluster.getRefSeqIndex()));
+    static void writeClusterGenomeInformation(BufferedWriter writer, GeneCluster cluster, List<String> genomeNames) throws IOException {
+        writer.write(String.format("Cluster ID: %d\t p-Value: %.2f\n", cluster.getId(), cluster.getBestCorrectedScore()));
+        GeneClusterOccurrence occ = cluster.getOccurrences(false);
+        for (int i=0; i<occ.getSubsequences().length; i++) {
+            if (occ.getSubsequences()[i].length != 0) {
+                writer.write(genomeNames.get(i));
                 writer.newLine();
             }
+        }
+        writer.newLine();
+    }
+
+    private static boolean writeReferenceClusterTags(File file, List<GeneCluster> clusters) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (GeneCluster cluster : clusters)
+                writeReferenceClusterTags(writer, cluster);
         } catch (IOException e){
             logger.warn("Write error", e);
             return false;
@@ -212,6 +225,12 @@ public class ResultWriter {
         return true;
     }
 
+    static void writeReferenceClusterTags(BufferedWriter writer, GeneCluster cluster) throws IOException {
+        writer.write(String.format("%d, ", cluster.getId()));
+        writer.write(cluster.getLocusTags(cluster.getRefSeqIndex()));
+        writer.newLine();
+    }
+
 
     private static boolean writeGeneClusterGeneNameTable(File f, List<GeneCluster> clusters, List<String> genomeNames, ExportType.AdditionalExportParameters additionalExportParameters) {
         Set<String> genomeNamesUsedInOutput = additionalExportParameters.getGenomeNames();
@@ -287,9 +306,7 @@ public class ResultWriter {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(f))){
             //writer.write("No of genes & No of genomes & min. $\\delta$ & max. $\\delta$ & avg. $\\delta$ & pValue & corrected pValue & \\\\\n");
             for (int i=0; i<clusters.size(); i++) {
-                GeneCluster cluster = clusters.get(i);
-                writer.write(String.format("%d & %d & %d & %d & %d & %.1f & %.2f & %.2f & %s \\\\%n", cluster.getId(), cluster.getGeneFamilies().size(), cluster.getSize(), cluster.getMinPWDist(), cluster.getMaxPWDist(), cluster.getAvgPWDist(), cluster.getBestScore(), cluster.getBestCorrectedScore(), cluster.getReferenceGeneNames()));
-                System.out.println(String.format("%d\t%.8g\t%.8g", cluster.getId(), cluster.getBestPValue(), cluster.getBestPValueCorrected()));
+                writeGeneClusterLatexTableRow(writer, clusters.get(i));
             }
         } catch (IOException e) {
             logger.warn("Write error", e);
@@ -298,6 +315,11 @@ public class ResultWriter {
         return true;
 	}
 
+    static void writeGeneClusterLatexTableRow(BufferedWriter writer, GeneCluster cluster) throws IOException {
+        writer.write(String.format("%d & %d & %d & %d & %d & %.1f & %.2f & %.2f & %s \\\\%n", cluster.getId(), cluster.getGeneFamilies().size(), cluster.getSize(), cluster.getMinPWDist(), cluster.getMaxPWDist(), cluster.getAvgPWDist(), cluster.getBestScore(), cluster.getBestCorrectedScore(), cluster.getReferenceGeneNames()));
+        System.out.println(String.format("%d\t%.8g\t%.8g", cluster.getId(), cluster.getBestPValue(), cluster.getBestPValueCorrected()));
+    }
+
     private static boolean writeGeneClusterStatistic(File f, List<GeneCluster> clusters, List<String> genomeNames) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(f))){
             final boolean HIDE_NON_OCCS = false; // if true, don't print all the non occurrences
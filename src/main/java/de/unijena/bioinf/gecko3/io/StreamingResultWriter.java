@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.io;
+
+import de.unijena.bioinf.gecko3.algo.GeneClusterSink;
+import de.unijena.bioinf.gecko3.datastructures.GeneCluster;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Writes the gene clusters to the file as they are passed by the cluster detection,
+ * in the same format as the ResultWriter, but without sorting and filtering.
+ * Only the export types that are written cluster by cluster are supported, see supports().
+ */
+public class StreamingResultWriter implements GeneClusterSink, Closeable {
+    private final BufferedWriter writer;
+    private final ExportType type;
+    private final List<String> genomeNames;
+
+    /**
+     * Creates the file and writes the header
+     * @param file the output file
+     * @param type the export type, has to be supported
+     * @param genomeNames the names of all genomes
+     * @throws IOException
+     */
+    public StreamingResultWriter(File file, ExportType type, List<String> genomeNames) throws IOException {
+        if (!supports(type))
+            throw new IllegalArgumentException(String.format("Export type %s can not be written while the clusters are computed.", type));
+        this.type = type;
+        this.genomeNames = genomeNames;
+        this.writer = new BufferedWriter(new FileWriter(file));
+        try {
+            if (type == ExportType.table)
+                ResultWriter.writeGeneClusterTableHeader(writer);
+            else if (type == ExportType.clusterConservation)
+                ResultWriter.writeClusterConservationHeader(writer);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param type the export type
+     * @return true if the export type can be written cluster by cluster
+     */
+    public static boolean supports(ExportType type) {
+        switch (type) {
+            case table:
+            case latexTable:
+            case clusterConservation:
+            case clusterGenomeInformation:
+            case referenceClusterTags:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void accept(GeneCluster cluster) throws IOException {
+        switch (type) {
+            case table:
+                ResultWriter.writeGeneClusterTableRow(writer, cluster);
+                break;
+            case latexTable:
+                ResultWriter.writeGeneClusterLatexTableRow(writer, cluster);
+                break;
+            case clusterConservation:
+                ResultWriter.writeClusterConservation(writer, cluster, genomeNames);
+                break;
+            case clusterGenomeInformation:
+                ResultWriter.writeClusterGenomeInformation(writer, cluster, genomeNames);
+                break;
+            case referenceClusterTags:
+                ResultWriter.writeReferenceClusterTags(writer, cluster);
+                break;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the sorted delta location list
+ */
+public class ListOfDeltaLocationsTest {
+
+    private static DeltaLocation dLoc(int chrNr, int l, int r, int distance) {
+        return dLoc(chrNr, l, r, distance, 2);
+    }
+
+    private static DeltaLocation dLoc(int chrNr, int l, int r, int distance, int hitCount) {
+        return new DeltaLocation(0, chrNr, l, r, distance, 0, 0, r - l + 1, hitCount, true);
+    }
+
+    private static List<DeltaLocation> toList(ListOfDeltaLocations list) {
+        List<DeltaLocation> result = new ArrayList<>();
+        for (DeltaLocation dLoc : list)
+            result.add(dLoc);
+        return result;
+    }
+
+    /**
+     * The quadratic nesting filter getOptimalCopy replaced.
+     */
+    private static List<DeltaLocation> naiveOptimalCopy(List<DeltaLocation> sortedLocations) {
+        List<DeltaLocation> newList = new ArrayList<>();
+        for (DeltaLocation dLoc : sortedLocations) {
+            if (!dLoc.isValid())
+                continue;
+            boolean validLoc = true;
+            Iterator<DeltaLocation> newLocIter = newList.iterator();
+            while (newLocIter.hasNext()) {
+                DeltaLocation newLoc = newLocIter.next();
+                if (dLoc.getDistance() >= newLoc.getDistance() && dLoc.isNested(newLoc)) {
+                    validLoc = false;
+                    break;
+                }
+                if (newLoc.getDistance() >= dLoc.getDistance() && newLoc.isNested(dLoc))
+                    newLocIter.remove();
+            }
+            if (validLoc)
+                newList.add(dLoc);
+        }
+        return newList;
+    }
+
+    @Test
+    public void testInsertKeepsOrderAndFirstInterval() {
+        ListOfDeltaLocations list = new ListOfDeltaLocations();
+        DeltaLocation first = dLoc(0, 5, 8, 1);
+        list.insertDeltaLocation(dLoc(1, 1, 3, 0));
+        list.insertDeltaLocation(first);
+        list.insertDeltaLocation(dLoc(0, 5, 6, 0));
+        list.insertDeltaLocation(dLoc(0, 2, 9, 0));
+        list.insertDeltaLocation(dLoc(0, 5, 8, 0));
+
+        List<DeltaLocation> result = toList(list);
+        assertEquals(4, result.size());
+        assertEquals(2, result.get(0).getL());
+        assertEquals(6, result.get(1).getR());
+        assertSame(first, result.get(2));
+        assertEquals(1, result.get(3).getChrNr());
+    }
+
+    @Test
+    public void testMergeKeepsNewIntervals() {
+        DeltaLocationPool pool = new DeltaLocationPool();
+        ListOfDeltaLocations list = new ListOfDeltaLocations(pool);
+        list.insertDeltaLocation(dLoc(0, 1, 4, 2));
+        list.insertDeltaLocation(dLoc(0, 7, 9, 1));
+
+        ListOfDeltaLocations newList = new ListOfDeltaLocations(pool);
+        DeltaLocation newLoc = dLoc(0, 7, 9, 0);
+        newList.insertDeltaLocation(newLoc);
+        newList.insertDeltaLocation(dLoc(0, 3, 5, 0));
+
+        list.mergeLists(newList);
+
+        List<DeltaLocation> result = toList(list);
+        assertEquals(3, result.size());
+        assertEquals(1, result.get(0).getL());
+        assertEquals(3, result.get(1).getL());
+        assertSame(newLoc, result.get(2));
+        assertEquals(0, newList.size());
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testReferenceListPoolStaysBounded() {
+        List<ListOfDeltaLocations> lists = ReferenceClusterAlgorithm.newDeltaLocationLists(3, 1);
+        assertNull(lists.get(1).getPool());
+        assertNotNull(lists.get(0).getPool());
+        assertNotNull(lists.get(2).getPool());
+
+        // the reference list gets a new reference location for every right border
+        for (int r = 1; r <= 10000; r++) {
+            for (ListOfDeltaLocations list : lists) {
+                list.emptyList();
+                list.insertDeltaLocation(DeltaLocation.getReferenceLocation(1, 0, 1, r, r));
+            }
+        }
+        assertEquals(DeltaLocationPool.MAX_SIZE, lists.get(0).getPool().size());
+    }
+
+    @Test
+    public void testOptimalCopyEqualsNaiveFilter() {
+        Random rnd = new Random(7);
+        for (int run = 0; run < 500; run++) {
+            ListOfDeltaLocations list = new ListOfDeltaLocations();
+            int count = rnd.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                int l = 1 + rnd.nextInt(20);
+                list.insertDeltaLocation(dLoc(rnd.nextInt(3), l, l + rnd.nextInt(8), rnd.nextInt(4), 1 + rnd.nextInt(3)));
+            }
+            assertEquals(naiveOptimalCopy(toList(list)), toList(list.getOptimalCopy()));
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 
@@ -46,4 +47,40 @@ public class NUMTest {
 
         assertEquals(3, chr.getNUM(1, 5));
     }
+
+    @Test
+    public void distinctCountIndexEqualsScan() {
+        Random random = new Random(13);
+        for (int run = 0; run < 20; run++) {
+            int[] genes = new int[50 + random.nextInt(350)];
+            int alphabetSize = 1 + random.nextInt(30);
+            for (int i = 0; i < genes.length; i++)
+                genes[i] = (random.nextInt(8) == 0) ? -1 - random.nextInt(3) : 1 + random.nextInt(alphabetSize);
+            Chromosome scan = new Chromosome(genes, 0, true);
+            scan.initializeForCalculation(alphabetSize, 3);
+            Chromosome index = new Chromosome(genes, 0, true);
+            index.initializeForCalculation(alphabetSize, 3, true);
+
+            // the index itself, independent of MIN_INTERVAL_LENGTH
+            int[] zeroTerminatedGenes = new int[genes.length + 2];
+            int[] prevOcc = new int[genes.length + 2];
+            for (int i = 0; i < zeroTerminatedGenes.length; i++) {
+                zeroTerminatedGenes[i] = scan.getGene(i);
+                prevOcc[i] = scan.getPrevOCC(i);
+            }
+            DistinctCountIndex distinctCountIndex = new DistinctCountIndex(zeroTerminatedGenes, prevOcc);
+
+            for (int l = 1; l <= genes.length; l++) {
+                for (int r = l - 1; r <= genes.length; r++) {
+                    assertEquals(scan.getNUM(l, r), distinctCountIndex.getNUM(l, r));
+                    assertEquals(scan.getNUM(l, r), index.getNUM(l, r));
+                    int l2 = l + random.nextInt(r - l + 2);
+                    int r2 = l2 - 1 + random.nextInt(r - l2 + 2);
+                    assertEquals(scan.intervalContentIdentical(l, r, l2, r2), index.intervalContentIdentical(l, r, l2, r2));
+                    assertEquals(scan.intervalContentIdentical(l, r, l, r2), index.intervalContentIdentical(l, r, l, r2));
+                    assertEquals(scan.intervalContentIdentical(l2, r, l, r), index.intervalContentIdentical(l2, r, l, r));
+                }
+            }
+        }
+    }
 }
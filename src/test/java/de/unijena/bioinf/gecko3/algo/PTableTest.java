@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+import cern.jet.random.Binomial;
+import cern.jet.random.engine.MersenneTwister;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PTableTest {
+    private static final double[] PROBABILITIES = {0.0, 1.0, 0.5, 0.0, 0.25, 0.2, 1.0/6.0, 0.1};
+
+    @Test
+    public void twoEqualChars() {
+        PTable table = new PTable(new double[]{0.0, 1.0, 0.5}, 2, 2);
+        assertEquals(1.0, table.getValue(0, 0), 0.0);
+        assertEquals(0.5, table.getValue(2, 1), 1e-15);
+        assertEquals(0.5, table.getValue(2, 2), 1e-15);
+        assertEquals(0.25, table.getValue(3, 1), 1e-15);
+        assertEquals(0.75, table.getValue(3, 2), 1e-15);
+    }
+
+    @Test
+    public void equalsReferenceComputation() {
+        int maxLength = 12;
+        int maxDifferentChars = 4;
+        double[][][] expected = referenceTable(PTable.sparseProbabilities(PROBABILITIES), maxLength, maxDifferentChars);
+        int numberOfChars = expected.length - 1;
+        PTable table = new PTable(PROBABILITIES, 3, maxDifferentChars);
+        for (int l=0; l<=maxLength; l++)
+            for (int h=0; h<=maxDifferentChars; h++)
+                assertEquals(expected[numberOfChars][l][h], table.getValue(l, h), 1e-14);
+    }
+
+    @Test
+    public void independentOfQueryOrder() {
+        PTable stepwise = new PTable(PROBABILITIES, 1, 3);
+        PTable direct = new PTable(PROBABILITIES, 20, 3);
+        for (int l=0; l<=20; l++)
+            assertEquals(direct.getValue(l, 3), stepwise.getValue(l, 3), 0.0);
+        for (int l=0; l<=20; l++)
+            assertEquals(direct.getValue(l, 1), stepwise.getValue(l, 1), 0.0);
+    }
+
+    @Test
+    public void cacheSharesEqualProfiles() {
+        PTableCache cache = new PTableCache(1L << 20);
+        PTable table = cache.getPTable(PROBABILITIES, 5, 3);
+        assertSame(table, cache.getPTable(PROBABILITIES.clone(), 10, 3));
+        assertSame(table, cache.getPTable(new double[]{0.0, 0.0, 1.0, 0.5, 0.25, 0.2, 1.0/6.0, 0.0, 0.1}, 5, 3));
+        assertNotSame(table, cache.getPTable(PROBABILITIES, 5, 2));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void cacheRemovesLeastRecentlyUsed() {
+        PTableCache cache = new PTableCache(200);
+        PTable first = cache.getPTable(new double[]{0.0, 1.0, 0.5}, 10, 2);
+        cache.getPTable(new double[]{0.0, 1.0, 0.25}, 10, 2);
+        cache.getPTable(new double[]{0.0, 1.0, 0.75}, 10, 2);
+        assertNotSame(first, cache.getPTable(new double[]{0.0, 1.0, 0.5}, 10, 2));
+    }
+
+    /**
+     * Computes the table directly from the recurrence with cern.jet.random.Binomial
+     */
+    private static double[][][] referenceTable(double[] p, int maxLength, int maxDifferentChars) {
+        double[][][] table = new double[p.length][maxLength + 1][maxDifferentChars + 1];
+        for (int c=0; c<p.length; c++)
+            table[c][0][0] = 1.0;
+        for (int c=1; c<p.length; c++) {
+            for (int l=1; l<=maxLength; l++) {
+                Binomial binomial = p[c] == 1.0 ? null : new Binomial(l, p[c], new MersenneTwister());
+                for (int h=1; h<=Math.min(c, maxDifferentChars); h++) {
+                    for (int k=0; k<=l; k++) {
+                        double pdf = p[c] == 1.0 ? (k == l ? 1.0 : 0.0) : binomial.pdf(k);
+                        table[c][l][h] += pdf * (k == 0 ? table[c-1][l][h] : table[c-1][l-k][h-1]);
+                    }
+                }
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.algo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the PositionIndex with positions, previous and next occurrences collected by scanning the chromosomes.
+ */
+public class PositionIndexTest {
+
+    @Test
+    public void positionsOfAllChromosomes() {
+        Random random = new Random(3);
+        for (int run = 0; run < 20; run++) {
+            int alphabetSize = 1 + random.nextInt(1000);
+            List<Chromosome> chromosomes = new ArrayList<>();
+            int nrOfChromosomes = 1 + random.nextInt(4);
+            for (int j = 0; j < nrOfChromosomes; j++) {
+                int[] genes = new int[random.nextInt(300)];
+                for (int i = 0; i < genes.length; i++)
+                    genes[i] = (random.nextInt(10) == 0) ? -1 - random.nextInt(3) : random.nextInt(alphabetSize + 1);
+                chromosomes.add(new Chromosome(genes, j, true));
+            }
+            Genome genome = new Genome(0, chromosomes);
+            genome.initializeForCalculation(alphabetSize, 2, false);
+
+            for (Chromosome chr : genome) {
+                int n = chr.getEffectiveGeneNumber();
+                for (int c = -2; c <= alphabetSize; c++) {
+                    List<Integer> expected = new ArrayList<>();
+                    for (int i = 1; i <= n; i++)
+                        if (c >= 0 && chr.getGene(i) == c)
+                            expected.add(i);
+                    assertEquals(expected.size(), chr.getNrOfPOS(c));
+                    for (int k = 0; k < expected.size(); k++)
+                        assertEquals((int) expected.get(k), chr.getPOS()[chr.getPOSStart(c) + k]);
+                }
+
+                int[] prevOcc = new int[n + 2];
+                int[] nextOcc = new int[n + 2];
+                for (int i = 0; i <= n + 1; i++) {
+                    nextOcc[i] = n + 1;
+                    if (i < 1 || i > n || chr.getGene(i) < 0)
+                        continue;
+                    for (int j = i - 1; j >= 1 && prevOcc[i] == 0; j--)
+                        if (chr.getGene(j) == chr.getGene(i))
+                            prevOcc[i] = j;
+                    for (int j = i + 1; j <= n && nextOcc[i] == n + 1; j++)
+                        if (chr.getGene(j) == chr.getGene(i))
+                            nextOcc[i] = j;
+                }
+                int[] actualPrevOcc = new int[n + 2];
+                int[] actualNextOcc = new int[n + 2];
+                for (int i = 0; i <= n + 1; i++) {
+                    actualPrevOcc[i] = chr.getPrevOCC(i);
+                    actualNextOcc[i] = chr.getNextOCC(i);
+                }
+                assertArrayEquals(prevOcc, actualPrevOcc);
+                assertArrayEquals(nextOcc, actualNextOcc);
+            }
+        }
+    }
+}
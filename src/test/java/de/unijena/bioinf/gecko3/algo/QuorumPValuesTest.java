@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.algo;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validates the log space quorum combination of QuorumPValues against the Probability based one.
+ */
+public class QuorumPValuesTest {
+    /**
+     * The documented maximal relative difference to Probability.combineWithQuorum()
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    public void smallExample() {
+        double[] pValue = {1.0, 0.5, 0.5, 0.5};
+        // at least 2 hits, the reference counts as one: 1 - (1/2)^3
+        assertEquals(0.875, QuorumPValues.toBigDecimal(QuorumPValues.logCombineWithQuorum(pValue, 2)).doubleValue(), 1e-12);
+        assertCombinationEquals(pValue, 2);
+        assertCombinationEquals(pValue, 3);
+    }
+
+    @Test
+    public void leadingOnesFulfillQuorum() {
+        double[] pValue = {1.0, 1.0, 0.1, 0.2};
+        assertEquals(0, BigDecimal.ONE.compareTo(QuorumPValues.toBigDecimal(QuorumPValues.logCombineWithQuorum(pValue, 2))));
+        assertCombinationEquals(pValue, 3);
+    }
+
+    @Test
+    public void randomPValues() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            double[] pValue = randomPValues(random, 2 + random.nextInt(60));
+            for (int q = 1; q <= pValue.length; q++)
+                assertCombinationEquals(pValue, q);
+        }
+    }
+
+    @Test
+    public void manyGenomesDoNotUnderflow() {
+        Random random = new Random(7);
+        double[] pValue = new double[1000];
+        pValue[0] = 1.0;
+        for (int i = 1; i < pValue.length; i++)
+            pValue[i] = 1e-3 * (0.5 + random.nextDouble());
+        for (int q : new int[]{2, 10, 500, 999, 1000}) {
+            BigDecimal combined = assertCombinationEquals(pValue, q);
+            assertTrue(combined.signum() > 0);
+        }
+    }
+
+    private static double[] randomPValues(Random random, int length) {
+        double[] pValue = new double[length];
+        for (int i = 0; i < length; i++) {
+            int type = random.nextInt(4);
+            if (type == 0)
+                pValue[i] = 1.0;
+            else if (type == 1)
+                pValue[i] = Math.pow(10, -random.nextInt(30)) * random.nextDouble();
+            else
+                pValue[i] = random.nextDouble();
+        }
+        pValue[random.nextInt(length)] = 1.0;  // the reference occurrence
+        return pValue;
+    }
+
+    private static BigDecimal assertCombinationEquals(double[] pValue, int q) {
+        BigDecimal expected = Probability.combineWithQuorum(pValue, q, pValue.length);
+        double log = q == pValue.length ? QuorumPValues.logProduct(pValue) : QuorumPValues.logCombineWithQuorum(pValue, q);
+        BigDecimal actual = QuorumPValues.toBigDecimal(log);
+        if (expected.signum() == 0) {
+            assertEquals(0, actual.signum());
+        } else {
+            double relativeError = actual.subtract(expected).abs().divide(expected, MathContext.DECIMAL64).doubleValue();
+            assertTrue("q=" + q + ": expected " + expected + ", got " + actual, relativeError <= TOLERANCE);
+        }
+        return actual;
+    }
+}
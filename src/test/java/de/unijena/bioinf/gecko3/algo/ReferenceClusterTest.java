@@ -19,19 +19,39 @@
 
 package de.unijena.bioinf.gecko3.algo;
 
+import de.unijena.bioinf.gecko3.GeckoInstance;
+import de.unijena.bioinf.gecko3.algo.status.AlgorithmProgressListener;
+import de.unijena.bioinf.gecko3.algo.status.AlgorithmStatusEvent;
+import de.unijena.bioinf.gecko3.datastructures.DataSet;
+import de.unijena.bioinf.gecko3.datastructures.GeneCluster;
+import de.unijena.bioinf.gecko3.datastructures.GeneFamily;
 import de.unijena.bioinf.gecko3.datastructures.Parameter;
+import de.unijena.bioinf.gecko3.datastructures.Subsequence;
+import de.unijena.bioinf.gecko3.io.CogFileReader;
 import de.unijena.bioinf.gecko3.testUtils.*;
 import de.unijena.bioinf.gecko3.algo.GeneClusterTestUtils.PValueComparison;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.zip.DataFormatException;
 
 import static de.unijena.bioinf.gecko3.algo.GeneClusterTestUtils.automaticGeneClusterTestFromFile;
+import static de.unijena.bioinf.gecko3.algo.GeneClusterTestUtils.compareGeneClusters;
 import static de.unijena.bioinf.gecko3.algo.GeneClusterTestUtils.compareReferenceClusters;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * The class tests the computeClusters algorithm from the Gecko3 program
@@ -42,6 +62,9 @@ import static de.unijena.bioinf.gecko3.algo.GeneClusterTestUtils.compareReferenc
  */
 public class ReferenceClusterTest 
 {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
     public void testMemoryReductionWithMergedGenes()
     {
@@ -1090,5 +1113,482 @@ public class ReferenceClusterTest
 
         GeneClusterTestUtils.performTest(p, genomes, genomeGroups, referenceClusterValues);
 	}
-}
 
+	@Test
+	public void testParallelComputationEqualsSequential()
+	{
+		int genomes[][][] = {{{0, 1, 2, 3, 4, 0}, {0, 5, 6, 1, 2, 0}}, {{0, 1, 3, 2, 7, 0}, {0, 6, 5, 0}}, {{0, 4, 1, 2, 3, 0}, {0, 5, 6, 7, 0}}};
+
+		Parameter sequentialParameters = new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll);
+		List<ReferenceCluster> sequentialResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, sequentialParameters);
+
+		Parameter parallelParameters = new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll);
+		parallelParameters.setNrOfThreads(4);
+		List<ReferenceCluster> parallelResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parallelParameters);
+
+		compareReferenceClusters(sequentialResult, parallelResult, PValueComparison.COMPARE_ALL);
+	}
+
+	@Test
+	public void testParallelComputationRefInRefEqualsSequential()
+	{
+		int genomes[][][] = {{{0, 1, 3, 2, 5, 1, 2, 0}}, {{0, 3, 4, 5, 4, 0}}, {{0, 2, 1, 3, 5, 0}}};
+
+		Parameter sequentialParameters = new Parameter(1, 2, 1, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, true, false);
+		List<ReferenceCluster> sequentialResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, sequentialParameters);
+
+		Parameter parallelParameters = new Parameter(1, 2, 1, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, true, false);
+		parallelParameters.setNrOfThreads(3);
+		List<ReferenceCluster> parallelResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parallelParameters);
+
+		compareReferenceClusters(sequentialResult, parallelResult, PValueComparison.COMPARE_ALL);
+	}
+
+	@Test
+	public void testParallelComputationRefInRefEqualsSequentialOnSyntheticGenomes()
+	{
+		// the results of the workers are merged while other workers still append and remove their reference copies
+		for (long seed = 28; seed < 30; seed++) {
+			int genomes[][][] = SyntheticGenomes.generate(8, 2, 300, 40, 12, seed);
+
+			Parameter sequentialParameters = new Parameter(2, 3, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, true, true);
+			List<ReferenceCluster> sequentialResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, sequentialParameters);
+
+			Parameter parallelParameters = new Parameter(2, 3, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, true, true);
+			parallelParameters.setNrOfThreads(4);
+			List<ReferenceCluster> parallelResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parallelParameters);
+
+			assertFalse(sequentialResult.isEmpty());
+			compareReferenceClusters(sequentialResult, parallelResult, PValueComparison.COMPARE_NONE);
+		}
+	}
+
+	@Test
+	public void fiveProteobacterParallelReferenceClusterTest() throws URISyntaxException, IOException, DataFormatException, ParseException {
+		ReferenceClusterTestSettings settings = ReferenceClusterTestSettings.fiveProteobacterD3S6Q4();
+		settings.p.setNrOfThreads(4);
+
+		automaticGeneClusterTestFromFile(settings);
+	}
+
+	@Test
+	public void testParallelGenomeUpdateEqualsSequential()
+	{
+		// enough genomes to split the update of the genomes into several tasks
+		Random random = new Random(42);
+		int genomes[][][] = new int[40][1][];
+		for (int k=0; k<genomes.length; k++) {
+			genomes[k][0] = new int[32];
+			for (int i=1; i<genomes[k][0].length-1; i++)
+				genomes[k][0][i] = 1 + random.nextInt(12);
+		}
+
+		Parameter sequentialParameters = new Parameter(2, 3, 10, Parameter.OperationMode.reference, Parameter.ReferenceType.genome);
+		List<ReferenceCluster> sequentialResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, sequentialParameters);
+
+		Parameter parallelParameters = new Parameter(2, 3, 10, Parameter.OperationMode.reference, Parameter.ReferenceType.genome);
+		parallelParameters.setNrOfThreads(4);
+		List<ReferenceCluster> parallelResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parallelParameters);
+
+		assertFalse(sequentialResult.isEmpty());
+		compareReferenceClusters(sequentialResult, parallelResult, PValueComparison.COMPARE_ALL);
+	}
+
+	@Test
+	public void streamedClustersPerReferenceChromosomeEqualResult() throws IOException, ParseException {
+		File cogFile = folder.newFile("synthetic.cog");
+		SyntheticGenomes.writeCogFile(SyntheticGenomes.generate(6, 3, 600, 150, 30, 42), cogFile);
+		DataSet data = new CogFileReader(cogFile).readData();
+
+		// without statistics, the clusters are passed after each reference chromosome
+		Parameter streamedParameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.genome, false, true);
+		final List<GeneCluster> streamedResult = new ArrayList<>();
+		int nrOfClusters = GeckoInstance.computeClustersJava(data, streamedParameters, null, null, new GeneClusterSink() {
+			@Override
+			public void accept(GeneCluster cluster) {
+				assertEquals(streamedResult.size(), cluster.getId());
+				streamedResult.add(cluster);
+			}
+		});
+
+		Parameter parameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.genome);
+		List<GeneCluster> result = GeckoInstance.computeClustersJava(data, parameters, null);
+
+		assertFalse(result.isEmpty());
+		assertEquals(streamedResult.size(), nrOfClusters);
+		compareGeneClusters(result, streamedResult, PValueComparison.COMPARE_NONE);
+	}
+
+	@Test
+	public void resumedComputationEqualsUninterrupted() throws IOException, ParseException {
+		resumedComputationEqualsUninterrupted(1, false);
+	}
+
+	@Test
+	public void resumedParallelComputationEqualsUninterrupted() throws IOException, ParseException {
+		resumedComputationEqualsUninterrupted(3, false);
+	}
+
+	@Test
+	public void resumedRefInRefComputationEqualsUninterrupted() throws IOException, ParseException {
+		resumedComputationEqualsUninterrupted(1, true);
+	}
+
+	private void resumedComputationEqualsUninterrupted(int nrOfThreads, boolean refInRef) throws IOException, ParseException {
+		File cogFile = folder.newFile("synthetic.cog");
+		SyntheticGenomes.writeCogFile(SyntheticGenomes.generate(5, 2, 300, 80, 15, 7), cogFile);
+		DataSet data = new CogFileReader(cogFile).readData();
+		File checkpointFile = new File(folder.getRoot(), "clusters.checkpoint");
+
+		Parameter interruptedParameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+		interruptedParameters.setNrOfThreads(nrOfThreads);
+		interruptedParameters.setCheckpointFile(checkpointFile);
+		try {
+			// stops the computation during the third reference genome
+			GeckoInstance.computeClustersJava(data, interruptedParameters, new AlgorithmProgressListener() {
+				@Override
+				public void algorithmProgressUpdate(AlgorithmStatusEvent statusEvent) {
+					if (statusEvent.getTask() == AlgorithmStatusEvent.Task.ComputingClusters && statusEvent.getProgress() > 700)
+						throw new CancellationException();
+				}
+			});
+			fail("The computation was not interrupted.");
+		} catch (CancellationException e) {
+			// expected
+		}
+		assertTrue(checkpointFile.isFile());
+
+		Parameter resumedParameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+		resumedParameters.setNrOfThreads(nrOfThreads);
+		resumedParameters.setCheckpointFile(checkpointFile);
+		resumedParameters.setResumeFromCheckpoint(true);
+		List<GeneCluster> resumedResult = GeckoInstance.computeClustersJava(data, resumedParameters, null);
+
+		Parameter parameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+		List<GeneCluster> result = GeckoInstance.computeClustersJava(data, parameters, null);
+
+		assertFalse(result.isEmpty());
+		compareGeneClusters(result, resumedResult, PValueComparison.COMPARE_ALL);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void resumeWithDifferentParametersFails() throws IOException {
+		int genomes[][][] = {{{0, 1, 2, 3, 4, 0}, {0, 5, 6, 1, 2, 0}}, {{0, 1, 3, 2, 7, 0}, {0, 6, 5, 0}}, {{0, 4, 1, 2, 3, 0}, {0, 5, 6, 7, 0}}};
+		File checkpointFile = folder.newFile("clusters.checkpoint");
+
+		Parameter parameters = new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll);
+		parameters.setCheckpointFile(checkpointFile);
+		ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parameters);
+
+		Parameter otherParameters = new Parameter(1, 2, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll);
+		otherParameters.setCheckpointFile(checkpointFile);
+		otherParameters.setResumeFromCheckpoint(true);
+		ReferenceClusterAlgorithm.computeReferenceClusters(genomes, otherParameters);
+	}
+
+	@Test
+	public void resumeWithStatisticsFromCheckpointWithoutStatistics() throws IOException {
+		int genomes[][][] = {{{0, 1, 2, 3, 4, 0}, {0, 5, 6, 1, 2, 0}}, {{0, 1, 3, 2, 7, 0}, {0, 6, 5, 0}}, {{0, 4, 1, 2, 3, 0}, {0, 5, 6, 7, 0}}};
+		File checkpointFile = folder.newFile("clusters.checkpoint");
+
+		Parameter parameters = new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, false, true);
+		parameters.setCheckpointFile(checkpointFile);
+		ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parameters);
+
+		Parameter statisticsParameters = new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, false, false);
+		statisticsParameters.setCheckpointFile(checkpointFile);
+		statisticsParameters.setResumeFromCheckpoint(true);
+		List<ReferenceCluster> resumedResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, statisticsParameters);
+
+		List<ReferenceCluster> result = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, false, false));
+		assertFalse(result.isEmpty());
+		assertEquals(result.size(), resumedResult.size());
+		for (int i = 0; i < result.size(); i++)
+			assertEquals(result.get(i).getBestCombined_pValue(), resumedResult.get(i).getBestCombined_pValue());
+	}
+
+	@Test
+	public void mergedShardsEqualUnshardedComputation() throws IOException, ParseException {
+		mergedShardsEqualUnshardedComputation(1, false);
+	}
+
+	@Test
+	public void mergedParallelRefInRefShardsEqualUnshardedComputation() throws IOException, ParseException {
+		mergedShardsEqualUnshardedComputation(2, true);
+	}
+
+	private void mergedShardsEqualUnshardedComputation(int nrOfThreads, boolean refInRef) throws IOException, ParseException {
+		File cogFile = folder.newFile("synthetic.cog");
+		SyntheticGenomes.writeCogFile(SyntheticGenomes.generate(5, 2, 200, 60, 10, 11), cogFile);
+		DataSet data = new CogFileReader(cogFile).readData();
+
+		int nrOfShards = 3;
+		List<File> shardFiles = new ArrayList<>();
+		for (int shard = 0; shard < nrOfShards; shard++) {
+			File shardFile = new File(folder.getRoot(), "shard" + shard);
+			Parameter shardParameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+			shardParameters.setNrOfThreads(nrOfThreads);
+			shardParameters.setShard(shard, nrOfShards, shardFile);
+			assertTrue(GeckoInstance.computeClustersJava(data, shardParameters, null).isEmpty());
+			shardFiles.add(0, shardFile);  // the order of the shard files does not matter
+		}
+
+		Parameter mergeParameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+		mergeParameters.setShardFilesToMerge(shardFiles);
+		List<GeneCluster> mergedResult = GeckoInstance.computeClustersJava(data, mergeParameters, null);
+
+		Parameter parameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+		List<GeneCluster> result = GeckoInstance.computeClustersJava(data, parameters, null);
+
+		assertFalse(result.isEmpty());
+		compareGeneClusters(result, mergedResult, PValueComparison.COMPARE_ALL);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void mergeWithMissingShardFails() throws IOException {
+		int genomes[][][] = {{{0, 1, 2, 3, 4, 0}, {0, 5, 6, 1, 2, 0}}, {{0, 1, 3, 2, 7, 0}, {0, 6, 5, 0}}, {{0, 4, 1, 2, 3, 0}, {0, 5, 6, 7, 0}}};
+		File shardFile = new File(folder.getRoot(), "shard0");
+
+		Parameter shardParameters = new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll);
+		shardParameters.setShard(0, 2, shardFile);
+		ReferenceClusterAlgorithm.computeReferenceClusters(genomes, shardParameters);
+
+		Parameter mergeParameters = new Parameter(1, 2, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll);
+		mergeParameters.setShardFilesToMerge(Collections.singletonList(shardFile));
+		ReferenceClusterAlgorithm.computeReferenceClusters(genomes, mergeParameters);
+	}
+
+	@Test
+	public void compactAlphabetRemovesRareGeneFamilies() {
+		int genomes[][][] = {{{0, 1, 2, -1, 3, 4, 0}}, {{0, 2, 5, 1, 0}, {0, 4, 0}}, {{0, 6, 4, 2, 0}}};
+		assertEquals(2, DataSet.compactAlphabet(genomes, 3));
+		int expected[][][] = {{{0, -1, 1, -2, 2, 0}}, {{0, 1, -2, 0}, {0, 2, 0}}, {{0, -1, 2, 1, 0}}};
+		for (int i = 0; i < genomes.length; i++)
+			for (int j = 0; j < genomes[i].length; j++)
+				assertArrayEquals(expected[i][j], genomes[i][j]);
+	}
+
+	@Test
+	public void compactedAlphabetEqualsUncompactedComputation() throws IOException, ParseException {
+		compactedAlphabetEqualsUncompactedComputation(2, false);
+	}
+
+	@Test
+	public void compactedAlphabetRefInRefEqualsUncompactedComputation() throws IOException, ParseException {
+		compactedAlphabetEqualsUncompactedComputation(3, true);
+	}
+
+	private void compactedAlphabetEqualsUncompactedComputation(int q, boolean refInRef) throws IOException, ParseException {
+		File cogFile = folder.newFile("synthetic.cog");
+		SyntheticGenomes.writeCogFile(SyntheticGenomes.generate(5, 2, 300, 400, 15, 3), cogFile);
+		DataSet data = new CogFileReader(cogFile).readData();
+
+		// without deletions and statistics, gene families in fewer than q genomes can not be part of a cluster
+		Parameter compactedParameters = new Parameter(0, 3, q, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, true);
+		compactedParameters.setCompactAlphabet(true);
+		List<GeneCluster> compactedResult = GeckoInstance.computeClustersJava(data, compactedParameters, null);
+
+		Parameter parameters = new Parameter(0, 3, q, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, true);
+		List<GeneCluster> result = GeckoInstance.computeClustersJava(data, parameters, null);
+
+		assertFalse(result.isEmpty());
+		compareGeneClusters(result, compactedResult, PValueComparison.COMPARE_NONE);
+	}
+
+	@Test
+	public void distinctCountIndexEqualsScan() {
+		int[][][] genomes = SyntheticGenomes.generate(4, 2, 300, 60, 10, 5);
+
+		Parameter parameters = new Parameter(4, 3, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, true, false);
+		List<ReferenceCluster> result = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parameters);
+
+		Parameter indexParameters = new Parameter(4, 3, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, true, false);
+		indexParameters.setUseDistinctCountIndex(true);
+		List<ReferenceCluster> indexResult = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, indexParameters);
+
+		assertFalse(result.isEmpty());
+		compareReferenceClusters(result, indexResult, PValueComparison.COMPARE_ALL);
+	}
+
+	@Test
+	public void parameterSweepEqualsSingleComputations() {
+		parameterSweepEqualsSingleComputations(false);
+	}
+
+	@Test
+	public void parameterSweepRefInRefEqualsSingleComputations() {
+		parameterSweepEqualsSingleComputations(true);
+	}
+
+	private void parameterSweepEqualsSingleComputations(boolean refInRef) {
+		int[][][] genomes = SyntheticGenomes.generate(5, 2, 300, 80, 10, 7);
+
+		// the distances are not sorted and not grouped, so the index is used with smaller and larger distances
+		List<Parameter> settings = new ArrayList<>();
+		for (int size : new int[]{5, 3})
+			for (int delta : new int[]{2, 0, 4})
+				for (int q : new int[]{4, 2}) {
+					Parameter setting = new Parameter(delta, size, q, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+					setting.setNrOfThreads(settings.size() % 2 + 1);
+					settings.add(setting);
+				}
+		List<List<ReferenceCluster>> sweepResult = ReferenceClusterAlgorithm.computeReferenceClusterSweep(genomes, settings);
+
+		assertEquals(settings.size(), sweepResult.size());
+		for (int i = 0; i < settings.size(); i++) {
+			Parameter setting = settings.get(i);
+			Parameter parameters = new Parameter(setting.getDelta(), setting.getMinClusterSize(), setting.getQ(), Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, refInRef, false);
+			List<ReferenceCluster> result = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parameters);
+			assertFalse(setting.getQ() == 2 && result.isEmpty());
+			compareReferenceClusters(result, sweepResult.get(i), PValueComparison.COMPARE_ALL);
+		}
+	}
+
+	@Test
+	public void parameterSweepOfDataSetEqualsSingleComputations() throws IOException, ParseException {
+		File cogFile = folder.newFile("synthetic.cog");
+		SyntheticGenomes.writeCogFile(SyntheticGenomes.generate(4, 3, 300, 60, 10, 11), cogFile);
+		DataSet data = new CogFileReader(cogFile).readData();
+
+		final List<Parameter> settings = new ArrayList<>();
+		for (int delta : new int[]{3, 1})
+			for (int size : new int[]{3, 4})
+				settings.add(new Parameter(delta, size, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.genome, false, true));
+		final List<List<GeneCluster>> sweepResult = new ArrayList<>();
+		GeckoInstance.computeClusterSweepJava(data, settings, null, null, new ParameterSweepSink() {
+			@Override
+			public void accept(int settingIndex, Parameter setting, List<GeneCluster> clusters) {
+				assertEquals(sweepResult.size(), settingIndex);
+				assertSame(settings.get(settingIndex), setting);
+				sweepResult.add(clusters);
+			}
+		});
+
+		assertEquals(settings.size(), sweepResult.size());
+		for (int i = 0; i < settings.size(); i++) {
+			Parameter setting = settings.get(i);
+			Parameter parameters = new Parameter(setting.getDelta(), setting.getMinClusterSize(), setting.getQ(), Parameter.OperationMode.reference, Parameter.ReferenceType.genome, false, true);
+			List<GeneCluster> result = GeckoInstance.computeClustersJava(data, parameters, null);
+			assertFalse(result.isEmpty());
+			compareGeneClusters(result, sweepResult.get(i), PValueComparison.COMPARE_NONE);
+		}
+	}
+
+	@Test
+	public void geneSetQueryEqualsReferenceClusterOccurrences() {
+		int[][][] genomes = SyntheticGenomes.generate(5, 2, 300, 60, 10, 13);
+
+		Parameter parameters = new Parameter(3, 3, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, false, true);
+		List<ReferenceCluster> result = ReferenceClusterAlgorithm.computeReferenceClusters(genomes, parameters);
+		assertFalse(result.isEmpty());
+
+		// the gene content of each cluster, in the order of the reference interval
+		List<int[]> queries = new ArrayList<>();
+		for (ReferenceCluster cluster : result) {
+			Set<Integer> chars = new LinkedHashSet<>();
+			for (int i = cluster.getLeftBorder(); i <= cluster.getRightBorder(); i++)
+				chars.add(genomes[cluster.getGenomeNr()][cluster.getChrNr()][i]);
+			int[] query = new int[chars.size()];
+			int index = 0;
+			for (int c : chars)
+				query[index++] = c;
+			queries.add(query);
+		}
+
+		GeneSetQuery geneSetQuery = new GeneSetQuery(genomes, new Parameter(3, 1, 0, Parameter.OperationMode.reference, Parameter.ReferenceType.allAgainstAll, false, true));
+		List<ReferenceCluster> queryResult = geneSetQuery.computeOccurrences(queries);
+		assertEquals(result.size(), queryResult.size());
+		for (int i = 0; i < result.size(); i++) {
+			ReferenceCluster expected = result.get(i);
+			ReferenceCluster actual = queryResult.get(i);
+			assertEquals(expected.getSize(), actual.getSize());
+			for (int k = 0; k < genomes.length; k++) {
+				if (k == expected.getGenomeNr()) {
+					assertTrue(containsDeltaLocation(actual.getDeltaLocations(k), expected.getChrNr(), expected.getLeftBorder(), expected.getRightBorder(), 0));
+				} else {
+					List<DeltaLocation> expectedLocs = expected.getDeltaLocations(k);
+					List<DeltaLocation> actualLocs = actual.getDeltaLocations(k);
+					assertEquals(expectedLocs.size(), actualLocs.size());
+					for (DeltaLocation dLoc : expectedLocs)
+						assertTrue(containsDeltaLocation(actualLocs, dLoc.getChrNr(), dLoc.getL(), dLoc.getR(), dLoc.getDistance()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void geneSetQueryOfDataSetFindsReferenceInterval() throws IOException, ParseException {
+		File cogFile = folder.newFile("synthetic.cog");
+		SyntheticGenomes.writeCogFile(SyntheticGenomes.generate(4, 3, 300, 60, 10, 17), cogFile);
+		DataSet data = new CogFileReader(cogFile).readData();
+
+		Parameter parameters = new Parameter(2, 4, 2, Parameter.OperationMode.reference, Parameter.ReferenceType.genome, false, true);
+		List<GeneCluster> clusters = GeckoInstance.computeClustersJava(data, parameters, null);
+		assertFalse(clusters.isEmpty());
+
+		GeneSetQuery geneSetQuery = new GeneSetQuery(data, new Parameter(2, 1, 0, Parameter.OperationMode.reference, Parameter.ReferenceType.genome, false, false));
+		List<Set<GeneFamily>> queries = new ArrayList<>();
+		for (GeneCluster cluster : clusters) {
+			Subsequence refOcc = cluster.getOccurrences(false).getSubsequences()[cluster.getRefSeqIndex()][0];
+			queries.add(GeneSetQuery.getGeneFamilies(data, cluster.getRefSeqIndex(), refOcc.getChromosome(), refOcc.getStart(), refOcc.getStop()));
+		}
+		List<GeneCluster> queryResult = geneSetQuery.query(queries);
+		assertEquals(clusters.size(), queryResult.size());
+		for (int i = 0; i < clusters.size(); i++) {
+			GeneCluster cluster = clusters.get(i);
+			GeneCluster queried = queryResult.get(i);
+			assertEquals(i, queried.getId());
+			assertEquals(cluster.getGeneFamilies(), queried.getGeneFamilies());
+			assertEquals(0, queried.getOccurrences(false).getSubsequences()[queried.getRefSeqIndex()][0].getDist());
+			assertTrue(queried.getBestPValue().signum() > 0);
+			assertTrue(queried.getBestPValue().compareTo(BigDecimal.ONE) <= 0);
+			for (int k = 0; k < data.getGenomes().length; k++)
+				if (k != cluster.getRefSeqIndex())
+					assertEquals(cluster.getOccurrences(true).getSubsequences()[k].length, queried.getOccurrences(true).getSubsequences()[k].length);
+		}
+	}
+
+	@Test
+	public void topClustersEqualBestClustersOfCompleteComputation() throws IOException, ParseException {
+		File cogFile = folder.newFile("synthetic.cog");
+		SyntheticGenomes.writeCogFile(SyntheticGenomes.generate(6, 3, 600, 150, 30, 42), cogFile);
+		DataSet data = new CogFileReader(cogFile).readData();
+
+		for (Parameter.ReferenceType refType : Arrays.asList(Parameter.ReferenceType.allAgainstAll, Parameter.ReferenceType.genome)) {
+			List<GeneCluster> result = GeckoInstance.computeClustersJava(data, new Parameter(2, 4, 3, Parameter.OperationMode.reference, refType), null);
+			int k = result.size() / 4;
+			assertTrue(k > 0);
+
+			Parameter topParameters = new Parameter(2, 4, 3, Parameter.OperationMode.reference, refType);
+			topParameters.setTopClusters(k);
+			List<GeneCluster> topResult = GeckoInstance.computeClustersJava(data, topParameters, null);
+
+			assertEquals(k, topResult.size());
+			List<GeneCluster> best = new ArrayList<>(result);
+			Collections.sort(best, new Comparator<GeneCluster>() {
+				@Override
+				public int compare(GeneCluster o1, GeneCluster o2) {
+					return o1.getBestPValue().compareTo(o2.getBestPValue());
+				}
+			});
+			List<GeneCluster> top = new ArrayList<>(topResult);
+			Collections.sort(top, new Comparator<GeneCluster>() {
+				@Override
+				public int compare(GeneCluster o1, GeneCluster o2) {
+					return o1.getBestPValue().compareTo(o2.getBestPValue());
+				}
+			});
+			for (int i = 0; i < k; i++) {
+				assertEquals(0, best.get(i).getBestPValue().compareTo(top.get(i).getBestPValue()));
+				assertEquals(0, best.get(i).getBestPValueCorrected().compareTo(top.get(i).getBestPValueCorrected()));
+			}
+		}
+	}
+
+	private static boolean containsDeltaLocation(List<DeltaLocation> dLocs, int chrNr, int l, int r, int distance) {
+		for (DeltaLocation dLoc : dLocs)
+			if (dLoc.getChrNr() == chrNr && dLoc.getL() == l && dLoc.getR() == r && dLoc.getDistance() == distance)
+				return true;
+		return false;
+	}
+}
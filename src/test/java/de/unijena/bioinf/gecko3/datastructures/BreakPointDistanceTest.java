@@ -24,10 +24,10 @@ import de.unijena.bioinf.gecko3.io.CogFileReader;
 import org.junit.Test;
 
 import java.io.File;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -222,4 +222,73 @@ public class BreakPointDistanceTest {
 		assertTrue(cluster.get(3).contains(3));
 	}
 
+	@Test
+	public void cachedDistancesFromGenomes() throws Exception{
+		File inputFile = new File(getClass().getResource("/c.cog").getFile());
+		CogFileReader reader = new CogFileReader(inputFile);
+		GeckoInstance.getInstance().setCurrentWorkingDirectoryOrFile(inputFile);
+
+		DataSet data = reader.readData();
+
+		int[][] distances = data.getBreakPointDistances(false);
+		compareResults(BreakPointDistance.computeBreakPointDistance(data, false, false), distances);
+		assertSame(distances, data.getBreakPointDistances(false));
+		compareResults(BreakPointDistance.computeBreakPointDistance(data, true, false), data.getBreakPointDistances(true));
+
+		data.reorderGenomes(2);
+		compareResults(BreakPointDistance.computeBreakPointDistance(data, false, false), data.getBreakPointDistances(false));
+	}
+
+	@Test
+	public void randomGenomesEqualAdjacencyCounting() {
+		Random random = new Random(42);
+		int[][][] genomes = new int[200][][];
+		for (int i=0; i<genomes.length; i++) {
+			genomes[i] = new int[1 + random.nextInt(3)][];
+			for (int c=0; c<genomes[i].length; c++) {
+				genomes[i][c] = new int[random.nextInt(40)];
+				for (int g=0; g<genomes[i][c].length; g++)
+					genomes[i][c][g] = (random.nextBoolean() ? 1 : -1) * (1 + random.nextInt(10));
+			}
+		}
+		for (boolean signed : new boolean[]{false, true}) {
+			int[][] expected = new int[genomes.length][genomes.length];
+			for (int i=0; i<genomes.length; i++)
+				for (int j=0; j<genomes.length; j++)
+					expected[i][j] = countingDistance(genomes[i], genomes[j], signed);
+			compareResults(expected, BreakPointDistance.computeBreakPointDistance(genomes, signed, 1));
+			compareResults(expected, BreakPointDistance.computeBreakPointDistance(genomes, signed, 4));
+		}
+	}
+
+	/**
+	 * The breakpoint distance, computed by counting the occurrences of each adjacency in both genomes
+	 */
+	private static int countingDistance(int[][] genome, int[][] otherGenome, boolean signed) {
+		Map<List<Integer>, Integer> counts = new HashMap<>();
+		countAdjacencies(genome, signed, counts, 1);
+		countAdjacencies(otherGenome, signed, counts, -1);
+		int distance = 0;
+		for (int count : counts.values())
+			distance += Math.abs(count);
+		return distance;
+	}
+
+	private static void countAdjacencies(int[][] genome, boolean signed, Map<List<Integer>, Integer> counts, int increment) {
+		for (int[] chrom : genome) {
+			for (int pos=1; pos<chrom.length; pos++) {
+				int a = chrom[pos-1];
+				int b = chrom[pos];
+				List<Integer> key;
+				if (!signed)
+					key = Arrays.asList(Math.max(Math.abs(a), Math.abs(b)), Math.min(Math.abs(a), Math.abs(b)));
+				else if (a < -b || (a == -b && b <= -a))
+					key = Arrays.asList(a, b);
+				else
+					key = Arrays.asList(-b, -a);
+				Integer count = counts.get(key);
+				counts.put(key, (count == null ? 0 : count) + increment);
+			}
+		}
+	}
 }
@@ -24,7 +24,9 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.text.ParseException;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -42,4 +44,140 @@ public class GeneClusterTest {
         assertTrue(data.getClusters().get(0).invalidMultiGeneFamilyGeneCluster(4, data.getGenomes()));
         assertFalse(data.getClusters().get(1).invalidMultiGeneFamilyGeneCluster(4, data.getGenomes()));
     }
+
+    @Test
+    public void reducedClusterListEqualsPairwiseReduction() {
+        Random random = new Random(42);
+        for (int nrOfClusters : new int[]{1, 50, 10000}) {
+            List<GeneCluster> clusters = randomClusters(random, nrOfClusters, 20000, true);
+            List<GeneCluster> expected = pairwiseReducedClusterList(clusters);
+            for (int nrOfThreads : new int[]{1, 4}) {
+                assertSameClusters(expected, GeneCluster.generateSimilarityReducedClusterList(clusters, nrOfThreads));
+            }
+        }
+    }
+
+    @Test
+    public void similarClusterGroupsEqualPairwiseGrouping() {
+        Random random = new Random(7);
+        for (int nrOfClusters : new int[]{0, 1, 50, 3000}) {
+            List<GeneCluster> clusters = randomClusters(random, nrOfClusters, 40000, false);
+            List<List<GeneCluster>> expected = pairwiseGroups(clusters);
+            SimilarClusterGroups groups = new SimilarClusterGroups(clusters);
+            assertEquals(expected.size(), groups.getNumberOfGroups());
+            for (int g = 0; g < expected.size(); g++)
+                assertSameClusters(expected.get(g), groups.getGroups().get(g));
+            for (int i = 0; i < clusters.size(); i++)
+                assertTrue(groups.getGroups().get(groups.getGroupIndex(i)).contains(clusters.get(i)));
+
+            List<GeneCluster> expectedReduced = pairwiseInternalDuplicationReducedClusterList(clusters);
+            assertSameClusters(expectedReduced, GeneCluster.generateInternalDuplicationReducedClusterList(clusters));
+        }
+    }
+
+    /**
+     * The grouping without index, that compares every cluster with all clusters of all groups.
+     */
+    private static List<List<GeneCluster>> pairwiseGroups(List<GeneCluster> allClusters) {
+        List<List<GeneCluster>> resultList = new ArrayList<>();
+        for (GeneCluster cluster : allClusters){
+            List<GeneCluster> newGroup = new ArrayList<>();
+            newGroup.add(cluster);
+            Iterator<List<GeneCluster>> listIter = resultList.iterator();
+            while (listIter.hasNext()){
+                List<GeneCluster> groupedClusters = listIter.next();
+                for (GeneCluster groupedCluster : groupedClusters) {
+                    if (groupedCluster.isSimilar(cluster)){
+                        newGroup.addAll(groupedClusters);
+                        listIter.remove();
+                        break;
+                    }
+                }
+            }
+            resultList.add(newGroup);
+        }
+        return resultList;
+    }
+
+    private static List<GeneCluster> pairwiseInternalDuplicationReducedClusterList(List<GeneCluster> allClusters) {
+        Set<GeneCluster> kept = Collections.newSetFromMap(new IdentityHashMap<GeneCluster, Boolean>());
+        for (List<GeneCluster> clusterGroup : pairwiseGroups(allClusters)) {
+            while (clusterGroup.size() != 0) {
+                GeneCluster bestCluster = null;
+                for (GeneCluster cluster : clusterGroup)
+                    if (bestCluster == null || numberOfIntervals(cluster) > numberOfIntervals(bestCluster))
+                        bestCluster = cluster;
+                kept.add(bestCluster);
+                Iterator<GeneCluster> it = clusterGroup.iterator();
+                while (it.hasNext()){
+                    GeneCluster cluster = it.next();
+                    if (cluster == bestCluster || bestCluster.isSimilar(cluster))
+                        it.remove();
+                }
+            }
+        }
+        List<GeneCluster> reducedList = new ArrayList<>();
+        for (GeneCluster cluster : allClusters)
+            if (kept.contains(cluster))
+                reducedList.add(cluster);
+        return reducedList;
+    }
+
+    private static int numberOfIntervals(GeneCluster cluster) {
+        int numberOfIntervals = 0;
+        for (Subsequence[] subsequences : cluster.getOccurrences(true).getSubsequences())
+            numberOfIntervals += subsequences.length;
+        return numberOfIntervals;
+    }
+
+    private static void assertSameClusters(List<GeneCluster> expected, List<GeneCluster> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertSame(expected.get(i), actual.get(i));
+    }
+
+    /**
+     * The reduction without index, that compares every cluster with all kept clusters.
+     */
+    private static List<GeneCluster> pairwiseReducedClusterList(List<GeneCluster> allClusters) {
+        List<GeneCluster> reducedList = new ArrayList<>();
+        List<GeneCluster> geneClustersCopy = new ArrayList<>(allClusters);
+        Collections.sort(geneClustersCopy);
+        for (GeneCluster geneCluster : geneClustersCopy) {
+            boolean contained = false;
+            for (Iterator<GeneCluster> it = reducedList.iterator(); it.hasNext() && !contained; ) {
+                GeneCluster cluster = it.next();
+                if (geneCluster.isSimilar(cluster)) {
+                    int compare = geneCluster.getBestPValue().compareTo(cluster.getBestPValue());
+                    if (compare > 0 || (compare == 0 && geneCluster.getSize() < cluster.getSize()))
+                        contained = true;
+                    else
+                        it.remove();
+                }
+            }
+            if (!contained)
+                reducedList.add(geneCluster);
+        }
+        return reducedList;
+    }
+
+    private static List<GeneCluster> randomClusters(Random random, int nrOfClusters, int chromosomeLength, boolean reversedSubsequences) {
+        int nrOfGenomes = 4;
+        List<GeneCluster> clusters = new ArrayList<>(nrOfClusters);
+        for (int id = 0; id < nrOfClusters; id++) {
+            Subsequence[][] subsequences = new Subsequence[nrOfGenomes][];
+            for (int genome = 0; genome < nrOfGenomes; genome++) {
+                subsequences[genome] = new Subsequence[random.nextInt(3)];
+                for (int s = 0; s < subsequences[genome].length; s++) {
+                    int start = 1 + random.nextInt(chromosomeLength);
+                    int stop = start + random.nextInt(12) - (reversedSubsequences ? 1 : 0);  // sometimes stop < start
+                    subsequences[genome][s] = new Subsequence(start, stop, random.nextInt(3), 0, BigDecimal.ONE);
+                }
+            }
+            BigDecimal pValue = BigDecimal.valueOf(1 + random.nextInt(100), 3);
+            GeneClusterOccurrence occ = new GeneClusterOccurrence(0, subsequences, pValue, 0, nrOfGenomes);
+            clusters.add(new GeneCluster(id, occ, occ, Collections.<GeneFamily>emptySet(), pValue, pValue, 0, 0, Parameter.OperationMode.reference));
+        }
+        return clusters;
+    }
 }
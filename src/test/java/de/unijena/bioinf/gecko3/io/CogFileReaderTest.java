@@ -331,6 +331,64 @@ public class CogFileReaderTest {
     }
 
 
+    @Test
+    public void readSelectedGenomesTest() throws  IOException, ParseException {
+        File inputFile = new File(getClass().getResource("/c.cog").getFile());
+
+        CogFileReader reader = new CogFileReader(inputFile, Arrays.asList(2, 5));
+
+        DataSet data = reader.readData();
+
+        assertEquals(2, data.getGenomes().length);
+        assertEquals("Shorty 2", data.getGenomes()[0].getName());
+        assertEquals(1, data.getGenomes()[0].getChromosomes().size());
+        assertEquals("Shorty 4", data.getGenomes()[1].getName());
+        assertEquals(1, data.getGenomes()[1].getChromosomes().size());
+        assertEquals("chromosome II", data.getGenomes()[1].getChromosomes().get(0).getName());
+
+        List<GenomeOccurrence> occs = reader.getOccs();
+        assertEquals(5, occs.size());
+        for (int i = 0; i < occs.size(); i++)
+            assertEquals(i == 1 || i == 4, occs.get(i).isFlagged());
+        assertEquals(0, occs.get(1).getGroup());
+        assertEquals(occs.get(3).getGroup(), occs.get(4).getGroup());
+        assertTrue(occs.get(4).getGroup() != 0);
+    }
+
+    @Test
+    public void readManuallyGroupedGenomesTest() throws  IOException, ParseException {
+        File inputFile = new File(getClass().getResource("/c.cog").getFile());
+
+        CogFileReader reader = new CogFileReader(inputFile);
+        reader.importGenomesOccs();
+        List<GenomeOccurrence> occs = reader.getOccs();
+        assertEquals(5, occs.size());
+
+        // like grouping and ungrouping in the GenomeSelector
+        for (GenomeOccurrence occ : occs)
+            occ.setFlagged(true);
+        occs.get(0).setGroup(7);
+        occs.get(1).setGroup(7);
+        occs.get(3).setGroup(0);
+        occs.get(4).setGroup(0);
+
+        DataSet data = reader.readFileContent();
+
+        assertEquals(4, data.getGenomes().length);
+        int shorty4Genomes = 0;
+        for (Genome genome : data.getGenomes()) {
+            if (genome.getName().equals("Shorty 1")) {
+                assertEquals(2, genome.getChromosomes().size());
+            } else {
+                assertEquals(1, genome.getChromosomes().size());
+                if (genome.getName().equals("Shorty 4"))
+                    shorty4Genomes++;
+            }
+        }
+        assertEquals(2, shorty4Genomes);
+        assertEquals(7, reader.getOccs().get(0).getGroup());
+    }
+
     private static void testReader(DataSet readDataSet, Set<GeneFamily> geneFamilySet, GeneFamily unknownGeneFamily, Genome[] refGenomes) {
         assertEquals(geneFamilySet, readDataSet.getGeneFamilySet());
         assertEquals(unknownGeneFamily, readDataSet.getUnknownGeneFamily());
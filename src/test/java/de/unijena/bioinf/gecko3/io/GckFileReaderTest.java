@@ -23,11 +23,14 @@ import de.unijena.bioinf.gecko3.GeckoInstance;
 import de.unijena.bioinf.gecko3.datastructures.*;
 import de.unijena.bioinf.gecko3.algo.GeneClusterTestUtils;
 import de.unijena.bioinf.gecko3.testUtils.PerformanceTest;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.text.ParseException;
 import java.util.List;
 import java.util.Set;
@@ -35,11 +38,15 @@ import java.util.Set;
 import static de.unijena.bioinf.gecko3.algo.GeneClusterTestUtils.compareGeneClusters;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Sascha Winter (sascha.winter@uni-jena.de)
  */
 public class GckFileReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void readFileSmallData()  throws IOException, ParseException{
         File cogFile = new File(getClass().getResource("/smallReaderTest.cog").getFile());
@@ -146,4 +153,60 @@ public class GckFileReaderTest {
 
         compareGeneClusters(computedResult, actualData.getClusters(), GeneClusterTestUtils.PValueComparison.COMPARE_NONE);
     }
+
+    @Test
+    public void binaryFormatRoundTripSmallClusters() throws IOException, ParseException {
+        File gckFile = new File(getClass().getResource("/smallReaderTestClusters.gck").getFile());
+        testBinaryRoundTrip(gckFile, DataSetWriter.Format.BINARY);
+        testBinaryRoundTrip(gckFile, DataSetWriter.Format.COMPRESSED_BINARY);
+    }
+
+    @Test
+    public void binaryFormatRoundTripDeltaTable() throws IOException, ParseException {
+        File gckFile = new File(getClass().getResource("/fiveProteobacterDeltaTable.gck").getFile());
+        testBinaryRoundTrip(gckFile, DataSetWriter.Format.BINARY);
+        testBinaryRoundTrip(gckFile, DataSetWriter.Format.COMPRESSED_BINARY);
+    }
+
+    @Test
+    public void mergeClustersIntoBinaryData() throws IOException, ParseException {
+        File gckFile = new File(getClass().getResource("/smallReaderTestClusters.gck").getFile());
+        DataSet textData = new GckFileReader(gckFile).readData();
+        File binaryFile = folder.newFile();
+        assertTrue(DataSetWriter.saveDataSetToFile(textData, binaryFile, DataSetWriter.Format.BINARY));
+        DataSet binaryData = new GckFileReader(binaryFile).readData();
+
+        int nrOfClusters = binaryData.getClusters().size();
+        List<GeneCluster> additionalClusters = new GckFileReader(gckFile).readData().getClusters();
+        binaryData.mergeClusters(additionalClusters, null);
+
+        assertEquals(nrOfClusters + additionalClusters.size(), binaryData.getClusters().size());
+        for (int i = 0; i < binaryData.getClusters().size(); i++)
+            assertEquals(i, binaryData.getClusters().get(i).getId());
+    }
+
+    /**
+     * Converts the text .gck file to the binary format and back, the text files have to be identical
+     */
+    private void testBinaryRoundTrip(File gckInfile, DataSetWriter.Format format) throws IOException, ParseException {
+        DataSet textData = new GckFileReader(gckInfile).readData();
+        File textFile = folder.newFile();
+        assertTrue(DataSetWriter.saveDataSetToFile(textData, textFile));
+
+        File binaryFile = folder.newFile();
+        assertTrue(DataSetWriter.saveDataSetToFile(textData, binaryFile, format));
+        DataSet binaryData = new GckFileReader(binaryFile).readData();
+
+        assertEquals(textData.getMaxIdLength(), binaryData.getMaxIdLength());
+        assertEquals(textData.getMaxLocusTagLength(), binaryData.getMaxLocusTagLength());
+        assertEquals(textData.getMaxNameLength(), binaryData.getMaxNameLength());
+        assertArrayEquals(textData.getGenomes(), binaryData.getGenomes());
+        assertEquals(textData.getGeneFamilySet(), binaryData.getGeneFamilySet());
+        assertEquals(textData.getParameters() == null, binaryData.getParameters() == null);
+        compareGeneClusters(textData.getClusters(), binaryData.getClusters(), GeneClusterTestUtils.PValueComparison.COMPARE_ALL);
+
+        File convertedTextFile = folder.newFile();
+        assertTrue(DataSetWriter.saveDataSetToFile(binaryData, convertedTextFile));
+        assertArrayEquals(Files.readAllBytes(textFile.toPath()), Files.readAllBytes(convertedTextFile.toPath()));
+    }
 }
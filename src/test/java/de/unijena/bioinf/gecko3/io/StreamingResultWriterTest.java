@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unijena.bioinf.gecko3.io;
+
+import de.unijena.bioinf.gecko3.GeckoInstance;
+import de.unijena.bioinf.gecko3.datastructures.DataSet;
+import de.unijena.bioinf.gecko3.datastructures.GeneCluster;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamingResultWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private static DataSet data;
+
+    @BeforeClass
+    public static void readTestData() throws IOException, ParseException {
+        File gckFile = new File(StreamingResultWriterTest.class.getResource("/fiveProteobacterD3S6Q4.gck").getFile());
+        data = new GckFileReader(gckFile).readData();
+        GeckoInstance.getInstance().setGeckoInstanceData(data);
+    }
+
+    @Test
+    public void streamedOutputEqualsResultWriter() throws IOException {
+        // the ResultWriter sorts by p-value, so the clusters are streamed in this order
+        List<GeneCluster> clusters = new ArrayList<>(data.getClusters());
+        Collections.sort(clusters, new Comparator<GeneCluster>() {
+            @Override
+            public int compare(GeneCluster o1, GeneCluster o2) {
+                return o1.getBestPValue().compareTo(o2.getBestPValue());
+            }
+        });
+        assertFalse(clusters.isEmpty());
+
+        for (ExportType type : ExportType.values()) {
+            if (!StreamingResultWriter.supports(type))
+                continue;
+            File expected = folder.newFile(type + ".expected");
+            assertTrue(ResultWriter.exportResultsToFile(expected, new ArrayList<>(data.getClusters()), data.getGenomeNames(), type));
+
+            File streamed = folder.newFile(type + ".streamed");
+            try (StreamingResultWriter writer = new StreamingResultWriter(streamed, type, data.getGenomeNames())) {
+                for (GeneCluster cluster : clusters)
+                    writer.accept(cluster);
+            }
+            assertArrayEquals(type.toString(), Files.readAllBytes(expected.toPath()), Files.readAllBytes(streamed.toPath()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedExportType() throws IOException {
+        new StreamingResultWriter(folder.newFile("pdf"), ExportType.pdf, data.getGenomeNames());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 Sascha Winter, Tobias Mann, Hans-Martin Haase, Leon Kuchenbecker and Katharina Jahn
+ *
+ * This file is part of Gecko3.
+ *
+ * Gecko3 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gecko3 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gecko3.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unijena.bioinf.gecko3.testUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random genomes with planted gene clusters, that can be scaled to thousands of genomes.
+ *
+ * Each genome consists of random genes from the alphabet. Each planted cluster is inserted into a genome
+ * with probability CLUSTER_PROBABILITY, with shuffled gene order and with up to one deleted and one inserted gene.
+ * The generated genomes are in the format of DataSet.toIntArray(), each chromosome starts and ends with 0
+ * and the used gene families are numbered consecutively, starting with 1.
+ *
+ * @author Sascha Winter (sascha.winter@uni-jena.de)
+ */
+public class SyntheticGenomes {
+    private static final double CLUSTER_PROBABILITY = 0.8;
+    private static final int MIN_CLUSTER_SIZE = 4;
+    private static final int MAX_CLUSTER_SIZE = 10;
+
+    private SyntheticGenomes() {
+    }
+
+    /**
+     * Generates genomes with one chromosome each and one planted cluster per 50 genes.
+     * @param nrOfGenomes the number of genomes
+     * @param genesPerGenome the number of genes of each genome
+     * @param alphabetSize the number of gene families, the genes are numbered 1 to alphabetSize
+     * @param seed the seed of the random generator
+     * @return the genomes
+     */
+    public static int[][][] generate(int nrOfGenomes, int genesPerGenome, int alphabetSize, long seed) {
+        return generate(nrOfGenomes, 1, genesPerGenome, alphabetSize, Math.max(1, genesPerGenome / 50), seed);
+    }
+
+    /**
+     * Generates genomes with planted gene clusters.
+     * @param nrOfGenomes the number of genomes
+     * @param nrOfChromosomes the number of chromosomes of each genome
+     * @param genesPerGenome the number of genes of each genome
+     * @param alphabetSize the number of gene families, the genes are numbered 1 to alphabetSize
+     * @param nrOfClusters the number of planted clusters
+     * @param seed the seed of the random generator
+     * @return the genomes
+     */
+    public static int[][][] generate(int nrOfGenomes, int nrOfChromosomes, int genesPerGenome, int alphabetSize, int nrOfClusters, long seed) {
+        if (nrOfGenomes < 1 || nrOfChromosomes < 1 || genesPerGenome < nrOfChromosomes || alphabetSize < MAX_CLUSTER_SIZE)
+            throw new IllegalArgumentException("Invalid size for synthetic genomes.");
+        Random random = new Random(seed);
+
+        List<int[]> clusters = new ArrayList<>(nrOfClusters);
+        for (int i = 0; i < nrOfClusters; i++) {
+            int[] cluster = new int[MIN_CLUSTER_SIZE + random.nextInt(MAX_CLUSTER_SIZE - MIN_CLUSTER_SIZE + 1)];
+            for (int j = 0; j < cluster.length; j++)
+                cluster[j] = 1 + random.nextInt(alphabetSize);
+            clusters.add(cluster);
+        }
+
+        int[][][] genomes = new int[nrOfGenomes][nrOfChromosomes][];
+        for (int k = 0; k < nrOfGenomes; k++) {
+            List<Integer> genes = new ArrayList<>(genesPerGenome);
+            while (genes.size() < genesPerGenome)
+                genes.add(1 + random.nextInt(alphabetSize));
+
+            for (int[] cluster : clusters) {
+                if (random.nextDouble() >= CLUSTER_PROBABILITY)
+                    continue;
+                List<Integer> occurrence = new ArrayList<>(cluster.length + 1);
+                for (int gene : cluster)
+                    occurrence.add(gene);
+                Collections.shuffle(occurrence, random);
+                if (random.nextBoolean())
+                    occurrence.remove(random.nextInt(occurrence.size()));
+                if (random.nextBoolean())
+                    occurrence.add(random.nextInt(occurrence.size() + 1), 1 + random.nextInt(alphabetSize));
+
+                int start = random.nextInt(Math.max(1, genesPerGenome - occurrence.size()));
+                for (int j = 0; j < occurrence.size() && start + j < genesPerGenome; j++)
+                    genes.set(start + j, occurrence.get(j));
+            }
+
+            int chrStart = 0;
+            for (int c = 0; c < nrOfChromosomes; c++) {
+                int chrEnd = (int) ((long) genesPerGenome * (c + 1) / nrOfChromosomes);
+                int[] chromosome = new int[chrEnd - chrStart + 2];
+                for (int i = chrStart; i < chrEnd; i++)
+                    chromosome[i - chrStart + 1] = genes.get(i);
+                genomes[k][c] = chromosome;
+                chrStart = chrEnd;
+            }
+        }
+        renumberGeneFamilies(genomes, alphabetSize);
+        return genomes;
+    }
+
+    /**
+     * Renumbers the gene families in the order of their first occurrence, so the used families are numbered
+     * 1 to n, as in DataSet.toIntArray().
+     */
+    private static void renumberGeneFamilies(int[][][] genomes, int alphabetSize) {
+        int[] newIds = new int[alphabetSize + 1];
+        int nextId = 1;
+        for (int[][] genome : genomes) {
+            for (int[] chromosome : genome) {
+                for (int i = 1; i < chromosome.length - 1; i++) {
+                    if (newIds[chromosome[i]] == 0)
+                        newIds[chromosome[i]] = nextId++;
+                    chromosome[i] = newIds[chromosome[i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the genomes in the .cog format, so they can be read by the CogFileReader.
+     * @param genomes the genomes in the format of generate()
+     * @param file the output file
+     * @throws IOException if the file could not be written
+     */
+    public static void writeCogFile(int[][][] genomes, File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int k = 0; k < genomes.length; k++) {
+                for (int c = 0; c < genomes[k].length; c++) {
+                    int[] chromosome = genomes[k][c];
+                    writer.write(String.format("Synthetic genome %d, chromosome %d%n", k + 1, c + 1));
+                    writer.write(String.format("%d proteins%n", chromosome.length - 2));
+                    for (int i = 1; i < chromosome.length - 1; i++)
+                        writer.write(String.format("%04d\t%s\t-\tg%d_%d\tsynthetic gene\t%n", chromosome[i], (i % 3 == 0) ? "-" : "+", k + 1, i));
+                    writer.write(String.format("%n"));
+                }
+            }
+        }
+    }
+}